@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,7 +36,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
  * @since 22-01-2010
  *
  */
-abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
+abstract class BaseRowSet implements Comparable<RowSet>, RowSet, SignalingRowSet {
   protected RowMetaInterface rowMeta;
 
   protected AtomicBoolean done;
@@ -46,6 +47,8 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
 
   protected String remoteSlaveServerName;
 
+  protected volatile RowSetSignal consumerSignal;
+
   /**
    * Create new non-blocking-queue with maxSize capacity.
    *
@@ -120,6 +123,52 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
   @Override
   public abstract Object[] getRowWait( long timeout, TimeUnit tu );
 
+  /**
+   * Offer a number of rows a row at a time, for the row sets implementing {@link BatchRowSet}.
+   *
+   * @see org.pentaho.di.core.BatchRowSet#putRows(org.pentaho.di.core.row.RowMetaInterface, java.util.List, int)
+   */
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows, int fromIndex ) {
+    // Wait for room for the first row only, then add rows for as long as there is room.
+    //
+    int count = 0;
+    for ( int i = fromIndex; i < rows.size(); i++ ) {
+      boolean added;
+      if ( count == 0 ) {
+        added = putRow( rowMeta, rows.get( i ) );
+      } else {
+        added = putRowWait( rowMeta, rows.get( i ), 0, TimeUnit.MILLISECONDS );
+      }
+      if ( !added ) {
+        break;
+      }
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Take a number of rows a row at a time, for the row sets implementing {@link BatchRowSet}.
+   *
+   * @see org.pentaho.di.core.BatchRowSet#getRows(java.util.List, int)
+   */
+  public int getRows( List<Object[]> rows, int maxRows ) {
+    if ( maxRows <= 0 ) {
+      return 0;
+    }
+    Object[] row = getRow();
+    if ( row == null ) {
+      return 0;
+    }
+    rows.add( row );
+    int count = 1;
+    while ( count < maxRows && ( row = getRowImmediate() ) != null ) {
+      rows.add( row );
+      count++;
+    }
+    return count;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -128,6 +177,7 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
   @Override
   public void setDone() {
     done.set( true );
+    signalConsumer();
   }
 
   /*
@@ -297,6 +347,26 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
     this.remoteSlaveServerName = remoteSlaveServerName;
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.pentaho.di.core.SignalingRowSet#setConsumerSignal(org.pentaho.di.core.RowSetSignal)
+   */
+  @Override
+  public void setConsumerSignal( RowSetSignal signal ) {
+    this.consumerSignal = signal;
+  }
+
+  /**
+   * Wake up the consumer in case it's waiting for rows. Implementations call this after rows were added.
+   */
+  protected void signalConsumer() {
+    RowSetSignal signal = consumerSignal;
+    if ( signal != null ) {
+      signal.signal();
+    }
+  }
+
   /**
    * By default we don't report blocking, only for monitored transformations.
    *
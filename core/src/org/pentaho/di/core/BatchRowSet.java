@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.List;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A row set that can pass a whole chunk of rows at once. The buffered row sets of Kettle implement it with the help of
+ * {@link BaseRowSet}, steps check for it and fall back to a row at a time for other {@link RowSet} implementations
+ * like the {@link SingleRowRowSet}.
+ */
+public interface BatchRowSet extends RowSet {
+
+  /**
+   * Offer a number of rows to this rowset, all described by the same metadata. If the buffer is full, wait (block) for
+   * a small period of time until there is room for at least one row, then add as many rows as there is room for.
+   *
+   * @param rowMeta
+   *          The description of the rows
+   * @param rows
+   *          the rows of data
+   * @param fromIndex
+   *          the index of the first row in the list to add
+   * @return the number of rows (starting at fromIndex) that were added to the rowset. 0 if this buffer was full.
+   */
+  public abstract int putRows( RowMetaInterface rowMeta, List<Object[]> rows, int fromIndex );
+
+  /**
+   * Get a number of rows from the input buffer. It blocks for a short period until a row becomes available, then it
+   * takes all the rows that are immediately available, up to a maximum.
+   *
+   * @param rows
+   *          the list to add the rows to
+   * @param maxRows
+   *          the maximum number of rows to take
+   * @return the number of rows added to the list, 0 if no row is available.
+   */
+  public abstract int getRows( List<Object[]> rows, int maxRows );
+}
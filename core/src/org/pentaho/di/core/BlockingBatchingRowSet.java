@@ -39,7 +39,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
  * @since 04-05-2011
  *
  */
-public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet, BatchRowSet {
   private BlockingQueue<Object[][]> putArray, getArray;
 
   private int putIndex, getIndex;
@@ -106,6 +106,7 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
       try {
         getArray.offer( inputBuffer, time, tu );
         inputBuffer = null;
+        signalConsumer();
       } catch ( InterruptedException e ) {
         return false;
       }
@@ -179,6 +180,7 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
       getArray.offer( inputBuffer );
     }
     putArray.clear();
+    signalConsumer();
   }
 
   @Override
@@ -39,7 +39,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
  * @since 23-12-2010
  *
  */
-public class BlockingListeningRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+public class BlockingListeningRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet, BatchRowSet {
   private BlockingQueue<Object[]> queArray;
 
   private AtomicBoolean blocking;
@@ -80,6 +80,9 @@ public class BlockingListeningRowSet extends BaseRowSet implements Comparable<Ro
       blocking.set( true );
       boolean b = queArray.offer( rowData, time, tu );
       blocking.set( false );
+      if ( b ) {
+        signalConsumer();
+      }
       return b;
     } catch ( InterruptedException e ) {
       blocking.set( false );
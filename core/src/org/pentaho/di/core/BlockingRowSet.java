@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -36,7 +37,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
  * @since 04-04-2003
  *
  */
-public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet, BatchRowSet {
   private BlockingQueue<Object[]> queArray;
 
   private int timeoutPut;
@@ -77,8 +78,11 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
   public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
     this.rowMeta = rowMeta;
     try {
-
-      return queArray.offer( rowData, time, tu );
+      if ( queArray.offer( rowData, time, tu ) ) {
+        signalConsumer();
+        return true;
+      }
+      return false;
     } catch ( InterruptedException e ) {
       return false;
     } catch ( NullPointerException e ) {
@@ -125,6 +129,22 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     }
   }
 
+  /**
+   * Waits for the first row, then drains whatever else is available while taking the queue lock only once.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int maxRows ) {
+    if ( maxRows <= 0 ) {
+      return 0;
+    }
+    Object[] row = getRow();
+    if ( row == null ) {
+      return 0;
+    }
+    rows.add( row );
+    return 1 + queArray.drainTo( rows, maxRows - 1 );
+  }
+
   @Override
   public int size() {
     return queArray.size();
@@ -0,0 +1,625 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBase;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+
+/**
+ * A {@link Condition} compiled against the layout of the rows it is evaluated on.<br>
+ * <br>
+ * The field positions are looked up once and the condition tree is turned into a tree of predicates specialised for
+ * the function and the operands. Constant operands are converted to the data type of the compared field once, regular
+ * expressions, LIKE patterns and IN lists are prepared once, and integer and number comparisons against a constant
+ * don't go through the generic value comparison. Sub-conditions without an outcome (TRUE, fields that don't exist)
+ * are folded into constants, and in a list of conditions combined with only AND or only OR the predicates that can't
+ * fail are evaluated first.<br>
+ * <br>
+ * The result is the same as {@link Condition#evaluate(RowMetaInterface, Object[])} for rows with the layout the
+ * condition was compiled for. Anything that isn't specialised is evaluated by a private copy of the original
+ * condition. Unlike a condition, a compiled condition keeps no state while evaluating, so it can be shared by threads.
+ */
+public abstract class CompiledCondition {
+  private static final CompiledCondition TRUE = new Constant( true );
+  private static final CompiledCondition FALSE = new Constant( false );
+
+  /**
+   * Evaluate the condition.
+   *
+   * @param r
+   *          the row data, in the layout the condition was compiled for
+   * @return true if the condition evaluates to true
+   * @throws KettleValueException
+   *           in case a value can't be converted to be compared
+   */
+  public abstract boolean evaluate( Object[] r ) throws KettleValueException;
+
+  /**
+   * @return true if evaluating this predicate can't throw an exception, so it can be moved ahead of others
+   */
+  boolean isSafe() {
+    return false;
+  }
+
+  /**
+   * Compile a condition for the rows described by the given metadata.
+   *
+   * @param condition
+   *          the condition to compile, it is not modified
+   * @param rowMeta
+   *          the metadata of the rows to evaluate
+   * @return the compiled condition
+   */
+  public static CompiledCondition compile( Condition condition, RowMetaInterface rowMeta ) {
+    if ( condition.isComposite() ) {
+      return compileComposite( condition, rowMeta );
+    }
+    return compileAtomic( condition, rowMeta );
+  }
+
+  private static CompiledCondition compileComposite( Condition condition, RowMetaInterface rowMeta ) {
+    int nrConditions = condition.nrConditions();
+    CompiledCondition[] children = new CompiledCondition[nrConditions];
+    int[] operators = new int[nrConditions];
+    boolean constant = true;
+    for ( int i = 0; i < nrConditions; i++ ) {
+      children[i] = compile( condition.getCondition( i ), rowMeta );
+      operators[i] = condition.getCondition( i ).getOperator();
+      constant = constant && children[i] instanceof Constant;
+    }
+
+    if ( constant ) {
+      try {
+        return constant( new Sequence( children, operators, condition.isNegated() ).evaluate( null ) );
+      } catch ( KettleValueException e ) {
+        // Constants don't throw exceptions
+        throw new RuntimeException( e );
+      }
+    }
+
+    // The operator of the first condition is ignored, see Condition.evaluate()
+    //
+    int operator = nrConditions > 1 ? operators[1] : Condition.OPERATOR_AND;
+    if ( operator == Condition.OPERATOR_AND || operator == Condition.OPERATOR_OR ) {
+      for ( int i = 2; i < nrConditions; i++ ) {
+        if ( operators[i] != operator ) {
+          return new Sequence( children, operators, condition.isNegated() );
+        }
+      }
+      // The order doesn't matter for the outcome: evaluate the predicates that can't fail first
+      //
+      List<CompiledCondition> ordered = new ArrayList<CompiledCondition>( nrConditions );
+      for ( CompiledCondition child : children ) {
+        if ( child.isSafe() ) {
+          ordered.add( child );
+        }
+      }
+      for ( CompiledCondition child : children ) {
+        if ( !child.isSafe() ) {
+          ordered.add( child );
+        }
+      }
+      return new Junction( ordered.toArray( new CompiledCondition[nrConditions] ),
+        operator == Condition.OPERATOR_AND, condition.isNegated() );
+    }
+    return new Sequence( children, operators, condition.isNegated() );
+  }
+
+  private static CompiledCondition compileAtomic( Condition condition, RowMetaInterface rowMeta ) {
+    int function = condition.getFunction();
+    if ( function == Condition.FUNC_TRUE ) {
+      return TRUE; // not negated
+    }
+
+    int leftIndex = indexOfValue( rowMeta, condition.getLeftValuename() );
+    if ( leftIndex < 0 ) {
+      return FALSE; // no fields to evaluate, not negated either
+    }
+    ValueMetaInterface leftMeta = rowMeta.getValueMeta( leftIndex );
+    boolean negate = condition.isNegated();
+
+    if ( function == Condition.FUNC_NULL || function == Condition.FUNC_NOT_NULL ) {
+      return new NullCheck( leftIndex, leftMeta, ( function == Condition.FUNC_NOT_NULL ) != negate );
+    }
+
+    // The exact value is used unless it is null and a field is specified
+    //
+    ValueMetaAndData exact = condition.getRightExact();
+    int rightIndex = indexOfValue( rowMeta, condition.getRightValuename() );
+    if ( ( exact == null || exact.getValueData() == null ) && rightIndex >= 0 ) {
+      if ( isComparison( function ) ) {
+        return new FieldComparison( function, negate, leftIndex, leftMeta, rightIndex, rowMeta
+          .getValueMeta( rightIndex ) );
+      }
+      return new Interpreted( condition, rowMeta );
+    }
+
+    ValueMetaInterface rightMeta = exact != null ? exact.getValueMeta() : null;
+    Object rightData = exact != null ? exact.getValueData() : null;
+    CompiledCondition compiled;
+    try {
+      compiled = compileConstant( function, negate, leftIndex, leftMeta, rightMeta, rightData );
+    } catch ( Exception e ) {
+      // The same error is reported when the condition is evaluated
+      compiled = null;
+    }
+    return compiled != null ? compiled : new Interpreted( condition, rowMeta );
+  }
+
+  /**
+   * @return the compiled atomic condition with a constant right hand side or null if it can't be specialised
+   */
+  private static CompiledCondition compileConstant( int function, boolean negate, int leftIndex,
+    ValueMetaInterface leftMeta, ValueMetaInterface rightMeta, Object rightData ) throws Exception {
+    if ( isComparison( function ) ) {
+      if ( rightMeta == null || leftMeta.getType() == rightMeta.getType()
+        && leftMeta.getStorageType() != rightMeta.getStorageType() && leftMeta.isStorageIndexed() ) {
+        return null;
+      }
+      Object value = convertConstant( leftMeta, rightMeta, rightData );
+      if ( leftMeta.isStorageNormal() && !leftMeta.isSortedDescending() && isPlainValueMeta( leftMeta ) ) {
+        if ( leftMeta.getType() == ValueMetaInterface.TYPE_INTEGER && value instanceof Long ) {
+          return new IntegerComparison( function, negate, leftIndex, ( (Long) value ).longValue() );
+        }
+        if ( leftMeta.getType() == ValueMetaInterface.TYPE_NUMBER && value instanceof Double ) {
+          return new NumberComparison( function, negate, leftIndex, ( (Double) value ).doubleValue() );
+        }
+      }
+      return new ConstantComparison( function, negate, leftIndex, leftMeta, value );
+    }
+
+    switch ( function ) {
+      case Condition.FUNC_REGEXP:
+      case Condition.FUNC_LIKE:
+        if ( rightData == null ) {
+          return constant( negate );
+        }
+        String regex = rightMeta.getCompatibleString( rightData );
+        if ( function == Condition.FUNC_LIKE ) {
+          regex = regex.replace( "%", ".*" );
+          regex = regex.replace( "?", "." );
+        }
+        return new PatternMatch( negate, leftIndex, leftMeta, Pattern.compile( regex ) );
+
+      case Condition.FUNC_IN_LIST:
+        String[] inList = Const.splitString( rightMeta.getString( rightData ), ';', true );
+        for ( int i = 0; i < inList.length; i++ ) {
+          inList[i] = inList[i] == null ? null : inList[i].replace( "\\", "" );
+        }
+        Arrays.sort( inList );
+        return new InList( negate, leftIndex, leftMeta, inList );
+
+      case Condition.FUNC_CONTAINS:
+      case Condition.FUNC_STARTS_WITH:
+        String string = rightMeta.getCompatibleString( rightData );
+        return string == null ? null : new StringMatch( function, negate, leftIndex, leftMeta, string );
+
+      case Condition.FUNC_ENDS_WITH:
+        if ( rightData == null ) {
+          return constant( negate );
+        }
+        string = rightMeta.getCompatibleString( rightData );
+        return string == null ? constant( negate ) : new StringMatch( function, negate, leftIndex, leftMeta, string );
+
+      default:
+        return constant( negate );
+    }
+  }
+
+  /**
+   * Convert a constant the way {@link ValueMetaInterface#compare(Object, ValueMetaInterface, Object)} converts the
+   * second value for every comparison.
+   *
+   * @return the converted value
+   */
+  private static Object convertConstant( ValueMetaInterface leftMeta, ValueMetaInterface rightMeta,
+    Object rightData ) throws KettleValueException {
+    if ( leftMeta.getType() != rightMeta.getType() ) {
+      return leftMeta.convertData( rightMeta, rightData );
+    }
+    if ( leftMeta.getStorageType() == rightMeta.getStorageType() ) {
+      return rightData;
+    }
+    if ( leftMeta.isStorageBinaryString() ) {
+      return rightMeta.convertToBinaryStringStorageType( rightData );
+    }
+    return rightMeta.convertToNormalStorageType( rightData );
+  }
+
+  /**
+   * @return true if the value metadata compares values with the standard implementation in {@link ValueMetaBase}
+   */
+  private static boolean isPlainValueMeta( ValueMetaInterface valueMeta ) {
+    Class<?> valueMetaClass = valueMeta.getClass();
+    return valueMetaClass == ValueMeta.class || valueMetaClass == ValueMetaBase.class
+      || valueMetaClass == ValueMetaInteger.class || valueMetaClass == ValueMetaNumber.class;
+  }
+
+  private static boolean isComparison( int function ) {
+    return function >= Condition.FUNC_EQUAL && function <= Condition.FUNC_LARGER_EQUAL;
+  }
+
+  private static int indexOfValue( RowMetaInterface rowMeta, String valueName ) {
+    if ( valueName == null || valueName.length() == 0 ) {
+      return -1;
+    }
+    return rowMeta.indexOfValue( valueName );
+  }
+
+  private static CompiledCondition constant( boolean value ) {
+    return value ? TRUE : FALSE;
+  }
+
+  private static final class Constant extends CompiledCondition {
+    private final boolean value;
+
+    Constant( boolean value ) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      return value;
+    }
+
+    @Override
+    boolean isSafe() {
+      return true;
+    }
+  }
+
+  /**
+   * Sub-conditions combined with any operators, evaluated from left to right like {@link Condition} does.
+   */
+  private static final class Sequence extends CompiledCondition {
+    private final CompiledCondition[] children;
+    private final int[] operators;
+    private final boolean negate;
+
+    Sequence( CompiledCondition[] children, int[] operators, boolean negate ) {
+      this.children = children;
+      this.operators = operators;
+      this.negate = negate;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      boolean retval = children[0].evaluate( r );
+      for ( int i = 1; i < children.length; i++ ) {
+        switch ( operators[i] ) {
+          case Condition.OPERATOR_OR:
+            retval = retval || children[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_AND:
+            retval = retval && children[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_OR_NOT:
+            retval = retval || !children[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_AND_NOT:
+            retval = retval && !children[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_XOR:
+            retval = retval ^ children[i].evaluate( r );
+            break;
+          default:
+            break;
+        }
+      }
+      return negate ? !retval : retval;
+    }
+  }
+
+  /**
+   * Sub-conditions combined with only AND or only OR: evaluation stops at the first one deciding the outcome.
+   */
+  private static final class Junction extends CompiledCondition {
+    private final CompiledCondition[] children;
+    private final boolean and;
+    private final boolean negate;
+
+    Junction( CompiledCondition[] children, boolean and, boolean negate ) {
+      this.children = children;
+      this.and = and;
+      this.negate = negate;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      for ( CompiledCondition child : children ) {
+        if ( child.evaluate( r ) != and ) {
+          return negate ? and : !and;
+        }
+      }
+      return negate ? !and : and;
+    }
+  }
+
+  private static final class NullCheck extends CompiledCondition {
+    private final int index;
+    private final ValueMetaInterface valueMeta;
+    private final boolean notNull;
+
+    NullCheck( int index, ValueMetaInterface valueMeta, boolean notNull ) {
+      this.index = index;
+      this.valueMeta = valueMeta;
+      this.notNull = notNull;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      return valueMeta.isNull( r[index] ) != notNull;
+    }
+
+    @Override
+    boolean isSafe() {
+      // Lazily converted values can fail to convert
+      return valueMeta.isStorageNormal();
+    }
+  }
+
+  private abstract static class Comparison extends CompiledCondition {
+    private final int function;
+    private final boolean negate;
+
+    Comparison( int function, boolean negate ) {
+      this.function = function;
+      this.negate = negate;
+    }
+
+    /**
+     * @param cmp
+     *          the outcome of the comparison of the left and the right value: less than, equal to or larger than 0
+     * @return the outcome of the condition
+     */
+    protected boolean matches( int cmp ) {
+      boolean retval;
+      switch ( function ) {
+        case Condition.FUNC_EQUAL:
+          retval = cmp == 0;
+          break;
+        case Condition.FUNC_NOT_EQUAL:
+          retval = cmp != 0;
+          break;
+        case Condition.FUNC_SMALLER:
+          retval = cmp < 0;
+          break;
+        case Condition.FUNC_SMALLER_EQUAL:
+          retval = cmp <= 0;
+          break;
+        case Condition.FUNC_LARGER:
+          retval = cmp > 0;
+          break;
+        default:
+          retval = cmp >= 0;
+          break;
+      }
+      return negate ? !retval : retval;
+    }
+  }
+
+  private static final class FieldComparison extends Comparison {
+    private final int leftIndex;
+    private final ValueMetaInterface leftMeta;
+    private final int rightIndex;
+    private final ValueMetaInterface rightMeta;
+
+    FieldComparison( int function, boolean negate, int leftIndex, ValueMetaInterface leftMeta, int rightIndex,
+      ValueMetaInterface rightMeta ) {
+      super( function, negate );
+      this.leftIndex = leftIndex;
+      this.leftMeta = leftMeta;
+      this.rightIndex = rightIndex;
+      this.rightMeta = rightMeta;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      return matches( leftMeta.compare( r[leftIndex], rightMeta, r[rightIndex] ) );
+    }
+  }
+
+  /**
+   * Compares a field with a constant that is already converted to the data and storage type of the field.
+   */
+  private static final class ConstantComparison extends Comparison {
+    private final int index;
+    private final ValueMetaInterface valueMeta;
+    private final Object value;
+
+    ConstantComparison( int function, boolean negate, int index, ValueMetaInterface valueMeta, Object value ) {
+      super( function, negate );
+      this.index = index;
+      this.valueMeta = valueMeta;
+      this.value = value;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      return matches( valueMeta.compare( r[index], value ) );
+    }
+  }
+
+  /**
+   * Compares an integer field with a constant, with the same outcome as {@link ValueMetaBase#compare(Object, Object)}.
+   */
+  private static final class IntegerComparison extends Comparison {
+    private final int index;
+    private final long value;
+
+    IntegerComparison( int function, boolean negate, int index, long value ) {
+      super( function, negate );
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      Long field = (Long) r[index];
+      if ( field == null ) {
+        return matches( -1 ); // null is always smaller
+      }
+      long compare = field.longValue() - value;
+      return matches( compare < 0 ? -1 : ( compare > 0 ? 1 : 0 ) );
+    }
+  }
+
+  /**
+   * Compares a number field with a constant, with the same outcome as {@link ValueMetaBase#compare(Object, Object)}.
+   */
+  private static final class NumberComparison extends Comparison {
+    private final int index;
+    private final double value;
+
+    NumberComparison( int function, boolean negate, int index, double value ) {
+      super( function, negate );
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      Double field = (Double) r[index];
+      if ( field == null ) {
+        return matches( -1 ); // null is always smaller
+      }
+      return matches( Double.compare( field.doubleValue(), value ) );
+    }
+  }
+
+  /**
+   * A regular expression or LIKE pattern, compiled once.
+   */
+  private static final class PatternMatch extends CompiledCondition {
+    private final boolean negate;
+    private final int index;
+    private final ValueMetaInterface valueMeta;
+    private final Pattern pattern;
+
+    PatternMatch( boolean negate, int index, ValueMetaInterface valueMeta, Pattern pattern ) {
+      this.negate = negate;
+      this.index = index;
+      this.valueMeta = valueMeta;
+      this.pattern = pattern;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      Object field = r[index];
+      boolean retval =
+        !valueMeta.isNull( field ) && pattern.matcher( valueMeta.getCompatibleString( field ) ).matches();
+      return negate ? !retval : retval;
+    }
+  }
+
+  /**
+   * An IN LIST condition against a constant list, split and sorted once.
+   */
+  private static final class InList extends CompiledCondition {
+    private final boolean negate;
+    private final int index;
+    private final ValueMetaInterface valueMeta;
+    private final String[] inList;
+
+    InList( boolean negate, int index, ValueMetaInterface valueMeta, String[] inList ) {
+      this.negate = negate;
+      this.index = index;
+      this.valueMeta = valueMeta;
+      this.inList = inList;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      String searchString = valueMeta.getCompatibleString( r[index] );
+      boolean retval = searchString != null && Arrays.binarySearch( inList, searchString ) >= 0;
+      return negate ? !retval : retval;
+    }
+  }
+
+  /**
+   * CONTAINS, STARTS WITH and ENDS WITH against a constant string.
+   */
+  private static final class StringMatch extends CompiledCondition {
+    private final int function;
+    private final boolean negate;
+    private final int index;
+    private final ValueMetaInterface valueMeta;
+    private final String value;
+
+    StringMatch( int function, boolean negate, int index, ValueMetaInterface valueMeta, String value ) {
+      this.function = function;
+      this.negate = negate;
+      this.index = index;
+      this.valueMeta = valueMeta;
+      this.value = value;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) throws KettleValueException {
+      String string = valueMeta.getCompatibleString( r[index] );
+      boolean retval;
+      switch ( function ) {
+        case Condition.FUNC_CONTAINS:
+          retval = string != null && string.indexOf( value ) >= 0;
+          break;
+        case Condition.FUNC_STARTS_WITH:
+          retval = string != null && string.startsWith( value );
+          break;
+        default:
+          retval = !Const.isEmpty( string ) && string.endsWith( value );
+          break;
+      }
+      return negate ? !retval : retval;
+    }
+  }
+
+  /**
+   * Anything that isn't specialised: a private copy of the atomic condition, so its cached state isn't shared.
+   */
+  private static final class Interpreted extends CompiledCondition {
+    private final Condition condition;
+    private final RowMetaInterface rowMeta;
+
+    Interpreted( Condition condition, RowMetaInterface rowMeta ) {
+      this.condition = (Condition) condition.clone();
+      this.rowMeta = rowMeta;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      synchronized ( condition ) {
+        return condition.evaluate( rowMeta, r );
+      }
+    }
+  }
+}
@@ -584,6 +584,18 @@ public class Condition implements Cloneable, XMLInterface {
     return retval;
   }
 
+  /**
+   * Compile the condition for rows with a fixed layout. Evaluating the compiled condition is faster than calling
+   * {@link #evaluate(RowMetaInterface, Object[])} for every row and gives the same result.
+   *
+   * @param rowMeta
+   *          the metadata of the rows to evaluate
+   * @return the compiled condition
+   */
+  public CompiledCondition compile( RowMetaInterface rowMeta ) {
+    return CompiledCondition.compile( this, rowMeta );
+  }
+
   public void addCondition( Condition cb ) {
     if ( isAtomic() && getLeftValuename() != null ) {
       /*
@@ -132,6 +132,11 @@ public class Const {
    */
   public static final int ROWS_IN_ROWSET = 10000;
 
+  /**
+   * Maximum number of rows a step takes from or passes to a rowset in one go when it processes rows in chunks
+   */
+  public static final int ROWS_IN_CHUNK = 1000;
+
   /**
    * Fetch size in rows when querying a database
    */
@@ -887,6 +892,48 @@ public class Const {
    */
   public static final String KETTLE_BATCHING_ROWSET = "KETTLE_BATCHING_ROWSET";
 
+  /**
+   * The name of the variable that contains the number of threads the Sort Rows step uses to sort its in-memory
+   * buffer. (default = the number of available processors, 1 disables parallel sorting)
+   */
+  public static final String KETTLE_SORT_ROWS_THREADS = "KETTLE_SORT_ROWS_THREADS";
+
+  /**
+   * The name of the variable that contains the maximum number of temporary files the Sort Rows step merges at once.
+   * When there are more files, they are first merged into larger files. (default = 128)
+   */
+  public static final String KETTLE_SORT_ROWS_MERGE_FANIN = "KETTLE_SORT_ROWS_MERGE_FANIN";
+
+  /**
+   * The name of the variable that contains the percentage of the maximum heap that row buffering steps like Sort Rows
+   * can reserve together before they need to spill to disk. (default = 60)
+   */
+  public static final String KETTLE_MEMORY_BUDGET_PERCENTAGE = "KETTLE_MEMORY_BUDGET_PERCENTAGE";
+
+  /**
+   * Set this variable to Y to store the keys and values of the lookup caches of Stream Lookup, Dimension Lookup/Update
+   * and Combination Lookup/Update outside of the Java heap. (default = N)
+   */
+  public static final String KETTLE_LOOKUP_CACHE_OFF_HEAP = "KETTLE_LOOKUP_CACHE_OFF_HEAP";
+
+  /**
+   * The name of the variable that contains the eviction policy of the bounded caches of Database Lookup, Dimension
+   * Lookup/Update and Combination Lookup/Update: LRU or TINY_LFU. (default = LRU)
+   */
+  public static final String KETTLE_LOOKUP_CACHE_EVICTION = "KETTLE_LOOKUP_CACHE_EVICTION";
+
+  /**
+   * Set this variable to Y to borrow all database connections from the shared connection pools of the JVM, also when
+   * pooling isn't enabled for the connection. (default = N)
+   */
+  public static final String KETTLE_SHARED_CONNECTION_POOL = "KETTLE_SHARED_CONNECTION_POOL";
+
+  /**
+   * The number of threads that run the step copies of transformations with the Thread Pool transformation type. Extra
+   * threads are started temporarily while steps wait for rows. (default = the number of processors)
+   */
+  public static final String KETTLE_STEP_THREAD_POOL_SIZE = "KETTLE_STEP_THREAD_POOL_SIZE";
+
   /**
    * Set this variable to Y to disable standard Kettle logging to the console. (stdout)
    */
@@ -23,6 +23,7 @@
 package org.pentaho.di.core;
 
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -32,7 +33,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
  *
  * @author matt
  */
-public class QueueRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+public class QueueRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet, BatchRowSet {
 
   private LinkedList<Object[]> buffer;
 
@@ -60,6 +61,7 @@ public class QueueRowSet extends BaseRowSet implements Comparable<RowSet>, RowSe
   public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
     this.rowMeta = rowMeta;
     buffer.add( rowData );
+    signalConsumer();
     return true;
   }
 
@@ -68,6 +70,17 @@ public class QueueRowSet extends BaseRowSet implements Comparable<RowSet>, RowSe
     return putRow( rowMeta, rowData );
   }
 
+  @Override
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows, int fromIndex ) {
+    if ( fromIndex >= rows.size() ) {
+      return 0;
+    }
+    this.rowMeta = rowMeta;
+    buffer.addAll( rows.subList( fromIndex, rows.size() ) );
+    signalConsumer();
+    return rows.size() - fromIndex;
+  }
+
   @Override
   public int size() {
     return buffer.size();
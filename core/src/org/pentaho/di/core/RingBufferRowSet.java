@@ -0,0 +1,404 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A bounded, lock-free row set for exactly one producing thread and one consuming thread. Every row set that
+ * Trans.prepareExecution() allocates connects one step copy to one other step copy, so this is the common case.<br>
+ * <br>
+ * Rows are kept in a ring buffer. The producer only ever writes the tail sequence and the consumer only ever writes
+ * the head sequence. Both sequences are padded to live on their own cache line so the two threads don't invalidate
+ * each other's caches. Instead of waiting on a lock condition, a thread that finds the buffer full (or empty) backs
+ * off according to the configured {@link WaitStrategy}.
+ */
+public class RingBufferRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet, BatchRowSet {
+
+  /**
+   * Describes what a thread does while it waits for room in (or rows from) the ring buffer.
+   */
+  public enum WaitStrategy {
+    /** Busy spin: lowest latency, burns a core per waiting thread. */
+    SPIN( "SPIN" ),
+
+    /** Spin for a short while, then give up the time slice with Thread.yield(). */
+    YIELD( "YIELD" ),
+
+    /** Spin, yield, then park the thread for a short period. The cheapest option on oversubscribed machines. */
+    PARK( "PARK" );
+
+    private String code;
+
+    private WaitStrategy( String code ) {
+      this.code = code;
+    }
+
+    /**
+     * @return the code used to store the wait strategy in XML or a repository
+     */
+    public String getCode() {
+      return code;
+    }
+
+    /**
+     * Look up a wait strategy by code.
+     *
+     * @param code
+     *          the code to look for
+     * @return the matching wait strategy or PARK if nothing matches
+     */
+    public static WaitStrategy getWaitStrategyByCode( String code ) {
+      if ( code != null ) {
+        for ( WaitStrategy strategy : values() ) {
+          if ( strategy.code.equalsIgnoreCase( code ) ) {
+            return strategy;
+          }
+        }
+      }
+      return PARK;
+    }
+
+    /**
+     * @return the codes of all wait strategies
+     */
+    public static String[] getWaitStrategyCodes() {
+      String[] codes = new String[values().length];
+      for ( int i = 0; i < codes.length; i++ ) {
+        codes[i] = values()[i].getCode();
+      }
+      return codes;
+    }
+  }
+
+  /**
+   * A sequence counter padded so that it occupies a cache line of its own. Next to the sequence it keeps the owning
+   * thread's last known value of the other side's sequence. That way we only read the other thread's cache line when
+   * the buffer looks full (or empty).
+   */
+  @SuppressWarnings( "serial" )
+  private static final class PaddedSequence extends AtomicLong {
+    private long cachedOther;
+    public volatile long p1, p2, p3, p4, p5, p6;
+  }
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 100;
+  private static final long PARK_NANOS = 50000L; // 50 micro-seconds
+
+  private final Object[][] buffer;
+  private final int mask;
+  private final int capacity;
+  private final WaitStrategy waitStrategy;
+
+  /** The sequence of the next row to read, written only by the consumer. */
+  private final PaddedSequence head = new PaddedSequence();
+
+  /** The sequence of the next row to write, written only by the producer. */
+  private final PaddedSequence tail = new PaddedSequence();
+
+  private int timeoutPut;
+  private int timeoutGet;
+
+  /**
+   * Create a new ring buffer row set holding at most maxSize rows, using the PARK wait strategy.
+   *
+   * @param maxSize
+   *          the maximum number of rows in the row set
+   */
+  public RingBufferRowSet( int maxSize ) {
+    this( maxSize, WaitStrategy.PARK );
+  }
+
+  /**
+   * Create a new ring buffer row set holding at most maxSize rows.
+   *
+   * @param maxSize
+   *          the maximum number of rows in the row set
+   * @param waitStrategy
+   *          what to do while waiting for room or rows
+   */
+  public RingBufferRowSet( int maxSize, WaitStrategy waitStrategy ) {
+    super();
+
+    capacity = Math.max( 1, maxSize );
+
+    // The physical buffer is a power of 2 so that we can mask instead of taking a modulo
+    //
+    int length = 1;
+    while ( length < capacity ) {
+      length <<= 1;
+    }
+    buffer = new Object[length][];
+    mask = length - 1;
+
+    this.waitStrategy = waitStrategy == null ? WaitStrategy.PARK : waitStrategy;
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    if ( rowData == null ) {
+      return false; // same contract as the blocking queue based row set
+    }
+    this.rowMeta = rowMeta;
+
+    long sequence = tail.get();
+    if ( sequence - tail.cachedOther >= capacity ) {
+      tail.cachedOther = head.get();
+      if ( sequence - tail.cachedOther >= capacity ) {
+        long deadline = System.nanoTime() + tu.toNanos( time );
+        int counter = 0;
+        do {
+          if ( !idle( counter++, deadline ) ) {
+            return false;
+          }
+          tail.cachedOther = head.get();
+        } while ( sequence - tail.cachedOther >= capacity );
+      }
+    }
+
+    buffer[(int) sequence & mask] = rowData;
+    publish( sequence + 1 );
+    signalConsumer();
+    return true;
+  }
+
+  /**
+   * Waits for room for the first row, then copies as many rows as there is room for and publishes them all at once.
+   */
+  @Override
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows, int fromIndex ) {
+    if ( fromIndex >= rows.size() || rows.get( fromIndex ) == null ) {
+      return 0;
+    }
+    this.rowMeta = rowMeta;
+
+    long sequence = tail.get();
+    if ( sequence - tail.cachedOther >= capacity ) {
+      tail.cachedOther = head.get();
+      if ( sequence - tail.cachedOther >= capacity ) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutPut );
+        int counter = 0;
+        do {
+          if ( !idle( counter++, deadline ) ) {
+            return 0;
+          }
+          tail.cachedOther = head.get();
+        } while ( sequence - tail.cachedOther >= capacity );
+      }
+    }
+
+    // The cached head can be far behind the consumer: look again if it limits the rows we can write
+    //
+    int room = (int) ( capacity - ( sequence - tail.cachedOther ) );
+    if ( room < rows.size() - fromIndex ) {
+      tail.cachedOther = head.get();
+      room = (int) ( capacity - ( sequence - tail.cachedOther ) );
+    }
+    int count = 0;
+    for ( int i = fromIndex; i < rows.size() && count < room; i++ ) {
+      Object[] rowData = rows.get( i );
+      if ( rowData == null ) {
+        break;
+      }
+      buffer[(int) ( sequence + count ) & mask] = rowData;
+      count++;
+    }
+    publish( sequence + count );
+    signalConsumer();
+    return count;
+  }
+
+  /**
+   * Publishes the rows up to the given tail sequence to the consumer. A lazy write is enough for a consumer that polls,
+   * but a consumer waiting on a signal could miss the wakeup if the write became visible only after the signal checked
+   * whether it's waiting.
+   */
+  private void publish( long sequence ) {
+    if ( consumerSignal != null ) {
+      tail.set( sequence );
+    } else {
+      tail.lazySet( sequence );
+    }
+  }
+
+  /**
+   * Waits for the first row, then takes every row that was published so far (up to maxRows) at once.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int maxRows ) {
+    if ( maxRows <= 0 ) {
+      return 0;
+    }
+    long sequence = head.get();
+    if ( sequence >= head.cachedOther ) {
+      head.cachedOther = tail.get();
+      if ( sequence >= head.cachedOther ) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutGet );
+        int counter = 0;
+        do {
+          if ( !idle( counter++, deadline ) ) {
+            return 0;
+          }
+          head.cachedOther = tail.get();
+        } while ( sequence >= head.cachedOther );
+      }
+    }
+
+    // The cached tail can be far behind the producer: look again if it limits the rows we can take
+    //
+    if ( head.cachedOther - sequence < maxRows ) {
+      head.cachedOther = tail.get();
+    }
+    int count = (int) Math.min( maxRows, head.cachedOther - sequence );
+    for ( int i = 0; i < count; i++ ) {
+      int index = (int) ( sequence + i ) & mask;
+      rows.add( buffer[index] );
+      buffer[index] = null; // prevent any hold-up to GC
+    }
+    head.lazySet( sequence + count ); // hands the slots back to the producer
+    return count;
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    long sequence = head.get();
+    if ( sequence >= head.cachedOther ) {
+      head.cachedOther = tail.get();
+      if ( sequence >= head.cachedOther ) {
+        return null;
+      }
+    }
+    return take( sequence );
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    long sequence = head.get();
+    if ( sequence >= head.cachedOther ) {
+      head.cachedOther = tail.get();
+      if ( sequence >= head.cachedOther ) {
+        long deadline = System.nanoTime() + tu.toNanos( timeout );
+        int counter = 0;
+        do {
+          if ( !idle( counter++, deadline ) ) {
+            return null;
+          }
+          head.cachedOther = tail.get();
+        } while ( sequence >= head.cachedOther );
+      }
+    }
+    return take( sequence );
+  }
+
+  private Object[] take( long sequence ) {
+    int index = (int) sequence & mask;
+    Object[] row = buffer[index];
+    buffer[index] = null; // prevent any hold-up to GC
+    head.lazySet( sequence + 1 ); // hands the slot back to the producer
+    return row;
+  }
+
+  /**
+   * Back off once according to the wait strategy.
+   *
+   * @param counter
+   *          the number of times we backed off so far during this wait
+   * @param deadline
+   *          the System.nanoTime() value after which we give up
+   * @return false if the deadline passed or the thread got interrupted, true if the caller should retry
+   */
+  private boolean idle( int counter, long deadline ) {
+    if ( System.nanoTime() - deadline >= 0 ) {
+      return false;
+    }
+    switch ( waitStrategy ) {
+      case SPIN:
+        break;
+      case YIELD:
+        if ( counter >= SPIN_TRIES ) {
+          Thread.yield();
+        }
+        break;
+      default:
+        if ( counter >= SPIN_TRIES + YIELD_TRIES ) {
+          LockSupport.parkNanos( this, PARK_NANOS );
+          if ( Thread.interrupted() ) {
+            return false;
+          }
+        } else if ( counter >= SPIN_TRIES ) {
+          Thread.yield();
+        }
+        break;
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    // Read head first: the difference can then only over-estimate, never go negative.
+    //
+    long h = head.get();
+    return (int) ( tail.get() - h );
+  }
+
+  /**
+   * Only call this method when neither the producer nor the consumer is active.
+   */
+  @Override
+  public void clear() {
+    for ( int i = 0; i < buffer.length; i++ ) {
+      buffer[i] = null;
+    }
+    head.set( tail.get() );
+    tail.cachedOther = tail.get();
+    head.cachedOther = tail.get();
+    done.set( false );
+  }
+
+  /**
+   * @return the wait strategy used by this row set
+   */
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+}
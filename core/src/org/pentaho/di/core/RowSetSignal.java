@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the consumer of a number of row sets wait until any of them received rows or was flagged as done, instead of
+ * polling them one after the other with a timeout. The row sets raise the signal they were given with
+ * {@link SignalingRowSet#setConsumerSignal(RowSetSignal)} every time rows are added or the producer is done.<br>
+ * <br>
+ * Raising the signal is cheap as long as nobody is waiting: it's a single volatile read. A consumer waits like this:
+ *
+ * <pre>
+ * long ticket = signal.prepareWait();
+ * if ( any row set has rows or is done ) {
+ *   signal.cancelWait();
+ * } else {
+ *   signal.await( ticket, timeout, TimeUnit.MILLISECONDS );
+ * }
+ * </pre>
+ *
+ * Checking the row sets after {@link #prepareWait()} makes sure no signal is lost in between, as long as the row sets
+ * publish their rows with a volatile write before they raise the signal.
+ */
+public class RowSetSignal {
+  private volatile boolean waiting;
+
+  private long signalCount;
+
+  /**
+   * Wake up the consumer if it's waiting. Called by the row sets after rows were added or the done flag was set.
+   */
+  public void signal() {
+    if ( waiting ) {
+      synchronized ( this ) {
+        signalCount++;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Announce that the consumer is about to wait. The consumer has to check its row sets once more after this call and
+   * before calling {@link #await(long, long, TimeUnit)}.
+   *
+   * @return the ticket to pass to {@link #await(long, long, TimeUnit)}
+   */
+  public long prepareWait() {
+    waiting = true;
+    synchronized ( this ) {
+      return signalCount;
+    }
+  }
+
+  /**
+   * Don't wait after all, the row sets were found to have rows after {@link #prepareWait()}.
+   */
+  public void cancelWait() {
+    waiting = false;
+  }
+
+  /**
+   * Wait until the signal is raised after the ticket was handed out or until the timeout expires.
+   *
+   * @param ticket
+   *          the ticket returned by {@link #prepareWait()}
+   * @param timeout
+   *          the maximum time to wait
+   * @param unit
+   *          the unit of the timeout
+   * @return true if the signal was raised, false if the wait timed out or was interrupted
+   */
+  public boolean await( long ticket, long timeout, TimeUnit unit ) {
+    try {
+      long deadline = System.nanoTime() + unit.toNanos( timeout );
+      synchronized ( this ) {
+        while ( signalCount == ticket ) {
+          long remaining = deadline - System.nanoTime();
+          if ( remaining <= 0 ) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait( this, remaining );
+        }
+        return true;
+      }
+    } catch ( InterruptedException e ) {
+      return false;
+    } finally {
+      waiting = false;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Measures how fast the different row set implementations hand rows from one thread to another.
+ */
+public class RowSetSpeedTest {
+  private RowMetaInterface rowMeta;
+  private Object[] row;
+
+  public RowSetSpeedTest() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING ) );
+    row = new Object[] { new Long( 1L ), "row", };
+  }
+
+  /**
+   * Pass rows from a producer thread to the calling thread, the way two step copies do.
+   *
+   * @param rowSet
+   *          the row set to test
+   * @param iterations
+   *          the number of rows to pass
+   * @return the elapsed time in ms
+   */
+  public long runTestThreaded( final RowSet rowSet, final int iterations ) throws InterruptedException {
+    long startTime = System.currentTimeMillis();
+
+    Thread producer = new Thread( new Runnable() {
+      public void run() {
+        for ( int i = 0; i < iterations; i++ ) {
+          while ( !rowSet.putRow( rowMeta, row ) ) {
+            // keep trying, the consumer will catch up
+          }
+        }
+        rowSet.setDone();
+      }
+    } );
+    producer.start();
+
+    int count = 0;
+    while ( count < iterations ) {
+      if ( rowSet.getRow() != null ) {
+        count++;
+      }
+    }
+    producer.join();
+
+    long stopTime = System.currentTimeMillis();
+
+    return stopTime - startTime;
+  }
+
+  /**
+   * Put and get rows from the calling thread, the way single threaded execution does.
+   *
+   * @param rowSet
+   *          the row set to test
+   * @param iterations
+   *          the number of rows to pass
+   * @return the elapsed time in ms
+   */
+  public long runTestSingleThreaded( RowSet rowSet, int iterations ) {
+    long startTime = System.currentTimeMillis();
+
+    for ( int i = 0; i < iterations; i++ ) {
+      rowSet.putRow( rowMeta, row );
+      rowSet.getRow();
+    }
+
+    long stopTime = System.currentTimeMillis();
+
+    return stopTime - startTime;
+  }
+
+  public static final int ITERATIONS = 10000000;
+
+  private static void report( String name, long time ) {
+    System.out.println( "Time to run '"
+      + name + "' test " + ITERATIONS + " times : " + time + " ms ("
+      + ( 1000L * ITERATIONS / Math.max( 1L, time ) ) + " r/s)" );
+  }
+
+  public static void main( String[] args ) throws InterruptedException {
+    RowSetSpeedTest speedTest = new RowSetSpeedTest();
+    int size = Const.ROWS_IN_ROWSET;
+
+    // Warm up the JIT compiler before measuring anything
+    //
+    speedTest.runTestThreaded( new BlockingRowSet( size ), ITERATIONS / 10 );
+    speedTest.runTestThreaded( new RingBufferRowSet( size ), ITERATIONS / 10 );
+
+    report( "BlockingRowSet", speedTest.runTestThreaded( new BlockingRowSet( size ), ITERATIONS ) );
+    report( "BlockingBatchingRowSet", speedTest.runTestThreaded( new BlockingBatchingRowSet( size ), ITERATIONS ) );
+    for ( RingBufferRowSet.WaitStrategy strategy : RingBufferRowSet.WaitStrategy.values() ) {
+      report( "RingBufferRowSet(" + strategy.getCode() + ")", speedTest.runTestThreaded( new RingBufferRowSet(
+        size, strategy ), ITERATIONS ) );
+    }
+    System.out.println();
+
+    // QueueRowSet is not thread safe, compare it single threaded
+    //
+    report( "QueueRowSet (single threaded)", speedTest.runTestSingleThreaded( new QueueRowSet(), ITERATIONS ) );
+    report( "RingBufferRowSet (single threaded)", speedTest.runTestSingleThreaded(
+      new RingBufferRowSet( size ), ITERATIONS ) );
+    System.out.println();
+  }
+}
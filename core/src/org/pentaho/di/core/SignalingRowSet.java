@@ -0,0 +1,40 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+/**
+ * A row set that wakes up its consumer when rows arrive, so that the consumer can wait for any of its input row sets at
+ * once. All the row sets of Kettle implement it through {@link BaseRowSet}, steps check for it and keep looking at
+ * the other {@link RowSet} implementations at short intervals.
+ */
+public interface SignalingRowSet extends RowSet {
+
+  /**
+   * Set the signal to raise every time rows are added to this row set or it is flagged as done, see
+   * {@link RowSetSignal}.
+   *
+   * @param signal
+   *          the signal of the consumer or null to stop raising one
+   */
+  public abstract void setConsumerSignal( RowSetSignal signal );
+}
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -56,6 +57,7 @@ public class SingleRowRowSet extends BaseRowSet implements Comparable<RowSet>, R
   public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
     this.rowMeta = rowMeta;
     this.row = rowData;
+    signalConsumer();
     return true;
   }
 
@@ -64,6 +66,18 @@ public class SingleRowRowSet extends BaseRowSet implements Comparable<RowSet>, R
     return putRow( rowMeta, rowData );
   }
 
+  @Override
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows, int fromIndex ) {
+    // There is only room for a single row and the consumer runs after the producer, so never overwrite a row.
+    // This row set is not a BatchRowSet: steps pass it a row at a time.
+    //
+    if ( fromIndex >= rows.size() || row != null ) {
+      return 0;
+    }
+    putRow( rowMeta, rows.get( fromIndex ) );
+    return 1;
+  }
+
   @Override
   public int size() {
     return row == null ? 0 : 1;
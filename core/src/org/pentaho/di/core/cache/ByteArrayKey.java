@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.cache;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.memory.RowSizeEstimator;
+
+/**
+ * A cache key wrapping a serialized key row. Keys are equal if they have the same bytes.
+ */
+public final class ByteArrayKey {
+  /** Calculates the size of entries with a serialized key and value */
+  public static final CacheWeigher<ByteArrayKey, byte[]> WEIGHER = new CacheWeigher<ByteArrayKey, byte[]>() {
+    public long weigh( ByteArrayKey key, byte[] value ) {
+      return RowSizeEstimator.HASH_MAP_ENTRY + 2 * RowSizeEstimator.ARRAY_HEADER + key.bytes.length + value.length;
+    }
+  };
+
+  private final byte[] bytes;
+  private final int hashCode;
+
+  public ByteArrayKey( byte[] bytes ) {
+    this.bytes = bytes;
+    this.hashCode = Arrays.hashCode( bytes );
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals( Object obj ) {
+    if ( this == obj ) {
+      return true;
+    }
+    if ( !( obj instanceof ByteArrayKey ) ) {
+      return false;
+    }
+    ByteArrayKey other = (ByteArrayKey) obj;
+    return hashCode == other.hashCode && Arrays.equals( bytes, other.bytes );
+  }
+}
@@ -0,0 +1,177 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.hash.Murmur3Hash;
+import org.pentaho.di.core.memory.RowSizeEstimator;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+/**
+ * A bounded lookup cache of serialized key and value rows that keeps the bytes in a {@link ByteArrayHashIndex}, on the
+ * heap or in direct memory. Only the recency and frequency data of the entries stays on the heap: the cache tracks a
+ * 64 bit fingerprint of every key and the size of its entry.<br>
+ * <br>
+ * Two keys with the same fingerprint replace each other, the stored key is compared when it is looked up.
+ */
+public class ByteArrayLookupCache extends LookupCache<Long, Integer> {
+  /** The heap taken per entry by the cache: the node, the boxed fingerprint and size and the map entry */
+  private static final int ENTRY_OVERHEAD = RowSizeEstimator.HASH_MAP_ENTRY + 5 * RowSizeEstimator.OBJECT_HEADER
+    + 5 * RowSizeEstimator.REFERENCE;
+
+  /** The memory taken per entry by the index: the slot, the pair header and the fingerprint */
+  private static final int INDEX_OVERHEAD = 12 + 8 + 8;
+
+  private static final CacheWeigher<Long, Integer> WEIGHER = new CacheWeigher<Long, Integer>() {
+    public long weigh( Long fingerprint, Integer length ) {
+      return ENTRY_OVERHEAD + INDEX_OVERHEAD + length;
+    }
+  };
+
+  private static final int INITIAL_INDEX_SIZE = 5000;
+
+  private static final int SECOND_SEED = 0x9747b28c;
+
+  private final ByteArrayHashIndex index;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries
+   *          the maximum number of entries or 0 for no limit
+   * @param maxBytes
+   *          the maximum number of bytes taken by the entries or 0 for no limit
+   * @param policy
+   *          the eviction policy
+   * @param offHeap
+   *          true to store the keys and values outside of the Java heap
+   */
+  public ByteArrayLookupCache( int maxEntries, long maxBytes, EvictionPolicy policy, boolean offHeap ) {
+    super( maxEntries, maxBytes, 0L, policy, WEIGHER );
+    RowMetaInterface fingerprintMeta = new RowMeta();
+    fingerprintMeta.addValueMeta( new ValueMetaInteger( "fingerprint" ) );
+    index = new ByteArrayHashIndex( fingerprintMeta, INITIAL_INDEX_SIZE, offHeap );
+  }
+
+  /**
+   * Look up a serialized key and count the hit or the miss.
+   *
+   * @param key
+   *          the key to look up
+   * @return the value or null if the key isn't in the cache
+   */
+  public synchronized byte[] get( byte[] key ) throws KettleValueException {
+    long fingerprint = fingerprint( key );
+    if ( get( Long.valueOf( fingerprint ) ) == null ) {
+      return null;
+    }
+    byte[] entry = index.get( toBytes( fingerprint ) );
+    if ( entry == null || !hasKey( entry, key ) ) {
+      return null;
+    }
+    int valueOffset = 4 + key.length;
+    byte[] value = new byte[entry.length - valueOffset];
+    System.arraycopy( entry, valueOffset, value, 0, value.length );
+    return value;
+  }
+
+  /**
+   * Store the serialized value of a serialized key. Entries are evicted if a bound is exceeded, this can include the
+   * new entry itself.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the value to store
+   */
+  public synchronized void put( byte[] key, byte[] value ) throws KettleValueException {
+    long fingerprint = fingerprint( key );
+    byte[] entry = new byte[4 + key.length + value.length];
+    entry[0] = (byte) ( key.length >>> 24 );
+    entry[1] = (byte) ( key.length >>> 16 );
+    entry[2] = (byte) ( key.length >>> 8 );
+    entry[3] = (byte) key.length;
+    System.arraycopy( key, 0, entry, 4, key.length );
+    System.arraycopy( value, 0, entry, 4 + key.length, value.length );
+
+    // Store the bytes first: if the entry is evicted right away its bytes are removed again
+    //
+    index.put( toBytes( fingerprint ), entry );
+    put( Long.valueOf( fingerprint ), Integer.valueOf( entry.length ) );
+  }
+
+  @Override
+  protected void onRemoval( Long fingerprint, Integer length ) {
+    index.remove( toBytes( fingerprint.longValue() ) );
+  }
+
+  @Override
+  public synchronized void clear() {
+    super.clear();
+    index.clear();
+  }
+
+  /**
+   * @return true if the keys and values are stored outside of the Java heap
+   */
+  public boolean isOffHeap() {
+    return index.getStore().isOffHeap();
+  }
+
+  /**
+   * @return the number of entries in the index, always the same as the number of entries in the cache
+   */
+  synchronized int getIndexSize() {
+    return index.getSize();
+  }
+
+  private static boolean hasKey( byte[] entry, byte[] key ) {
+    int length = ( ( entry[0] & 0xff ) << 24 ) | ( ( entry[1] & 0xff ) << 16 ) | ( ( entry[2] & 0xff ) << 8 )
+      | ( entry[3] & 0xff );
+    if ( length != key.length ) {
+      return false;
+    }
+    for ( int i = 0; i < length; i++ ) {
+      if ( entry[4 + i] != key[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long fingerprint( byte[] key ) {
+    return ( (long) Murmur3Hash.hash( key, 0 ) << 32 ) | ( Murmur3Hash.hash( key, SECOND_SEED ) & 0xffffffffL );
+  }
+
+  private static byte[] toBytes( long value ) {
+    byte[] bytes = new byte[8];
+    for ( int i = 7; i >= 0; i-- ) {
+      bytes[i] = (byte) value;
+      value >>>= 8;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,47 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.cache;
+
+/**
+ * The way a {@link LookupCache} picks the entries to remove once it is full.
+ */
+public enum EvictionPolicy {
+
+  /** Remove the least recently used entry */
+  LRU,
+
+  /**
+   * Window TinyLFU: new entries enter a small LRU window. An entry leaving the window only replaces the eviction
+   * candidate of the main area if it was used more often recently. Keys that are used once, like a scan over all the
+   * keys, can't push out the keys that are used all the time.
+   */
+  TINY_LFU;
+
+  public static EvictionPolicy getPolicyByName( String name ) {
+    for ( EvictionPolicy policy : values() ) {
+      if ( policy.name().equalsIgnoreCase( name ) ) {
+        return policy;
+      }
+    }
+    return LRU;
+  }
+}
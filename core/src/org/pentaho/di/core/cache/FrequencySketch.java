@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.cache;
+
+/**
+ * A count-min sketch estimating how often keys were used recently, with 4-bit counters packed 16 to a long. Every
+ * key sets 4 counters in 4 different longs and its frequency is the lowest of them. Once the number of increments
+ * reaches 10 times the size of the table all the counters are halved, so that old popularity fades away.
+ */
+class FrequencySketch {
+  private static final long[] SEEDS = new long[] {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  /** The maximum number of longs in the table, 128MB */
+  private static final int MAX_TABLE_SIZE = 1 << 24;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int additions;
+
+  FrequencySketch( int expectedSize ) {
+    ensureCapacity( expectedSize );
+  }
+
+  /**
+   * Make the table big enough to tell the given number of keys apart. A table that grows loses its counts.
+   *
+   * @param expectedSize
+   *          the number of keys in the cache
+   */
+  void ensureCapacity( int expectedSize ) {
+    int size = 64;
+    while ( size < expectedSize && size < MAX_TABLE_SIZE ) {
+      size <<= 1;
+    }
+    if ( table != null && table.length >= size ) {
+      return;
+    }
+    table = new long[size];
+    tableMask = size - 1;
+    sampleSize = 10 * size;
+    additions = 0;
+  }
+
+  int getTableSize() {
+    return table.length;
+  }
+
+  /**
+   * @return the estimated number of times the key was used recently, at most 15
+   */
+  int frequency( Object key ) {
+    int hash = spread( key.hashCode() );
+    int start = ( hash & 3 ) << 2;
+    int frequency = 15;
+    for ( int i = 0; i < 4; i++ ) {
+      int offset = ( start + i ) << 2;
+      int count = (int) ( ( table[indexOf( hash, i )] >>> offset ) & 0xfL );
+      frequency = Math.min( frequency, count );
+    }
+    return frequency;
+  }
+
+  /**
+   * Count one use of the key.
+   */
+  void increment( Object key ) {
+    int hash = spread( key.hashCode() );
+    int start = ( hash & 3 ) << 2;
+    boolean added = false;
+    for ( int i = 0; i < 4; i++ ) {
+      added |= incrementAt( indexOf( hash, i ), start + i );
+    }
+    if ( added && ++additions >= sampleSize ) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt( int index, int counter ) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ( ( table[index] & mask ) != mask ) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halve all the counters. The counters that were odd lose a bit of their count, correct the number of additions.
+   */
+  private void reset() {
+    int odd = 0;
+    for ( int i = 0; i < table.length; i++ ) {
+      odd += Long.bitCount( table[i] & ONE_MASK );
+      table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+    }
+    additions = ( additions - ( odd >>> 2 ) ) >>> 1;
+  }
+
+  private int indexOf( int hash, int i ) {
+    long value = ( hash + SEEDS[i] ) * SEEDS[i];
+    value += value >>> 32;
+    return ( (int) value ) & tableMask;
+  }
+
+  private static int spread( int hash ) {
+    hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+    hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+    return ( hash >>> 16 ) ^ hash;
+  }
+}
@@ -0,0 +1,462 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache for the lookup steps, bounded by a number of entries and/or a number of bytes.<br>
+ * <br>
+ * Once a bound is exceeded, entries are removed one by one according to the {@link EvictionPolicy}: the least
+ * recently used entry or, with Window TinyLFU, the entry least likely to be used again. Entries can also expire a
+ * fixed time after they were stored. Expired entries are removed when they are looked up or evicted.<br>
+ * <br>
+ * The number of hits, misses, evictions and expirations is counted. All methods are synchronized, so that the copies of
+ * a step can share a cache (see {@link SharedLookupCaches}).
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class LookupCache<K, V> {
+  /** The percentage of the capacity used by the window of Window TinyLFU */
+  private static final int WINDOW_PERCENTAGE = 1;
+
+  /** The percentage of the main area of Window TinyLFU used by entries that were used more than once */
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long timeToLive;
+  private final EvictionPolicy policy;
+  private final CacheWeigher<K, V> weigher;
+
+  private final Map<K, Node<K, V>> map;
+  private final FrequencySketch sketch;
+
+  /** The queues, as the sentinels of circular lists: the head is next to the sentinel, the tail is previous */
+  private final Node<K, V>[] queues;
+  private final int[] queueSizes;
+
+  private long bytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long expirationCount;
+  private boolean populated;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries
+   *          the maximum number of entries or 0 for no limit
+   * @param maxBytes
+   *          the maximum number of bytes as calculated by the weigher or 0 for no limit
+   * @param timeToLive
+   *          the number of ms after which a stored entry expires or 0 if entries don't expire
+   * @param policy
+   *          the eviction policy
+   * @param weigher
+   *          calculates the size of the entries, can be null if there is no maximum number of bytes
+   */
+  public LookupCache( int maxEntries, long maxBytes, long timeToLive, EvictionPolicy policy,
+    CacheWeigher<K, V> weigher ) {
+    this.maxEntries = Math.max( 0, maxEntries );
+    this.maxBytes = weigher == null ? 0L : Math.max( 0L, maxBytes );
+    this.timeToLive = Math.max( 0L, timeToLive );
+    this.policy = policy == null ? EvictionPolicy.LRU : policy;
+    this.weigher = weigher;
+
+    this.map = new HashMap<K, Node<K, V>>( this.maxEntries > 0 ? (int) ( this.maxEntries * 1.5 ) : 5000 );
+    this.sketch =
+      this.policy == EvictionPolicy.TINY_LFU && isBounded() ? new FrequencySketch( this.maxEntries ) : null;
+
+    this.queues = newSentinels( PROTECTED + 1 );
+    this.queueSizes = new int[queues.length];
+  }
+
+  /**
+   * Create the sentinels of the queues, a generic array can't be created directly.
+   */
+  @SuppressWarnings( { "rawtypes", "unchecked" } )
+  private static <K, V> Node<K, V>[] newSentinels( int count ) {
+    Node<K, V>[] sentinels = new Node[count];
+    for ( int i = 0; i < count; i++ ) {
+      sentinels[i] = new Node<K, V>();
+    }
+    return sentinels;
+  }
+
+  /**
+   * Create a cache without limits.
+   */
+  public LookupCache() {
+    this( 0, 0L, 0L, EvictionPolicy.LRU, null );
+  }
+
+  /**
+   * Look up a key and count the hit or the miss.
+   *
+   * @param key
+   *          the key to look up
+   * @return the value or null if the key isn't in the cache or it expired
+   */
+  public synchronized V get( K key ) {
+    if ( sketch != null ) {
+      sketch.increment( key );
+    }
+    Node<K, V> node = map.get( key );
+    if ( node == null ) {
+      missCount++;
+      return null;
+    }
+    if ( isExpired( node ) ) {
+      removeNode( node );
+      expirationCount++;
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    onAccess( node );
+    return node.value;
+  }
+
+  /**
+   * Look up a key without counting it as a use.
+   *
+   * @param key
+   *          the key to look up
+   * @return the value or null if the key isn't in the cache or it expired
+   */
+  public synchronized V peek( K key ) {
+    Node<K, V> node = map.get( key );
+    if ( node == null || isExpired( node ) ) {
+      return null;
+    }
+    return node.value;
+  }
+
+  /**
+   * Store a value, replacing the existing value of the key. Entries are evicted if a bound is exceeded, this can
+   * include the new entry itself.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the value to store
+   */
+  public synchronized void put( K key, V value ) {
+    long weight = maxBytes > 0 ? weigher.weigh( key, value ) : 0L;
+    if ( sketch != null ) {
+      sketch.increment( key );
+    }
+    Node<K, V> node = map.get( key );
+    if ( node != null ) {
+      bytes += weight - node.weight;
+      node.value = value;
+      node.weight = weight;
+      node.writeTime = timeToLive > 0 ? System.currentTimeMillis() : 0L;
+      onAccess( node );
+    } else {
+      node = new Node<K, V>();
+      node.key = key;
+      node.value = value;
+      node.weight = weight;
+      node.writeTime = timeToLive > 0 ? System.currentTimeMillis() : 0L;
+      map.put( key, node );
+      bytes += weight;
+      linkFirst( WINDOW, node );
+      if ( sketch != null && map.size() > sketch.getTableSize() ) {
+        sketch.ensureCapacity( map.size() );
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Remove a key and its value.
+   *
+   * @param key
+   *          the key to remove
+   * @return true if the key was in the cache
+   */
+  public synchronized boolean remove( K key ) {
+    Node<K, V> node = map.get( key );
+    if ( node == null ) {
+      return false;
+    }
+    removeNode( node );
+    return true;
+  }
+
+  /**
+   * Called when an entry is removed from the cache: evicted, expired or removed explicitly, not when its value is
+   * replaced or the cache is cleared. Subclasses keeping data for the entries elsewhere release it here.
+   *
+   * @param key
+   *          the key of the removed entry
+   * @param value
+   *          the value of the removed entry
+   */
+  protected void onRemoval( K key, V value ) {
+  }
+
+  /**
+   * Remove all the entries. The statistics are kept.
+   */
+  public synchronized void clear() {
+    map.clear();
+    for ( int i = 0; i < queues.length; i++ ) {
+      queues[i].previous = queues[i];
+      queues[i].next = queues[i];
+      queueSizes[i] = 0;
+    }
+    bytes = 0L;
+    populated = false;
+  }
+
+  /**
+   * @return a copy of the keys in the cache, including the ones that expired but weren't removed yet
+   */
+  public synchronized List<K> getKeys() {
+    return new ArrayList<K>( map.keySet() );
+  }
+
+  /**
+   * @return the number of entries in the cache
+   */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /**
+   * @return the number of bytes taken by the entries, only calculated if the number of bytes is limited
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of entries removed because a bound was exceeded
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return the number of entries removed because they were stored longer than the time to live ago
+   */
+  public synchronized long getExpirationCount() {
+    return expirationCount;
+  }
+
+  /**
+   * @return the percentage of the lookups that found a value
+   */
+  public synchronized double getHitRatio() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0.0 : 100.0 * hitCount / lookups;
+  }
+
+  /**
+   * @return true if the cache was filled up front, for example by the first of the step copies sharing it
+   */
+  public synchronized boolean isPopulated() {
+    return populated;
+  }
+
+  /**
+   * @param populated
+   *          true if the cache was filled up front
+   */
+  public synchronized void setPopulated( boolean populated ) {
+    this.populated = populated;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public EvictionPolicy getPolicy() {
+    return policy;
+  }
+
+  private boolean isBounded() {
+    return maxEntries > 0 || maxBytes > 0;
+  }
+
+  private boolean isFull() {
+    return ( maxEntries > 0 && map.size() > maxEntries ) || ( maxBytes > 0 && bytes > maxBytes );
+  }
+
+  private boolean isExpired( Node<K, V> node ) {
+    return timeToLive > 0 && System.currentTimeMillis() - node.writeTime >= timeToLive;
+  }
+
+  private int getCapacity() {
+    return maxEntries > 0 ? maxEntries : map.size();
+  }
+
+  private int getMaxWindowSize() {
+    return Math.max( 1, getCapacity() * WINDOW_PERCENTAGE / 100 );
+  }
+
+  private int getMaxProtectedSize() {
+    return ( getCapacity() - getMaxWindowSize() ) * PROTECTED_PERCENTAGE / 100;
+  }
+
+  private boolean isTinyLfu() {
+    return sketch != null;
+  }
+
+  /**
+   * Move an entry that was used to the head of its queue. With Window TinyLFU an entry used in probation is promoted to
+   * the protected queue, pushing the least recently used protected entry back into probation.
+   */
+  private void onAccess( Node<K, V> node ) {
+    if ( !isTinyLfu() || node.queue == WINDOW || node.queue == PROTECTED ) {
+      int queue = node.queue;
+      unlink( node );
+      linkFirst( queue, node );
+      return;
+    }
+    unlink( node );
+    linkFirst( PROTECTED, node );
+    int maxProtected = getMaxProtectedSize();
+    while ( queueSizes[PROTECTED] > maxProtected ) {
+      Node<K, V> demoted = queues[PROTECTED].previous;
+      unlink( demoted );
+      linkFirst( PROBATION, demoted );
+    }
+  }
+
+  private void evict() {
+    while ( isFull() && !map.isEmpty() ) {
+      removeNode( selectVictim() );
+      evictionCount++;
+    }
+    if ( isTinyLfu() ) {
+      // The entries leaving the window while there is room enter the main area without competition
+      //
+      int maxWindow = getMaxWindowSize();
+      while ( queueSizes[WINDOW] > maxWindow ) {
+        Node<K, V> candidate = queues[WINDOW].previous;
+        unlink( candidate );
+        linkFirst( PROBATION, candidate );
+      }
+    }
+  }
+
+  /**
+   * @return the entry to evict. With Window TinyLFU the entry leaving the window competes with the eviction candidate
+   *         of the main area: the one used less often recently loses, the other one stays in the main area.
+   */
+  private Node<K, V> selectVictim() {
+    Node<K, V> lru = queues[WINDOW].previous;
+    if ( !isTinyLfu() ) {
+      return lru;
+    }
+    Node<K, V> victim = queues[PROBATION].previous;
+    if ( victim == queues[PROBATION] ) {
+      victim = queues[PROTECTED].previous;
+    }
+    if ( victim == queues[PROTECTED] ) {
+      return lru; // the main area is empty
+    }
+    if ( queueSizes[WINDOW] <= getMaxWindowSize() || lru == queues[WINDOW] ) {
+      return victim;
+    }
+    if ( isExpired( lru ) || sketch.frequency( lru.key ) <= sketch.frequency( victim.key ) ) {
+      return lru;
+    }
+    unlink( lru );
+    linkFirst( PROBATION, lru );
+    return victim;
+  }
+
+  private void removeNode( Node<K, V> node ) {
+    unlink( node );
+    map.remove( node.key );
+    bytes -= node.weight;
+    onRemoval( node.key, node.value );
+  }
+
+  private void linkFirst( int queue, Node<K, V> node ) {
+    Node<K, V> sentinel = queues[queue];
+    node.queue = queue;
+    node.previous = sentinel;
+    node.next = sentinel.next;
+    sentinel.next.previous = node;
+    sentinel.next = node;
+    queueSizes[queue]++;
+  }
+
+  private void unlink( Node<K, V> node ) {
+    node.previous.next = node.next;
+    node.next.previous = node.previous;
+    node.previous = null;
+    node.next = null;
+    queueSizes[node.queue]--;
+  }
+
+  private static class Node<K, V> {
+    private K key;
+    private V value;
+    private long weight;
+    private long writeTime;
+    private int queue;
+    private Node<K, V> previous;
+    private Node<K, V> next;
+
+    /**
+     * Create a sentinel of an empty queue
+     */
+    private Node() {
+      previous = this;
+      next = this;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The lookup caches shared by the copies of a step. The first copy to acquire a cache registers it, the others get the
+ * same cache. The cache is cleared once the last copy released it.
+ */
+public class SharedLookupCaches {
+  private static Map<String, SharedCache> caches = new HashMap<String, SharedCache>();
+
+  /**
+   * Get the cache shared under an ID or share the given new cache if there is none yet.
+   *
+   * @param id
+   *          the unique ID of the shared cache, for example the ID of the transformation and the step name
+   * @param cache
+   *          the cache to share if no cache is registered for the ID
+   * @return the shared cache
+   */
+  @SuppressWarnings( "unchecked" )
+  public static synchronized <K, V> LookupCache<K, V> acquire( String id, LookupCache<K, V> cache ) {
+    SharedCache shared = caches.get( id );
+    if ( shared == null ) {
+      shared = new SharedCache( cache );
+      caches.put( id, shared );
+    }
+    shared.references++;
+    return (LookupCache<K, V>) shared.cache;
+  }
+
+  /**
+   * Release a shared cache.
+   *
+   * @param id
+   *          the ID the cache is shared under
+   */
+  public static synchronized void release( String id ) {
+    SharedCache shared = caches.get( id );
+    if ( shared != null && --shared.references <= 0 ) {
+      caches.remove( id );
+      shared.cache.clear();
+    }
+  }
+
+  /**
+   * @return the number of caches that are shared right now
+   */
+  public static synchronized int getNrSharedCaches() {
+    return caches.size();
+  }
+
+  private static class SharedCache {
+    private final LookupCache<?, ?> cache;
+    private int references;
+
+    private SharedCache( LookupCache<?, ?> cache ) {
+      this.cache = cache;
+    }
+  }
+}
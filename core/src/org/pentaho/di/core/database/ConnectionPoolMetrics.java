@@ -0,0 +1,204 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.xml.XMLHandler;
+
+/**
+ * The usage statistics of a connection pool managed by {@link ConnectionPoolUtil}: how long it took to borrow a
+ * connection, how many connections are in use and how many were leaked, that is not returned before the transformation
+ * that borrowed them finished.
+ */
+public class ConnectionPoolMetrics {
+  public static final String XML_TAG = "connection_pool";
+
+  /** The upper bounds in ms of the borrow latency histogram buckets, the last bucket has no upper bound */
+  public static final long[] LATENCY_BUCKETS_MS = new long[] { 1, 5, 10, 50, 100, 500, 1000 };
+
+  private final String name;
+
+  private final AtomicLong borrowCount;
+  private final AtomicLong failedBorrowCount;
+  private final AtomicLong totalBorrowNanos;
+  private final AtomicLong maxBorrowNanos;
+  private final AtomicLong leakCount;
+  private final AtomicLongArray latencyHistogram;
+
+  private volatile int active;
+  private volatile int idle;
+  private volatile int maxActive;
+
+  public ConnectionPoolMetrics( String name ) {
+    this.name = name;
+    this.borrowCount = new AtomicLong();
+    this.failedBorrowCount = new AtomicLong();
+    this.totalBorrowNanos = new AtomicLong();
+    this.maxBorrowNanos = new AtomicLong();
+    this.leakCount = new AtomicLong();
+    this.latencyHistogram = new AtomicLongArray( LATENCY_BUCKETS_MS.length + 1 );
+  }
+
+  /**
+   * Record that a connection was handed out.
+   *
+   * @param nanos
+   *          the time it took to borrow the connection, including the wait for a free one
+   */
+  public void borrowed( long nanos ) {
+    borrowCount.incrementAndGet();
+    totalBorrowNanos.addAndGet( nanos );
+
+    long max = maxBorrowNanos.get();
+    while ( nanos > max && !maxBorrowNanos.compareAndSet( max, nanos ) ) {
+      max = maxBorrowNanos.get();
+    }
+
+    long millis = nanos / 1000000L;
+    int bucket = 0;
+    while ( bucket < LATENCY_BUCKETS_MS.length && millis >= LATENCY_BUCKETS_MS[bucket] ) {
+      bucket++;
+    }
+    latencyHistogram.incrementAndGet( bucket );
+  }
+
+  /**
+   * Record that no connection could be handed out, typically because the pool stayed exhausted for too long.
+   */
+  public void borrowFailed() {
+    failedBorrowCount.incrementAndGet();
+  }
+
+  /**
+   * Record that a connection wasn't returned by its owner.
+   */
+  public void leaked() {
+    leakCount.incrementAndGet();
+  }
+
+  /**
+   * Update the size of the pool, as reported by the pool implementation.
+   *
+   * @param active
+   *          the number of connections that are in use
+   * @param idle
+   *          the number of connections waiting in the pool
+   * @param maxActive
+   *          the maximum number of connections in use
+   */
+  public void setPoolSize( int active, int idle, int maxActive ) {
+    this.active = active;
+    this.idle = idle;
+    this.maxActive = maxActive;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getBorrowCount() {
+    return borrowCount.get();
+  }
+
+  public long getFailedBorrowCount() {
+    return failedBorrowCount.get();
+  }
+
+  /**
+   * @return the total time spent waiting for connections in ms
+   */
+  public long getTotalWaitTime() {
+    return totalBorrowNanos.get() / 1000000L;
+  }
+
+  /**
+   * @return the longest wait for a connection in ms
+   */
+  public long getMaxWaitTime() {
+    return maxBorrowNanos.get() / 1000000L;
+  }
+
+  /**
+   * @return the average wait for a connection in ms
+   */
+  public double getAverageWaitTime() {
+    long count = borrowCount.get();
+    return count == 0 ? 0.0 : totalBorrowNanos.get() / 1000000.0 / count;
+  }
+
+  public long getLeakCount() {
+    return leakCount.get();
+  }
+
+  /**
+   * @return the number of borrowed connections per bucket of {@link #LATENCY_BUCKETS_MS}, plus one for the slower ones
+   */
+  public long[] getLatencyHistogram() {
+    long[] histogram = new long[latencyHistogram.length()];
+    for ( int i = 0; i < histogram.length; i++ ) {
+      histogram[i] = latencyHistogram.get( i );
+    }
+    return histogram;
+  }
+
+  public int getActive() {
+    return active;
+  }
+
+  public int getIdle() {
+    return idle;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  public String getXML() {
+    StringBuilder xml = new StringBuilder( 500 );
+    xml.append( "  " ).append( XMLHandler.openTag( XML_TAG ) ).append( Const.CR );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "name", name ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "active", active ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "idle", idle ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "max_active", maxActive ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "borrow_count", getBorrowCount() ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "failed_borrow_count", getFailedBorrowCount() ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "total_wait_ms", getTotalWaitTime() ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "max_wait_ms", getMaxWaitTime() ) );
+    xml.append( "    " ).append( XMLHandler.addTagValue( "leak_count", getLeakCount() ) );
+    xml.append( "    " ).append( XMLHandler.openTag( "borrow_latency" ) ).append( Const.CR );
+    long[] histogram = getLatencyHistogram();
+    for ( int i = 0; i < histogram.length; i++ ) {
+      xml.append( "      " ).append( XMLHandler.openTag( "bucket" ) );
+      if ( i < LATENCY_BUCKETS_MS.length ) {
+        xml.append( XMLHandler.addTagValue( "below_ms", LATENCY_BUCKETS_MS[i], false ) );
+      }
+      xml.append( XMLHandler.addTagValue( "count", histogram[i], false ) );
+      xml.append( XMLHandler.closeTag( "bucket" ) ).append( Const.CR );
+    }
+    xml.append( "    " ).append( XMLHandler.closeTag( "borrow_latency" ) ).append( Const.CR );
+    xml.append( "  " ).append( XMLHandler.closeTag( XML_TAG ) ).append( Const.CR );
+    return xml.toString();
+  }
+}
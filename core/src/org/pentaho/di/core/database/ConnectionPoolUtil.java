@@ -28,15 +28,35 @@ import org.pentaho.di.core.database.util.DatabaseUtil;
 import org.pentaho.di.core.encryption.Encr;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.logging.LoggingRegistry;
 import org.pentaho.di.i18n.BaseMessages;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
-import java.util.HashMap;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the connection pools of the JVM, one per database connection, partition, URL and user. The pools are shared by
+ * all the transformations and jobs that use the same connection.<br>
+ * <br>
+ * Every borrowed connection is tracked until it is returned (see {@link #returnConnection(Connection)}) so that the
+ * connections a transformation doesn't return are detected and closed when it finishes, see
+ * {@link #closeLeakedConnections(LogChannelInterface, String)}. The wait times are kept per pool in
+ * {@link ConnectionPoolMetrics}.
+ */
 public class ConnectionPoolUtil {
 
   public static final String DEFAULT_AUTO_COMMIT = "defaultAutoCommit";
@@ -61,19 +81,31 @@ public class ConnectionPoolUtil {
   public static final String LOG_ABANDONED = "logAbandoned";
   private static Class<?> PKG = Database.class; // for i18n purposes, needed by Translator2!!
 
-  private static Map<String, BasicDataSource> dataSources = new HashMap<String, BasicDataSource>();
+  private static Map<String, BasicDataSource> dataSources = new ConcurrentHashMap<String, BasicDataSource>();
+
+  private static Map<String, ConnectionPoolMetrics> metrics = new ConcurrentHashMap<String, ConnectionPoolMetrics>();
+
+  private static Map<Connection, BorrowedConnection> borrowedConnections = Collections
+    .synchronizedMap( new IdentityHashMap<Connection, BorrowedConnection>() );
 
   public static final int defaultInitialNrOfConnections = 5;
   public static final int defaultMaximumNrOfConnections = 10;
 
-  private static boolean isDataSourceRegistered( DatabaseMeta dbMeta, String partitionId )
-    throws KettleDatabaseException {
-    try {
-      String name = getDataSourceName( dbMeta, partitionId );
-      return dataSources.containsKey( name );
-    } catch ( Exception e ) {
-      throw new KettleDatabaseException( BaseMessages.getString( PKG,
-        "Database.UnableToCheckIfConnectionPoolExists.Exception" ), e );
+  /** The number of prepared statements kept open in a shared pool if nothing is set in the pooling properties */
+  public static final int defaultMaximumNrOfOpenPreparedStatements = 100;
+
+  /** The time in ms to wait for a connection of a shared pool when nothing is specified in the pooling properties */
+  public static final long defaultMaximumWaitMillis = 60000L;
+
+  private static class BorrowedConnection {
+    private final String poolName;
+    private final String ownerLogChannelId;
+    private final long borrowTime;
+
+    BorrowedConnection( String poolName, String ownerLogChannelId ) {
+      this.poolName = poolName;
+      this.ownerLogChannelId = ownerLogChannelId;
+      this.borrowTime = System.currentTimeMillis();
     }
   }
 
@@ -84,15 +116,128 @@ public class ConnectionPoolUtil {
 
   public static Connection getConnection( LogChannelInterface log, DatabaseMeta dbMeta, String partitionId,
                                           int initialSize, int maximumSize ) throws Exception {
-    if ( !isDataSourceRegistered( dbMeta, partitionId ) ) {
-      addPoolableDataSource( log, dbMeta, partitionId, initialSize, maximumSize );
+    String name = getDataSourceName( dbMeta, partitionId );
+    BasicDataSource ds = dataSources.get( name );
+    if ( ds == null ) {
+      ds = addPoolableDataSource( log, dbMeta, partitionId, initialSize, maximumSize );
+    }
+    ConnectionPoolMetrics poolMetrics = metrics.get( name );
+
+    long start = System.nanoTime();
+    Connection connection;
+    try {
+      connection = ds.getConnection();
+    } catch ( SQLException e ) {
+      poolMetrics.borrowFailed();
+      if ( e.getCause() instanceof NoSuchElementException ) {
+        // All connections stayed in use for the maximum wait time
+        //
+        throw new KettleDatabaseException( BaseMessages.getString( PKG, "Database.ConnectionPool.Exhausted", name,
+          Integer.toString( ds.getMaxActive() ), Long.toString( ds.getMaxWait() ) ), e );
+      }
+      throw e;
     }
-    BasicDataSource ds = dataSources.get( getDataSourceName( dbMeta, partitionId ) );
-    return ds.getConnection();
+    poolMetrics.borrowed( System.nanoTime() - start );
+
+    borrowedConnections.put( connection, new BorrowedConnection( name, log.getLogChannelId() ) );
+    return connection;
   }
 
-  private static String getDataSourceName( DatabaseMeta dbMeta, String partitionId ) {
-    return dbMeta.getName() + Const.NVL( partitionId, "" );
+  /**
+   * Give a connection back to its pool.
+   *
+   * @param connection
+   *          the connection obtained with {@link #getConnection(LogChannelInterface, DatabaseMeta, String)}
+   * @throws SQLException
+   *           in case the connection couldn't be closed
+   */
+  public static void returnConnection( Connection connection ) throws SQLException {
+    borrowedConnections.remove( connection );
+    connection.close();
+  }
+
+  /**
+   * Close the pooled connections that were borrowed by a transformation or job, or any of its steps, and weren't
+   * returned. Call this when it finished: they're reported as leaks and returned to their pool.
+   *
+   * @param log
+   *          the channel to report the leaked connections on
+   * @param parentLogChannelId
+   *          the log channel ID of the transformation or job
+   * @return the number of leaked connections
+   */
+  public static int closeLeakedConnections( LogChannelInterface log, String parentLogChannelId ) {
+    if ( borrowedConnections.isEmpty() ) {
+      return 0;
+    }
+    List<String> children = LoggingRegistry.getInstance().getLogChannelChildren( parentLogChannelId );
+    if ( children == null ) {
+      return 0;
+    }
+    Set<String> owners = new HashSet<String>( children );
+
+    Map<Connection, BorrowedConnection> leaked = new IdentityHashMap<Connection, BorrowedConnection>();
+    synchronized ( borrowedConnections ) {
+      Iterator<Map.Entry<Connection, BorrowedConnection>> iterator = borrowedConnections.entrySet().iterator();
+      while ( iterator.hasNext() ) {
+        Map.Entry<Connection, BorrowedConnection> entry = iterator.next();
+        if ( owners.contains( entry.getValue().ownerLogChannelId ) ) {
+          leaked.put( entry.getKey(), entry.getValue() );
+          iterator.remove();
+        }
+      }
+    }
+
+    for ( Map.Entry<Connection, BorrowedConnection> entry : leaked.entrySet() ) {
+      BorrowedConnection borrowed = entry.getValue();
+      LoggingObjectInterface owner = LoggingRegistry.getInstance().getLoggingObject( borrowed.ownerLogChannelId );
+      log.logError( BaseMessages.getString( PKG, "Database.ConnectionPool.LeakedConnection", owner == null
+        ? borrowed.ownerLogChannelId : owner.getObjectName(), Long.toString( ( System.currentTimeMillis() - borrowed
+        .borrowTime ) / 1000 ) ) );
+
+      ConnectionPoolMetrics poolMetrics = metrics.get( borrowed.poolName );
+      if ( poolMetrics != null ) {
+        poolMetrics.leaked();
+      }
+      DatabaseUtil.closeSilently( entry.getKey() );
+    }
+    return leaked.size();
+  }
+
+  /**
+   * @return the statistics of all the connection pools, sorted by name
+   */
+  public static List<ConnectionPoolMetrics> getConnectionPoolMetrics() {
+    List<ConnectionPoolMetrics> list = new ArrayList<ConnectionPoolMetrics>();
+    for ( Map.Entry<String, ConnectionPoolMetrics> entry : metrics.entrySet() ) {
+      BasicDataSource ds = dataSources.get( entry.getKey() );
+      if ( ds != null ) {
+        entry.getValue().setPoolSize( ds.getNumActive(), ds.getNumIdle(), ds.getMaxActive() );
+      }
+      list.add( entry.getValue() );
+    }
+    Collections.sort( list, new Comparator<ConnectionPoolMetrics>() {
+      @Override
+      public int compare( ConnectionPoolMetrics o1, ConnectionPoolMetrics o2 ) {
+        return o1.getName().compareTo( o2.getName() );
+      }
+    } );
+    return list;
+  }
+
+  /**
+   * The same connection name can point to different databases in different transformations, so the resolved URL and
+   * user name are part of the pool name.
+   */
+  private static String getDataSourceName( DatabaseMeta dbMeta, String partitionId ) throws KettleDatabaseException {
+    try {
+      return dbMeta.getName() + Const.NVL( partitionId, "" ) + " ("
+        + dbMeta.environmentSubstitute( Const.NVL( dbMeta.getUsername(), "" ) ) + "@"
+        + dbMeta.environmentSubstitute( dbMeta.getURL( partitionId ) ) + ")";
+    } catch ( Exception e ) {
+      throw new KettleDatabaseException( BaseMessages.getString( PKG,
+        "Database.UnableToCheckIfConnectionPoolExists.Exception" ), e );
+    }
   }
 
   /**
@@ -118,7 +263,7 @@ public class ConnectionPoolUtil {
     // substitute variables and populate pool properties; add credentials
     Properties connectionPoolProperties = new Properties( databaseMeta.getConnectionPoolingProperties() );
     connectionPoolProperties = environmentSubstitute( connectionPoolProperties, databaseMeta );
-    setPoolProperties( ds, connectionPoolProperties, initialSize, maximumSize );
+    setPoolProperties( ds, connectionPoolProperties, initialSize, maximumSize, databaseMeta.isUsingConnectionPool() );
     setCredentials( ds, databaseMeta, partitionId );
 
     // add url/driver class
@@ -140,10 +285,21 @@ public class ConnectionPoolUtil {
     ds.addConnectionProperty( "password", Const.NVL( password, "" ) );
   }
 
-  private static void setPoolProperties( BasicDataSource ds, Properties properties, int initialSize, int maxSize ) {
+  private static void setPoolProperties( BasicDataSource ds, Properties properties, int initialSize, int maxSize,
+                                         boolean configured ) {
     ds.setInitialSize( initialSize );
     ds.setMaxActive( maxSize );
 
+    // Pools of connections that don't enable pooling themselves are only shared because of
+    // KETTLE_SHARED_CONNECTION_POOL. Steps prepare the same statements over and over on the connections they borrow:
+    // keep them. These pools have the default size, so don't let more step copies than connections wait forever.
+    //
+    if ( !configured ) {
+      ds.setPoolPreparedStatements( true );
+      ds.setMaxOpenPreparedStatements( defaultMaximumNrOfOpenPreparedStatements );
+      ds.setMaxWait( defaultMaximumWaitMillis );
+    }
+
     String value = properties.getProperty( DEFAULT_AUTO_COMMIT );
     if ( !Const.isEmpty( value ) ) {
       ds.setDefaultAutoCommit( Boolean.valueOf( value ) );
@@ -272,10 +428,19 @@ public class ConnectionPoolUtil {
    * @param partitionId
    * @param initialSize
    * @param maximumSize
+   * @return the data source that is registered for the database and partition
    * @throws KettleDatabaseException
    */
-  private static void addPoolableDataSource( LogChannelInterface log, DatabaseMeta databaseMeta, String partitionId,
-                                             int initialSize, int maximumSize ) throws KettleDatabaseException {
+  private static synchronized BasicDataSource addPoolableDataSource( LogChannelInterface log,
+    DatabaseMeta databaseMeta, String partitionId, int initialSize, int maximumSize ) throws KettleDatabaseException {
+    // Another thread might have created it while we were waiting
+    //
+    String name = getDataSourceName( databaseMeta, partitionId );
+    BasicDataSource registered = dataSources.get( name );
+    if ( registered != null ) {
+      return registered;
+    }
+
     if ( log.isBasic() ) {
       log.logBasic( BaseMessages.getString( PKG, "Database.CreatingConnectionPool", databaseMeta.getName() ) );
     }
@@ -285,11 +450,13 @@ public class ConnectionPoolUtil {
     // check if datasource is valid
     testDataSource( ds );
     // register data source
-    dataSources.put( getDataSourceName( databaseMeta, partitionId ), ds );
+    metrics.put( name, new ConnectionPoolMetrics( name ) );
+    dataSources.put( name, ds );
 
     if ( log.isBasic() ) {
       log.logBasic( BaseMessages.getString( PKG, "Database.CreatedConnectionPool", databaseMeta.getName() ) );
     }
+    return ds;
   }
 
 }
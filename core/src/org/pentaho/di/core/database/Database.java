@@ -153,6 +153,9 @@ public class Database implements VariableSpace, LoggingObjectInterface {
   private String connectionGroup;
   private String partitionId;
 
+  /** true if the connection was borrowed from a pool in {@link ConnectionPoolUtil} */
+  private boolean pooledConnection;
+
   private VariableSpace variables = new Variables();
 
   private LogLevel logLevel = DefaultLogLevel.getLogLevel();
@@ -373,6 +376,23 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     }
   }
 
+  /**
+   * See if the connection is borrowed from a pool: if pooling is enabled for the connection (default = false for
+   * backward compatibility) or if all connections use the shared pool, see {@link Const#KETTLE_SHARED_CONNECTION_POOL}.
+   * JNDI does pooling on its own. Connections that execute SQL when they are opened keep their own connection in the
+   * latter case since the session state would pass on to the next user of the pooled connection.
+   */
+  private boolean isUsingConnectionPool() {
+    if ( databaseMeta.getAccessType() == DatabaseMeta.TYPE_ACCESS_JNDI ) {
+      return false;
+    }
+    if ( databaseMeta.isUsingConnectionPool() ) {
+      return true;
+    }
+    return "Y".equalsIgnoreCase( getVariable( Const.KETTLE_SHARED_CONNECTION_POOL, "N" ) )
+      && Const.onlySpaces( Const.NVL( databaseMeta.getConnectSQL(), "" ) );
+  }
+
   /**
    * Open the database connection.
    *
@@ -389,15 +409,8 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     try {
       // First see if we use connection pooling...
       //
-      if ( databaseMeta.isUsingConnectionPool() && // default = false for
-                                                   // backward compatibility
-        databaseMeta.getAccessType() != DatabaseMeta.TYPE_ACCESS_JNDI // JNDI
-                                                                      // does
-                                                                      // pooling
-                                                                      // on
-                                                                      // it's
-                                                                      // own.
-      ) {
+      pooledConnection = isUsingConnectionPool();
+      if ( pooledConnection ) {
         try {
           this.connection = ConnectionPoolUtil.getConnection( log, databaseMeta, partitionId );
           if ( getConnection().getAutoCommit() != isAutoCommit() ) {
@@ -647,8 +660,10 @@ public class Database implements VariableSpace, LoggingObjectInterface {
   public synchronized void closeConnectionOnly() throws KettleDatabaseException {
     try {
       if ( connection != null ) {
-        connection.close();
-        if ( !databaseMeta.isUsingConnectionPool() ) {
+        if ( pooledConnection ) {
+          ConnectionPoolUtil.returnConnection( connection );
+        } else {
+          connection.close();
           connection = null;
         }
       }
@@ -3530,6 +3545,14 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     return rowMeta;
   }
 
+  /**
+   * Forget the row metadata of the last query, so that the next lookup determines it from its own result set again.
+   * Needed when a query is opened in between lookups on the same prepared lookup statement.
+   */
+  public void resetReturnRowMeta() {
+    rowMeta = null;
+  }
+
   public String[] getTableTypes() throws KettleDatabaseException {
     try {
       ArrayList<String> types = new ArrayList<String>();
@@ -22,44 +22,73 @@
 
 package org.pentaho.di.core.hash;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 
+/**
+ * A hash index of serialized keys and values (see {@link RowMeta#extractData(RowMetaInterface, Object[])}).<br>
+ * <br>
+ * The index uses open addressing with linear probing over two primitive arrays: the hash codes and the addresses of
+ * the key/value pairs in a {@link ByteArrayStore}. There are no objects per entry, the pairs themselves are stored
+ * back to back, optionally outside of the Java heap. Keys are considered equal if they have the same bytes, the hash
+ * code is calculated on those bytes as well.
+ */
 public class ByteArrayHashIndex {
 
   private static final int STANDARD_INDEX_SIZE = 512;
-  private static final float STANDARD_LOAD_FACTOR = 0.78f;
+  private static final float STANDARD_LOAD_FACTOR = 0.7f;
+
+  private static final long EMPTY = -1L;
 
   private RowMetaInterface keyRowMeta;
-  private ByteArrayHashIndexEntry[] index;
+  private ByteArrayStore store;
+  private int[] hashCodes;
+  private long[] addresses;
   private int size;
   private int resizeThresHold;
 
   /**
-   * Create a Byte array hash index to store row
+   * Create a Byte array hash index to store rows
    *
-   * @param rowMeta
+   * @param keyRowMeta
+   *          the metadata of the keys
+   * @param size
+   *          the initial capacity of the index
+   * @param offHeap
+   *          true to store the keys and values outside of the Java heap
    */
-  public ByteArrayHashIndex( RowMetaInterface keyRowMeta, int size ) {
+  public ByteArrayHashIndex( RowMetaInterface keyRowMeta, int size, boolean offHeap ) {
     this.keyRowMeta = keyRowMeta;
+    this.store = new ByteArrayStore( offHeap );
 
     // Find a suitable capacity being a factor of 2:
     int factor2Size = 1;
     while ( factor2Size < size ) {
       factor2Size <<= 1; // Multiply by 2
     }
+    allocateIndex( factor2Size );
+  }
 
-    this.size = factor2Size;
-    this.resizeThresHold = (int) ( factor2Size * STANDARD_LOAD_FACTOR );
-
-    index = new ByteArrayHashIndexEntry[factor2Size];
+  public ByteArrayHashIndex( RowMetaInterface keyRowMeta, int size ) {
+    this( keyRowMeta, size, false );
   }
 
   public ByteArrayHashIndex( RowMetaInterface keyRowMeta ) {
     this( keyRowMeta, STANDARD_INDEX_SIZE );
   }
 
+  private void allocateIndex( int capacity ) {
+    hashCodes = new int[capacity];
+    addresses = new long[capacity];
+    Arrays.fill( addresses, EMPTY );
+    resizeThresHold = (int) ( capacity * STANDARD_LOAD_FACTOR );
+  }
+
   public int getSize() {
     return size;
   }
@@ -68,201 +97,183 @@ public class ByteArrayHashIndex {
     return size == 0;
   }
 
-  public byte[] get( byte[] key ) throws KettleValueException {
-    int hashCode = generateHashCode( key, keyRowMeta );
+  /**
+   * @return the metadata of the keys
+   */
+  public RowMetaInterface getKeyRowMeta() {
+    return keyRowMeta;
+  }
 
-    int indexPointer = hashCode & ( index.length - 1 );
-    ByteArrayHashIndexEntry check = index[indexPointer];
+  /**
+   * @return the store holding the keys and values
+   */
+  public ByteArrayStore getStore() {
+    return store;
+  }
 
-    while ( check != null ) {
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        return check.value;
-      }
-      check = check.nextEntry;
+  public byte[] get( byte[] key ) throws KettleValueException {
+    int slot = findSlot( key, hashCode( key ) );
+    if ( addresses[slot] == EMPTY ) {
+      return null;
     }
-    return null;
+    return store.getValue( addresses[slot] );
   }
 
   public void put( byte[] key, byte[] value ) throws KettleValueException {
-    int hashCode = generateHashCode( key, keyRowMeta );
-    int indexPointer = hashCode & ( index.length - 1 );
-
-    // First see if there is an entry on that pointer...
-    //
-    boolean searchEmptySpot = false;
-
-    ByteArrayHashIndexEntry check = index[indexPointer];
-    ByteArrayHashIndexEntry previousCheck = null;
-
-    while ( check != null ) {
-      searchEmptySpot = true;
-
-      // If there is an identical entry in there, we replace the value.
-      // And then we just return...
+    int hashCode = hashCode( key );
+    int slot = findSlot( key, hashCode );
+    if ( addresses[slot] != EMPTY ) {
+      // Replace the value of the existing entry
       //
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        check.value = value;
-        return;
-      }
-      previousCheck = check;
-      check = check.nextEntry;
+      store.free( addresses[slot] );
+    } else {
+      size++;
     }
+    hashCodes[slot] = hashCode;
+    addresses[slot] = store.add( key, value );
 
-    // If we are still here, that means that we are ready to put the value down...
-    // Where do we need to search for an empty spot in the index?
-    //
-    while ( searchEmptySpot ) {
-      indexPointer++;
-      if ( indexPointer >= size ) {
-        indexPointer = 0;
-      }
-      if ( index[indexPointer] == null ) {
-        searchEmptySpot = false;
-      }
+    if ( size >= resizeThresHold ) {
+      resize();
     }
+    compactIfNeeded();
+  }
 
-    // OK, now that we know where to put the entry, insert it...
-    //
-    index[indexPointer] = new ByteArrayHashIndexEntry( hashCode, key, value, index[indexPointer] );
-
-    // Don't forget to link to the previous check entry if there was any...
-    //
-    if ( previousCheck != null ) {
-      previousCheck.nextEntry = index[indexPointer];
+  /**
+   * Remove a key and its value from the index.
+   *
+   * @param key
+   *          the key to remove
+   * @return true if the key was in the index
+   */
+  public boolean remove( byte[] key ) {
+    int slot = findSlot( key, hashCode( key ) );
+    if ( addresses[slot] == EMPTY ) {
+      return false;
     }
-
-    // If required, resize the table...
-    //
-    resize();
+    store.free( addresses[slot] );
+    deleteSlot( slot );
+    size--;
+    compactIfNeeded();
+    return true;
   }
 
-  private final void resize() {
-    // Increase the size of the index...
-    //
-    size++;
-
-    // See if we've reached our resize threshold...
-    //
-    if ( size >= resizeThresHold ) {
-
-      ByteArrayHashIndexEntry[] oldIndex = index;
-
-      // Double the size to keep the size of the index a factor of 2...
-      // Allocate the new array...
-      //
-      int newSize = 2 * index.length;
-
-      ByteArrayHashIndexEntry[] newIndex = new ByteArrayHashIndexEntry[newSize];
-
-      // Loop over the old index and re-distribute the entries
-      // We want to make sure that the calculation
-      // entry.hashCode & ( size - 1)
-      // ends up in the right location after re-sizing...
-      //
-      for ( int i = 0; i < oldIndex.length; i++ ) {
-        ByteArrayHashIndexEntry entry = oldIndex[i];
-        if ( entry != null ) {
-          oldIndex[i] = null;
-          entry.nextEntry = null; // we assume there is plenty of room in the new index...
-
-          // Make sure we follow all the linked entries...
-          // TODO This is a lot of extra work, see how we can avoid it!
-          //
-          int newIndexPointer = entry.hashCode & ( newSize - 1 );
-
-          // Make sure on this new index pointer, we have room to put the entry
-          //
-          ByteArrayHashIndexEntry check = newIndex[newIndexPointer];
-          if ( check == null ) {
-            // Yes, plenty of room
-            //
-            newIndex[newIndexPointer] = check;
-          } else {
-            // No, we need to look for a nice spot to put the hash entry...
-            //
-            ByteArrayHashIndexEntry previousCheck = null;
-            while ( check != null ) {
-              previousCheck = check;
-              check = check.nextEntry;
-            }
-            while ( newIndex[newIndexPointer] != null ) {
-              newIndexPointer++;
-              if ( newIndexPointer >= newSize ) {
-                newIndexPointer = 0;
-              }
-            }
-            // OK, now that we have a nice spot to put the entry, link the previous check entry to this one...
-            //
-            previousCheck.nextEntry = entry;
-            newIndex[newIndexPointer] = entry;
-          }
-          newIndex[newIndexPointer] = entry;
-        }
+  /**
+   * @return a copy of all the keys in the index
+   */
+  public List<byte[]> getKeys() {
+    List<byte[]> keys = new ArrayList<byte[]>( size );
+    for ( int i = 0; i < addresses.length; i++ ) {
+      if ( addresses[i] != EMPTY ) {
+        keys.add( store.getKey( addresses[i] ) );
       }
-
-      // Replace the old index with the new one we just created...
-      //
-      index = newIndex;
-
-      // Also change the resize threshold...
-      //
-      resizeThresHold = (int) ( newSize * STANDARD_LOAD_FACTOR );
     }
+    return keys;
   }
 
-  public static int generateHashCode( byte[] key, RowMetaInterface rowMeta ) throws KettleValueException {
-    Object[] rowData = RowMeta.getRow( rowMeta, key );
-    return rowMeta.hashCode( rowData );
+  /**
+   * Remove all the entries and release the memory they take.
+   */
+  public void clear() {
+    store.clear();
+    size = 0;
+    allocateIndex( STANDARD_INDEX_SIZE );
   }
 
-  private static final class ByteArrayHashIndexEntry {
-    private int hashCode;
-    private byte[] key;
-    private byte[] value;
-    private ByteArrayHashIndexEntry nextEntry;
-
-    /**
-     * @param hashCode
-     * @param key
-     * @param value
-     * @param nextEntry
-     */
-    public ByteArrayHashIndexEntry( int hashCode, byte[] key, byte[] value, ByteArrayHashIndexEntry nextEntry ) {
-      this.hashCode = hashCode;
-      this.key = key;
-      this.value = value;
-      this.nextEntry = nextEntry;
+  /**
+   * @return the slot holding the key or the empty slot where it belongs
+   */
+  private int findSlot( byte[] key, int hashCode ) {
+    int mask = addresses.length - 1;
+    int slot = hashCode & mask;
+    while ( addresses[slot] != EMPTY ) {
+      if ( hashCodes[slot] == hashCode && store.equalsKey( addresses[slot], key ) ) {
+        return slot;
+      }
+      slot = ( slot + 1 ) & mask;
     }
+    return slot;
+  }
 
-    public boolean equalsKey( byte[] cmpKey ) {
-      return equalsByteArray( key, cmpKey );
+  /**
+   * Empty a slot and move the entries that follow it back, so that none of them end up behind an empty slot.
+   */
+  private void deleteSlot( int slot ) {
+    int mask = addresses.length - 1;
+    int empty = slot;
+    addresses[empty] = EMPTY;
+    int next = ( empty + 1 ) & mask;
+    while ( addresses[next] != EMPTY ) {
+      int home = hashCodes[next] & mask;
+      // Move the entry if its home slot is not cyclically in between the empty slot and its current slot
+      //
+      boolean inBetween = empty <= next ? ( empty < home && home <= next ) : ( empty < home || home <= next );
+      if ( !inBetween ) {
+        hashCodes[empty] = hashCodes[next];
+        addresses[empty] = addresses[next];
+        addresses[next] = EMPTY;
+        empty = next;
+      }
+      next = ( next + 1 ) & mask;
     }
+  }
 
-    /**
-     * The row is the same if the value is the same The data types are the same so no error is made here.
-     */
-    @Override
-    public boolean equals( Object obj ) {
-      ByteArrayHashIndexEntry e = (ByteArrayHashIndexEntry) obj;
+  private void resize() {
+    int[] oldHashCodes = hashCodes;
+    long[] oldAddresses = addresses;
 
-      return equalsValue( e.value );
+    // Double the size to keep the size of the index a factor of 2...
+    // Only the slots move, the keys and values stay where they are in the store.
+    //
+    allocateIndex( 2 * oldAddresses.length );
+    int mask = addresses.length - 1;
+    for ( int i = 0; i < oldAddresses.length; i++ ) {
+      if ( oldAddresses[i] != EMPTY ) {
+        int slot = oldHashCodes[i] & mask;
+        while ( addresses[slot] != EMPTY ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        hashCodes[slot] = oldHashCodes[i];
+        addresses[slot] = oldAddresses[i];
+      }
     }
+  }
 
-    public boolean equalsValue( byte[] cmpValue ) {
-      return equalsByteArray( value, cmpValue );
+  /**
+   * Rebuild the store once more than half of it is taken by removed or replaced entries.
+   */
+  private void compactIfNeeded() {
+    if ( store.getFreedBytes() < ByteArrayStore.DEFAULT_CHUNK_SIZE
+      || store.getFreedBytes() * 2 < store.getUsedBytes() ) {
+      return;
     }
-
-    public static final boolean equalsByteArray( byte[] value, byte[] cmpValue ) {
-      if ( value.length != cmpValue.length ) {
-        return false;
+    ByteArrayStore oldStore = store;
+    store = new ByteArrayStore( oldStore.isOffHeap() );
+    for ( int i = 0; i < addresses.length; i++ ) {
+      if ( addresses[i] != EMPTY ) {
+        addresses[i] = store.add( oldStore.getKey( addresses[i] ), oldStore.getValue( addresses[i] ) );
       }
-      for ( int i = value.length - 1; i >= 0; i-- ) {
-        if ( value[i] != cmpValue[i] ) {
-          return false;
-        }
-      }
-      return true;
     }
+    oldStore.clear();
+  }
 
+  /**
+   * Calculate the hash code of a key using its bytes. The bits are mixed since only the lowest bits select the slot.
+   */
+  private static int hashCode( byte[] key ) {
+    int hash = 1;
+    for ( int i = 0; i < key.length; i++ ) {
+      hash = 31 * hash + key[i];
+    }
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  public static int generateHashCode( byte[] key, RowMetaInterface rowMeta ) throws KettleValueException {
+    Object[] rowData = RowMeta.getRow( rowMeta, key );
+    return rowMeta.hashCode( rowData );
   }
 }
@@ -0,0 +1,237 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores key/value pairs of byte arrays back to back in large chunks of memory, either on the Java heap or in direct
+ * (off-heap) memory. Every pair is addressed by a single long: the chunk number in the upper and the offset in the
+ * lower 32 bits.<br>
+ * <br>
+ * Compared to keeping a key and value array per entry this saves the object headers and references of every entry and
+ * keeps the data out of reach of the garbage collector when it is stored off-heap. Removed pairs are only accounted
+ * for, the owner of the store decides when to rebuild it.
+ */
+public class ByteArrayStore {
+  public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  /** The size of the first chunk, every next chunk doubles in size until the chunk size is reached */
+  public static final int INITIAL_CHUNK_SIZE = 64 * 1024;
+
+  /** The lengths of the key and the value in front of every pair */
+  private static final int PAIR_HEADER = 8;
+
+  private boolean offHeap;
+  private int chunkSize;
+  private List<ByteBuffer> chunks;
+  private ByteBuffer currentChunk;
+  private int currentOffset;
+
+  private long allocatedBytes;
+  private long usedBytes;
+  private long freedBytes;
+
+  /**
+   * @param offHeap
+   *          true to store the data in direct memory, false to keep it on the heap
+   * @param chunkSize
+   *          the maximum size of the chunks of memory to allocate. Small stores start with smaller chunks.
+   */
+  public ByteArrayStore( boolean offHeap, int chunkSize ) {
+    this.offHeap = offHeap;
+    this.chunkSize = chunkSize;
+    this.chunks = new ArrayList<ByteBuffer>();
+  }
+
+  /**
+   * @param offHeap
+   *          true to store the data in direct memory, false to keep it on the heap
+   */
+  public ByteArrayStore( boolean offHeap ) {
+    this( offHeap, DEFAULT_CHUNK_SIZE );
+  }
+
+  /**
+   * Store a key/value pair.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the value
+   * @return the address of the pair
+   */
+  public long add( byte[] key, byte[] value ) {
+    int length = PAIR_HEADER + key.length + value.length;
+    if ( currentChunk == null || currentOffset + length > currentChunk.capacity() ) {
+      allocateChunk( length );
+    }
+    int offset = currentOffset;
+    currentChunk.putInt( offset, key.length );
+    currentChunk.putInt( offset + 4, value.length );
+    put( currentChunk, offset + PAIR_HEADER, key );
+    put( currentChunk, offset + PAIR_HEADER + key.length, value );
+    currentOffset += length;
+    usedBytes += length;
+
+    return ( (long) ( chunks.size() - 1 ) << 32 ) | offset;
+  }
+
+  private void allocateChunk( int minimumLength ) {
+    int size = currentChunk == null ? INITIAL_CHUNK_SIZE : currentChunk.capacity() * 2;
+    size = Math.max( Math.min( size, chunkSize ), minimumLength );
+    currentChunk = offHeap ? ByteBuffer.allocateDirect( size ) : ByteBuffer.allocate( size );
+    chunks.add( currentChunk );
+    currentOffset = 0;
+    allocatedBytes += size;
+  }
+
+  /**
+   * @param address
+   *          the address of the pair
+   * @param key
+   *          the key to compare with
+   * @return true if the key of the pair has the same bytes as the given key
+   */
+  public boolean equalsKey( long address, byte[] key ) {
+    ByteBuffer chunk = chunks.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    if ( chunk.getInt( offset ) != key.length ) {
+      return false;
+    }
+    offset += PAIR_HEADER;
+    if ( chunk.hasArray() ) {
+      byte[] data = chunk.array();
+      for ( int i = 0; i < key.length; i++ ) {
+        if ( data[offset + i] != key[i] ) {
+          return false;
+        }
+      }
+    } else {
+      for ( int i = 0; i < key.length; i++ ) {
+        if ( chunk.get( offset + i ) != key[i] ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param address
+   *          the address of the pair
+   * @return a copy of the key of the pair
+   */
+  public byte[] getKey( long address ) {
+    ByteBuffer chunk = chunks.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    return get( chunk, offset + PAIR_HEADER, chunk.getInt( offset ) );
+  }
+
+  /**
+   * @param address
+   *          the address of the pair
+   * @return a copy of the value of the pair
+   */
+  public byte[] getValue( long address ) {
+    ByteBuffer chunk = chunks.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    return get( chunk, offset + PAIR_HEADER + chunk.getInt( offset ), chunk.getInt( offset + 4 ) );
+  }
+
+  /**
+   * Account for a pair that is no longer used. The memory is not re-used until the store is rebuilt.
+   *
+   * @param address
+   *          the address of the pair
+   */
+  public void free( long address ) {
+    ByteBuffer chunk = chunks.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    freedBytes += PAIR_HEADER + chunk.getInt( offset ) + chunk.getInt( offset + 4 );
+  }
+
+  /**
+   * Release all the chunks.
+   */
+  public void clear() {
+    chunks.clear();
+    currentChunk = null;
+    currentOffset = 0;
+    allocatedBytes = 0L;
+    usedBytes = 0L;
+    freedBytes = 0L;
+  }
+
+  private static void put( ByteBuffer chunk, int offset, byte[] bytes ) {
+    if ( chunk.hasArray() ) {
+      System.arraycopy( bytes, 0, chunk.array(), offset, bytes.length );
+    } else {
+      ByteBuffer target = chunk.duplicate();
+      target.position( offset );
+      target.put( bytes );
+    }
+  }
+
+  private static byte[] get( ByteBuffer chunk, int offset, int length ) {
+    byte[] bytes = new byte[length];
+    if ( chunk.hasArray() ) {
+      System.arraycopy( chunk.array(), offset, bytes, 0, length );
+    } else {
+      ByteBuffer source = chunk.duplicate();
+      source.position( offset );
+      source.get( bytes );
+    }
+    return bytes;
+  }
+
+  /**
+   * @return true if the data is stored in direct memory
+   */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * @return the number of bytes allocated for the chunks
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * @return the number of bytes taken by the stored pairs, including the ones that were freed
+   */
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * @return the number of bytes taken by pairs that were freed
+   */
+  public long getFreedBytes() {
+    return freedBytes;
+  }
+}
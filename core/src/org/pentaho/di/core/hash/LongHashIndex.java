@@ -24,18 +24,26 @@ package org.pentaho.di.core.hash;
 
 import org.pentaho.di.core.exception.KettleValueException;
 
+/**
+ * A hash index of long keys and long values. The index uses open addressing with linear probing over two primitive
+ * arrays, so there are no objects per entry. Key 0 marks an empty slot, its value is kept apart.
+ */
 public class LongHashIndex {
 
   private static final int STANDARD_INDEX_SIZE = 512;
-  private static final float STANDARD_LOAD_FACTOR = 0.78f;
+  private static final float STANDARD_LOAD_FACTOR = 0.7f;
 
-  private LongHashIndexEntry[] index;
+  private long[] keys;
+  private long[] values;
   private int size;
   private int resizeThresHold;
 
+  private boolean hasZeroKey;
+  private long zeroKeyValue;
+
   /**
    * Create a new long/long hash index
-   * 
+   *
    * @param size
    *          the initial size of the hash index
    */
@@ -47,9 +55,7 @@ public class LongHashIndex {
       factor2Size <<= 1; // Multiply by 2
     }
 
-    this.resizeThresHold = (int) ( factor2Size * STANDARD_LOAD_FACTOR );
-
-    index = new LongHashIndexEntry[factor2Size];
+    allocateIndex( factor2Size );
   }
 
   /**
@@ -59,6 +65,12 @@ public class LongHashIndex {
     this( STANDARD_INDEX_SIZE );
   }
 
+  private void allocateIndex( int capacity ) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    resizeThresHold = (int) ( capacity * STANDARD_LOAD_FACTOR );
+  }
+
   public int getSize() {
     return size;
   }
@@ -68,104 +80,83 @@ public class LongHashIndex {
   }
 
   public Long get( long key ) throws KettleValueException {
-    int hashCode = generateHashCode( key );
-
-    int indexPointer = indexFor( hashCode, index.length );
-    LongHashIndexEntry check = index[indexPointer];
-
-    while ( check != null ) {
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        return check.value;
+    if ( key == 0L ) {
+      return hasZeroKey ? Long.valueOf( zeroKeyValue ) : null;
+    }
+    int mask = keys.length - 1;
+    int slot = indexFor( hash( key ), keys.length );
+    while ( keys[slot] != 0L ) {
+      if ( keys[slot] == key ) {
+        return Long.valueOf( values[slot] );
       }
-      check = check.nextEntry;
+      slot = ( slot + 1 ) & mask;
     }
     return null;
   }
 
   public void put( long key, Long value ) throws KettleValueException {
-    int hashCode = generateHashCode( key );
-    int indexPointer = indexFor( hashCode, index.length );
-
-    LongHashIndexEntry check = index[indexPointer];
-    LongHashIndexEntry previousCheck = null;
-
-    while ( check != null ) {
-
-      // If there is an identical entry in there, we replace the entry
-      // And then we just return...
-      //
-      if ( check.hashCode == hashCode && check.equalsKey( key ) ) {
-        check.value = value;
-        return;
+    if ( key == 0L ) {
+      if ( !hasZeroKey ) {
+        hasZeroKey = true;
+        size++;
       }
-      previousCheck = check;
-      check = check.nextEntry;
+      zeroKeyValue = value;
+      return;
     }
 
-    // Don't forget to link to the previous check entry if there was any...
-    //
-    if ( previousCheck != null ) {
-      previousCheck.nextEntry = new LongHashIndexEntry( hashCode, key, value, null );
-    } else {
-      index[indexPointer] = new LongHashIndexEntry( hashCode, key, value, null );
+    int mask = keys.length - 1;
+    int slot = indexFor( hash( key ), keys.length );
+    while ( keys[slot] != 0L ) {
+      if ( keys[slot] == key ) {
+        // If there is an identical entry in there, we replace the value
+        //
+        values[slot] = value;
+        return;
+      }
+      slot = ( slot + 1 ) & mask;
     }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
 
     // If required, resize the table...
     //
-    resize();
+    if ( size >= resizeThresHold ) {
+      resize();
+    }
   }
 
-  private final void resize() {
-    // Increase the size of the index...
-    //
-    size++;
+  private void resize() {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
 
-    // See if we've reached our resize threshold...
+    // Double the size to keep the size of the index a factor of 2...
     //
-    if ( size >= resizeThresHold ) {
-
-      LongHashIndexEntry[] oldIndex = index;
-
-      // Double the size to keep the size of the index a factor of 2...
-      // Allocate the new array...
-      //
-      int newSize = 2 * index.length;
-
-      LongHashIndexEntry[] newIndex = new LongHashIndexEntry[newSize];
-
-      // Loop over the old index and re-distribute the entries
-      // We want to make sure that the calculation
-      // entry.hashCode & ( size - 1)
-      // ends up in the right location after re-sizing...
-      //
-      for ( int i = 0; i < oldIndex.length; i++ ) {
-        LongHashIndexEntry entry = oldIndex[i];
-        if ( entry != null ) {
-          oldIndex[i] = null;
-
-          // Make sure we follow all the linked entries...
-          // This is a bit of extra work, TODO: see how we can avoid it!
-          //
-          do {
-            LongHashIndexEntry next = entry.nextEntry;
-            int indexPointer = indexFor( entry.hashCode, newSize );
-            entry.nextEntry = newIndex[indexPointer];
-            newIndex[indexPointer] = entry;
-            entry = next;
-          } while ( entry != null );
+    allocateIndex( 2 * oldKeys.length );
+    int mask = keys.length - 1;
+    for ( int i = 0; i < oldKeys.length; i++ ) {
+      if ( oldKeys[i] != 0L ) {
+        int slot = indexFor( hash( oldKeys[i] ), keys.length );
+        while ( keys[slot] != 0L ) {
+          slot = ( slot + 1 ) & mask;
         }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
       }
-
-      // Replace the old index with the new one we just created...
-      //
-      index = newIndex;
-
-      // Also change the resize threshold...
-      //
-      resizeThresHold = (int) ( newSize * STANDARD_LOAD_FACTOR );
     }
   }
 
+  /**
+   * Calculate the hash code of a key. The bits are mixed since only the lowest bits select the slot, sequential keys
+   * would otherwise end up in long runs of adjacent slots.
+   */
+  private static int hash( long key ) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
   public static int generateHashCode( Long key ) throws KettleValueException {
     return key.hashCode();
   }
@@ -173,28 +164,4 @@ public class LongHashIndex {
   public static int indexFor( int hash, int length ) {
     return hash & ( length - 1 );
   }
-
-  private static final class LongHashIndexEntry {
-    private int hashCode;
-    private long key;
-    private long value;
-    private LongHashIndexEntry nextEntry;
-
-    /**
-     * @param hashCode
-     * @param key
-     * @param value
-     * @param nextEntry
-     */
-    public LongHashIndexEntry( int hashCode, Long key, Long value, LongHashIndexEntry nextEntry ) {
-      this.hashCode = hashCode;
-      this.key = key;
-      this.value = value;
-      this.nextEntry = nextEntry;
-    }
-
-    public boolean equalsKey( long cmpKey ) {
-      return key == cmpKey;
-    }
-  }
 }
@@ -0,0 +1,180 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+/**
+ * A streaming implementation of the 32-bit x86 variant of MurmurHash3. Values are added one by one in their little
+ * endian binary representation, the result is the same as hashing all the added bytes in one go. Unlike
+ * {@link Object#hashCode()} the result doesn't depend on the JVM so it can be used to distribute data across
+ * servers.<br>
+ * <br>
+ * An instance isn't thread-safe, use one per thread and {@link #reset()} it between keys.
+ */
+public class Murmur3Hash {
+  private static final int C1 = 0xcc9e2d51;
+  private static final int C2 = 0x1b873593;
+
+  private final int seed;
+
+  private int hash;
+  private int tail;
+  private int tailLength;
+  private int length;
+
+  public Murmur3Hash() {
+    this( 0 );
+  }
+
+  public Murmur3Hash( int seed ) {
+    this.seed = seed;
+    reset();
+  }
+
+  /**
+   * Start a new hash with the same seed.
+   *
+   * @return this instance
+   */
+  public Murmur3Hash reset() {
+    hash = seed;
+    tail = 0;
+    tailLength = 0;
+    length = 0;
+    return this;
+  }
+
+  public Murmur3Hash addByte( int value ) {
+    tail |= ( value & 0xff ) << ( tailLength << 3 );
+    length++;
+    if ( ++tailLength == 4 ) {
+      mix( tail );
+      tail = 0;
+      tailLength = 0;
+    }
+    return this;
+  }
+
+  public Murmur3Hash addInt( int value ) {
+    if ( tailLength == 0 ) {
+      mix( value );
+      length += 4;
+    } else {
+      addByte( value );
+      addByte( value >>> 8 );
+      addByte( value >>> 16 );
+      addByte( value >>> 24 );
+    }
+    return this;
+  }
+
+  public Murmur3Hash addLong( long value ) {
+    addInt( (int) value );
+    addInt( (int) ( value >>> 32 ) );
+    return this;
+  }
+
+  /**
+   * Add the characters of a string as UTF-16LE, without the length.
+   *
+   * @param value
+   *          the string to add
+   * @return this instance
+   */
+  public Murmur3Hash addChars( String value ) {
+    int nrChars = value.length();
+    int i = 0;
+    for ( ; i + 1 < nrChars; i += 2 ) {
+      addInt( value.charAt( i ) | ( value.charAt( i + 1 ) << 16 ) );
+    }
+    if ( i < nrChars ) {
+      char c = value.charAt( i );
+      addByte( c );
+      addByte( c >>> 8 );
+    }
+    return this;
+  }
+
+  public Murmur3Hash addBytes( byte[] value ) {
+    return addBytes( value, 0, value.length );
+  }
+
+  public Murmur3Hash addBytes( byte[] value, int offset, int count ) {
+    int end = offset + count;
+    int i = offset;
+    while ( tailLength != 0 && i < end ) {
+      addByte( value[i++] );
+    }
+    for ( ; i + 3 < end; i += 4 ) {
+      mix( ( value[i] & 0xff ) | ( value[i + 1] & 0xff ) << 8 | ( value[i + 2] & 0xff ) << 16 | value[i + 3] << 24 );
+      length += 4;
+    }
+    while ( i < end ) {
+      addByte( value[i++] );
+    }
+    return this;
+  }
+
+  /**
+   * Calculate the hash of the bytes added since the last reset. More bytes can be added afterwards.
+   *
+   * @return the hash
+   */
+  public int finish() {
+    int h = hash;
+    if ( tailLength > 0 ) {
+      int k = tail * C1;
+      k = Integer.rotateLeft( k, 15 );
+      k *= C2;
+      h ^= k;
+    }
+    h ^= length;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private void mix( int k ) {
+    k *= C1;
+    k = Integer.rotateLeft( k, 15 );
+    k *= C2;
+    hash ^= k;
+    hash = Integer.rotateLeft( hash, 13 );
+    hash = hash * 5 + 0xe6546b64;
+  }
+
+  /**
+   * Calculate the hash of a byte array in one go.
+   *
+   * @param data
+   *          the bytes to hash
+   * @param seed
+   *          the seed
+   * @return the hash
+   */
+  public static int hash( byte[] data, int seed ) {
+    return new Murmur3Hash( seed ).addBytes( data ).finish();
+  }
+}
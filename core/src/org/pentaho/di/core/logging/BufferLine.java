@@ -35,6 +35,19 @@ public class BufferLine {
     this.nr = sequence.incrementAndGet();
   }
 
+  /**
+   * Create a line with a number handed out by the buffer it's added to.
+   *
+   * @param event
+   *          the logging event
+   * @param nr
+   *          the number of the line in the buffer
+   */
+  BufferLine( KettleLoggingEvent event, int nr ) {
+    this.event = event;
+    this.nr = nr;
+  }
+
   public int getNr() {
     return nr;
   }
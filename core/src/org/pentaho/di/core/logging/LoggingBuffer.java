@@ -19,52 +19,104 @@
  * limitations under the License.
  *
  ******************************************************************************/
-
 package org.pentaho.di.core.logging;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.pentaho.di.core.Const;
 
 /**
- * This class keeps the last N lines in a buffer
+ * This class keeps the last N lines in a buffer.<br>
+ * <br>
+ * The lines are numbered by the buffer (1..N) and kept in segments of {@link #SEGMENT_SIZE} lines, looked up by line
+ * number. Next to that every log channel has an index of the numbers of its lines, so the lines of a channel (tree)
+ * between two line numbers are found with a binary search instead of scanning the whole buffer. Appending a line only
+ * locks the index of its own log channel, reading the log of a transformation only locks the indexes of its channels:
+ * logging threads and clients polling the log (Carte, Spoon) don't block each other across the board.
  *
  * @author matt
  *
  */
 public class LoggingBuffer {
-  private String name;
+  /** The number of lines in a segment of the buffer */
+  public static final int SEGMENT_SIZE = 1024;
+
+  private static final int SEGMENT_SHIFT = 10;
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  /** The channel ID under which events without a log message are indexed */
+  private static final String NO_CHANNEL = "";
+
+  /** Takes the place of a removed line in its segment */
+  private static final BufferLine REMOVED = new BufferLine( null, 0 );
+
+  private static final Comparator<BufferLine> LINE_NR_ORDER = new Comparator<BufferLine>() {
+    @Override
+    public int compare( BufferLine one, BufferLine two ) {
+      return one.getNr() < two.getNr() ? -1 : ( one.getNr() == two.getNr() ? 0 : 1 );
+    }
+  };
 
-  private List<BufferLine> buffer;
+  private String name;
 
-  private int bufferSize;
+  private volatile int bufferSize;
 
   private KettleLogLayout layout;
 
   private List<KettleLoggingEventListener> eventListeners;
 
+  /** The segments with the lines, by line number / SEGMENT_SIZE */
+  private ConcurrentNavigableMap<Integer, AtomicReferenceArray<BufferLine>> segments;
+
+  /** The line numbers per log channel ID */
+  private ConcurrentMap<String, ChannelIndex> channels;
+
+  /** The number of the last line handed out */
+  private AtomicInteger sequence;
+
+  /** The number of the last line that was stored, together with all the lines before it */
+  private AtomicInteger lastLineNr;
+
+  /** The number of the oldest line that can still be in the buffer */
+  private volatile int firstLineNr;
+
+  private AtomicInteger nrLines;
+
+  /** Held while removing the oldest lines */
+  private ReentrantLock trimLock;
+
   public LoggingBuffer( int bufferSize ) {
     this.bufferSize = bufferSize;
-    buffer = Collections.synchronizedList( new LinkedList<BufferLine>() );
+    segments = new ConcurrentSkipListMap<Integer, AtomicReferenceArray<BufferLine>>();
+    channels = new ConcurrentHashMap<String, ChannelIndex>();
+    sequence = new AtomicInteger( 0 );
+    lastLineNr = new AtomicInteger( 0 );
+    firstLineNr = 1;
+    nrLines = new AtomicInteger( 0 );
+    trimLock = new ReentrantLock();
     layout = new KettleLogLayout( true );
     eventListeners = Collections.synchronizedList( new ArrayList<KettleLoggingEventListener>() );
   }
 
   /**
-   * @return the number (sequence, 1..N) of the last log line. If no records are present in the buffer, 0 is returned.
+   * @return the number (sequence, 1..N) of the last log line. All the lines up to this one can be read from the
+   *         buffer, unless they were removed. If no line was added to the buffer yet, 0 is returned.
    */
   public int getLastBufferLineNr() {
-    synchronized ( buffer ) {
-      if ( buffer.size() > 0 ) {
-        return buffer.get( buffer.size() - 1 ).getNr();
-      } else {
-        return 0;
-      }
-    }
+    return lastLineNr.get();
   }
 
   /**
@@ -79,58 +131,60 @@ public class LoggingBuffer {
    */
   public List<KettleLoggingEvent> getLogBufferFromTo( List<String> channelId, boolean includeGeneral, int from,
     int to ) {
-    List<KettleLoggingEvent> lines = new ArrayList<KettleLoggingEvent>();
-
-    synchronized ( buffer ) {
-      for ( BufferLine line : buffer ) {
-        if ( line.getNr() > from && line.getNr() <= to ) {
-          Object payload = line.getEvent().getMessage();
-          if ( payload instanceof LogMessage ) {
-            LogMessage message = (LogMessage) payload;
-
-            // Typically, the log channel id is the one from the transformation or job running currently.
-            // However, we also want to see the details of the steps etc.
-            // So we need to look at the parents all the way up if needed...
-            //
-            boolean include = channelId == null;
-
-            // See if we should include generic messages
-            //
-            if ( !include ) {
-              LoggingObjectInterface loggingObject =
-                LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
-
-              if ( loggingObject != null
-                && includeGeneral && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
-                include = true;
-              }
-
-              // See if we should include a certain channel id (zero, one or more)
-              //
-              if ( !include ) {
-                for ( String id : channelId ) {
-                  if ( message.getLogChannelId().equals( id ) ) {
-                    include = true;
-                    break;
-                  }
-                }
-              }
+    List<BufferLine> bufferLines = new ArrayList<BufferLine>();
+
+    if ( channelId == null ) {
+      int last = Math.min( to, sequence.get() );
+      for ( int nr = Math.max( from + 1, firstLineNr ); nr <= last; nr++ ) {
+        BufferLine line = getLine( nr );
+        if ( line != null && line.getEvent().getMessage() instanceof LogMessage ) {
+          bufferLines.add( line );
+        }
+      }
+    } else {
+      // Typically, the log channel id is the one from the transformation or job running currently.
+      // However, we also want to see the details of the steps etc.
+      // That's why the caller passes the IDs of all the children as well.
+      //
+      Set<String> ids = new HashSet<String>( channelId );
+
+      // See if we should include generic messages
+      //
+      if ( includeGeneral ) {
+        for ( String id : channels.keySet() ) {
+          if ( !ids.contains( id ) ) {
+            LoggingObjectInterface loggingObject = LoggingRegistry.getInstance().getLoggingObject( id );
+            if ( loggingObject != null && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
+              ids.add( id );
             }
+          }
+        }
+      }
 
-            if ( include ) {
-
-              try {
-                // String string = layout.format(line.getEvent());
-                lines.add( line.getEvent() );
-              } catch ( Exception e ) {
-                e.printStackTrace();
+      int nrChannels = 0;
+      for ( String id : ids ) {
+        ChannelIndex index = channels.get( id );
+        if ( index != null ) {
+          synchronized ( index ) {
+            for ( int i = index.search( from ); i < index.end && index.lineNrs[i] <= to; i++ ) {
+              BufferLine line = getLine( index.lineNrs[i] );
+              if ( line != null ) {
+                bufferLines.add( line );
               }
             }
           }
+          nrChannels++;
         }
       }
+      if ( nrChannels > 1 ) {
+        Collections.sort( bufferLines, LINE_NR_ORDER );
+      }
     }
 
+    List<KettleLoggingEvent> lines = new ArrayList<KettleLoggingEvent>( bufferLines.size() );
+    for ( BufferLine line : bufferLines ) {
+      lines.add( line.getEvent() );
+    }
     return lines;
   }
 
@@ -184,11 +238,42 @@ public class LoggingBuffer {
   }
 
   public void doAppend( KettleLoggingEvent event ) {
-    synchronized ( buffer ) {
-      buffer.add( new BufferLine( event ) );
-      while ( bufferSize > 0 && buffer.size() > bufferSize ) {
-        buffer.remove( 0 );
+    String channelId = getLogChannelId( event );
+
+    // The line is numbered while holding the lock on the index of its channel, that way the index stays sorted.
+    //
+    boolean added = false;
+    while ( !added ) {
+      ChannelIndex index = channels.get( channelId );
+      if ( index == null ) {
+        ChannelIndex newIndex = new ChannelIndex();
+        index = channels.putIfAbsent( channelId, newIndex );
+        if ( index == null ) {
+          index = newIndex;
+        }
       }
+      synchronized ( index ) {
+        if ( !index.removed ) {
+          BufferLine line = new BufferLine( event, sequence.incrementAndGet() );
+          index.add( line.getNr() );
+          getSegment( line.getNr(), true ).set( line.getNr() & SEGMENT_MASK, line );
+          added = true;
+        }
+      }
+    }
+    nrLines.incrementAndGet();
+
+    // Move the last line number up to the last line stored without gaps before it.
+    //
+    int last = lastLineNr.get();
+    while ( isStored( last + 1 ) ) {
+      lastLineNr.compareAndSet( last, last + 1 );
+      last = lastLineNr.get();
+    }
+
+    int maxNrLines = bufferSize;
+    if ( maxNrLines > 0 && nrLines.get() > maxNrLines ) {
+      trim( false );
     }
   }
 
@@ -213,7 +298,9 @@ public class LoggingBuffer {
   }
 
   public void clear() {
-    buffer.clear();
+    for ( String id : channels.keySet() ) {
+      removeChannelFromBuffer( id );
+    }
   }
 
   /**
@@ -235,7 +322,7 @@ public class LoggingBuffer {
    * @return the nrLines
    */
   public int getNrLines() {
-    return buffer.size();
+    return nrLines.get();
   }
 
   /**
@@ -245,75 +332,85 @@ public class LoggingBuffer {
    *          the id of the logging channel to remove
    */
   public void removeChannelFromBuffer( String id ) {
-    synchronized ( buffer ) {
-      Iterator<BufferLine> iterator = buffer.iterator();
-      while ( iterator.hasNext() ) {
-        BufferLine bufferLine = iterator.next();
-        Object payload = bufferLine.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          if ( id.equals( message.getLogChannelId() ) ) {
-            iterator.remove();
-          }
+    ChannelIndex index = channels.remove( id );
+    if ( index == null ) {
+      return;
+    }
+    synchronized ( index ) {
+      index.removed = true;
+      for ( int i = index.start; i < index.end; i++ ) {
+        BufferLine line = getLine( index.lineNrs[i] );
+        if ( line != null ) {
+          removeLine( line );
         }
       }
     }
+    trim( true );
   }
 
   public int size() {
-    return buffer.size();
+    return nrLines.get();
   }
 
   public void removeGeneralMessages() {
-    synchronized ( buffer ) {
-      Iterator<BufferLine> iterator = buffer.iterator();
-      while ( iterator.hasNext() ) {
-        BufferLine bufferLine = iterator.next();
-        Object payload = bufferLine.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          LoggingObjectInterface loggingObject =
-            LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
-          if ( loggingObject != null && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
-            iterator.remove();
-          }
-        }
+    for ( String id : channels.keySet() ) {
+      LoggingObjectInterface loggingObject = LoggingRegistry.getInstance().getLoggingObject( id );
+      if ( loggingObject != null && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
+        removeChannelFromBuffer( id );
       }
     }
   }
 
+  /**
+   * @return an iterator over a copy of the lines in the buffer, oldest first
+   */
   public Iterator<BufferLine> getBufferIterator() {
-    return buffer.iterator();
+    return getBufferLines().iterator();
   }
 
   public String dump() {
     StringBuffer buf = new StringBuffer( 50000 );
-    synchronized ( buffer ) {
-      for ( BufferLine line : buffer ) {
-        Object payload = line.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          // LoggingObjectInterface loggingObject =
-          // LoggingRegistry.getInstance().getLoggingObject(message.getLogChannelId());
-          buf
-            .append( message.getLogChannelId()
-              + "\t" + message.getSubject() + "\t" + message.getMessage() + "\n" );
-        }
-
+    for ( BufferLine line : getBufferLines() ) {
+      Object payload = line.getEvent().getMessage();
+      if ( payload instanceof LogMessage ) {
+        LogMessage message = (LogMessage) payload;
+        // LoggingObjectInterface loggingObject =
+        // LoggingRegistry.getInstance().getLoggingObject(message.getLogChannelId());
+        buf
+          .append( message.getLogChannelId()
+            + "\t" + message.getSubject() + "\t" + message.getMessage() + "\n" );
       }
     }
     return buf.toString();
   }
 
   public void removeBufferLines( List<BufferLine> linesToRemove ) {
-    buffer.removeAll( linesToRemove );
+    Set<String> ids = new HashSet<String>();
+    for ( BufferLine line : linesToRemove ) {
+      if ( removeLine( line ) ) {
+        ids.add( getLogChannelId( line.getEvent() ) );
+      }
+    }
+
+    // Forget about the channels that have no lines left
+    //
+    for ( String id : ids ) {
+      ChannelIndex index = channels.get( id );
+      if ( index != null ) {
+        synchronized ( index ) {
+          trimIndex( id, index );
+        }
+      }
+    }
+    trim( true );
   }
 
   public List<BufferLine> getBufferLinesBefore( long minTimeBoundary ) {
     List<BufferLine> linesToRemove = new ArrayList<BufferLine>();
-    synchronized ( buffer ) {
-      for ( Iterator<BufferLine> i = buffer.iterator(); i.hasNext(); ) {
-        BufferLine bufferLine = i.next();
+    int last = lastLineNr.get();
+    for ( int nr = firstLineNr; nr <= last; nr++ ) {
+      BufferLine bufferLine = getLine( nr );
+      if ( bufferLine != null ) {
         if ( bufferLine.getEvent().timeStamp < minTimeBoundary ) {
           linesToRemove.add( bufferLine );
         } else {
@@ -340,4 +437,172 @@ public class LoggingBuffer {
   public void removeLoggingEventListener( KettleLoggingEventListener listener ) {
     eventListeners.remove( listener );
   }
+
+  private static String getLogChannelId( KettleLoggingEvent event ) {
+    Object payload = event.getMessage();
+    if ( payload instanceof LogMessage ) {
+      String id = ( (LogMessage) payload ).getLogChannelId();
+      if ( id != null ) {
+        return id;
+      }
+    }
+    return NO_CHANNEL;
+  }
+
+  private AtomicReferenceArray<BufferLine> getSegment( int nr, boolean create ) {
+    Integer key = Integer.valueOf( nr >>> SEGMENT_SHIFT );
+    AtomicReferenceArray<BufferLine> segment = segments.get( key );
+    if ( segment == null && create ) {
+      AtomicReferenceArray<BufferLine> newSegment = new AtomicReferenceArray<BufferLine>( SEGMENT_SIZE );
+      segment = segments.putIfAbsent( key, newSegment );
+      if ( segment == null ) {
+        segment = newSegment;
+      }
+    }
+    return segment;
+  }
+
+  /**
+   * @return the line with the specified number or null if it was removed or isn't stored yet
+   */
+  private BufferLine getLine( int nr ) {
+    AtomicReferenceArray<BufferLine> segment = getSegment( nr, false );
+    if ( segment == null ) {
+      return null;
+    }
+    BufferLine line = segment.get( nr & SEGMENT_MASK );
+    return line == REMOVED ? null : line;
+  }
+
+  private boolean isStored( int nr ) {
+    if ( nr > sequence.get() ) {
+      return false;
+    }
+    AtomicReferenceArray<BufferLine> segment = getSegment( nr, false );
+    return segment != null && segment.get( nr & SEGMENT_MASK ) != null;
+  }
+
+  private boolean removeLine( BufferLine line ) {
+    AtomicReferenceArray<BufferLine> segment = getSegment( line.getNr(), false );
+    if ( segment != null && segment.compareAndSet( line.getNr() & SEGMENT_MASK, line, REMOVED ) ) {
+      nrLines.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Drop the numbers of removed lines at the start of a channel index and forget about the channel if none are left.
+   * The caller holds the lock on the index.
+   */
+  private void trimIndex( String id, ChannelIndex index ) {
+    while ( index.start < index.end && getLine( index.lineNrs[index.start] ) == null ) {
+      index.start++;
+    }
+    if ( index.start == index.end && !index.removed ) {
+      index.removed = true;
+      channels.remove( id, index );
+    }
+  }
+
+  /**
+   * Remove the oldest lines while there are more than the maximum number of lines and skip over removed lines at the
+   * start of the buffer, dropping the segments that are no longer used.
+   *
+   * @param wait
+   *          true to wait for another thread that is trimming, false to leave the work to that thread
+   */
+  private void trim( boolean wait ) {
+    if ( wait ) {
+      trimLock.lock();
+    } else if ( !trimLock.tryLock() ) {
+      return;
+    }
+    try {
+      int last = lastLineNr.get();
+      int nr = firstLineNr;
+      while ( nr <= last ) {
+        BufferLine line = getLine( nr );
+        if ( line != null ) {
+          int maxNrLines = bufferSize;
+          if ( maxNrLines <= 0 || nrLines.get() <= maxNrLines ) {
+            break;
+          }
+          if ( removeLine( line ) ) {
+            String id = getLogChannelId( line.getEvent() );
+            ChannelIndex index = channels.get( id );
+            if ( index != null ) {
+              synchronized ( index ) {
+                trimIndex( id, index );
+              }
+            }
+          }
+        }
+        nr++;
+        if ( ( nr & SEGMENT_MASK ) == 0 ) {
+          segments.remove( Integer.valueOf( ( nr >>> SEGMENT_SHIFT ) - 1 ) );
+        }
+      }
+      firstLineNr = nr;
+    } finally {
+      trimLock.unlock();
+    }
+  }
+
+  private List<BufferLine> getBufferLines() {
+    List<BufferLine> lines = new ArrayList<BufferLine>();
+    int last = lastLineNr.get();
+    for ( int nr = firstLineNr; nr <= last; nr++ ) {
+      BufferLine line = getLine( nr );
+      if ( line != null ) {
+        lines.add( line );
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * The sorted numbers of the lines of a log channel, guarded by its own lock.
+   */
+  private static class ChannelIndex {
+    private int[] lineNrs = new int[16];
+    private int start;
+    private int end;
+
+    /** Set once the index is no longer in the map of channels, lines are added to a new index */
+    private boolean removed;
+
+    private void add( int nr ) {
+      if ( end == lineNrs.length ) {
+        int size = end - start;
+        if ( size < lineNrs.length / 2 ) {
+          System.arraycopy( lineNrs, start, lineNrs, 0, size );
+        } else {
+          int[] newLineNrs = new int[lineNrs.length * 2];
+          System.arraycopy( lineNrs, start, newLineNrs, 0, size );
+          lineNrs = newLineNrs;
+        }
+        start = 0;
+        end = size;
+      }
+      lineNrs[end++] = nr;
+    }
+
+    /**
+     * @return the position of the first line number after the specified one
+     */
+    private int search( int nr ) {
+      int low = start;
+      int high = end;
+      while ( low < high ) {
+        int middle = ( low + high ) >>> 1;
+        if ( lineNrs[middle] <= nr ) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
 }
@@ -134,6 +134,23 @@ public class Metrics implements MetricsInterface {
   public static Metrics METRIC_STEP_INIT_STOP = new Metrics(
     MetricsSnapshotType.STOP, "METRIC_STEP_INIT", "Initialize a step" );
 
+  // Steps
+  //
+  public static Metrics METRIC_STREAM_LOOKUP_CACHE_HIT_RATIO = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STREAM_LOOKUP_CACHE_HIT_RATIO", "Stream lookup hot key cache hit ratio (%)" );
+  public static Metrics METRIC_STREAM_LOOKUP_BYTES_MAPPED = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STREAM_LOOKUP_BYTES_MAPPED", "Stream lookup data mapped in memory (bytes)" );
+  public static Metrics METRIC_DATABASE_LOOKUP_CACHE_HITS = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_DATABASE_LOOKUP_CACHE_HITS", "Database lookup cache hits" );
+  public static Metrics METRIC_DATABASE_LOOKUP_CACHE_MISSES = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_DATABASE_LOOKUP_CACHE_MISSES", "Database lookup cache misses" );
+  public static Metrics METRIC_DATABASE_LOOKUP_BATCH_QUERIES = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_DATABASE_LOOKUP_BATCH_QUERIES", "Database lookup batched queries" );
+  public static Metrics METRIC_DATABASE_LOOKUP_BATCH_SIZE = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_DATABASE_LOOKUP_BATCH_SIZE", "Database lookup keys per batched query" );
+  public static Metrics METRIC_LOOKUP_CACHE_EVICTIONS = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_LOOKUP_CACHE_EVICTIONS", "Lookup cache entries evicted" );
+
   // Logging back-end
   //
   public static Metrics METRIC_CENTRAL_LOG_STORE_TIMEOUT_CLEAN_TIME = new Metrics(
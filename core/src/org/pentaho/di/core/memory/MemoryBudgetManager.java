@@ -0,0 +1,170 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.memory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Hands out the memory available to row buffering steps (Sort Rows, Blocking Step, Memory Group By, Stream Lookup,
+ * ...) in this JVM.<br>
+ * <br>
+ * The budget is a percentage of the maximum heap, see {@link Const#KETTLE_MEMORY_BUDGET_PERCENTAGE}. Every step
+ * registers a {@link MemoryReservation} and reserves the estimated size of the rows it keeps before it keeps them (see
+ * {@link RowSizeEstimator}). As long as the budget isn't used up, any reservation is granted. Once it is, every
+ * registered consumer is still guaranteed an equal share of the budget: consumers holding more than their share are
+ * asked to give memory back (spill to disk) and are refused more.<br>
+ * <br>
+ * Unlike polling the free heap percentage this doesn't depend on garbage collector timing and it takes all the
+ * consumers in the JVM into account, so steps spill deterministically before the heap runs out.
+ */
+public class MemoryBudgetManager {
+  public static final int DEFAULT_BUDGET_PERCENTAGE = 60;
+
+  private static MemoryBudgetManager manager = null;
+
+  private long budget;
+  private long reservedBytes;
+  private Map<String, MemoryReservation> reservations;
+
+  MemoryBudgetManager( long budget ) {
+    this.budget = budget;
+    this.reservations = new LinkedHashMap<String, MemoryReservation>();
+  }
+
+  public static final synchronized MemoryBudgetManager getInstance() {
+    if ( manager != null ) {
+      return manager;
+    }
+    int percentage =
+      Const.toInt( System.getProperty( Const.KETTLE_MEMORY_BUDGET_PERCENTAGE ), DEFAULT_BUDGET_PERCENTAGE );
+    if ( percentage <= 0 || percentage > 100 ) {
+      percentage = DEFAULT_BUDGET_PERCENTAGE;
+    }
+    manager = new MemoryBudgetManager( Runtime.getRuntime().maxMemory() / 100 * percentage );
+    return manager;
+  }
+
+  /**
+   * Register a new memory consumer. If a consumer with the same ID is still registered, its reservation is released
+   * and replaced.
+   *
+   * @param ownerId
+   *          the unique ID of the consumer, usually the log channel ID of the step
+   * @param description
+   *          the description of the consumer as it is reported, for example the step name and copy
+   * @return the reservation to reserve and release memory with
+   */
+  public synchronized MemoryReservation register( String ownerId, String description ) {
+    MemoryReservation previous = reservations.remove( ownerId );
+    if ( previous != null ) {
+      reservedBytes -= previous.getReservedBytes();
+    }
+    MemoryReservation reservation = new MemoryReservation( this, ownerId, description );
+    reservations.put( ownerId, reservation );
+    return reservation;
+  }
+
+  synchronized void unregister( MemoryReservation reservation ) {
+    if ( reservations.get( reservation.getOwnerId() ) == reservation ) {
+      reservations.remove( reservation.getOwnerId() );
+      reservedBytes -= reservation.getReservedBytes();
+    }
+  }
+
+  synchronized boolean reserve( MemoryReservation reservation, long bytes ) {
+    long reserved = reservation.getReservedBytes();
+    if ( reservedBytes + bytes > budget && reserved + bytes > getFairShare() ) {
+      return false;
+    }
+    reservation.setReservedBytes( reserved + bytes );
+    reservedBytes += bytes;
+    return true;
+  }
+
+  synchronized boolean claim( MemoryReservation reservation, long bytes ) {
+    reservation.setReservedBytes( reservation.getReservedBytes() + bytes );
+    reservedBytes += bytes;
+    return reservedBytes <= budget || reservation.getReservedBytes() <= getFairShare();
+  }
+
+  synchronized void release( MemoryReservation reservation, long bytes ) {
+    long released = Math.min( bytes, reservation.getReservedBytes() );
+    reservation.setReservedBytes( reservation.getReservedBytes() - released );
+    reservedBytes -= released;
+  }
+
+  synchronized boolean isOverQuota( MemoryReservation reservation ) {
+    return reservedBytes > budget && reservation.getReservedBytes() > getFairShare();
+  }
+
+  /**
+   * @return the number of bytes every registered consumer is guaranteed to get
+   */
+  public synchronized long getFairShare() {
+    return budget / Math.max( 1, reservations.size() );
+  }
+
+  /**
+   * @return the total number of bytes handed out by this manager
+   */
+  public synchronized long getBudget() {
+    return budget;
+  }
+
+  /**
+   * @param budget
+   *          the total number of bytes handed out by this manager
+   */
+  public synchronized void setBudget( long budget ) {
+    this.budget = budget;
+  }
+
+  /**
+   * @return the number of bytes reserved by all the consumers
+   */
+  public synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  /**
+   * @param ownerId
+   *          the ID of the consumer
+   * @return the number of bytes reserved by the consumer or 0 if it isn't registered
+   */
+  public synchronized long getReservedBytes( String ownerId ) {
+    MemoryReservation reservation = reservations.get( ownerId );
+    return reservation == null ? 0L : reservation.getReservedBytes();
+  }
+
+  /**
+   * @return a copy of the list of registered reservations
+   */
+  public synchronized List<MemoryReservation> getReservations() {
+    return new ArrayList<MemoryReservation>( reservations.values() );
+  }
+}
@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.memory;
+
+/**
+ * The memory a single consumer has reserved with the {@link MemoryBudgetManager}.
+ */
+public class MemoryReservation {
+  private final MemoryBudgetManager manager;
+  private final String ownerId;
+  private final String description;
+
+  private volatile long reservedBytes;
+
+  MemoryReservation( MemoryBudgetManager manager, String ownerId, String description ) {
+    this.manager = manager;
+    this.ownerId = ownerId;
+    this.description = description;
+  }
+
+  /**
+   * Try to reserve extra memory.
+   *
+   * @param bytes
+   *          the number of bytes to reserve
+   * @return true if the memory was granted, false if the consumer should free memory (spill) first
+   */
+  public boolean reserve( long bytes ) {
+    return manager.reserve( this, bytes );
+  }
+
+  /**
+   * Record memory that is taken regardless of the budget, by a consumer that can't spill to disk. It makes the
+   * consumers that can spill give memory back sooner.
+   *
+   * @param bytes
+   *          the number of bytes taken
+   * @return true if the consumer is still within the budget or its share of it, false if it takes more than its share
+   */
+  public boolean claim( long bytes ) {
+    return manager.claim( this, bytes );
+  }
+
+  /**
+   * @param bytes
+   *          the number of bytes to give back
+   */
+  public void release( long bytes ) {
+    manager.release( this, bytes );
+  }
+
+  /**
+   * Give back all the reserved memory, typically after the rows were written to disk.
+   */
+  public void releaseAll() {
+    manager.release( this, reservedBytes );
+  }
+
+  /**
+   * @return true if the budget is used up and this consumer holds more than its share: it should free memory.
+   */
+  public boolean isOverQuota() {
+    return manager.isOverQuota( this );
+  }
+
+  /**
+   * Release all the memory and unregister from the manager.
+   */
+  public void close() {
+    manager.unregister( this );
+    reservedBytes = 0L;
+  }
+
+  public String getOwnerId() {
+    return ownerId;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  void setReservedBytes( long reservedBytes ) {
+    this.reservedBytes = reservedBytes;
+  }
+}
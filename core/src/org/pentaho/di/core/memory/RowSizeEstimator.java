@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.memory;
+
+import java.math.BigDecimal;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Estimates the number of heap bytes taken by rows, based on the data types of the values. The numbers assume a 64-bit
+ * JVM without compressed object pointers, so they rather over- than underestimate.
+ */
+public class RowSizeEstimator {
+  /** The header of an object */
+  public static final int OBJECT_HEADER = 16;
+
+  /** The header of an array, including the length */
+  public static final int ARRAY_HEADER = 24;
+
+  /** The size of a reference to an object */
+  public static final int REFERENCE = 8;
+
+  /** The overhead of an entry in a hash map, including the object wrapping the key */
+  public static final int HASH_MAP_ENTRY = 64;
+
+  /** The size used for values of which we don't know the length (serializable, no data) */
+  public static final int UNKNOWN_VALUE = 64;
+
+  /**
+   * Estimate the size of a row using the actual lengths of strings and binaries in it.
+   *
+   * @param rowMeta
+   *          the metadata of the row
+   * @param row
+   *          the row data, it can be longer than the metadata
+   * @return the estimated number of bytes
+   */
+  public static long estimateRowSize( RowMetaInterface rowMeta, Object[] row ) {
+    long size = ARRAY_HEADER + (long) REFERENCE * row.length;
+    int nrValues = Math.min( rowMeta.size(), row.length );
+    for ( int i = 0; i < nrValues; i++ ) {
+      size += estimateValueSize( rowMeta.getValueMeta( i ), row[i] );
+    }
+    return size;
+  }
+
+  /**
+   * Estimate the size of a row using the metadata only. Strings and binaries are estimated using their length or 20
+   * characters if no length is specified.
+   *
+   * @param rowMeta
+   *          the metadata of the row
+   * @return the estimated number of bytes
+   */
+  public static long estimateRowSize( RowMetaInterface rowMeta ) {
+    long size = ARRAY_HEADER + (long) REFERENCE * rowMeta.size();
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      int length = valueMeta.getLength() > 0 ? valueMeta.getLength() : 20;
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_STRING:
+          size += stringSize( length );
+          break;
+        case ValueMetaInterface.TYPE_BINARY:
+          size += ARRAY_HEADER + length;
+          break;
+        default:
+          size += fixedValueSize( valueMeta.getType() );
+          break;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Estimate the size of a single value, not counting the reference to it.
+   *
+   * @param valueMeta
+   *          the metadata of the value
+   * @param value
+   *          the value
+   * @return the estimated number of bytes
+   */
+  public static long estimateValueSize( ValueMetaInterface valueMeta, Object value ) {
+    if ( value == null ) {
+      return 0;
+    }
+    // Look at the data itself, it can be lazily converted (byte[]) or indexed
+    //
+    if ( value instanceof String ) {
+      return stringSize( ( (String) value ).length() );
+    }
+    if ( value instanceof byte[] ) {
+      return ARRAY_HEADER + ( (byte[]) value ).length;
+    }
+    if ( value instanceof BigDecimal ) {
+      // BigDecimal with its BigInteger and magnitude array
+      return 2 * OBJECT_HEADER + 32 + ARRAY_HEADER + ( ( (BigDecimal) value ).precision() / 9 + 1 ) * 4;
+    }
+    if ( valueMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_INDEXED ) {
+      return OBJECT_HEADER + 8; // the Integer index, the values themselves are shared
+    }
+    return fixedValueSize( valueMeta.getType() );
+  }
+
+  private static long stringSize( int length ) {
+    // String object with its hash, offset, count and the char array
+    return OBJECT_HEADER + 16 + ARRAY_HEADER + 2L * length;
+  }
+
+  private static long fixedValueSize( int type ) {
+    switch ( type ) {
+      case ValueMetaInterface.TYPE_NUMBER:
+      case ValueMetaInterface.TYPE_INTEGER:
+        return OBJECT_HEADER + 8;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return 0; // Boolean.TRUE and Boolean.FALSE are shared
+      case ValueMetaInterface.TYPE_DATE:
+        return OBJECT_HEADER + 16;
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return OBJECT_HEADER + 24;
+      case ValueMetaInterface.TYPE_INET:
+        return OBJECT_HEADER + 32;
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return 2 * OBJECT_HEADER + 32 + ARRAY_HEADER + 8;
+      default:
+        return UNKNOWN_VALUE;
+    }
+  }
+}
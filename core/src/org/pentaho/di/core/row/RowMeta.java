@@ -34,6 +34,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.pentaho.di.compatibility.Row;
 import org.pentaho.di.compatibility.Value;
@@ -54,8 +57,16 @@ public class RowMeta implements RowMetaInterface {
   private List<ValueMetaInterface> valueMetaList;
   private List<Integer> valuesThatNeedRealClone;
 
+  /**
+   * Maps the lower case value names to their position in valueMetaList. Entries are verified against the list on every
+   * lookup since value metadata can be renamed or the list can be modified directly. A name that is not in the index
+   * is searched for in the list and added to the index when found.
+   */
+  private Map<String, Integer> valueIndexMap;
+
   public RowMeta() {
     valueMetaList = new ArrayList<ValueMetaInterface>();
+    valueIndexMap = new ConcurrentHashMap<String, Integer>();
   }
 
   @Override
@@ -123,6 +134,7 @@ public class RowMeta implements RowMetaInterface {
   @Override
   public void setValueMetaList( List<ValueMetaInterface> valueMetaList ) {
     this.valueMetaList = valueMetaList;
+    valueIndexMap.clear();
   }
 
   /**
@@ -155,11 +167,9 @@ public class RowMeta implements RowMetaInterface {
   @Override
   public void addValueMeta( ValueMetaInterface meta ) {
     if ( meta != null ) {
-      if ( !exists( meta ) ) {
-        valueMetaList.add( meta );
-      } else {
-        valueMetaList.add( renameValueMetaIfInRow( meta ) );
-      }
+      ValueMetaInterface added = exists( meta ) ? renameValueMetaIfInRow( meta ) : meta;
+      valueMetaList.add( added );
+      indexValueName( added.getName(), valueMetaList.size() - 1 );
     }
   }
 
@@ -180,6 +190,7 @@ public class RowMeta implements RowMetaInterface {
       } else {
         valueMetaList.add( index, renameValueMetaIfInRow( meta ) );
       }
+      valueIndexMap.clear(); // the positions after the index shifted
     }
   }
 
@@ -210,7 +221,11 @@ public class RowMeta implements RowMetaInterface {
   @Override
   public void setValueMeta( int index, ValueMetaInterface valueMeta ) {
     if ( valueMeta != null ) {
-      valueMetaList.set( index, valueMeta );
+      ValueMetaInterface old = valueMetaList.set( index, valueMeta );
+      if ( old != null ) {
+        reindexValueName( old.getName() );
+      }
+      reindexValueName( valueMeta.getName() );
     }
   }
 
@@ -443,8 +458,22 @@ public class RowMeta implements RowMetaInterface {
    */
   @Override
   public int indexOfValue( String valueName ) {
+    if ( valueName == null ) {
+      return -1;
+    }
+    String key = indexKey( valueName );
+    Integer index = valueIndexMap.get( key );
+    if ( index != null ) {
+      int i = index.intValue();
+      if ( i < valueMetaList.size() && valueName.equalsIgnoreCase( valueMetaList.get( i ).getName() ) ) {
+        return i;
+      }
+      valueIndexMap.remove( key ); // stale entry
+    }
+
     for ( int i = 0; i < valueMetaList.size(); i++ ) {
       if ( getValueMeta( i ).getName().equalsIgnoreCase( valueName ) ) {
+        valueIndexMap.put( key, i );
         return i;
       }
     }
@@ -460,13 +489,45 @@ public class RowMeta implements RowMetaInterface {
    */
   @Override
   public ValueMetaInterface searchValueMeta( String valueName ) {
-    for ( int i = 0; i < valueMetaList.size(); i++ ) {
-      ValueMetaInterface valueMeta = getValueMeta( i );
-      if ( valueMeta.getName().equalsIgnoreCase( valueName ) ) {
-        return valueMeta;
+    int index = indexOfValue( valueName );
+    return index < 0 ? null : valueMetaList.get( index );
+  }
+
+  /**
+   * Adds a name to the index unless the name is already indexed: when names occur twice, the first one wins.
+   */
+  private void indexValueName( String valueName, int index ) {
+    if ( valueName != null ) {
+      String key = indexKey( valueName );
+      if ( !valueIndexMap.containsKey( key ) ) {
+        valueIndexMap.put( key, index );
       }
     }
-    return null;
+  }
+
+  /**
+   * Points the index entry of a name at the first value with that name again, or removes it if the name no longer
+   * occurs. Used after a value was replaced: the replaced value can have been the first of a name that occurs twice and
+   * the new value can come before an indexed one with the same name.
+   */
+  private void reindexValueName( String valueName ) {
+    if ( valueName != null ) {
+      String key = indexKey( valueName );
+      valueIndexMap.remove( key );
+      for ( int i = 0; i < valueMetaList.size(); i++ ) {
+        if ( valueName.equalsIgnoreCase( valueMetaList.get( i ).getName() ) ) {
+          valueIndexMap.put( key, i );
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the key of a name in the index: lower case without depending on the default locale of the JVM
+   */
+  private static String indexKey( String valueName ) {
+    return valueName.toLowerCase( Locale.ROOT );
   }
 
   @Override
@@ -638,6 +699,7 @@ public class RowMeta implements RowMetaInterface {
   @Override
   public void clear() {
     valueMetaList.clear();
+    valueIndexMap.clear();
   }
 
   @Override
@@ -647,12 +709,13 @@ public class RowMeta implements RowMetaInterface {
       throw new KettleValueException( "Unable to find value metadata with name '"
         + valueName + "', so I can't delete it." );
     }
-    valueMetaList.remove( index );
+    removeValueMeta( index );
   }
 
   @Override
   public void removeValueMeta( int index ) {
     valueMetaList.remove( index );
+    valueIndexMap.clear(); // the positions after the index shifted
   }
 
   /**
@@ -0,0 +1,97 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row;
+
+/**
+ * Measures the cost of looking up value metadata by name for rows of increasing width.
+ */
+public class RowMetaSpeedTest {
+  private static final int[] ROW_WIDTHS = new int[] { 10, 100, 300, 1000, };
+
+  private RowMetaInterface[] rowMetas;
+  private String[][] names;
+
+  public RowMetaSpeedTest() {
+    rowMetas = new RowMetaInterface[ROW_WIDTHS.length];
+    names = new String[ROW_WIDTHS.length][];
+
+    for ( int w = 0; w < ROW_WIDTHS.length; w++ ) {
+      rowMetas[w] = new RowMeta();
+      names[w] = new String[ROW_WIDTHS[w]];
+      for ( int i = 0; i < ROW_WIDTHS[w]; i++ ) {
+        names[w][i] = "Field" + ( i + 1 );
+        rowMetas[w].addValueMeta( new ValueMeta( names[w][i], ValueMetaInterface.TYPE_STRING, 20, 0 ) );
+      }
+    }
+  }
+
+  /**
+   * Look up every field of the row by name, using upper case to exercise the case insensitive search.
+   */
+  public long runTestIndexOfValue( int w, int iterations ) {
+    String[] upperNames = new String[names[w].length];
+    for ( int i = 0; i < upperNames.length; i++ ) {
+      upperNames[i] = names[w][i].toUpperCase();
+    }
+
+    long startTime = System.currentTimeMillis();
+
+    for ( int i = 0; i < iterations; i++ ) {
+      rowMetas[w].indexOfValue( upperNames[i % upperNames.length] );
+    }
+
+    long stopTime = System.currentTimeMillis();
+
+    return stopTime - startTime;
+  }
+
+  public long runTestSearchValueMeta( int w, int iterations ) {
+    long startTime = System.currentTimeMillis();
+
+    for ( int i = 0; i < iterations; i++ ) {
+      rowMetas[w].searchValueMeta( names[w][i % names[w].length] );
+    }
+
+    long stopTime = System.currentTimeMillis();
+
+    return stopTime - startTime;
+  }
+
+  public static final int ITERATIONS = 10000000;
+
+  public static void main( String[] args ) {
+    RowMetaSpeedTest speedTest = new RowMetaSpeedTest();
+
+    for ( int w = 0; w < ROW_WIDTHS.length; w++ ) {
+      long timeIndexOf = speedTest.runTestIndexOfValue( w, ITERATIONS );
+      System.out.println( "Time to run 'indexOfValue"
+        + ROW_WIDTHS[w] + "' test " + ITERATIONS + " times : " + timeIndexOf + " ms ("
+        + ( 1000L * ITERATIONS / Math.max( 1L, timeIndexOf ) ) + " lookups/s)" );
+      long timeSearch = speedTest.runTestSearchValueMeta( w, ITERATIONS );
+      System.out.println( "Time to run 'searchValueMeta"
+        + ROW_WIDTHS[w] + "' test " + ITERATIONS + " times : " + timeSearch + " ms ("
+        + ( 1000L * ITERATIONS / Math.max( 1L, timeSearch ) ) + " lookups/s)" );
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.value;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * A hand-written formatter for date masks with fixed width numeric fields only, like <code>yyyy-MM-dd</code> or
+ * <code>yyyy/MM/dd HH:mm:ss.SSS</code>. It gives the same results as the {@link SimpleDateFormat} it is compiled from,
+ * without parsing the pattern over and over again.<br>
+ * <br>
+ * Instances are immutable, the calendar to use is passed in by the caller. When a value can't be handled (a year
+ * before 1 or after 9999, a string that doesn't have the exact shape of the mask, an invalid date that isn't lenient)
+ * null is returned and the caller falls back to the {@link SimpleDateFormat}.
+ */
+final class CompiledDateFormat {
+  private static final int LITERAL = -1;
+
+  /** The calendar field of every token or LITERAL */
+  private final int[] fields;
+
+  /** The number of digits of every field or the literal character */
+  private final int[] widths;
+
+  private final int length;
+
+  private CompiledDateFormat( int[] fields, int[] widths, int length ) {
+    this.fields = fields;
+    this.widths = widths;
+    this.length = length;
+  }
+
+  /**
+   * @param dateFormat
+   *          the date format to compile
+   * @return the compiled format or null if the pattern, the calendar or the digits are not supported
+   */
+  static CompiledDateFormat compile( SimpleDateFormat dateFormat ) {
+    if ( dateFormat.getClass() != SimpleDateFormat.class
+      || dateFormat.getCalendar().getClass() != GregorianCalendar.class ) {
+      return null;
+    }
+    NumberFormat numberFormat = dateFormat.getNumberFormat();
+    if ( !( numberFormat instanceof DecimalFormat )
+      || ( (DecimalFormat) numberFormat ).getDecimalFormatSymbols().getZeroDigit() != '0' ) {
+      return null;
+    }
+
+    String pattern = dateFormat.toPattern();
+    int[] fields = new int[pattern.length()];
+    int[] widths = new int[pattern.length()];
+    int nrTokens = 0;
+    int length = 0;
+    boolean hasField = false;
+    int i = 0;
+    while ( i < pattern.length() ) {
+      char c = pattern.charAt( i );
+      if ( c == '\'' ) {
+        return null;
+      }
+      if ( ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) ) {
+        int count = 1;
+        while ( i + count < pattern.length() && pattern.charAt( i + count ) == c ) {
+          count++;
+        }
+        int field = getField( c, count );
+        if ( field == LITERAL ) {
+          return null;
+        }
+        fields[nrTokens] = field;
+        widths[nrTokens] = count;
+        hasField = true;
+        length += count;
+        i += count;
+      } else {
+        fields[nrTokens] = LITERAL;
+        widths[nrTokens] = c;
+        length++;
+        i++;
+      }
+      nrTokens++;
+    }
+    if ( !hasField ) {
+      return null;
+    }
+
+    int[] compiledFields = new int[nrTokens];
+    int[] compiledWidths = new int[nrTokens];
+    System.arraycopy( fields, 0, compiledFields, 0, nrTokens );
+    System.arraycopy( widths, 0, compiledWidths, 0, nrTokens );
+    return new CompiledDateFormat( compiledFields, compiledWidths, length );
+  }
+
+  private static int getField( char letter, int count ) {
+    switch ( letter ) {
+      case 'y':
+        return count == 4 ? Calendar.YEAR : LITERAL;
+      case 'M':
+        return count == 2 ? Calendar.MONTH : LITERAL;
+      case 'd':
+        return count == 2 ? Calendar.DAY_OF_MONTH : LITERAL;
+      case 'H':
+        return count == 2 ? Calendar.HOUR_OF_DAY : LITERAL;
+      case 'm':
+        return count == 2 ? Calendar.MINUTE : LITERAL;
+      case 's':
+        return count == 2 ? Calendar.SECOND : LITERAL;
+      case 'S':
+        return count == 3 ? Calendar.MILLISECOND : LITERAL;
+      default:
+        return LITERAL;
+    }
+  }
+
+  /**
+   * @param date
+   *          the date to format
+   * @param calendar
+   *          a calendar with the time zone and settings of the date format, confined to the calling thread
+   * @return the formatted date or null if the year is out of the supported range
+   */
+  String format( Date date, Calendar calendar ) {
+    calendar.setTime( date );
+    if ( calendar.get( Calendar.ERA ) != GregorianCalendar.AD ) {
+      return null;
+    }
+    char[] buffer = new char[length];
+    int pos = 0;
+    for ( int t = 0; t < fields.length; t++ ) {
+      int field = fields[t];
+      if ( field == LITERAL ) {
+        buffer[pos++] = (char) widths[t];
+        continue;
+      }
+      int value = calendar.get( field );
+      if ( field == Calendar.MONTH ) {
+        value++;
+      } else if ( field == Calendar.YEAR && value > 9999 ) {
+        return null;
+      }
+      for ( int d = widths[t] - 1; d >= 0; d-- ) {
+        buffer[pos + d] = (char) ( '0' + value % 10 );
+        value /= 10;
+      }
+      pos += widths[t];
+    }
+    return new String( buffer );
+  }
+
+  /**
+   * @param string
+   *          the string to parse
+   * @param calendar
+   *          a calendar with the time zone, leniency and settings of the date format, confined to the calling thread
+   * @return the parsed date or null if the string doesn't have the exact shape of the mask or if it is not a valid date
+   */
+  Date parse( String string, Calendar calendar ) {
+    if ( string.length() != length ) {
+      return null;
+    }
+    calendar.clear();
+    int pos = 0;
+    for ( int t = 0; t < fields.length; t++ ) {
+      int field = fields[t];
+      if ( field == LITERAL ) {
+        if ( string.charAt( pos++ ) != widths[t] ) {
+          return null;
+        }
+        continue;
+      }
+      int value = 0;
+      for ( int d = 0; d < widths[t]; d++ ) {
+        char c = string.charAt( pos++ );
+        if ( c < '0' || c > '9' ) {
+          return null;
+        }
+        value = value * 10 + ( c - '0' );
+      }
+      if ( field == Calendar.MONTH ) {
+        value--;
+      } else if ( field == Calendar.YEAR && value == 0 ) {
+        return null;
+      }
+      calendar.set( field, value );
+    }
+    try {
+      return calendar.getTime();
+    } catch ( IllegalArgumentException e ) {
+      return null; // not lenient and not a valid date
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.value;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * A hand-written formatter for plain integer patterns like <code>#</code>, <code>0000</code> or the default
+ * <code> ###############0;-###############0</code>: no grouping, no fraction, no exponent and no other prefix than an
+ * optional space. It gives the same results as the {@link DecimalFormat} it is compiled from using
+ * {@link Long#toString()} and {@link Long#parseLong(String)}.<br>
+ * <br>
+ * Instances are immutable. Parsing only handles strings consisting of the prefix and at most 18 digits, null is
+ * returned for anything else and the caller falls back to the {@link DecimalFormat}.
+ */
+final class CompiledIntegerFormat {
+  private static final int MAX_PARSE_DIGITS = 18;
+
+  private final String positivePrefix;
+  private final int minimumDigits;
+  private final boolean formatSupported;
+
+  private CompiledIntegerFormat( String positivePrefix, int minimumDigits, boolean formatSupported ) {
+    this.positivePrefix = positivePrefix;
+    this.minimumDigits = minimumDigits;
+    this.formatSupported = formatSupported;
+  }
+
+  /**
+   * @param decimalFormat
+   *          the decimal format to compile
+   * @return the compiled format or null if the pattern or the symbols are not supported
+   */
+  static CompiledIntegerFormat compile( DecimalFormat decimalFormat ) {
+    DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
+    String positivePrefix = decimalFormat.getPositivePrefix();
+    if ( symbols.getZeroDigit() != '0' || symbols.getMinusSign() != '-'
+      || !( "".equals( positivePrefix ) || " ".equals( positivePrefix ) )
+      || !"-".equals( decimalFormat.getNegativePrefix() ) || decimalFormat.getPositiveSuffix().length() > 0
+      || decimalFormat.getNegativeSuffix().length() > 0 || decimalFormat.getMultiplier() != 1
+      || decimalFormat.isParseIntegerOnly() || decimalFormat.isParseBigDecimal()
+      || decimalFormat.toPattern().indexOf( 'E' ) >= 0 ) {
+      return null;
+    }
+
+    // Parsing a string of digits doesn't depend on the number of digits or the grouping, formatting does
+    //
+    boolean formatSupported =
+      !decimalFormat.isGroupingUsed() && decimalFormat.getMaximumFractionDigits() == 0
+        && !decimalFormat.isDecimalSeparatorAlwaysShown() && decimalFormat.getMaximumIntegerDigits() >= 19
+        && decimalFormat.getMinimumIntegerDigits() <= 64;
+    return new CompiledIntegerFormat( positivePrefix, decimalFormat.getMinimumIntegerDigits(), formatSupported );
+  }
+
+  /**
+   * @param value
+   *          the integer to format
+   * @return the formatted integer or null if the pattern is only supported for parsing
+   */
+  String format( long value ) {
+    if ( !formatSupported ) {
+      return null;
+    }
+    String digits = Long.toString( value );
+    int start = value < 0 ? 1 : 0;
+    int nrDigits = digits.length() - start;
+    if ( nrDigits >= minimumDigits && ( value < 0 || positivePrefix.length() == 0 ) ) {
+      return digits;
+    }
+    StringBuilder result = new StringBuilder( minimumDigits + 2 );
+    result.append( value < 0 ? "-" : positivePrefix );
+    for ( int i = nrDigits; i < minimumDigits; i++ ) {
+      result.append( '0' );
+    }
+    result.append( digits, start, digits.length() );
+    return result.toString();
+  }
+
+  /**
+   * @param string
+   *          the string to parse
+   * @return the parsed integer or null if the string is not a prefix followed by digits, or if it is negative zero
+   */
+  Long parse( String string ) {
+    boolean negative = string.length() > 0 && string.charAt( 0 ) == '-';
+    int start = negative ? 1 : positivePrefix.length();
+    if ( !negative && !string.startsWith( positivePrefix ) ) {
+      return null;
+    }
+    int nrDigits = string.length() - start;
+    if ( nrDigits < 1 || nrDigits > MAX_PARSE_DIGITS ) {
+      return null;
+    }
+    long value = 0L;
+    for ( int i = start; i < string.length(); i++ ) {
+      char c = string.charAt( i );
+      if ( c < '0' || c > '9' ) {
+        return null;
+      }
+      value = value * 10 + ( c - '0' );
+    }
+    if ( negative ) {
+      if ( value == 0L ) {
+        return null; // parsed as -0.0 by the decimal format
+      }
+      value = -value;
+    }
+    return Long.valueOf( value );
+  }
+}
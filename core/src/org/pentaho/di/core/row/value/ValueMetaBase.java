@@ -116,11 +116,14 @@ public class ValueMetaBase implements ValueMetaInterface {
   protected boolean lenientStringToNumber;
   protected boolean ignoreTimezone;
 
-  protected SimpleDateFormat dateFormat;
-  protected boolean dateFormatChanged;
+  /**
+   * Incremented when a setting changes that the date or decimal format depends on: the formats of all the threads are
+   * rebuilt.
+   */
+  protected volatile int formatVersion;
 
-  protected DecimalFormat decimalFormat;
-  protected boolean decimalFormatChanged;
+  /** The date and decimal formats of every thread converting values with this metadata */
+  private volatile ThreadLocal<ValueMetaFormatters> formatters;
 
   protected ValueMetaInterface storageMetadata;
   protected boolean identicalFormat;
@@ -269,8 +272,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   public ValueMetaBase clone() {
     try {
       ValueMetaBase valueMeta = (ValueMetaBase) super.clone();
-      valueMeta.dateFormat = null;
-      valueMeta.decimalFormat = null;
+      valueMeta.formatters = null;
       if ( dateFormatLocale != null ) {
         valueMeta.dateFormatLocale = (Locale) dateFormatLocale.clone();
       }
@@ -480,8 +482,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setConversionMask( String conversionMask ) {
     this.conversionMask = conversionMask;
-    dateFormatChanged = true;
-    decimalFormatChanged = true;
+    formatVersion++;
     compareStorageAndActualFormat();
   }
 
@@ -519,7 +520,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setDecimalSymbol( String decimalSymbol ) {
     this.decimalSymbol = decimalSymbol;
-    decimalFormatChanged = true;
+    formatVersion++;
     compareStorageAndActualFormat();
   }
 
@@ -538,7 +539,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setGroupingSymbol( String groupingSymbol ) {
     this.groupingSymbol = groupingSymbol;
-    decimalFormatChanged = true;
+    formatVersion++;
     compareStorageAndActualFormat();
   }
 
@@ -557,7 +558,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setCurrencySymbol( String currencySymbol ) {
     this.currencySymbol = currencySymbol;
-    decimalFormatChanged = true;
+    formatVersion++;
   }
 
   /**
@@ -643,7 +644,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setDateFormatLenient( boolean dateFormatLenient ) {
     this.dateFormatLenient = dateFormatLenient;
-    dateFormatChanged = true;
+    formatVersion++;
   }
 
   /**
@@ -661,29 +662,40 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setDateFormatLocale( Locale dateFormatLocale ) {
     this.dateFormatLocale = dateFormatLocale;
-    dateFormatChanged = true;
+    formatVersion++;
   }
 
   // DATE + STRING
 
-  protected synchronized String convertDateToString( Date date ) {
+  protected String convertDateToString( Date date ) {
     if ( date == null ) {
       return null;
     }
 
-    return getDateFormat().format( date );
+    ValueMetaFormatters threadFormatters = getDateFormatters();
+    if ( threadFormatters == null ) {
+      return getDateFormat().format( date );
+    }
+    return threadFormatters.formatDate( date );
   }
 
-  protected static SimpleDateFormat compatibleDateFormat = new SimpleDateFormat( "yyyy/MM/dd HH:mm:ss.SSS" );
+  private static final ThreadLocal<ValueMetaFormatters> compatibleFormatters = new ThreadLocal<ValueMetaFormatters>() {
+    @Override
+    protected ValueMetaFormatters initialValue() {
+      ValueMetaFormatters compatible = new ValueMetaFormatters();
+      compatible.setDateFormat( new SimpleDateFormat( "yyyy/MM/dd HH:mm:ss.SSS" ), 0 );
+      return compatible;
+    }
+  };
 
-  protected synchronized String convertDateToCompatibleString( Date date ) {
+  protected String convertDateToCompatibleString( Date date ) {
     if ( date == null ) {
       return null;
     }
-    return compatibleDateFormat.format( date );
+    return compatibleFormatters.get().formatDate( date );
   }
 
-  protected synchronized Date convertStringToDate( String string ) throws KettleValueException {
+  protected Date convertStringToDate( String string ) throws KettleValueException {
     string = Const.trimToType( string, getTrimType() ); // see if trimming needs
                                                         // to be performed before
                                                         // conversion
@@ -692,25 +704,57 @@ public class ValueMetaBase implements ValueMetaInterface {
       return null;
     }
 
+    ValueMetaFormatters threadFormatters = getDateFormatters();
+    SimpleDateFormat dateFormat = threadFormatters == null ? getDateFormat() : threadFormatters.dateFormat;
     try {
+      // The compiled mask only accepts digits and separators: no ISO 8601 time zones to take care of
+      //
+      if ( threadFormatters != null && !endsWithTimeZoneOffset( string ) ) {
+        Date date = threadFormatters.parseDateFast( string );
+        if ( date != null ) {
+          return date;
+        }
+      }
+
       // PDI 5595 need to add ISO 8601 support for java 1.6
-      String df = ( getDateFormat() != null ) ? getDateFormat().toPattern() : null;
-      if ( df != null ) {
-        if ( getQuotesBeforeSymbol( df, "Z" ) % 2 == 0 ) {
-          if ( string.contains( "Z" ) ) {
-            string = string.replace( "Z", "UTC" );
-          } else if ( string.matches( ".*[\\+|\\-]\\d\\d:\\d\\d" ) ) {
-            int lPos = string.lastIndexOf( ":" );
-            string = string.substring( 0, lPos ) + string.substring( lPos + 1 );
-          }
+      boolean acceptsTimeZones;
+      if ( threadFormatters != null ) {
+        acceptsTimeZones = threadFormatters.dateFormatAcceptsTimeZones;
+      } else {
+        acceptsTimeZones = dateFormat != null && getQuotesBeforeSymbol( dateFormat.toPattern(), "Z" ) % 2 == 0;
+      }
+      if ( acceptsTimeZones ) {
+        if ( string.contains( "Z" ) ) {
+          string = string.replace( "Z", "UTC" );
+        } else if ( endsWithTimeZoneOffset( string ) ) {
+          int lPos = string.lastIndexOf( ":" );
+          string = string.substring( 0, lPos ) + string.substring( lPos + 1 );
         }
       }
-      return getDateFormat().parse( string );
+      return dateFormat.parse( string );
     } catch ( ParseException e ) {
-      String dateFormat = ( getDateFormat() != null ) ? getDateFormat().toPattern() : "null";
+      String dateFormatPattern = ( dateFormat != null ) ? dateFormat.toPattern() : "null";
       throw new KettleValueException( toString() + " : couldn't convert string [" + string
-          + "] to a date using format [" + dateFormat + "] on offset location " + e.getErrorOffset(), e );
+          + "] to a date using format [" + dateFormatPattern + "] on offset location " + e.getErrorOffset(), e );
+    }
+  }
+
+  /**
+   * Same as matching <code>.*[\+|\-]\d\d:\d\d</code> without the regular expression.
+   */
+  private static boolean endsWithTimeZoneOffset( String string ) {
+    int len = string.length();
+    if ( len < 6 ) {
+      return false;
     }
+    char sign = string.charAt( len - 6 );
+    return ( sign == '+' || sign == '|' || sign == '-' ) && isDigit( string.charAt( len - 5 ) )
+      && isDigit( string.charAt( len - 4 ) ) && string.charAt( len - 3 ) == ':'
+      && isDigit( string.charAt( len - 2 ) ) && isDigit( string.charAt( len - 1 ) );
+  }
+
+  private static boolean isDigit( char c ) {
+    return c >= '0' && c <= '9';
   }
 
   // DATE + NUMBER
@@ -743,7 +787,7 @@ public class ValueMetaBase implements ValueMetaInterface {
     return new Date( number.longValue() );
   }
 
-  protected synchronized String convertNumberToString( Double number ) throws KettleValueException {
+  protected String convertNumberToString( Double number ) throws KettleValueException {
     if ( number == null ) {
       if ( !outputPaddingEnabled || length < 1 ) {
         return null;
@@ -768,14 +812,14 @@ public class ValueMetaBase implements ValueMetaInterface {
     }
   }
 
-  protected synchronized String convertNumberToCompatibleString( Double number ) throws KettleValueException {
+  protected String convertNumberToCompatibleString( Double number ) throws KettleValueException {
     if ( number == null ) {
       return null;
     }
     return Double.toString( number );
   }
 
-  protected synchronized Double convertStringToNumber( String string ) throws KettleValueException {
+  protected Double convertStringToNumber( String string ) throws KettleValueException {
     string = Const.trimToType( string, getTrimType() ); // see if trimming needs
                                                         // to be performed before
                                                         // conversion
@@ -807,7 +851,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   }
 
   @Override
-  public synchronized SimpleDateFormat getDateFormat() {
+  public SimpleDateFormat getDateFormat() {
     // If we have a Date that is represented as a String
     // In that case we can set the format of the original Date on the String
     // value metadata in the form of a conversion metadata object.
@@ -820,47 +864,70 @@ public class ValueMetaBase implements ValueMetaInterface {
       return conversionMetadata.getDateFormat();
     }
 
-    if ( dateFormat == null || dateFormatChanged ) {
-      // This may not become static as the class is not thread-safe!
-      dateFormat = new SimpleDateFormat();
-
-      String mask;
-      if ( Const.isEmpty( conversionMask ) ) {
-        mask = DEFAULT_DATE_FORMAT_MASK;
-      } else {
-        mask = conversionMask;
-      }
+    return getDateFormatters().dateFormat;
+  }
 
-      // Do we have a locale?
-      //
-      if ( dateFormatLocale == null || dateFormatLocale.equals( Locale.getDefault() ) ) {
-        dateFormat = new SimpleDateFormat( mask );
-      } else {
-        dateFormat = new SimpleDateFormat( mask, dateFormatLocale );
-      }
+  /**
+   * @return the formatters of the calling thread holding an up to date date format or null if the date format is the
+   *         one of the conversion metadata
+   */
+  ValueMetaFormatters getDateFormatters() {
+    if ( conversionMetadata != null ) {
+      return null;
+    }
+    ValueMetaFormatters threadFormatters = getFormatters();
+    int version = formatVersion;
+    if ( threadFormatters.dateFormat == null || threadFormatters.dateFormatVersion != version ) {
+      threadFormatters.setDateFormat( createDateFormat(), version );
+      threadFormatters.dateFormatAcceptsTimeZones =
+        getQuotesBeforeSymbol( threadFormatters.dateFormat.toPattern(), "Z" ) % 2 == 0;
+    }
+    return threadFormatters;
+  }
 
-      // Do we have a time zone?
-      //
-      if ( dateFormatTimeZone != null ) {
-        dateFormat.setTimeZone( dateFormatTimeZone );
-      }
+  /**
+   * Create a new date format for the current settings. The date format is not thread-safe, it is only used by the
+   * thread that asked for it.
+   *
+   * @return a new date format
+   */
+  protected SimpleDateFormat createDateFormat() {
+    SimpleDateFormat dateFormat;
+    String mask;
+    if ( Const.isEmpty( conversionMask ) ) {
+      mask = DEFAULT_DATE_FORMAT_MASK;
+    } else {
+      mask = conversionMask;
+    }
 
-      // Set the conversion leniency as well
-      //
-      dateFormat.setLenient( dateFormatLenient );
+    // Do we have a locale?
+    //
+    if ( dateFormatLocale == null || dateFormatLocale.equals( Locale.getDefault() ) ) {
+      dateFormat = new SimpleDateFormat( mask );
+    } else {
+      dateFormat = new SimpleDateFormat( mask, dateFormatLocale );
+    }
 
-      dateFormatChanged = false;
+    // Do we have a time zone?
+    //
+    if ( dateFormatTimeZone != null ) {
+      dateFormat.setTimeZone( dateFormatTimeZone );
     }
+
+    // Set the conversion leniency as well
+    //
+    dateFormat.setLenient( dateFormatLenient );
+
     return dateFormat;
   }
 
   @Override
-  public synchronized DecimalFormat getDecimalFormat() {
+  public DecimalFormat getDecimalFormat() {
     return getDecimalFormat( false );
   }
 
   @Override
-  public synchronized DecimalFormat getDecimalFormat( boolean useBigDecimal ) {
+  public DecimalFormat getDecimalFormat( boolean useBigDecimal ) {
     // If we have an Integer that is represented as a String
     // In that case we can set the format of the original Integer on the String
     // value metadata in the form of a conversion metadata object.
@@ -872,111 +939,157 @@ public class ValueMetaBase implements ValueMetaInterface {
       return conversionMetadata.getDecimalFormat( useBigDecimal );
     }
 
+    return getDecimalFormatters( useBigDecimal ).decimalFormat;
+  }
+
+  /**
+   * @param useBigDecimal
+   *          true if the decimal format should parse BigDecimal values in case it needs to be created
+   * @return the formatters of the calling thread holding an up to date decimal format or null if the decimal format is
+   *         the one of the conversion metadata
+   */
+  ValueMetaFormatters getDecimalFormatters( boolean useBigDecimal ) {
+    if ( conversionMetadata != null ) {
+      return null;
+    }
+
     // Calculate the decimal format as few times as possible.
     // That is because creating or changing a DecimalFormat object is very CPU
     // hungry.
     //
-    if ( decimalFormat == null || decimalFormatChanged ) {
-      decimalFormat = (DecimalFormat) NumberFormat.getInstance();
-      decimalFormat.setParseBigDecimal( useBigDecimal );
-      DecimalFormatSymbols decimalFormatSymbols = decimalFormat.getDecimalFormatSymbols();
+    ValueMetaFormatters threadFormatters = getFormatters();
+    int version = formatVersion;
+    if ( threadFormatters.decimalFormat == null || threadFormatters.decimalFormatVersion != version ) {
+      threadFormatters.setDecimalFormat( createDecimalFormat( useBigDecimal ), version );
+    }
+    return threadFormatters;
+  }
 
-      if ( !Const.isEmpty( currencySymbol ) ) {
-        decimalFormatSymbols.setCurrencySymbol( currencySymbol );
-      }
-      if ( !Const.isEmpty( groupingSymbol ) ) {
-        decimalFormatSymbols.setGroupingSeparator( groupingSymbol.charAt( 0 ) );
-      }
-      if ( !Const.isEmpty( decimalSymbol ) ) {
-        decimalFormatSymbols.setDecimalSeparator( decimalSymbol.charAt( 0 ) );
-      }
-      decimalFormat.setDecimalFormatSymbols( decimalFormatSymbols );
+  /**
+   * Create a new decimal format for the current settings. The decimal format is not thread-safe, it is only used by
+   * the thread that asked for it.
+   *
+   * @param useBigDecimal
+   *          true if the decimal format should parse BigDecimal values
+   * @return a new decimal format
+   */
+  protected DecimalFormat createDecimalFormat( boolean useBigDecimal ) {
+    DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+    decimalFormat.setParseBigDecimal( useBigDecimal );
+    DecimalFormatSymbols decimalFormatSymbols = decimalFormat.getDecimalFormatSymbols();
 
-      // Apply the conversion mask if we have one...
-      if ( !Const.isEmpty( conversionMask ) ) {
-        decimalFormat.applyPattern( conversionMask );
-      } else {
-        switch ( type ) {
-          case TYPE_INTEGER:
-            if ( length < 1 ) {
-              decimalFormat.applyPattern( " ###############0;-###############0" ); // Same
-                                                                                   // as
-                                                                                   // before
-                                                                                   // version
-                                                                                   // 3.0
-            } else {
-              StringBuffer integerPattern = new StringBuffer();
+    if ( !Const.isEmpty( currencySymbol ) ) {
+      decimalFormatSymbols.setCurrencySymbol( currencySymbol );
+    }
+    if ( !Const.isEmpty( groupingSymbol ) ) {
+      decimalFormatSymbols.setGroupingSeparator( groupingSymbol.charAt( 0 ) );
+    }
+    if ( !Const.isEmpty( decimalSymbol ) ) {
+      decimalFormatSymbols.setDecimalSeparator( decimalSymbol.charAt( 0 ) );
+    }
+    decimalFormat.setDecimalFormatSymbols( decimalFormatSymbols );
 
-              // First the format for positive integers...
-              //
-              integerPattern.append( " " );
-              for ( int i = 0; i < getLength(); i++ ) {
-                integerPattern.append( '0' ); // all zeroes.
-              }
-              integerPattern.append( ";" );
+    // Apply the conversion mask if we have one...
+    if ( !Const.isEmpty( conversionMask ) ) {
+      decimalFormat.applyPattern( conversionMask );
+    } else {
+      switch ( type ) {
+        case TYPE_INTEGER:
+          if ( length < 1 ) {
+            decimalFormat.applyPattern( " ###############0;-###############0" ); // Same
+                                                                                 // as
+                                                                                 // before
+                                                                                 // version
+                                                                                 // 3.0
+          } else {
+            StringBuffer integerPattern = new StringBuffer();
 
-              // Then the format for the negative numbers...
-              //
-              integerPattern.append( "-" );
-              for ( int i = 0; i < getLength(); i++ ) {
-                integerPattern.append( '0' ); // all zeroes.
-              }
-              decimalFormat.applyPattern( integerPattern.toString() );
+            // First the format for positive integers...
+            //
+            integerPattern.append( " " );
+            for ( int i = 0; i < getLength(); i++ ) {
+              integerPattern.append( '0' ); // all zeroes.
             }
-            break;
-          case TYPE_BIGNUMBER:
-          case TYPE_NUMBER:
-            if ( length < 1 ) {
-              decimalFormat.applyPattern( " ##########0.0########;-#########0.0########" );
-            } else {
-              StringBuffer numberPattern = new StringBuffer();
+            integerPattern.append( ";" );
 
-              // First do the format for positive numbers...
-              //
-              numberPattern.append( ' ' ); // to compensate for minus sign.
-              if ( precision < 0 ) {
-                // Default: two decimals
-                for ( int i = 0; i < length; i++ ) {
-                  numberPattern.append( '0' );
-                }
-                numberPattern.append( ".00" ); // for the .00
-              } else {
-                // Floating point format 00001234,56 --> (12,2)
-                for ( int i = 0; i <= length; i++ ) {
-                  numberPattern.append( '0' ); // all zeroes.
-                }
-                int pos = length - precision + 1;
-                if ( pos >= 0 && pos < numberPattern.length() ) {
-                  numberPattern.setCharAt( length - precision + 1, '.' ); // one
-                                                                          // 'comma'
-                }
-              }
+            // Then the format for the negative numbers...
+            //
+            integerPattern.append( "-" );
+            for ( int i = 0; i < getLength(); i++ ) {
+              integerPattern.append( '0' ); // all zeroes.
+            }
+            decimalFormat.applyPattern( integerPattern.toString() );
+          }
+          break;
+        case TYPE_BIGNUMBER:
+        case TYPE_NUMBER:
+          if ( length < 1 ) {
+            decimalFormat.applyPattern( " ##########0.0########;-#########0.0########" );
+          } else {
+            StringBuffer numberPattern = new StringBuffer();
 
-              // Now do the format for negative numbers...
-              //
-              StringBuffer negativePattern = new StringBuffer( numberPattern );
-              negativePattern.setCharAt( 0, '-' );
+            // First do the format for positive numbers...
+            //
+            numberPattern.append( ' ' ); // to compensate for minus sign.
+            if ( precision < 0 ) {
+              // Default: two decimals
+              for ( int i = 0; i < length; i++ ) {
+                numberPattern.append( '0' );
+              }
+              numberPattern.append( ".00" ); // for the .00
+            } else {
+              // Floating point format 00001234,56 --> (12,2)
+              for ( int i = 0; i <= length; i++ ) {
+                numberPattern.append( '0' ); // all zeroes.
+              }
+              int pos = length - precision + 1;
+              if ( pos >= 0 && pos < numberPattern.length() ) {
+                numberPattern.setCharAt( length - precision + 1, '.' ); // one
+                                                                        // 'comma'
+              }
+            }
 
-              numberPattern.append( ";" );
-              numberPattern.append( negativePattern );
+            // Now do the format for negative numbers...
+            //
+            StringBuffer negativePattern = new StringBuffer( numberPattern );
+            negativePattern.setCharAt( 0, '-' );
 
-              // Apply the pattern...
-              //
-              decimalFormat.applyPattern( numberPattern.toString() );
-            }
-            break;
-          default:
-            break;
-        }
+            numberPattern.append( ";" );
+            numberPattern.append( negativePattern );
 
+            // Apply the pattern...
+            //
+            decimalFormat.applyPattern( numberPattern.toString() );
+          }
+          break;
+        default:
+          break;
       }
 
-      decimalFormatChanged = false;
     }
+
     return decimalFormat;
   }
 
-  protected synchronized String convertIntegerToString( Long integer ) throws KettleValueException {
+  /**
+   * @return the date and decimal formats of the calling thread
+   */
+  private ValueMetaFormatters getFormatters() {
+    ThreadLocal<ValueMetaFormatters> threadLocal = formatters;
+    if ( threadLocal == null ) {
+      // Two threads may create one at the same time: one of them just builds its formats again later
+      threadLocal = new ThreadLocal<ValueMetaFormatters>();
+      formatters = threadLocal;
+    }
+    ValueMetaFormatters threadFormatters = threadLocal.get();
+    if ( threadFormatters == null ) {
+      threadFormatters = new ValueMetaFormatters();
+      threadLocal.set( threadFormatters );
+    }
+    return threadFormatters;
+  }
+
+  protected String convertIntegerToString( Long integer ) throws KettleValueException {
     if ( integer == null ) {
       if ( !outputPaddingEnabled || length < 1 ) {
         return null;
@@ -995,20 +1108,24 @@ public class ValueMetaBase implements ValueMetaInterface {
     }
 
     try {
-      return getDecimalFormat( false ).format( integer );
+      ValueMetaFormatters threadFormatters = getDecimalFormatters( false );
+      if ( threadFormatters == null ) {
+        return getDecimalFormat( false ).format( integer );
+      }
+      return threadFormatters.formatInteger( integer );
     } catch ( Exception e ) {
       throw new KettleValueException( toString() + " : couldn't convert Long to String ", e );
     }
   }
 
-  protected synchronized String convertIntegerToCompatibleString( Long integer ) throws KettleValueException {
+  protected String convertIntegerToCompatibleString( Long integer ) throws KettleValueException {
     if ( integer == null ) {
       return null;
     }
     return Long.toString( integer );
   }
 
-  protected synchronized Long convertStringToInteger( String string ) throws KettleValueException {
+  protected Long convertStringToInteger( String string ) throws KettleValueException {
     string = Const.trimToType( string, getTrimType() ); // see if trimming needs
                                                         // to be performed before
                                                         // conversion
@@ -1018,6 +1135,14 @@ public class ValueMetaBase implements ValueMetaInterface {
     }
 
     try {
+      ValueMetaFormatters threadFormatters = getDecimalFormatters( false );
+      if ( threadFormatters != null ) {
+        Long integer = threadFormatters.parseIntegerFast( string );
+        if ( integer != null ) {
+          return integer;
+        }
+      }
+
       Number number;
       if ( lenientStringToNumber ) {
         number = new Long( getDecimalFormat( false ).parse( string ).longValue() );
@@ -1038,7 +1163,7 @@ public class ValueMetaBase implements ValueMetaInterface {
     }
   }
 
-  protected synchronized String convertBigNumberToString( BigDecimal number ) throws KettleValueException {
+  protected String convertBigNumberToString( BigDecimal number ) throws KettleValueException {
     if ( number == null ) {
       return null;
     }
@@ -1050,7 +1175,7 @@ public class ValueMetaBase implements ValueMetaInterface {
     }
   }
 
-  protected synchronized BigDecimal convertStringToBigNumber( String string ) throws KettleValueException {
+  protected BigDecimal convertStringToBigNumber( String string ) throws KettleValueException {
     string = Const.trimToType( string, getTrimType() ); // see if trimming needs
                                                         // to be performed before
                                                         // conversion
@@ -4333,7 +4458,7 @@ public class ValueMetaBase implements ValueMetaInterface {
   @Override
   public void setDateFormatTimeZone( TimeZone dateFormatTimeZone ) {
     this.dateFormatTimeZone = dateFormatTimeZone;
-    dateFormatChanged = true;
+    formatVersion++;
   }
 
   @Override
@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.value;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Measures the conversion of values between every pair of value types, with a single thread and with several threads
+ * sharing the same value metadata the way step copies do.
+ */
+public class ValueMetaConversionSpeedTest {
+  public static final int ITERATIONS = 1000000;
+  public static final int THREADS = 4;
+
+  private static final int[] TYPES = new int[] {
+    ValueMetaInterface.TYPE_NUMBER, ValueMetaInterface.TYPE_STRING, ValueMetaInterface.TYPE_DATE,
+    ValueMetaInterface.TYPE_BOOLEAN, ValueMetaInterface.TYPE_INTEGER, ValueMetaInterface.TYPE_BIGNUMBER,
+    ValueMetaInterface.TYPE_SERIALIZABLE, ValueMetaInterface.TYPE_BINARY, ValueMetaInterface.TYPE_TIMESTAMP,
+    ValueMetaInterface.TYPE_INET, };
+
+  private ValueMetaInterface[] valueMetas;
+  private Object[] values;
+
+  public ValueMetaConversionSpeedTest() throws Exception {
+    valueMetas = new ValueMetaInterface[TYPES.length];
+    values = new Object[TYPES.length];
+    for ( int i = 0; i < TYPES.length; i++ ) {
+      valueMetas[i] = ValueMetaFactory.createValueMeta( "value" + i, TYPES[i] );
+      values[i] = getSampleValue( TYPES[i] );
+    }
+  }
+
+  private static Object getSampleValue( int type ) throws Exception {
+    switch ( type ) {
+      case ValueMetaInterface.TYPE_NUMBER:
+        return Double.valueOf( 12345.678 );
+      case ValueMetaInterface.TYPE_STRING:
+        return "Some string value";
+      case ValueMetaInterface.TYPE_DATE:
+        return new Date();
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return Boolean.TRUE;
+      case ValueMetaInterface.TYPE_INTEGER:
+        return Long.valueOf( 1234567L );
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return new BigDecimal( "1234567.891" );
+      case ValueMetaInterface.TYPE_SERIALIZABLE:
+        return "serializable";
+      case ValueMetaInterface.TYPE_BINARY:
+        return new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, };
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return new Timestamp( System.currentTimeMillis() );
+      case ValueMetaInterface.TYPE_INET:
+        return InetAddress.getByName( "127.0.0.1" );
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return the value of the source type to convert to the target type: strings are the target value as a string
+   */
+  private Object getSourceValue( int source, int target ) {
+    if ( TYPES[source] == ValueMetaInterface.TYPE_STRING && TYPES[target] != ValueMetaInterface.TYPE_STRING ) {
+      try {
+        return valueMetas[target].getString( values[target] );
+      } catch ( Exception e ) {
+        return values[source];
+      }
+    }
+    return values[source];
+  }
+
+  /**
+   * Convert a value from one type to another.
+   *
+   * @return the elapsed time in ms or -1 if the conversion is not supported
+   */
+  public long runConversionTest( int source, int target, int threads, final int iterations ) throws Exception {
+    final ValueMetaInterface sourceMeta = valueMetas[source];
+    final ValueMetaInterface targetMeta = valueMetas[target];
+    final Object value = getSourceValue( source, target );
+    try {
+      targetMeta.convertData( sourceMeta, value );
+    } catch ( Exception e ) {
+      return -1L;
+    }
+
+    final AtomicLong errors = new AtomicLong();
+    Thread[] workers = new Thread[threads];
+    for ( int t = 0; t < threads; t++ ) {
+      workers[t] = new Thread( new Runnable() {
+        public void run() {
+          try {
+            for ( int i = 0; i < iterations; i++ ) {
+              targetMeta.convertData( sourceMeta, value );
+            }
+          } catch ( Exception e ) {
+            errors.incrementAndGet();
+          }
+        }
+      } );
+    }
+
+    long startTime = System.currentTimeMillis();
+    for ( Thread worker : workers ) {
+      worker.start();
+    }
+    for ( Thread worker : workers ) {
+      worker.join();
+    }
+    long stopTime = System.currentTimeMillis();
+
+    if ( errors.get() > 0 ) {
+      throw new RuntimeException( "Conversion failed in " + errors.get() + " threads" );
+    }
+    return stopTime - startTime;
+  }
+
+  private static void report( String name, int threads, long time ) {
+    long conversions = (long) ITERATIONS * threads;
+    System.out.println( "Time to run '"
+      + name + "' test " + conversions + " times with " + threads + " thread(s) : " + time + " ms ("
+      + ( 1000L * conversions / Math.max( 1L, time ) ) + " conversions/s)" );
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleClientEnvironment.init();
+    ValueMetaConversionSpeedTest speedTest = new ValueMetaConversionSpeedTest();
+
+    for ( int source = 0; source < TYPES.length; source++ ) {
+      for ( int target = 0; target < TYPES.length; target++ ) {
+        String name =
+          ValueMetaFactory.getValueMetaName( TYPES[source] ) + " to "
+            + ValueMetaFactory.getValueMetaName( TYPES[target] );
+
+        // Warm up the JIT compiler before measuring anything
+        //
+        if ( speedTest.runConversionTest( source, target, 1, ITERATIONS / 10 ) < 0 ) {
+          System.out.println( "Conversion '" + name + "' is not supported" );
+          continue;
+        }
+        report( name, 1, speedTest.runConversionTest( source, target, 1, ITERATIONS ) );
+        report( name, THREADS, speedTest.runConversionTest( source, target, THREADS, ITERATIONS ) );
+      }
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.value;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * The date and decimal formats of a value metadata object for a single thread.<br>
+ * <br>
+ * {@link SimpleDateFormat} and {@link DecimalFormat} are not thread-safe. Instead of locking the value metadata for
+ * every conversion, every thread converting values gets its own formats, rebuilt when the format settings of the
+ * metadata change. Common masks are compiled to a {@link CompiledDateFormat} or {@link CompiledIntegerFormat} which
+ * skip the generic formats altogether.
+ */
+class ValueMetaFormatters {
+  int dateFormatVersion = -1;
+  SimpleDateFormat dateFormat;
+  boolean dateFormatAcceptsTimeZones;
+  private CompiledDateFormat compiledDateFormat;
+  private Calendar calendar;
+
+  int decimalFormatVersion = -1;
+  DecimalFormat decimalFormat;
+  private CompiledIntegerFormat compiledIntegerFormat;
+
+  void setDateFormat( SimpleDateFormat dateFormat, int version ) {
+    this.dateFormat = dateFormat;
+    this.dateFormatVersion = version;
+    this.compiledDateFormat = CompiledDateFormat.compile( dateFormat );
+    this.calendar = compiledDateFormat == null ? null : (Calendar) dateFormat.getCalendar().clone();
+  }
+
+  void setDecimalFormat( DecimalFormat decimalFormat, int version ) {
+    this.decimalFormat = decimalFormat;
+    this.decimalFormatVersion = version;
+    this.compiledIntegerFormat = CompiledIntegerFormat.compile( decimalFormat );
+  }
+
+  String formatDate( Date date ) {
+    if ( compiledDateFormat != null ) {
+      String string = compiledDateFormat.format( date, calendar );
+      if ( string != null ) {
+        return string;
+      }
+    }
+    return dateFormat.format( date );
+  }
+
+  /**
+   * @return the parsed date or null if the string needs the date format to be parsed
+   */
+  Date parseDateFast( String string ) {
+    return compiledDateFormat == null ? null : compiledDateFormat.parse( string, calendar );
+  }
+
+  String formatInteger( Long integer ) {
+    if ( compiledIntegerFormat != null ) {
+      String string = compiledIntegerFormat.format( integer.longValue() );
+      if ( string != null ) {
+        return string;
+      }
+    }
+    return decimalFormat.format( integer );
+  }
+
+  /**
+   * @return the parsed integer or null if the string needs the decimal format to be parsed
+   */
+  Long parseIntegerFast( String string ) {
+    return compiledIntegerFormat == null ? null : compiledIntegerFormat.parse( string );
+  }
+}
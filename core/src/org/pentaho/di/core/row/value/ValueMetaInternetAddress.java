@@ -222,7 +222,7 @@ public class ValueMetaInternetAddress extends ValueMetaDate {
     }
   }
 
-  protected synchronized InetAddress convertStringToInternetAddress( String string ) throws KettleValueException {
+  protected InetAddress convertStringToInternetAddress( String string ) throws KettleValueException {
     // See if trimming needs to be performed before conversion
     //
     string = Const.trimToType( string, getTrimType() );
@@ -239,7 +239,7 @@ public class ValueMetaInternetAddress extends ValueMetaDate {
     }
   }
 
-  protected synchronized String convertInternetAddressToString( InetAddress inetAddress ) throws KettleValueException {
+  protected String convertInternetAddressToString( InetAddress inetAddress ) throws KettleValueException {
 
     if ( inetAddress == null ) {
       return null;
@@ -236,7 +236,7 @@ public class ValueMetaTimestamp extends ValueMetaDate {
     return timestamp;
   }
 
-  protected synchronized Timestamp convertStringToTimestamp( String string ) throws KettleValueException {
+  protected Timestamp convertStringToTimestamp( String string ) throws KettleValueException {
     // See if trimming needs to be performed before conversion
     //
     string = Const.trimToType( string, getTrimType() );
@@ -259,7 +259,7 @@ public class ValueMetaTimestamp extends ValueMetaDate {
     return returnValue;
   }
 
-  protected synchronized String convertTimestampToString( Timestamp timestamp ) throws KettleValueException {
+  protected String convertTimestampToString( Timestamp timestamp ) throws KettleValueException {
 
     if ( timestamp == null ) {
       return null;
@@ -601,42 +601,41 @@ public class ValueMetaTimestamp extends ValueMetaDate {
   }
 
   @Override
-  public synchronized SimpleDateFormat getDateFormat() {
+  public SimpleDateFormat getDateFormat() {
     if ( conversionMetadata != null ) {
       return new SimpleTimestampFormat( conversionMetadata.getDateFormat().toPattern() );
     }
+    return super.getDateFormat();
+  }
 
-    if ( dateFormat == null || dateFormatChanged ) {
-      // This may not become static as the class is not thread-safe!
-      dateFormat = new SimpleTimestampFormat( new SimpleDateFormat().toPattern() );
-
-      String mask;
-      if ( Const.isEmpty( conversionMask ) ) {
-        mask = DEFAULT_TIMESTAMP_FORMAT_MASK;
-      } else {
-        mask = conversionMask;
-      }
+  @Override
+  protected SimpleDateFormat createDateFormat() {
+    SimpleDateFormat dateFormat;
+    String mask;
+    if ( Const.isEmpty( conversionMask ) ) {
+      mask = DEFAULT_TIMESTAMP_FORMAT_MASK;
+    } else {
+      mask = conversionMask;
+    }
 
-      // Do we have a locale?
-      //
-      if ( dateFormatLocale == null || dateFormatLocale.equals( Locale.getDefault() ) ) {
-        dateFormat = new SimpleTimestampFormat( mask );
-      } else {
-        dateFormat = new SimpleTimestampFormat( mask, dateFormatLocale );
-      }
+    // Do we have a locale?
+    //
+    if ( dateFormatLocale == null || dateFormatLocale.equals( Locale.getDefault() ) ) {
+      dateFormat = new SimpleTimestampFormat( mask );
+    } else {
+      dateFormat = new SimpleTimestampFormat( mask, dateFormatLocale );
+    }
 
-      // Do we have a time zone?
-      //
-      if ( dateFormatTimeZone != null ) {
-        dateFormat.setTimeZone( dateFormatTimeZone );
-      }
+    // Do we have a time zone?
+    //
+    if ( dateFormatTimeZone != null ) {
+      dateFormat.setTimeZone( dateFormatTimeZone );
+    }
 
-      // Set the conversion leniency as well
-      //
-      dateFormat.setLenient( dateFormatLenient );
+    // Set the conversion leniency as well
+    //
+    dateFormat.setLenient( dateFormatLenient );
 
-      dateFormatChanged = false;
-    }
     return dateFormat;
   }
 }
@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class CompiledConditionTest extends TestCase {
+
+  private RowMetaInterface rowMeta;
+  private Object[][] rows;
+
+  @Override
+  protected void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "amount", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "price", ValueMetaInterface.TYPE_NUMBER ) );
+    rowMeta.addValueMeta( new ValueMeta( "limit", ValueMetaInterface.TYPE_INTEGER ) );
+
+    rows = new Object[][] {
+      new Object[] { "apple", 5L, 1.5, 10L }, new Object[] { "banana", 15L, 0.25, 10L },
+      new Object[] { "cherry", 10L, 12.0, 5L }, new Object[] { null, null, null, null },
+      new Object[] { "", -3L, -1.0, null }, new Object[] { "apple pie", 10L, 3.0, 10L }, };
+  }
+
+  private Condition condition( String left, int function, String right, ValueMetaAndData exact ) {
+    return new Condition( left, function, right, exact );
+  }
+
+  private ValueMetaAndData exact( String value ) throws Exception {
+    return new ValueMetaAndData( "constant", value );
+  }
+
+  private ValueMetaAndData exact( long value ) throws Exception {
+    return new ValueMetaAndData( "constant", Long.valueOf( value ) );
+  }
+
+  private void assertSameOutcome( Condition condition ) throws Exception {
+    CompiledCondition compiled = condition.compile( rowMeta );
+    Condition interpreted = (Condition) condition.clone();
+    for ( Object[] row : rows ) {
+      assertEquals( condition.toString() + " for " + rowMeta.getString( row ),
+        interpreted.evaluate( rowMeta, row ), compiled.evaluate( row ) );
+    }
+  }
+
+  public void testAtomicConditions() throws Exception {
+    for ( int function = Condition.FUNC_EQUAL; function <= Condition.FUNC_LARGER_EQUAL; function++ ) {
+      assertSameOutcome( condition( "amount", function, null, exact( 10 ) ) );
+      assertSameOutcome( condition( "amount", function, null, exact( "10" ) ) );
+      assertSameOutcome( condition( "price", function, null, exact( 1 ) ) );
+      assertSameOutcome( condition( "name", function, null, exact( "banana" ) ) );
+      assertSameOutcome( condition( "amount", function, "limit", null ) );
+    }
+    assertSameOutcome( condition( "name", Condition.FUNC_NULL, null, null ) );
+    assertSameOutcome( condition( "amount", Condition.FUNC_NOT_NULL, null, null ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_REGEXP, null, exact( "a.*e" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_LIKE, null, exact( "%an?na" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_IN_LIST, null, exact( "cherry;apple;kiwi" ) ) );
+    assertSameOutcome( condition( "amount", Condition.FUNC_IN_LIST, null, exact( "5;15" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_CONTAINS, null, exact( "an" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_STARTS_WITH, null, exact( "apple" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_ENDS_WITH, null, exact( "pie" ) ) );
+    assertSameOutcome( condition( "name", Condition.FUNC_TRUE, null, null ) );
+
+    // Fields that don't exist and negation
+    //
+    assertSameOutcome( condition( "unknown", Condition.FUNC_EQUAL, null, exact( 10 ) ) );
+    assertSameOutcome( new Condition( true, "amount", Condition.FUNC_SMALLER, null, exact( 10 ) ) );
+    assertSameOutcome( new Condition( true, "name", Condition.FUNC_TRUE, null, null ) );
+    assertSameOutcome( new Condition( true, "unknown", Condition.FUNC_EQUAL, null, exact( 10 ) ) );
+  }
+
+  public void testCompositeConditions() throws Exception {
+    for ( int operator = Condition.OPERATOR_OR; operator <= Condition.OPERATOR_XOR; operator++ ) {
+      if ( operator == Condition.OPERATOR_NOT ) {
+        continue;
+      }
+      Condition composite = new Condition();
+      composite.addCondition( condition( "amount", Condition.FUNC_LARGER, null, exact( 5 ) ) );
+      composite.addCondition( new Condition( operator, "name", Condition.FUNC_NOT_NULL, null, null ) );
+      composite.addCondition( new Condition( operator, "price", Condition.FUNC_SMALLER, null, exact( 2 ) ) );
+      assertSameOutcome( composite );
+
+      composite.setNegated( true );
+      assertSameOutcome( composite );
+
+      // A nested composite with constant sub-conditions
+      //
+      Condition nested = new Condition();
+      nested.addCondition( new Condition( "name", Condition.FUNC_TRUE, null, null ) );
+      nested.addCondition( new Condition( operator, "unknown", Condition.FUNC_EQUAL, null, exact( 1 ) ) );
+      nested.setOperator( Condition.OPERATOR_AND );
+      composite.addCondition( nested );
+      assertSameOutcome( composite );
+      assertSameOutcome( nested );
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+
+/**
+ * Test class for the basic functionality of the lock-free ring buffer row set.
+ */
+public class RingBufferRowSetTest extends TestCase {
+  public RowMetaInterface createRowMetaInterface() {
+    RowMetaInterface rm = new RowMeta();
+    rm.addValueMeta( new ValueMeta( "ROWNR", ValueMeta.TYPE_INTEGER ) );
+    return rm;
+  }
+
+  /**
+   * The basic stuff.
+   */
+  public void testBasicCreation() {
+    RowSet set = new RingBufferRowSet( 10 );
+
+    assertTrue( !set.isDone() );
+    assertEquals( 0, set.size() );
+    assertEquals( RingBufferRowSet.WaitStrategy.PARK, ( (RingBufferRowSet) set ).getWaitStrategy() );
+  }
+
+  /**
+   * Rows come out in the order they went in and the row set never holds more than its maximum size.
+   */
+  public void testFunctionality() {
+    RingBufferRowSet set = new RingBufferRowSet( 3, RingBufferRowSet.WaitStrategy.SPIN );
+    RowMetaInterface rm = createRowMetaInterface();
+
+    assertNull( set.getRowImmediate() );
+
+    Object[] r1 = new Object[] { new Long( 1 ) };
+    Object[] r2 = new Object[] { new Long( 2 ) };
+    Object[] r3 = new Object[] { new Long( 3 ) };
+    Object[] r4 = new Object[] { new Long( 4 ) };
+
+    assertTrue( set.putRow( rm, r1 ) );
+    assertTrue( set.putRow( rm, r2 ) );
+    assertTrue( set.putRow( rm, r3 ) );
+    assertEquals( 3, set.size() );
+    assertSame( rm, set.getRowMeta() );
+
+    // The row set is full, this should time out
+    //
+    assertFalse( set.putRowWait( rm, r4, 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 3, set.size() );
+
+    assertSame( r1, set.getRow() );
+    assertTrue( set.putRow( rm, r4 ) );
+    assertSame( r2, set.getRowImmediate() );
+    assertSame( r3, set.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertSame( r4, set.getRow() );
+    assertEquals( 0, set.size() );
+
+    // Empty row set, this should time out
+    //
+    assertNull( set.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+
+    set.setDone();
+    assertTrue( set.isDone() );
+    set.clear();
+    assertFalse( set.isDone() );
+    assertEquals( 0, set.size() );
+  }
+
+  /**
+   * Hand a lot of rows from one thread to another and verify nothing is lost or re-ordered.
+   */
+  public void testProducerConsumer() throws Exception {
+    for ( RingBufferRowSet.WaitStrategy strategy : RingBufferRowSet.WaitStrategy.values() ) {
+      final RingBufferRowSet set = new RingBufferRowSet( 100, strategy );
+      final RowMetaInterface rm = createRowMetaInterface();
+      final int nrRows = 100000;
+
+      Thread producer = new Thread( new Runnable() {
+        public void run() {
+          for ( int i = 0; i < nrRows; i++ ) {
+            Object[] row = new Object[] { new Long( i ) };
+            while ( !set.putRow( rm, row ) ) {
+              // retry until the consumer caught up
+            }
+          }
+          set.setDone();
+        }
+      } );
+      producer.start();
+
+      long expected = 0;
+      Object[] row = set.getRow();
+      while ( row != null || !set.isDone() || set.size() > 0 ) {
+        if ( row != null ) {
+          assertEquals( expected++, ( (Long) row[0] ).longValue() );
+        }
+        row = set.getRow();
+      }
+      producer.join();
+
+      assertEquals( nrRows, expected );
+    }
+  }
+
+  /**
+   * Rows passed in bulk only fill the free slots and come out in the same order.
+   */
+  public void testPutRowsGetRows() {
+    RingBufferRowSet set = new RingBufferRowSet( 4, RingBufferRowSet.WaitStrategy.SPIN );
+    RowMetaInterface rm = createRowMetaInterface();
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( int i = 0; i < 6; i++ ) {
+      rows.add( new Object[] { new Long( i ) } );
+    }
+
+    assertEquals( 4, set.putRows( rm, rows, 0 ) );
+    assertEquals( 4, set.size() );
+
+    List<Object[]> result = new ArrayList<Object[]>();
+    assertEquals( 3, set.getRows( result, 3 ) );
+    assertEquals( 2, set.putRows( rm, rows, 4 ) );
+    assertEquals( 3, set.getRows( result, 10 ) );
+    assertEquals( 0, set.getRows( result, 10 ) );
+
+    assertEquals( rows, result );
+  }
+
+  public void testWaitStrategyCodes() {
+    for ( RingBufferRowSet.WaitStrategy strategy : RingBufferRowSet.WaitStrategy.values() ) {
+      assertEquals( strategy, RingBufferRowSet.WaitStrategy.getWaitStrategyByCode( strategy.getCode() ) );
+    }
+    assertEquals( RingBufferRowSet.WaitStrategy.PARK, RingBufferRowSet.WaitStrategy.getWaitStrategyByCode( null ) );
+    assertEquals( RingBufferRowSet.WaitStrategy.PARK, RingBufferRowSet.WaitStrategy.getWaitStrategyByCode( "xyz" ) );
+  }
+}
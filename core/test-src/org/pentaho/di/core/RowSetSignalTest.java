@@ -0,0 +1,101 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.row.RowMeta;
+
+public class RowSetSignalTest extends TestCase {
+
+  public void testSignalBeforeAwait() {
+    RowSetSignal signal = new RowSetSignal();
+
+    // Nobody is waiting: nothing happens
+    signal.signal();
+
+    long ticket = signal.prepareWait();
+    signal.signal();
+    assertTrue( signal.await( ticket, 10, TimeUnit.SECONDS ) );
+  }
+
+  public void testTimeout() {
+    RowSetSignal signal = new RowSetSignal();
+    long ticket = signal.prepareWait();
+    assertFalse( signal.await( ticket, 10, TimeUnit.MILLISECONDS ) );
+
+    // An earlier signal doesn't count for a new ticket
+    ticket = signal.prepareWait();
+    assertFalse( signal.await( ticket, 10, TimeUnit.MILLISECONDS ) );
+  }
+
+  public void testRowSetsRaiseSignal() {
+    RowSetSignal signal = new RowSetSignal();
+    SignalingRowSet[] rowSets =
+      new SignalingRowSet[] {
+        new BlockingRowSet( 10 ), new QueueRowSet(), new SingleRowRowSet(), new RingBufferRowSet( 16 ),
+        new BlockingListeningRowSet( 10 ), };
+    for ( SignalingRowSet rowSet : rowSets ) {
+      rowSet.setConsumerSignal( signal );
+
+      long ticket = signal.prepareWait();
+      assertTrue( rowSet.putRow( new RowMeta(), new Object[] { "row" } ) );
+      assertTrue( rowSet.getClass().getName(), signal.await( ticket, 0, TimeUnit.MILLISECONDS ) );
+
+      ticket = signal.prepareWait();
+      rowSet.setDone();
+      assertTrue( rowSet.getClass().getName(), signal.await( ticket, 0, TimeUnit.MILLISECONDS ) );
+    }
+  }
+
+  public void testWakeUpWaitingConsumer() throws Exception {
+    final RowSetSignal signal = new RowSetSignal();
+    final SignalingRowSet one = new BlockingRowSet( 10 );
+    final SignalingRowSet two = new BlockingRowSet( 10 );
+    one.setConsumerSignal( signal );
+    two.setConsumerSignal( signal );
+
+    long ticket = signal.prepareWait();
+    assertEquals( 0, one.size() + two.size() );
+
+    Thread producer = new Thread( new Runnable() {
+      public void run() {
+        try {
+          Thread.sleep( 50 );
+        } catch ( InterruptedException e ) {
+          // Ignore
+        }
+        two.putRow( new RowMeta(), new Object[] { "row" } );
+      }
+    } );
+    producer.start();
+
+    long start = System.currentTimeMillis();
+    assertTrue( signal.await( ticket, 30, TimeUnit.SECONDS ) );
+    assertTrue( System.currentTimeMillis() - start < 10000 );
+    assertEquals( 1, two.size() );
+    producer.join();
+  }
+}
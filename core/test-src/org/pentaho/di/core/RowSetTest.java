@@ -22,6 +22,9 @@
 
 package org.pentaho.di.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.pentaho.di.core.row.RowMeta;
@@ -176,4 +179,22 @@ public class RowSetTest extends TestCase {
     assertEquals( set.toString(), set.getName() );
     assertEquals( "from.2 - to.3", set.getName() );
   }
+
+  /**
+   * A single row row set is passed a row at a time and never overwrites a row that wasn't read yet.
+   */
+  public void testSingleRowRowSetPutRows() {
+    SingleRowRowSet set = new SingleRowRowSet();
+    RowMetaInterface rm = createRowMetaInterface();
+    List<Object[]> rows = new ArrayList<Object[]>();
+    rows.add( new Object[] { Long.valueOf( 1L ) } );
+    rows.add( new Object[] { Long.valueOf( 2L ) } );
+
+    assertFalse( set instanceof BatchRowSet );
+    assertEquals( 1, set.putRows( rm, rows, 0 ) );
+    assertEquals( 0, set.putRows( rm, rows, 1 ) );
+    assertSame( rows.get( 0 ), set.getRow() );
+    assertEquals( 1, set.putRows( rm, rows, 1 ) );
+    assertSame( rows.get( 1 ), set.getRow() );
+  }
 }
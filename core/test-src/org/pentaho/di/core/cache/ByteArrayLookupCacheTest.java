@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ByteArrayLookupCacheTest extends TestCase {
+
+  public void testPutAndGet() throws Exception {
+    ByteArrayLookupCache cache = new ByteArrayLookupCache( 10, 0L, EvictionPolicy.LRU, false );
+    cache.put( bytes( "key1" ), bytes( "value1" ) );
+    cache.put( bytes( "key2" ), bytes( "value2" ) );
+    cache.put( bytes( "key1" ), bytes( "other" ) );
+
+    assertTrue( Arrays.equals( bytes( "other" ), cache.get( bytes( "key1" ) ) ) );
+    assertTrue( Arrays.equals( bytes( "value2" ), cache.get( bytes( "key2" ) ) ) );
+    assertNull( cache.get( bytes( "key3" ) ) );
+    assertEquals( 2, cache.size() );
+    assertEquals( 2, cache.getIndexSize() );
+    assertEquals( 2, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  public void testEvictionRemovesTheBytes() throws Exception {
+    ByteArrayLookupCache cache = new ByteArrayLookupCache( 100, 0L, EvictionPolicy.TINY_LFU, false );
+    for ( int i = 0; i < 1000; i++ ) {
+      cache.put( bytes( "key" + i ), bytes( "value" + i ) );
+      assertEquals( cache.size(), cache.getIndexSize() );
+    }
+    assertEquals( 100, cache.size() );
+    assertTrue( cache.getEvictionCount() > 0 );
+  }
+
+  public void testMemoryLimit() throws Exception {
+    ByteArrayLookupCache cache = new ByteArrayLookupCache( 0, 10000L, EvictionPolicy.LRU, false );
+    for ( int i = 0; i < 1000; i++ ) {
+      cache.put( bytes( "key" + i ), new byte[100] );
+    }
+    assertTrue( cache.getBytes() <= 10000L );
+    assertEquals( cache.size(), cache.getIndexSize() );
+    assertNotNull( cache.get( bytes( "key999" ) ) );
+    assertNull( cache.get( bytes( "key0" ) ) );
+  }
+
+  public void testOffHeap() throws Exception {
+    ByteArrayLookupCache cache = new ByteArrayLookupCache( 10, 0L, EvictionPolicy.LRU, true );
+    assertTrue( cache.isOffHeap() );
+    cache.put( bytes( "key" ), bytes( "value" ) );
+    assertTrue( Arrays.equals( bytes( "value" ), cache.get( bytes( "key" ) ) ) );
+
+    cache.clear();
+    assertEquals( 0, cache.size() );
+    assertEquals( 0, cache.getIndexSize() );
+    assertNull( cache.get( bytes( "key" ) ) );
+  }
+
+  private static byte[] bytes( String string ) {
+    return string.getBytes();
+  }
+}
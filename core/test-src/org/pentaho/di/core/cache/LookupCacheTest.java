@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import junit.framework.TestCase;
+
+public class LookupCacheTest extends TestCase {
+
+  private static final CacheWeigher<Integer, String> STRING_LENGTH = new CacheWeigher<Integer, String>() {
+    public long weigh( Integer key, String value ) {
+      return value.length();
+    }
+  };
+
+  public void testLruEviction() {
+    LookupCache<Integer, String> cache = new LookupCache<Integer, String>( 3, 0L, 0L, EvictionPolicy.LRU, null );
+    cache.put( 1, "one" );
+    cache.put( 2, "two" );
+    cache.put( 3, "three" );
+    assertEquals( "one", cache.get( 1 ) );
+
+    // 2 is the least recently used entry now
+    cache.put( 4, "four" );
+    assertEquals( 3, cache.size() );
+    assertNull( cache.peek( 2 ) );
+    assertEquals( "one", cache.peek( 1 ) );
+    assertEquals( 1, cache.getEvictionCount() );
+
+    assertNull( cache.get( 2 ) );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  public void testTinyLfuKeepsFrequentKeys() {
+    LookupCache<Integer, String> tinyLfu =
+      new LookupCache<Integer, String>( 100, 0L, 0L, EvictionPolicy.TINY_LFU, null );
+    LookupCache<Integer, String> lru = new LookupCache<Integer, String>( 100, 0L, 0L, EvictionPolicy.LRU, null );
+
+    assertTrue( runHotKeysAndScan( tinyLfu ) > 45 );
+    assertEquals( 0, runHotKeysAndScan( lru ) );
+    assertEquals( 100, tinyLfu.size() );
+  }
+
+  /**
+   * Use 50 keys a lot, then scan 2000 other keys once.
+   *
+   * @return the number of the 50 keys still in the cache
+   */
+  private int runHotKeysAndScan( LookupCache<Integer, String> cache ) {
+    for ( int round = 0; round < 20; round++ ) {
+      for ( int key = 0; key < 50; key++ ) {
+        if ( cache.get( key ) == null ) {
+          cache.put( key, "hot" );
+        }
+      }
+    }
+    for ( int key = 1000; key < 3000; key++ ) {
+      if ( cache.get( key ) == null ) {
+        cache.put( key, "scan" );
+      }
+    }
+    int hot = 0;
+    for ( int key = 0; key < 50; key++ ) {
+      if ( cache.peek( key ) != null ) {
+        hot++;
+      }
+    }
+    return hot;
+  }
+
+  public void testByteLimit() {
+    LookupCache<Integer, String> cache =
+      new LookupCache<Integer, String>( 0, 100L, 0L, EvictionPolicy.LRU, STRING_LENGTH );
+    for ( int key = 0; key < 50; key++ ) {
+      cache.put( key, "0123456789" );
+    }
+    assertEquals( 10, cache.size() );
+    assertEquals( 100L, cache.getBytes() );
+
+    // Replacing a value changes the size
+    cache.put( 49, "01234" );
+    assertEquals( 95L, cache.getBytes() );
+
+    // An entry larger than the limit doesn't stay
+    cache.put( 100, new String( new char[150] ) );
+    assertEquals( 0, cache.size() );
+    assertEquals( 0L, cache.getBytes() );
+  }
+
+  public void testTimeToLive() throws Exception {
+    LookupCache<Integer, String> cache = new LookupCache<Integer, String>( 0, 0L, 50L, EvictionPolicy.LRU, null );
+    cache.put( 1, "one" );
+    assertEquals( "one", cache.get( 1 ) );
+
+    Thread.sleep( 100 );
+    assertNull( cache.peek( 1 ) );
+    assertNull( cache.get( 1 ) );
+    assertEquals( 1, cache.getExpirationCount() );
+    assertEquals( 0, cache.size() );
+  }
+
+  public void testSharedCaches() {
+    LookupCache<Integer, String> first =
+      SharedLookupCaches.acquire( "test", new LookupCache<Integer, String>() );
+    LookupCache<Integer, String> second =
+      SharedLookupCaches.acquire( "test", new LookupCache<Integer, String>() );
+    assertSame( first, second );
+
+    first.put( 1, "one" );
+    first.setPopulated( true );
+    SharedLookupCaches.release( "test" );
+    assertEquals( "one", second.get( 1 ) );
+
+    SharedLookupCaches.release( "test" );
+    assertEquals( 0, first.size() );
+    assertFalse( first.isPopulated() );
+    assertEquals( 0, SharedLookupCaches.getNrSharedCaches() );
+  }
+
+  public void testByteArrayKey() {
+    ByteArrayKey key = new ByteArrayKey( new byte[] { 1, 2, 3 } );
+    assertEquals( key, new ByteArrayKey( new byte[] { 1, 2, 3 } ) );
+    assertEquals( key.hashCode(), new ByteArrayKey( new byte[] { 1, 2, 3 } ).hashCode() );
+    assertFalse( key.equals( new ByteArrayKey( new byte[] { 1, 2 } ) ) );
+  }
+}
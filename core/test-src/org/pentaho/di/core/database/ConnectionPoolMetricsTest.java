@@ -0,0 +1,57 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.database;
+
+import junit.framework.TestCase;
+
+public class ConnectionPoolMetricsTest extends TestCase {
+
+  public void testBorrowStatistics() {
+    ConnectionPoolMetrics metrics = new ConnectionPoolMetrics( "pool" );
+    metrics.borrowed( 500000L ); // 0.5ms
+    metrics.borrowed( 7000000L ); // 7ms
+    metrics.borrowed( 2000000000L ); // 2s
+    metrics.borrowFailed();
+    metrics.leaked();
+
+    assertEquals( 3, metrics.getBorrowCount() );
+    assertEquals( 1, metrics.getFailedBorrowCount() );
+    assertEquals( 1, metrics.getLeakCount() );
+    assertEquals( 2000, metrics.getMaxWaitTime() );
+
+    long[] histogram = metrics.getLatencyHistogram();
+    assertEquals( ConnectionPoolMetrics.LATENCY_BUCKETS_MS.length + 1, histogram.length );
+    assertEquals( 1, histogram[0] );
+    assertEquals( 1, histogram[2] );
+    assertEquals( 1, histogram[histogram.length - 1] );
+  }
+
+  public void testXML() {
+    ConnectionPoolMetrics metrics = new ConnectionPoolMetrics( "pool" );
+    metrics.setPoolSize( 2, 3, 10 );
+    String xml = metrics.getXML();
+    assertTrue( xml.contains( "<" + ConnectionPoolMetrics.XML_TAG + ">" ) );
+    assertTrue( xml.contains( "<name>pool</name>" ) );
+    assertTrue( xml.contains( "<active>2</active>" ) );
+  }
+}
@@ -7,6 +7,7 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.logging.LogChannelInterface;
 
@@ -20,6 +21,7 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 
@@ -80,6 +82,25 @@ public class ConnectionPoolUtilTest implements Driver {
     assertTrue( conn != null );
   }
 
+  @Test
+  public void testExhaustedSharedPool() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty( ConnectionPoolUtil.MAX_WAIT, "10" );
+    when( dbMeta.getName() ).thenReturn( "CP3" );
+    when( dbMeta.getPassword() ).thenReturn( PASSWORD );
+    when( dbMeta.getConnectionPoolingProperties() ).thenReturn( properties );
+    Connection conn = ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 1 );
+    assertTrue( conn != null );
+    try {
+      ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 1 );
+      fail( "The pool has a single connection, it should not be available" );
+    } catch ( KettleDatabaseException e ) {
+      // expected: the wait is limited and reported
+    }
+    ConnectionPoolUtil.returnConnection( conn );
+    assertTrue( ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 1 ) != null );
+  }
+
   @Override
   public Connection connect( String url, Properties info ) throws SQLException {
     String password = info.getProperty( "password" );
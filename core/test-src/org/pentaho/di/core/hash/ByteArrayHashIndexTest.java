@@ -0,0 +1,86 @@
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Test class for the basic functionality of ByteArrayHashIndex.
+ */
+public class ByteArrayHashIndexTest {
+
+  private static RowMetaInterface createKeyMeta() {
+    RowMetaInterface keyMeta = new RowMeta();
+    keyMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    keyMeta.addValueMeta( new ValueMeta( "code", ValueMetaInterface.TYPE_STRING ) );
+    return keyMeta;
+  }
+
+  private static byte[] key( RowMetaInterface keyMeta, long id ) {
+    return RowMeta.extractData( keyMeta, new Object[] { Long.valueOf( id ), "code-" + ( id % 13 ), } );
+  }
+
+  @Test
+  public void testPutAndGet() throws KettleValueException {
+    RowMetaInterface keyMeta = createKeyMeta();
+    ByteArrayHashIndex index = new ByteArrayHashIndex( keyMeta );
+    index.put( key( keyMeta, 1L ), new byte[] { 1 } );
+    index.put( key( keyMeta, 2L ), new byte[] { 2 } );
+    index.put( key( keyMeta, 1L ), new byte[] { 3 } );
+
+    assertThat( "Incorrect size of index.", index.getSize(), equalTo( 2 ) );
+    assertArrayEquals( new byte[] { 3 }, index.get( key( keyMeta, 1L ) ) );
+    assertArrayEquals( new byte[] { 2 }, index.get( key( keyMeta, 2L ) ) );
+    assertThat( "Element should not be found.", index.get( key( keyMeta, 3L ) ), nullValue() );
+  }
+
+  @Test
+  public void testRandomOperationsOnHeap() throws KettleValueException {
+    testRandomOperations( false );
+  }
+
+  @Test
+  public void testRandomOperationsOffHeap() throws KettleValueException {
+    testRandomOperations( true );
+  }
+
+  private void testRandomOperations( boolean offHeap ) throws KettleValueException {
+    RowMetaInterface keyMeta = createKeyMeta();
+    ByteArrayHashIndex index = new ByteArrayHashIndex( keyMeta, 0, offHeap );
+    Map<Long, byte[]> expected = new HashMap<Long, byte[]>();
+    Random random = new Random( 123 );
+
+    for ( int i = 0; i < 200000; i++ ) {
+      long id = random.nextInt( 20000 );
+      if ( random.nextInt( 3 ) == 0 ) {
+        assertEquals( expected.remove( id ) != null, index.remove( key( keyMeta, id ) ) );
+      } else {
+        byte[] value = new byte[random.nextInt( 20 )];
+        random.nextBytes( value );
+        expected.put( id, value );
+        index.put( key( keyMeta, id ), value );
+      }
+    }
+
+    assertThat( "Incorrect size of index.", index.getSize(), equalTo( expected.size() ) );
+    assertThat( "Incorrect number of keys.", index.getKeys().size(), equalTo( expected.size() ) );
+    for ( long id = 0; id < 20000; id++ ) {
+      byte[] value = index.get( key( keyMeta, id ) );
+      if ( expected.containsKey( id ) ) {
+        assertArrayEquals( expected.get( id ), value );
+      } else {
+        assertThat( "Element should not be found.", value, nullValue() );
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import org.junit.Test;
+
+/**
+ * Test class for the basic functionality of ByteArrayStore.
+ */
+public class ByteArrayStoreTest {
+
+  @Test
+  public void testSmallStoreUsesSmallChunk() {
+    ByteArrayStore store = new ByteArrayStore( false );
+    assertThat( "Empty store should not allocate memory.", store.getAllocatedBytes(), equalTo( 0L ) );
+
+    long address = store.add( new byte[] { 1, 2 }, new byte[] { 3 } );
+    assertThat( "First chunk has incorrect size.", store.getAllocatedBytes(),
+      equalTo( (long) ByteArrayStore.INITIAL_CHUNK_SIZE ) );
+    assertArrayEquals( new byte[] { 1, 2 }, store.getKey( address ) );
+    assertArrayEquals( new byte[] { 3 }, store.getValue( address ) );
+  }
+
+  @Test
+  public void testChunksGrowUpToChunkSize() {
+    int chunkSize = ByteArrayStore.INITIAL_CHUNK_SIZE * 4;
+    ByteArrayStore store = new ByteArrayStore( false, chunkSize );
+    byte[] value = new byte[1024];
+    long[] addresses = new long[2000];
+    for ( int i = 0; i < addresses.length; i++ ) {
+      value[0] = (byte) i;
+      addresses[i] = store.add( new byte[] { (byte) ( i >> 8 ), (byte) i }, value );
+    }
+    // 64k + 128k and eight chunks of 256k hold the ~2MB of pairs
+    assertThat( "Incorrect allocated bytes.", store.getAllocatedBytes(),
+      equalTo( (long) ByteArrayStore.INITIAL_CHUNK_SIZE * 35 ) );
+    for ( int i = 0; i < addresses.length; i++ ) {
+      assertArrayEquals( new byte[] { (byte) ( i >> 8 ), (byte) i }, store.getKey( addresses[i] ) );
+      assertThat( "Element has uncorrect value.", store.getValue( addresses[i] )[0], equalTo( (byte) i ) );
+    }
+  }
+
+  @Test
+  public void testLargePairGetsOwnChunk() {
+    ByteArrayStore store = new ByteArrayStore( true );
+    long address = store.add( new byte[] { 1 }, new byte[ByteArrayStore.INITIAL_CHUNK_SIZE * 3] );
+    assertThat( "Incorrect value length.", store.getValue( address ).length,
+      equalTo( ByteArrayStore.INITIAL_CHUNK_SIZE * 3 ) );
+  }
+}
@@ -88,4 +88,30 @@ public class LongHashIndexTest {
     assertThat( "Not empty index should return false.", index.isEmpty(), is( false ) );
   }
 
+  @Test
+  public void testZeroAndNegativeKeys() throws KettleValueException {
+    LongHashIndex index = new LongHashIndex();
+    assertThat( "Zero key should not be found.", index.get( 0L ), nullValue() );
+    index.put( 0L, 10L );
+    index.put( -1L, 20L );
+    index.put( Long.MIN_VALUE, 30L );
+    index.put( 0L, 11L );
+    assertThat( "Incorrect size of index.", index.getSize(), equalTo( 3 ) );
+    assertThat( "Element has uncorrect value.", index.get( 0L ), equalTo( 11L ) );
+    assertThat( "Element has uncorrect value.", index.get( -1L ), equalTo( 20L ) );
+    assertThat( "Element has uncorrect value.", index.get( Long.MIN_VALUE ), equalTo( 30L ) );
+  }
+
+  @Test
+  public void testResize() throws KettleValueException {
+    LongHashIndex index = new LongHashIndex( 4 );
+    for ( long i = 1; i <= 100000; i++ ) {
+      index.put( i * 1024, i );
+    }
+    assertThat( "Incorrect size of index.", index.getSize(), equalTo( 100000 ) );
+    for ( long i = 1; i <= 100000; i++ ) {
+      assertThat( "Element has uncorrect value.", index.get( i * 1024 ), equalTo( i ) );
+    }
+    assertThat( "Element should not be found.", index.get( 1025L ), nullValue() );
+  }
 }
@@ -0,0 +1,69 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class Murmur3HashTest {
+
+  @Test
+  public void testKnownValues() throws Exception {
+    assertEquals( 0, Murmur3Hash.hash( new byte[0], 0 ) );
+    assertEquals( 0x514e28b7, Murmur3Hash.hash( new byte[0], 1 ) );
+    assertEquals( 0x248bfa47, Murmur3Hash.hash( "hello".getBytes( "US-ASCII" ), 0 ) );
+    assertEquals( 0x2e4ff723, Murmur3Hash.hash(
+      "The quick brown fox jumps over the lazy dog".getBytes( "US-ASCII" ), 0 ) );
+  }
+
+  @Test
+  public void testStreamingEqualsBytes() throws Exception {
+    // Add values at every alignment of the tail
+    for ( int prefix = 0; prefix < 4; prefix++ ) {
+      Murmur3Hash hash = new Murmur3Hash( 42 );
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      for ( int i = 0; i < prefix; i++ ) {
+        hash.addByte( i );
+        bytes.write( i );
+      }
+      hash.addInt( 0x01020304 ).addLong( 0x1122334455667788L ).addChars( "abc" ).addBytes( new byte[] { -1, 0, 7 } );
+      bytes.write( new byte[] { 4, 3, 2, 1 } );
+      bytes.write( new byte[] { (byte) 0x88, 0x77, 0x66, 0x55, 0x44, 0x33, 0x22, 0x11 } );
+      bytes.write( "abc".getBytes( "UTF-16LE" ) );
+      bytes.write( new byte[] { -1, 0, 7 } );
+
+      assertEquals( Murmur3Hash.hash( bytes.toByteArray(), 42 ), hash.finish() );
+    }
+  }
+
+  @Test
+  public void testReset() {
+    Murmur3Hash hash = new Murmur3Hash( 7 );
+    int first = hash.addLong( 12345L ).finish();
+    assertEquals( first, hash.finish() );
+    assertEquals( first, hash.reset().addLong( 12345L ).finish() );
+  }
+}
@@ -24,6 +24,8 @@ package org.pentaho.di.core.logging;
 import junit.framework.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -98,4 +100,112 @@ public class LoggingBufferTest {
     Assert.assertEquals( "Failed", true, done.get() );
 
   }
+
+  @Test
+  public void testChannelRanges() {
+    LoggingBuffer buf = new LoggingBuffer( 0 );
+    for ( int i = 1; i <= 100; i++ ) {
+      buf.addLogggingEvent( createEvent( i % 2 == 0 ? "even" : "odd", i ) );
+    }
+    Assert.assertEquals( 100, buf.getLastBufferLineNr() );
+    Assert.assertEquals( 100, buf.size() );
+
+    List<KettleLoggingEvent> odd = buf.getLogBufferFromTo( Arrays.asList( "odd" ), false, 10, 20 );
+    Assert.assertEquals( 5, odd.size() );
+    Assert.assertEquals( "11", getText( odd.get( 0 ) ) );
+    Assert.assertEquals( "19", getText( odd.get( 4 ) ) );
+
+    // Lines of several channels come back in the order they were logged
+    //
+    List<KettleLoggingEvent> both = buf.getLogBufferFromTo( Arrays.asList( "odd", "even", "none" ), false, 90, 1000 );
+    Assert.assertEquals( 10, both.size() );
+    for ( int i = 0; i < both.size(); i++ ) {
+      Assert.assertEquals( Integer.toString( 91 + i ), getText( both.get( i ) ) );
+    }
+
+    Assert.assertEquals( 100, buf.getLogBufferFromTo( (List<String>) null, false, 0, 100 ).size() );
+  }
+
+  @Test
+  public void testMaxNrLines() {
+    LoggingBuffer buf = new LoggingBuffer( 10 );
+    for ( int i = 1; i <= 3 * LoggingBuffer.SEGMENT_SIZE; i++ ) {
+      buf.addLogggingEvent( createEvent( "channel", i ) );
+    }
+    Assert.assertEquals( 10, buf.size() );
+    Assert.assertEquals( 3 * LoggingBuffer.SEGMENT_SIZE, buf.getLastBufferLineNr() );
+
+    List<KettleLoggingEvent> lines = buf.getLogBufferFromTo( Arrays.asList( "channel" ), false, 0, 100000 );
+    Assert.assertEquals( 10, lines.size() );
+    Assert.assertEquals( Integer.toString( 3 * LoggingBuffer.SEGMENT_SIZE - 9 ), getText( lines.get( 0 ) ) );
+  }
+
+  @Test
+  public void testRemoveLines() {
+    LoggingBuffer buf = new LoggingBuffer( 0 );
+    for ( int i = 1; i <= 30; i++ ) {
+      buf.addLogggingEvent( createEvent( "channel" + ( i % 3 ), i ) );
+    }
+    buf.removeChannelFromBuffer( "channel1" );
+    Assert.assertEquals( 20, buf.size() );
+    Assert.assertTrue( buf.getLogBufferFromTo( Arrays.asList( "channel1" ), false, 0, 30 ).isEmpty() );
+
+    List<BufferLine> oldLines = buf.getBufferLinesBefore( Long.MAX_VALUE );
+    Assert.assertEquals( 20, oldLines.size() );
+    buf.removeBufferLines( oldLines.subList( 0, 10 ) );
+    Assert.assertEquals( 10, buf.size() );
+    Assert.assertEquals( "17", getText( buf.getBufferIterator().next().getEvent() ) );
+
+    // New lines are still numbered after the removed ones
+    //
+    buf.clear();
+    Assert.assertEquals( 0, buf.size() );
+    buf.addLogggingEvent( createEvent( "channel1", 31 ) );
+    Assert.assertEquals( 31, buf.getLastBufferLineNr() );
+    Assert.assertEquals( 1, buf.getLogBufferFromTo( Arrays.asList( "channel1" ), false, 30, 31 ).size() );
+  }
+
+  @Test
+  public void testConcurrentAppends() throws Exception {
+    final int nrThreads = 4;
+    final int nrLines = 5000;
+    final LoggingBuffer buf = new LoggingBuffer( 0 );
+
+    Thread[] threads = new Thread[nrThreads];
+    for ( int t = 0; t < nrThreads; t++ ) {
+      final String channelId = "thread" + t;
+      threads[t] = new Thread( new Runnable() {
+        @Override public void run() {
+          for ( int i = 0; i < nrLines; i++ ) {
+            buf.addLogggingEvent( createEvent( i % 2 == 0 ? channelId : "shared", i ) );
+          }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+
+    Assert.assertEquals( nrThreads * nrLines, buf.getLastBufferLineNr() );
+    Assert.assertEquals( nrThreads * nrLines / 2, buf.getLogBufferFromTo( Arrays.asList( "shared" ), false, 0,
+      buf.getLastBufferLineNr() ).size() );
+    for ( int t = 0; t < nrThreads; t++ ) {
+      List<KettleLoggingEvent> lines =
+        buf.getLogBufferFromTo( Arrays.asList( "thread" + t ), false, 0, buf.getLastBufferLineNr() );
+      Assert.assertEquals( nrLines / 2, lines.size() );
+      for ( int i = 0; i < lines.size(); i++ ) {
+        Assert.assertEquals( Integer.toString( i * 2 ), getText( lines.get( i ) ) );
+      }
+    }
+  }
+
+  private static KettleLoggingEvent createEvent( String channelId, int nr ) {
+    return new KettleLoggingEvent( new LogMessage( Integer.toString( nr ), channelId, LogLevel.BASIC ), System
+      .currentTimeMillis(), LogLevel.BASIC );
+  }
+
+  private static String getText( KettleLoggingEvent event ) {
+    return ( (LogMessage) event.getMessage() ).getMessage();
+  }
 }
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.memory;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class MemoryBudgetManagerTest extends TestCase {
+
+  public void testReserveWithinBudget() {
+    MemoryBudgetManager manager = new MemoryBudgetManager( 1000 );
+    MemoryReservation one = manager.register( "one", "Step one.0" );
+
+    assertTrue( one.reserve( 600 ) );
+    assertTrue( one.reserve( 400 ) );
+    assertEquals( 1000, manager.getReservedBytes() );
+    assertFalse( one.isOverQuota() );
+
+    // The budget is used up and we hold more than our share (everything): refused
+    assertFalse( one.reserve( 1 ) );
+    assertEquals( 1000, one.getReservedBytes() );
+
+    one.releaseAll();
+    assertEquals( 0, manager.getReservedBytes() );
+    assertTrue( one.reserve( 1 ) );
+  }
+
+  public void testFairShare() {
+    MemoryBudgetManager manager = new MemoryBudgetManager( 1000 );
+    MemoryReservation one = manager.register( "one", "Step one.0" );
+    assertTrue( one.reserve( 900 ) );
+
+    MemoryReservation two = manager.register( "two", "Step two.0" );
+    assertEquals( 500, manager.getFairShare() );
+
+    // Two is guaranteed its share, even if the budget is used up
+    assertTrue( two.reserve( 400 ) );
+    assertEquals( 1300, manager.getReservedBytes() );
+
+    // One now holds more than its share: it should spill, two is fine
+    assertTrue( one.isOverQuota() );
+    assertFalse( two.isOverQuota() );
+    assertFalse( one.reserve( 10 ) );
+    assertFalse( two.reserve( 200 ) );
+
+    one.releaseAll();
+    assertFalse( one.isOverQuota() );
+    assertTrue( two.reserve( 200 ) );
+    assertEquals( 600, manager.getReservedBytes( "two" ) );
+  }
+
+  public void testClaimAndClose() {
+    MemoryBudgetManager manager = new MemoryBudgetManager( 1000 );
+    MemoryReservation one = manager.register( "one", "Step one.0" );
+    MemoryReservation two = manager.register( "two", "Step two.0" );
+
+    assertTrue( one.claim( 400 ) );
+    assertFalse( one.claim( 800 ) );
+    assertEquals( 1200, manager.getReservedBytes() );
+    assertEquals( 2, manager.getReservations().size() );
+
+    one.close();
+    assertEquals( 0, manager.getReservedBytes() );
+    assertEquals( 0, manager.getReservedBytes( "one" ) );
+    assertEquals( 1, manager.getReservations().size() );
+    assertEquals( 1000, manager.getFairShare() );
+    assertTrue( two.reserve( 1000 ) );
+  }
+
+  public void testRowSizeEstimate() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "string", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "integer", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "binary", ValueMetaInterface.TYPE_BINARY ) );
+
+    long nullRow = RowSizeEstimator.estimateRowSize( rowMeta, new Object[3] );
+    long shortRow = RowSizeEstimator.estimateRowSize( rowMeta, new Object[] { "a", 1L, new byte[10] } );
+    long longRow = RowSizeEstimator.estimateRowSize( rowMeta, new Object[] { "abcdefghijk", 1L, new byte[110] } );
+
+    assertEquals( RowSizeEstimator.ARRAY_HEADER + 3 * RowSizeEstimator.REFERENCE, nullRow );
+    assertTrue( shortRow > nullRow );
+    assertEquals( 10 * 2 + 100, longRow - shortRow );
+  }
+}
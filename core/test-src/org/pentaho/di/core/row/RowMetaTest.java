@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row;
+
+import junit.framework.TestCase;
+
+public class RowMetaTest extends TestCase {
+
+  private RowMetaInterface createRowMeta( int nrFields ) {
+    RowMetaInterface rowMeta = new RowMeta();
+    for ( int i = 0; i < nrFields; i++ ) {
+      rowMeta.addValueMeta( new ValueMeta( "Field" + i, ValueMetaInterface.TYPE_STRING ) );
+    }
+    return rowMeta;
+  }
+
+  public void testIndexOfValue() {
+    RowMetaInterface rowMeta = createRowMeta( 10 );
+
+    assertEquals( 0, rowMeta.indexOfValue( "Field0" ) );
+    assertEquals( 5, rowMeta.indexOfValue( "FIELD5" ) );
+    assertEquals( 9, rowMeta.indexOfValue( "field9" ) );
+    assertEquals( -1, rowMeta.indexOfValue( "Field10" ) );
+    assertEquals( -1, rowMeta.indexOfValue( null ) );
+    assertEquals( "Field3", rowMeta.searchValueMeta( "fIeLd3" ).getName() );
+    assertNull( rowMeta.searchValueMeta( "Unknown" ) );
+  }
+
+  public void testDuplicateNamesAreRenamed() {
+    RowMetaInterface rowMeta = createRowMeta( 2 );
+    rowMeta.addValueMeta( new ValueMeta( "field1", ValueMetaInterface.TYPE_STRING ) );
+
+    assertEquals( 1, rowMeta.indexOfValue( "Field1" ) );
+    assertEquals( 2, rowMeta.indexOfValue( "field1_1" ) );
+  }
+
+  public void testIndexFollowsModifications() throws Exception {
+    RowMetaInterface rowMeta = createRowMeta( 5 );
+    assertEquals( 3, rowMeta.indexOfValue( "Field3" ) );
+
+    rowMeta.removeValueMeta( "Field1" );
+    assertEquals( 2, rowMeta.indexOfValue( "Field3" ) );
+    assertEquals( -1, rowMeta.indexOfValue( "Field1" ) );
+
+    rowMeta.addValueMeta( 0, new ValueMeta( "First", ValueMetaInterface.TYPE_INTEGER ) );
+    assertEquals( 0, rowMeta.indexOfValue( "First" ) );
+    assertEquals( 3, rowMeta.indexOfValue( "Field3" ) );
+
+    rowMeta.setValueMeta( 3, new ValueMeta( "Replaced", ValueMetaInterface.TYPE_NUMBER ) );
+    assertEquals( 3, rowMeta.indexOfValue( "Replaced" ) );
+    assertEquals( -1, rowMeta.indexOfValue( "Field3" ) );
+
+    rowMeta.removeValueMeta( 0 );
+    assertEquals( 2, rowMeta.indexOfValue( "Replaced" ) );
+
+    rowMeta.clear();
+    assertEquals( -1, rowMeta.indexOfValue( "Replaced" ) );
+  }
+
+  public void testReplaceKeepsFirstOccurrence() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "A", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "B", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "C", ValueMetaInterface.TYPE_STRING ) );
+    assertEquals( 2, rowMeta.indexOfValue( "C" ) );
+
+    // setValueMeta() doesn't rename duplicates, the first one needs to be found
+    //
+    rowMeta.setValueMeta( 0, new ValueMeta( "C", ValueMetaInterface.TYPE_STRING ) );
+    assertEquals( 0, rowMeta.indexOfValue( "C" ) );
+    assertEquals( -1, rowMeta.indexOfValue( "A" ) );
+
+    // Replacing the first one makes the second one the first again
+    //
+    rowMeta.setValueMeta( 0, new ValueMeta( "A", ValueMetaInterface.TYPE_STRING ) );
+    assertEquals( 0, rowMeta.indexOfValue( "A" ) );
+    assertEquals( 2, rowMeta.indexOfValue( "c" ) );
+  }
+
+  public void testRenamedValueMetaIsFound() {
+    RowMetaInterface rowMeta = createRowMeta( 5 );
+    assertEquals( 2, rowMeta.indexOfValue( "Field2" ) );
+
+    // Renaming the value metadata itself bypasses the row metadata
+    //
+    rowMeta.getValueMeta( 2 ).setName( "Renamed" );
+    assertEquals( -1, rowMeta.indexOfValue( "Field2" ) );
+    assertEquals( 2, rowMeta.indexOfValue( "Renamed" ) );
+
+    // So does changing the list directly
+    //
+    rowMeta.getValueMetaList().remove( 0 );
+    assertEquals( 1, rowMeta.indexOfValue( "Renamed" ) );
+  }
+}
@@ -0,0 +1,167 @@
+package org.pentaho.di.core.row.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class ValueMetaFormattersTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws KettleException {
+    KettleClientEnvironment.init();
+  }
+
+  @Test
+  public void testCompiledDateFormatIsLikeSimpleDateFormat() throws Exception {
+    Random random = new Random( 42 );
+    String[] masks = { "yyyy-MM-dd", "yyyy/MM/dd HH:mm:ss.SSS", "yyyyMMdd", "dd/MM/yyyy HH:mm" };
+    String[] timeZones = { "UTC", "Europe/Brussels", "America/New_York" };
+    for ( String mask : masks ) {
+      for ( String timeZone : timeZones ) {
+        for ( boolean lenient : new boolean[] { true, false } ) {
+          SimpleDateFormat dateFormat = new SimpleDateFormat( mask );
+          dateFormat.setTimeZone( TimeZone.getTimeZone( timeZone ) );
+          dateFormat.setLenient( lenient );
+          CompiledDateFormat compiled = CompiledDateFormat.compile( dateFormat );
+          assertNotNull( mask, compiled );
+          Calendar calendar = (Calendar) dateFormat.getCalendar().clone();
+
+          for ( int i = 0; i < 2000; i++ ) {
+            Date date = new Date( random.nextLong() % ( 400L * 365 * 24 * 3600 * 1000 ) );
+            String expected = dateFormat.format( date );
+            assertEquals( expected, compiled.format( date, calendar ) );
+
+            // Parse the formatted string, sometimes with a random digit to get invalid dates
+            //
+            char[] chars = expected.toCharArray();
+            int pos = random.nextInt( chars.length );
+            if ( i % 2 == 0 && Character.isDigit( chars[pos] ) ) {
+              chars[pos] = (char) ( '0' + random.nextInt( 10 ) );
+            }
+            String string = new String( chars );
+            Date parsed = compiled.parse( string, calendar );
+            if ( parsed != null ) {
+              assertEquals( string, dateFormat.parse( string ), parsed );
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompiledDateFormatFallsBack() {
+    assertNull( CompiledDateFormat.compile( new SimpleDateFormat( "yyyy-M-d" ) ) );
+    assertNull( CompiledDateFormat.compile( new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm" ) ) );
+    assertNull( CompiledDateFormat.compile( new SimpleDateFormat( "dd MMM yyyy" ) ) );
+
+    SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd" );
+    CompiledDateFormat compiled = CompiledDateFormat.compile( dateFormat );
+    Calendar calendar = (Calendar) dateFormat.getCalendar().clone();
+    assertNull( compiled.parse( "2013-1-5", calendar ) );
+    assertNull( compiled.parse( "2013-01-05 extra", calendar ) );
+    assertNull( compiled.format( new Date( 300000L * 365 * 24 * 3600 * 1000 ), calendar ) );
+  }
+
+  @Test
+  public void testCompiledIntegerFormatIsLikeDecimalFormat() throws Exception {
+    Random random = new Random( 42 );
+    String[] patterns = { " ###############0;-###############0", " 00000;-00000", "#", "0000", "#,##0" };
+    for ( String pattern : patterns ) {
+      DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+      decimalFormat.applyPattern( pattern );
+      CompiledIntegerFormat compiled = CompiledIntegerFormat.compile( decimalFormat );
+      assertNotNull( pattern, compiled );
+
+      for ( int i = 0; i < 2000; i++ ) {
+        long value = random.nextLong() >> random.nextInt( 64 );
+        String string = compiled.format( value );
+        if ( string != null ) {
+          assertEquals( decimalFormat.format( value ), string );
+        }
+        for ( String candidate : new String[] { decimalFormat.format( value ), Long.toString( value ), " " + value } ) {
+          Long parsed = compiled.parse( candidate );
+          if ( parsed != null ) {
+            ParsePosition position = new ParsePosition( 0 );
+            Number expected = decimalFormat.parse( candidate, position );
+            assertEquals( candidate.length(), position.getIndex() );
+            assertEquals( expected.longValue(), parsed.longValue() );
+          }
+        }
+      }
+    }
+    assertNull( CompiledIntegerFormat.compile( new DecimalFormat( "#%" ) ) );
+    assertNull( CompiledIntegerFormat.compile( new DecimalFormat( "\u00a4#" ) ) );
+  }
+
+  @Test
+  public void testConversionsWithSharedMetadata() throws Exception {
+    final ValueMetaBase dateMeta = new ValueMetaBase( "date", ValueMetaInterface.TYPE_DATE );
+    dateMeta.setConversionMask( "yyyy-MM-dd HH:mm:ss" );
+    final ValueMetaBase integerMeta = new ValueMetaBase( "integer", ValueMetaInterface.TYPE_INTEGER );
+    integerMeta.setConversionMask( "#" );
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    Thread[] threads = new Thread[4];
+    for ( int t = 0; t < threads.length; t++ ) {
+      final int seed = t;
+      threads[t] = new Thread( new Runnable() {
+        public void run() {
+          try {
+            Random random = new Random( seed );
+            for ( int i = 0; i < 20000; i++ ) {
+              Date date = new Date( ( random.nextLong() % 4000000000000L ) / 1000 * 1000 );
+              assertEquals( date, dateMeta.convertStringToDate( dateMeta.convertDateToString( date ) ) );
+              Long integer = Long.valueOf( random.nextInt() );
+              String string = integerMeta.convertIntegerToString( integer );
+              assertEquals( integer, integerMeta.convertStringToInteger( string ) );
+            }
+          } catch ( Throwable e ) {
+            failure.set( e );
+          }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    if ( failure.get() != null ) {
+      throw new AssertionError( failure.get() );
+    }
+  }
+
+  @Test
+  public void testFormatsAreRebuiltWhenSettingsChange() throws Exception {
+    ValueMetaBase dateMeta = new ValueMetaBase( "date", ValueMetaInterface.TYPE_DATE );
+    dateMeta.setDateFormatTimeZone( TimeZone.getTimeZone( "UTC" ) );
+    dateMeta.setConversionMask( "yyyy-MM-dd" );
+    Date date = dateMeta.convertStringToDate( "2013-01-05" );
+    assertEquals( "2013-01-05", dateMeta.convertDateToString( date ) );
+
+    dateMeta.setConversionMask( "dd/MM/yyyy" );
+    assertEquals( "05/01/2013", dateMeta.convertDateToString( date ) );
+    assertEquals( "dd/MM/yyyy", dateMeta.getDateFormat().toPattern() );
+
+    ValueMetaBase clone = dateMeta.clone();
+    clone.setConversionMask( "yyyyMMdd" );
+    assertEquals( "20130105", clone.convertDateToString( date ) );
+    assertEquals( "05/01/2013", dateMeta.convertDateToString( date ) );
+  }
+}
@@ -64,6 +64,9 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
 
   public static final RepositoryObjectType REPOSITORY_ELEMENT_TYPE = RepositoryObjectType.CLUSTER_SCHEMA;
 
+  /** The compression provider used by the batch socket transport if none is specified */
+  public static final String DEFAULT_SOCKETS_COMPRESSION_TYPE = "Snappy";
+
   /** the name of the cluster schema */
   private String name;
 
@@ -84,6 +87,12 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
   /** flag to compress data over the sockets or not */
   private boolean socketsCompressed;
 
+  /** flag to send the data over the sockets in columnar batches with credit based flow control */
+  private boolean socketsBatchTransport;
+
+  /** The name of the compression provider used by the batch socket transport */
+  private String socketsCompressionType;
+
   /**
    * Flag to indicate that this cluster schema is dynamic.<br>
    * This means that the slave server configuration is taken from one of the defined master servers.<br>
@@ -104,6 +113,8 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     socketsBufferSize = "2000";
     socketsFlushInterval = "5000";
     socketsCompressed = true;
+    socketsBatchTransport = false;
+    socketsCompressionType = DEFAULT_SOCKETS_COMPRESSION_TYPE;
     basePort = "40000";
     dynamic = false;
     this.changedDate = new Date();
@@ -131,6 +142,8 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     this.socketsBufferSize = clusterSchema.socketsBufferSize;
     this.socketsCompressed = clusterSchema.socketsCompressed;
     this.socketsFlushInterval = clusterSchema.socketsFlushInterval;
+    this.socketsBatchTransport = clusterSchema.socketsBatchTransport;
+    this.socketsCompressionType = clusterSchema.socketsCompressionType;
     this.dynamic = clusterSchema.dynamic;
 
     this.slaveServers.clear();
@@ -166,6 +179,10 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     xml.append( "          " ).append( XMLHandler.addTagValue( "sockets_buffer_size", socketsBufferSize ) );
     xml.append( "          " ).append( XMLHandler.addTagValue( "sockets_flush_interval", socketsFlushInterval ) );
     xml.append( "          " ).append( XMLHandler.addTagValue( "sockets_compressed", socketsCompressed ) );
+    xml.append( "          " ).append(
+      XMLHandler.addTagValue( "sockets_batch_transport", socketsBatchTransport ) );
+    xml.append( "          " ).append(
+      XMLHandler.addTagValue( "sockets_compression_type", socketsCompressionType ) );
     xml.append( "          " ).append( XMLHandler.addTagValue( "dynamic", dynamic ) );
 
     xml.append( "          <slaveservers>" ).append( Const.CR );
@@ -186,6 +203,11 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     socketsBufferSize = XMLHandler.getTagValue( clusterSchemaNode, "sockets_buffer_size" );
     socketsFlushInterval = XMLHandler.getTagValue( clusterSchemaNode, "sockets_flush_interval" );
     socketsCompressed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( clusterSchemaNode, "sockets_compressed" ) );
+    socketsBatchTransport =
+      "Y".equalsIgnoreCase( XMLHandler.getTagValue( clusterSchemaNode, "sockets_batch_transport" ) );
+    socketsCompressionType =
+      Const.NVL( XMLHandler.getTagValue( clusterSchemaNode, "sockets_compression_type" ),
+        DEFAULT_SOCKETS_COMPRESSION_TYPE );
     dynamic = "Y".equalsIgnoreCase( XMLHandler.getTagValue( clusterSchemaNode, "dynamic" ) );
 
     Node slavesNode = XMLHandler.getSubNode( clusterSchemaNode, "slaveservers" );
@@ -343,6 +365,36 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     this.socketsCompressed = socketsCompressed;
   }
 
+  /**
+   * @return true if the data is sent over the sockets in columnar batches with credit based flow control
+   */
+  public boolean isSocketsBatchTransport() {
+    return socketsBatchTransport;
+  }
+
+  /**
+   * @param socketsBatchTransport
+   *          true to send the data over the sockets in columnar batches with credit based flow control
+   */
+  public void setSocketsBatchTransport( boolean socketsBatchTransport ) {
+    this.socketsBatchTransport = socketsBatchTransport;
+  }
+
+  /**
+   * @return the name of the compression provider used by the batch socket transport
+   */
+  public String getSocketsCompressionType() {
+    return socketsCompressionType;
+  }
+
+  /**
+   * @param socketsCompressionType
+   *          the name of the compression provider used by the batch socket transport
+   */
+  public void setSocketsCompressionType( String socketsCompressionType ) {
+    this.socketsCompressionType = socketsCompressionType;
+  }
+
   public SlaveServer findSlaveServer( String slaveServerName ) {
     for ( int i = 0; i < slaveServers.size(); i++ ) {
       SlaveServer slaveServer = slaveServers.get( i );
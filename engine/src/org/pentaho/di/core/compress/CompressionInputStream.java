@@ -35,4 +35,9 @@ public abstract class CompressionInputStream extends InputStream {
   public int read() throws IOException {
     return delegate.read();
   }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    return delegate.read( b, off, len );
+  }
 }
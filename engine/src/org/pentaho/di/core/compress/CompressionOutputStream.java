@@ -36,4 +36,14 @@ public abstract class CompressionOutputStream extends OutputStream {
     delegate.write( b );
   }
 
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    delegate.write( b, off, len );
+  }
+
+  @Override
+  public void flush() throws IOException {
+    delegate.flush();
+  }
+
 }
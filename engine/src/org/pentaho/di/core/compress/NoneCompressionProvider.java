@@ -79,6 +79,12 @@ public class NoneCompressionProvider implements CompressionProvider {
       super( in, provider );
     }
 
+    @Override
+    public long skip( long n ) throws IOException {
+      // Nothing to decompress, let the file skip ahead
+      return delegate.skip( n );
+    }
+
   }
 
   public static class NoneCompressionOutputStream extends CompressionOutputStream {
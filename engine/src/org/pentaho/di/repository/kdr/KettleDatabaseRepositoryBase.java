@@ -330,6 +330,8 @@ public abstract class KettleDatabaseRepositoryBase extends AbstractRepository {
   public static final String FIELD_CLUSTER_SOCKETS_BUFFER_SIZE = "SOCKETS_BUFFER_SIZE";
   public static final String FIELD_CLUSTER_SOCKETS_FLUSH_INTERVAL = "SOCKETS_FLUSH_INTERVAL";
   public static final String FIELD_CLUSTER_SOCKETS_COMPRESSED = "SOCKETS_COMPRESSED";
+  public static final String FIELD_CLUSTER_SOCKETS_BATCH_TRANSPORT = "SOCKETS_BATCH_TRANSPORT";
+  public static final String FIELD_CLUSTER_SOCKETS_COMPRESSION_TYPE = "SOCKETS_COMPRESSION_TYPE";
   public static final String FIELD_CLUSTER_DYNAMIC = "DYNAMIC_CLUSTER";
 
   public static final String TABLE_R_SLAVE = "R_SLAVE";
@@ -447,6 +449,8 @@ public abstract class KettleDatabaseRepositoryBase extends AbstractRepository {
   public static final String TRANS_ATTRIBUTE_TRANSFORMATION_TYPE = "TRANSFORMATION_TYPE";
   public static final String TRANS_ATTRIBUTE_SLEEP_TIME_EMPTY = "SLEEP_TIME_EMPTY";
   public static final String TRANS_ATTRIBUTE_SLEEP_TIME_FULL = "SLEEP_TIME_FULL";
+  public static final String TRANS_ATTRIBUTE_RING_BUFFER_ROWSETS = "RING_BUFFER_ROWSETS";
+  public static final String TRANS_ATTRIBUTE_ROWSET_WAIT_STRATEGY = "ROWSET_WAIT_STRATEGY";
   public static final String TRANS_ATTRIBUTE_DATA_SERVICE_NAME = "DATA_SERVICE_NAME";
 
   public static final String TRANS_ATTRIBUTE_PARAM_KEY = "PARAM_KEY";
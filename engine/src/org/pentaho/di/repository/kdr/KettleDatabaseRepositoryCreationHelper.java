@@ -1155,6 +1155,11 @@ public class KettleDatabaseRepositoryCreationHelper {
       KettleDatabaseRepository.REP_STRING_CODE_LENGTH, 0 ) );
     table.addValueMeta( new ValueMeta(
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSED, ValueMetaInterface.TYPE_BOOLEAN, 0, 0 ) );
+    table.addValueMeta( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_BATCH_TRANSPORT, ValueMetaInterface.TYPE_BOOLEAN, 0, 0 ) );
+    table.addValueMeta( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSION_TYPE, ValueMetaInterface.TYPE_STRING,
+      KettleDatabaseRepository.REP_STRING_CODE_LENGTH, 0 ) );
     table.addValueMeta( new ValueMeta(
       KettleDatabaseRepository.FIELD_CLUSTER_DYNAMIC, ValueMetaInterface.TYPE_BOOLEAN, 0, 0 ) );
     sql =
@@ -70,6 +70,11 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_FLUSH_INTERVAL, null ) );
     clusterSchema.setSocketsCompressed( row.getBoolean(
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSED, true ) );
+    clusterSchema.setSocketsBatchTransport( row.getBoolean(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_BATCH_TRANSPORT, false ) );
+    clusterSchema.setSocketsCompressionType( row.getString(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSION_TYPE,
+      ClusterSchema.DEFAULT_SOCKETS_COMPRESSION_TYPE ) );
     clusterSchema.setDynamic( row.getBoolean( KettleDatabaseRepository.FIELD_CLUSTER_DYNAMIC, true ) );
 
     ObjectId[] pids = repository.getClusterSlaveIDs( id_cluster_schema );
@@ -180,6 +185,12 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
     table.addValue( new ValueMeta(
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSED, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
       .valueOf( clusterSchema.isSocketsCompressed() ) );
+    table.addValue( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_BATCH_TRANSPORT, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
+      .valueOf( clusterSchema.isSocketsBatchTransport() ) );
+    table.addValue( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSION_TYPE, ValueMetaInterface.TYPE_STRING ),
+      clusterSchema.getSocketsCompressionType() );
     table.addValue(
       new ValueMeta( KettleDatabaseRepository.FIELD_CLUSTER_DYNAMIC, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
         .valueOf( clusterSchema.isDynamic() ) );
@@ -217,6 +228,12 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
     table.addValue( new ValueMeta(
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSED, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
       .valueOf( clusterSchema.isSocketsCompressed() ) );
+    table.addValue( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_BATCH_TRANSPORT, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
+      .valueOf( clusterSchema.isSocketsBatchTransport() ) );
+    table.addValue( new ValueMeta(
+      KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSION_TYPE, ValueMetaInterface.TYPE_STRING ),
+      clusterSchema.getSocketsCompressionType() );
     table.addValue(
       new ValueMeta( KettleDatabaseRepository.FIELD_CLUSTER_DYNAMIC, ValueMetaInterface.TYPE_BOOLEAN ), Boolean
         .valueOf( clusterSchema.isDynamic() ) );
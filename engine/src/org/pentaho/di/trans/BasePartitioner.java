@@ -23,6 +23,8 @@
 package org.pentaho.di.trans;
 
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannel;
+import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.StepPartitioningMeta;
 
@@ -35,6 +37,7 @@ public abstract class BasePartitioner implements Partitioner {
   protected int nrPartitions = -1;
   protected String id;
   protected String description;
+  protected LogChannelInterface log = LogChannel.GENERAL;
 
   /**
    * Instantiates a new base partitioner.
@@ -108,6 +111,25 @@ public abstract class BasePartitioner implements Partitioner {
     this.meta = meta;
   }
 
+  /**
+   * Gets the log channel the partitioner reports on.
+   *
+   * @return the log channel of the step partitioning its rows or the general log channel
+   */
+  public LogChannelInterface getLogChannel() {
+    return log;
+  }
+
+  /**
+   * Sets the log channel to report on, normally the one of the step partitioning its rows.
+   *
+   * @param log
+   *          the log channel
+   */
+  public void setLogChannel( LogChannelInterface log ) {
+    this.log = log;
+  }
+
   /*
    * (non-Javadoc)
    *
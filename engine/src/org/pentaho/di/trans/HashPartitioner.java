@@ -0,0 +1,397 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.hash.Murmur3Hash;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.w3c.dom.Node;
+
+/**
+ * Partitions rows on the MurmurHash3 of one or more key fields.<br>
+ * <br>
+ * The values are hashed in their binary representation, independent of the storage type, so the same key always ends
+ * up in the same partition, on every server. With virtual nodes the partitions are placed on a consistent hash ring:
+ * adding or removing a partition only moves the keys of that partition instead of reshuffling all of them. Without
+ * virtual nodes the partition is the hash modulo the number of partitions.<br>
+ * <br>
+ * The number of rows sent to every partition is counted. If the busiest partition receives a lot more rows than the
+ * average partition a warning is logged, once, since a single hot partition limits the speed of the whole cluster.
+ */
+public class HashPartitioner extends BasePartitioner {
+  private static Class<?> PKG = HashPartitioner.class; // for i18n purposes, needed by Translator2!!
+
+  public static final int DEFAULT_VIRTUAL_NODES = 128;
+  public static final int DEFAULT_SKEW_PERCENTAGE = 200;
+
+  /** The skew is checked every time a partition received another 64k rows */
+  private static final long SKEW_CHECK_MASK = 0xffffL;
+
+  private static final int KEY_SEED = 0x4b455454;
+  private static final int RING_SEED = 0x52494e47;
+
+  private String[] fieldNames;
+  private int virtualNodes;
+  private int skewPercentage;
+
+  // The runtime state, shared by the threads of all the step copies sending rows to this partitioning
+  //
+  private volatile int[] fieldIndexes;
+  private int[] ringPoints;
+  private int[] ringPartitions;
+  private AtomicLongArray rowCounts;
+  private volatile boolean skewReported;
+
+  public HashPartitioner() {
+    super();
+    fieldNames = new String[0];
+    virtualNodes = DEFAULT_VIRTUAL_NODES;
+    skewPercentage = DEFAULT_SKEW_PERCENTAGE;
+  }
+
+  public Partitioner getInstance() {
+    Partitioner partitioner = new HashPartitioner();
+    partitioner.setId( getId() );
+    partitioner.setDescription( getDescription() );
+    return partitioner;
+  }
+
+  public HashPartitioner clone() {
+    HashPartitioner hashPartitioner = (HashPartitioner) super.clone();
+    hashPartitioner.fieldNames = fieldNames.clone();
+    hashPartitioner.virtualNodes = virtualNodes;
+    hashPartitioner.skewPercentage = skewPercentage;
+
+    return hashPartitioner;
+  }
+
+  public String getDialogClassName() {
+    return "org.pentaho.di.ui.trans.dialog.HashPartitionerDialog";
+  }
+
+  public int getPartition( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
+    int[] indexes = fieldIndexes;
+    if ( indexes == null ) {
+      indexes = initialize( rowMeta );
+    }
+
+    Murmur3Hash hash = new Murmur3Hash( KEY_SEED );
+    for ( int i = 0; i < indexes.length; i++ ) {
+      addValue( hash, rowMeta.getValueMeta( indexes[i] ), row[indexes[i]] );
+    }
+    int keyHash = hash.finish();
+
+    int partition;
+    if ( ringPoints != null ) {
+      partition = ringPartitions[findRingPoint( ringPoints, keyHash )];
+    } else {
+      partition = ( keyHash & Integer.MAX_VALUE ) % nrPartitions;
+    }
+
+    long count = rowCounts.incrementAndGet( partition );
+    if ( ( count & SKEW_CHECK_MASK ) == 0 && skewPercentage > 0 && !skewReported ) {
+      checkSkew();
+    }
+
+    return partition;
+  }
+
+  /**
+   * Look up the key fields and build the hash ring. The field indexes are assigned last, they guard the rest of the
+   * runtime state.
+   */
+  private synchronized int[] initialize( RowMetaInterface rowMeta ) throws KettleException {
+    if ( fieldIndexes != null ) {
+      return fieldIndexes;
+    }
+    init( rowMeta );
+
+    if ( fieldNames.length == 0 ) {
+      throw new KettleStepException( BaseMessages.getString( PKG, "HashPartitioner.Exception.NoKeyFields" ) );
+    }
+    int[] indexes = new int[fieldNames.length];
+    for ( int i = 0; i < fieldNames.length; i++ ) {
+      indexes[i] = rowMeta.indexOfValue( fieldNames[i] );
+      if ( indexes[i] < 0 ) {
+        throw new KettleStepException( BaseMessages.getString(
+          PKG, "HashPartitioner.Exception.FieldNotFound", fieldNames[i], rowMeta.toString() ) );
+      }
+    }
+
+    if ( virtualNodes > 0 ) {
+      buildRing( meta.getPartitionSchema().getPartitionIDs() );
+    }
+    rowCounts = new AtomicLongArray( nrPartitions );
+
+    fieldIndexes = indexes;
+    return indexes;
+  }
+
+  /**
+   * Place the virtual nodes of every partition on the ring. The position of a node only depends on the partition ID
+   * and the node number, not on the other partitions.
+   */
+  private void buildRing( List<String> partitionIDs ) {
+    int nrPoints = partitionIDs.size() * virtualNodes;
+    long[] sorted = new long[nrPoints];
+    Murmur3Hash hash = new Murmur3Hash( RING_SEED );
+    for ( int partition = 0; partition < partitionIDs.size(); partition++ ) {
+      String partitionID = Const.NVL( partitionIDs.get( partition ), "" );
+      for ( int node = 0; node < virtualNodes; node++ ) {
+        int point = hash.reset().addChars( partitionID ).addInt( node ).finish();
+        sorted[partition * virtualNodes + node] = ( (long) point << 32 ) | partition;
+      }
+    }
+    Arrays.sort( sorted );
+
+    ringPoints = new int[nrPoints];
+    ringPartitions = new int[nrPoints];
+    for ( int i = 0; i < nrPoints; i++ ) {
+      ringPoints[i] = (int) ( sorted[i] >> 32 );
+      ringPartitions[i] = (int) sorted[i];
+    }
+  }
+
+  /**
+   * @return the index of the first point on the ring at or after the hash, wrapping around to the first point
+   */
+  private static int findRingPoint( int[] points, int hash ) {
+    int low = 0;
+    int high = points.length;
+    while ( low < high ) {
+      int middle = ( low + high ) >>> 1;
+      if ( points[middle] < hash ) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low == points.length ? 0 : low;
+  }
+
+  /**
+   * Add a value to the hash. Every value starts with a marker byte for null so that the combination of the values is
+   * unambiguous. Strings and binaries include their length for the same reason.
+   */
+  private static void addValue( Murmur3Hash hash, ValueMetaInterface valueMeta, Object valueData )
+    throws KettleValueException {
+    if ( valueMeta.isNull( valueData ) ) {
+      hash.addByte( 0 );
+      return;
+    }
+    Object value = valueMeta.convertToNormalStorageType( valueData );
+    hash.addByte( 1 );
+
+    if ( value instanceof Long ) {
+      hash.addLong( ( (Long) value ).longValue() );
+    } else if ( value instanceof String ) {
+      String string = (String) value;
+      hash.addInt( string.length() ).addChars( string );
+    } else if ( value instanceof Double ) {
+      double number = ( (Double) value ).doubleValue();
+      // -0.0 equals 0.0
+      hash.addLong( number == 0.0 ? 0L : Double.doubleToLongBits( number ) );
+    } else if ( value instanceof Timestamp ) {
+      Timestamp timestamp = (Timestamp) value;
+      hash.addLong( timestamp.getTime() ).addInt( timestamp.getNanos() );
+    } else if ( value instanceof Date ) {
+      hash.addLong( ( (Date) value ).getTime() );
+    } else if ( value instanceof BigDecimal ) {
+      // 1.0 equals 1.00, stripTrailingZeros() doesn't handle zero in Java 6
+      BigDecimal bigNumber = (BigDecimal) value;
+      if ( bigNumber.signum() == 0 ) {
+        hash.addInt( 0 );
+      } else {
+        bigNumber = bigNumber.stripTrailingZeros();
+        byte[] unscaled = bigNumber.unscaledValue().toByteArray();
+        hash.addInt( bigNumber.scale() ).addInt( unscaled.length ).addBytes( unscaled );
+      }
+    } else if ( value instanceof Boolean ) {
+      hash.addByte( ( (Boolean) value ).booleanValue() ? 1 : 0 );
+    } else if ( value instanceof byte[] ) {
+      byte[] binary = (byte[]) value;
+      hash.addInt( binary.length ).addBytes( binary );
+    } else if ( value instanceof InetAddress ) {
+      hash.addBytes( ( (InetAddress) value ).getAddress() );
+    } else {
+      hash.addInt( valueMeta.hashCode( value ) );
+    }
+  }
+
+  private synchronized void checkSkew() {
+    if ( skewReported ) {
+      return;
+    }
+    long[] counts = getRowCounts();
+    long total = 0L;
+    int busiest = 0;
+    for ( int i = 0; i < counts.length; i++ ) {
+      total += counts[i];
+      if ( counts[i] > counts[busiest] ) {
+        busiest = i;
+      }
+    }
+    double average = (double) total / counts.length;
+    if ( counts[busiest] * 100.0 > average * skewPercentage ) {
+      skewReported = true;
+      String partitionID = meta.getPartitionSchema().getPartitionIDs().get( busiest );
+      getLogChannel().logBasic( BaseMessages.getString( PKG, "HashPartitioner.Log.PartitionSkew",
+        partitionID, Long.toString( counts[busiest] ), Long.toString( total ),
+        Long.toString( Math.round( counts[busiest] * 100.0 / average ) ), getDescription() ) );
+    }
+  }
+
+  /**
+   * @return the number of rows sent to every partition so far, or an empty array if no rows were partitioned yet
+   */
+  public long[] getRowCounts() {
+    if ( fieldIndexes == null ) {
+      return new long[0];
+    }
+    long[] counts = new long[rowCounts.length()];
+    for ( int i = 0; i < counts.length; i++ ) {
+      counts[i] = rowCounts.get( i );
+    }
+    return counts;
+  }
+
+  /**
+   * @return true if a warning was logged because one partition received too many rows
+   */
+  public boolean isSkewReported() {
+    return skewReported;
+  }
+
+  public String getDescription() {
+    String description = "Hash partitioner";
+    if ( fieldNames.length > 0 ) {
+      StringBuilder fields = new StringBuilder();
+      for ( String fieldName : fieldNames ) {
+        if ( fields.length() > 0 ) {
+          fields.append( ", " );
+        }
+        fields.append( fieldName );
+      }
+      description += "(" + fields + ")";
+    }
+    return description;
+  }
+
+  public String getXML() {
+    StringBuilder xml = new StringBuilder( 250 );
+    xml.append( "           " ).append( XMLHandler.openTag( "fields" ) );
+    for ( String fieldName : fieldNames ) {
+      xml.append( XMLHandler.openTag( "field" ) );
+      xml.append( XMLHandler.addTagValue( "name", fieldName, false ) );
+      xml.append( XMLHandler.closeTag( "field" ) );
+    }
+    xml.append( XMLHandler.closeTag( "fields" ) ).append( Const.CR );
+    xml.append( "           " ).append( XMLHandler.addTagValue( "virtual_nodes", virtualNodes ) );
+    xml.append( "           " ).append( XMLHandler.addTagValue( "skew_percentage", skewPercentage ) );
+    return xml.toString();
+  }
+
+  public void loadXML( Node partitioningMethodNode ) throws KettleXMLException {
+    Node fieldsNode = XMLHandler.getSubNode( partitioningMethodNode, "fields" );
+    int nrFields = XMLHandler.countNodes( fieldsNode, "field" );
+    fieldNames = new String[nrFields];
+    for ( int i = 0; i < nrFields; i++ ) {
+      Node fieldNode = XMLHandler.getSubNodeByNr( fieldsNode, "field", i );
+      fieldNames[i] = XMLHandler.getTagValue( fieldNode, "name" );
+    }
+    virtualNodes =
+      Const.toInt( XMLHandler.getTagValue( partitioningMethodNode, "virtual_nodes" ), DEFAULT_VIRTUAL_NODES );
+    skewPercentage =
+      Const.toInt( XMLHandler.getTagValue( partitioningMethodNode, "skew_percentage" ), DEFAULT_SKEW_PERCENTAGE );
+  }
+
+  public void saveRep( Repository rep, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
+    for ( int i = 0; i < fieldNames.length; i++ ) {
+      rep.saveStepAttribute( id_transformation, id_step, i, "PARTITIONING_HASH_FIELDNAME", fieldNames[i] );
+    }
+    rep.saveStepAttribute( id_transformation, id_step, "PARTITIONING_VIRTUAL_NODES", virtualNodes );
+    rep.saveStepAttribute( id_transformation, id_step, "PARTITIONING_SKEW_PERCENTAGE", skewPercentage );
+  }
+
+  public void loadRep( Repository rep, ObjectId id_step ) throws KettleException {
+    int nrFields = rep.countNrStepAttributes( id_step, "PARTITIONING_HASH_FIELDNAME" );
+    fieldNames = new String[nrFields];
+    for ( int i = 0; i < nrFields; i++ ) {
+      fieldNames[i] = rep.getStepAttributeString( id_step, i, "PARTITIONING_HASH_FIELDNAME" );
+    }
+    virtualNodes = (int) rep.getStepAttributeInteger( id_step, "PARTITIONING_VIRTUAL_NODES" );
+    skewPercentage = (int) rep.getStepAttributeInteger( id_step, "PARTITIONING_SKEW_PERCENTAGE" );
+  }
+
+  /**
+   * @return the names of the key fields, the partition is calculated on the combination of their values
+   */
+  public String[] getFieldNames() {
+    return fieldNames;
+  }
+
+  public void setFieldNames( String[] fieldNames ) {
+    this.fieldNames = fieldNames;
+  }
+
+  /**
+   * @return the number of points every partition gets on the hash ring, 0 to use the hash modulo the number of
+   *         partitions
+   */
+  public int getVirtualNodes() {
+    return virtualNodes;
+  }
+
+  public void setVirtualNodes( int virtualNodes ) {
+    this.virtualNodes = virtualNodes;
+  }
+
+  /**
+   * @return the percentage of the average number of rows per partition above which a partition is reported as skewed,
+   *         0 to disable the check
+   */
+  public int getSkewPercentage() {
+    return skewPercentage;
+  }
+
+  public void setSkewPercentage( int skewPercentage ) {
+    this.skewPercentage = skewPercentage;
+  }
+}
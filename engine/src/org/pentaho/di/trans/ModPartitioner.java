@@ -93,7 +93,9 @@ public class ModPartitioner extends BasePartitioner {
      * value = rowMeta.getInteger(row, partitionColumnIndex);
      */
 
-    int targetLocation = (int) ( Math.abs( value ) % nrPartitions );
+    // Math.abs(Long.MIN_VALUE) is negative, take the remainder first
+    //
+    int targetLocation = (int) Math.abs( value % nrPartitions );
 
     return targetLocation;
   }
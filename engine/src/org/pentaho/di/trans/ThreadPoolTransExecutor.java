@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
+import org.pentaho.di.trans.step.RunThread;
+import org.pentaho.di.trans.step.ScheduledRowSet;
+import org.pentaho.di.trans.step.StepMetaDataCombi;
+import org.pentaho.di.trans.step.StepTask;
+import org.pentaho.di.trans.step.StepTaskPool;
+
+/**
+ * Starts the steps of a transformation with the Thread Pool transformation type. The step copies are run as
+ * {@link StepTask}s on the {@link StepTaskPool} shared by the JVM, so a transformation doesn't need a thread per step
+ * copy. The tasks are scheduled by the {@link ScheduledRowSet}s between them: a step runs when rows arrive in its
+ * input or when room frees up in its output.<br>
+ * <br>
+ * Only the steps whose metadata implements {@link PoolableStepMetaInterface} are run as tasks: they read and write
+ * rows through their row sets only. The others, like the steps waiting on another transformation, on a database or on
+ * a remote server, get a thread of their own like in a normal transformation.
+ */
+public class ThreadPoolTransExecutor {
+  private static Class<?> PKG = Trans.class; // for i18n purposes, needed by Translator2!!
+
+  private Trans trans;
+  private LogChannelInterface log;
+  private StepTaskPool pool;
+  private List<StepTask> tasks;
+  private List<StepMetaDataCombi> dedicatedSteps;
+
+  public ThreadPoolTransExecutor( Trans trans ) {
+    this( trans, StepTaskPool.getInstance() );
+  }
+
+  public ThreadPoolTransExecutor( Trans trans, StepTaskPool pool ) {
+    this.trans = trans;
+    this.log = trans.getLogChannel();
+    this.pool = pool;
+    this.tasks = new ArrayList<StepTask>();
+    this.dedicatedSteps = new ArrayList<StepMetaDataCombi>();
+
+    for ( StepMetaDataCombi combi : trans.getSteps() ) {
+      if ( isRunAsTask( combi ) ) {
+        // The pool threads are shared, don't let the steps change their priority
+        //
+        combi.step.setUsingThreadPriorityManagment( false );
+        tasks.add( new StepTask( combi, pool ) );
+      } else {
+        dedicatedSteps.add( combi );
+      }
+    }
+  }
+
+  /**
+   * Start running the steps: queue the tasks and start the threads of the other steps.
+   */
+  public void start() {
+    // Let the row sets know which tasks to wake up
+    //
+    for ( StepTask task : tasks ) {
+      for ( RowSet rowSet : task.getStep().getInputRowSets() ) {
+        if ( rowSet instanceof ScheduledRowSet ) {
+          ( (ScheduledRowSet) rowSet ).setConsumer( task );
+        }
+      }
+      for ( RowSet rowSet : task.getStep().getOutputRowSets() ) {
+        if ( rowSet instanceof ScheduledRowSet ) {
+          ( (ScheduledRowSet) rowSet ).setProducer( task );
+        }
+      }
+    }
+
+    // Idle tasks need to see that they were stopped
+    //
+    trans.addTransStoppedListener( new TransStoppedListener() {
+      public void transStopped( Trans stoppedTrans ) {
+        for ( StepTask task : tasks ) {
+          task.wakeUp();
+        }
+      }
+    } );
+
+    if ( log.isDetailed() ) {
+      log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.ThreadPoolStarted", String.valueOf( tasks.size() ),
+        String.valueOf( pool.getParallelism() ), String.valueOf( dedicatedSteps.size() ) ) );
+    }
+
+    for ( StepMetaDataCombi combi : dedicatedSteps ) {
+      Thread thread = new Thread( new RunThread( combi ) );
+      thread.setName( trans.getName() + " - " + combi.stepname );
+      thread.start();
+    }
+    for ( StepTask task : tasks ) {
+      task.wakeUp();
+    }
+  }
+
+  private boolean isRunAsTask( StepMetaDataCombi combi ) {
+    if ( !combi.stepMeta.getRemoteInputSteps().isEmpty() || !combi.stepMeta.getRemoteOutputSteps().isEmpty() ) {
+      return false;
+    }
+    if ( combi.step instanceof BaseStep ) {
+      BaseStep baseStep = (BaseStep) combi.step;
+      if ( !baseStep.getRemoteInputSteps().isEmpty() || !baseStep.getRemoteOutputSteps().isEmpty() ) {
+        return false;
+      }
+    }
+    return combi.meta instanceof PoolableStepMetaInterface;
+  }
+
+  /**
+   * @return the tasks running the step copies on the pool
+   */
+  public List<StepTask> getTasks() {
+    return tasks;
+  }
+
+  /**
+   * @return the step copies that run on a thread of their own
+   */
+  public List<StepMetaDataCombi> getDedicatedSteps() {
+    return dedicatedSteps;
+  }
+}
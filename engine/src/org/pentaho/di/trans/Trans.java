@@ -63,9 +63,11 @@ import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
+import org.pentaho.di.core.RingBufferRowSet;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.SingleRowRowSet;
+import org.pentaho.di.core.database.ConnectionPoolUtil;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.database.DatabaseTransactionListener;
@@ -119,11 +121,13 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.repository.RepositoryDirectoryInterface;
 import org.pentaho.di.resource.ResourceUtil;
 import org.pentaho.di.resource.TopLevelResource;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.performance.StepPerformanceSnapShot;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.step.RunThread;
+import org.pentaho.di.trans.step.ScheduledRowSet;
 import org.pentaho.di.trans.step.StepAdapter;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInitThread;
@@ -777,7 +781,11 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                 //
                 Boolean batchingRowSet =
                   ValueMeta.convertStringToBoolean( System.getProperty( Const.KETTLE_BATCHING_ROWSET ) );
-                if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
+                if ( transMeta.isUsingRingBufferRowSets() ) {
+                  // Every row set links exactly one step copy to one other step copy: single producer, single consumer
+                  //
+                  rowSet = new RingBufferRowSet( transMeta.getSizeRowset(), transMeta.getRowSetWaitStrategy() );
+                } else if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
                   rowSet = new BlockingBatchingRowSet( transMeta.getSizeRowset() );
                 } else {
                   rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
@@ -792,6 +800,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                 rowSet = new QueueRowSet();
                 break;
 
+              case ThreadPool:
+                rowSet = new ScheduledRowSet( transMeta.getSizeRowset() );
+                break;
+
               default:
                 throw new KettleException( "Unhandled transformation type: " + transMeta.getTransformationType() );
             }
@@ -826,7 +838,14 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           // distribution...
           for ( int s = 0; s < thisCopies; s++ ) {
             for ( int t = 0; t < nextCopies; t++ ) {
-              BlockingRowSet rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              RowSet rowSet;
+              if ( transMeta.getTransformationType() == TransformationType.ThreadPool ) {
+                rowSet = new ScheduledRowSet( transMeta.getSizeRowset() );
+              } else if ( transMeta.isUsingRingBufferRowSets() ) {
+                rowSet = new RingBufferRowSet( transMeta.getSizeRowset(), transMeta.getRowSetWaitStrategy() );
+              } else {
+                rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              }
               rowSet.setThreadNameFromToCopy( thisStep.getName(), s, nextStep.getName(), t );
               rowsets.add( rowSet );
               if ( log.isDetailed() ) {
@@ -1319,6 +1338,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
         if ( transMeta.isUsingUniqueConnections() ) {
           trans.closeUniqueDatabaseConnections( getResult() );
         }
+
+        // Give the pooled connections back that the steps didn't return, the shared pools would run dry otherwise.
+        //
+        ConnectionPoolUtil.closeLeakedConnections( log, getLogChannelId() );
       }
     };
     // This should always be done first so that the other listeners achieve a clean state to start from (setFinished and
@@ -1341,21 +1364,21 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeStart.id, combi );
           // Call an extension point at the end of the step
           //
-          combi.step.addStepListener( new StepAdapter() {
+          addStepFinishedExtensionPoint( combi );
 
-            @Override
-            public void stepFinished( Trans trans, StepMeta stepMeta, StepInterface step ) {
-              try {
-                ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepFinished.id, combi );
-              } catch ( KettleException e ) {
-                throw new RuntimeException( "Unexpected error in calling extension point upon step finish", e );
-              }
-            }
+          thread.start();
+        }
+        break;
 
-          } );
+      case ThreadPool:
 
-          thread.start();
+        // Run the step copies as tasks on the shared step thread pool...
+        //
+        for ( StepMetaDataCombi combi : steps ) {
+          ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeStart.id, combi );
+          addStepFinishedExtensionPoint( combi );
         }
+        new ThreadPoolTransExecutor( this ).start();
         break;
 
       case SerialSingleThreaded:
@@ -1440,6 +1463,27 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     }
   }
 
+  /**
+   * Calls the StepFinished extension point when the step finishes.
+   *
+   * @param combi
+   *          the step
+   */
+  private void addStepFinishedExtensionPoint( final StepMetaDataCombi combi ) {
+    combi.step.addStepListener( new StepAdapter() {
+
+      @Override
+      public void stepFinished( Trans trans, StepMeta stepMeta, StepInterface step ) {
+        try {
+          ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepFinished.id, combi );
+        } catch ( KettleException e ) {
+          throw new RuntimeException( "Unexpected error in calling extension point upon step finish", e );
+        }
+      }
+
+    } );
+  }
+
   /**
    * Make attempt to fire all registered listeners if possible.
    *
@@ -3277,6 +3321,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       case SingleThreaded:
         rowSet = new QueueRowSet();
         break;
+      case ThreadPool:
+        rowSet = new ScheduledRowSet( transMeta.getSizeRowset() );
+        break;
       default:
         throw new KettleException( "Unhandled transformation type: " + transMeta.getTransformationType() );
     }
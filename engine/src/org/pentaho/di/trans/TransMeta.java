@@ -51,6 +51,7 @@ import org.pentaho.di.core.ProgressMonitorListener;
 import org.pentaho.di.core.Props;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
+import org.pentaho.di.core.RingBufferRowSet;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.SQLStatement;
 import org.pentaho.di.core.attributes.AttributesUtil;
@@ -186,6 +187,12 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
   /** The size of the current rowset. */
   protected int sizeRowset;
 
+  /** Whether the hops of a normal transformation use lock-free ring buffer row sets. */
+  protected boolean usingRingBufferRowSets;
+
+  /** The wait strategy of the ring buffer row sets. */
+  protected RingBufferRowSet.WaitStrategy rowSetWaitStrategy;
+
   /** The meta-data for the database connection associated with "max date" auditing information. */
   protected DatabaseMeta maxDateConnection;
 
@@ -289,7 +296,7 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
 
   /**
    * The TransformationType enum describes the various types of transformations in terms of execution, including Normal,
-   * Serial Single-Threaded, and Single-Threaded.
+   * Serial Single-Threaded, Single-Threaded and Thread Pool.
    */
   public enum TransformationType {
 
@@ -302,7 +309,10 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
 
       /** A single-threaded transformation. */
       SingleThreaded( "SingleThreaded", BaseMessages
-        .getString( PKG, "TransMeta.TransformationType.SingleThreaded" ) );
+        .getString( PKG, "TransMeta.TransformationType.SingleThreaded" ) ),
+
+      /** A transformation of which the step copies are scheduled as tasks on a shared pool of threads. */
+      ThreadPool( "ThreadPool", BaseMessages.getString( PKG, "TransMeta.TransformationType.ThreadPool" ) );
 
     /** The code corresponding to the transformation type. */
     private String code;
@@ -684,6 +694,8 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
     metricsLogTable = MetricsLogTable.getDefault( this, this );
 
     sizeRowset = Const.ROWS_IN_ROWSET;
+    usingRingBufferRowSets = false;
+    rowSetWaitStrategy = RingBufferRowSet.WaitStrategy.PARK;
     sleepTimeEmpty = Const.TIMEOUT_GET_MILLIS;
     sleepTimeFull = Const.TIMEOUT_PUT_MILLIS;
 
@@ -2362,6 +2374,8 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
     retval.append( "    </maxdate>" ).append( Const.CR );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "size_rowset", sizeRowset ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "ring_buffer_rowsets", usingRingBufferRowSets ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "rowset_wait_strategy", rowSetWaitStrategy.getCode() ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "sleep_time_empty", sleepTimeEmpty ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sleep_time_full", sleepTimeFull ) );
@@ -3240,6 +3254,10 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
 
         String srowset = XMLHandler.getTagValue( infonode, "size_rowset" );
         sizeRowset = Const.toInt( srowset, Const.ROWS_IN_ROWSET );
+        usingRingBufferRowSets = "Y".equalsIgnoreCase( XMLHandler.getTagValue( infonode, "ring_buffer_rowsets" ) );
+        rowSetWaitStrategy =
+          RingBufferRowSet.WaitStrategy.getWaitStrategyByCode( XMLHandler.getTagValue(
+            infonode, "rowset_wait_strategy" ) );
         sleepTimeEmpty =
           Const.toInt( XMLHandler.getTagValue( infonode, "sleep_time_empty" ), Const.TIMEOUT_GET_MILLIS );
         sleepTimeFull =
@@ -5410,6 +5428,45 @@ public class TransMeta extends AbstractMeta implements XMLInterface, Comparator<
     }
   }
 
+  /**
+   * Checks whether the hops of this transformation use lock-free ring buffer row sets instead of blocking queues. This
+   * only applies to transformations of type Normal.
+   *
+   * @return true if ring buffer row sets are used, false otherwise
+   */
+  public boolean isUsingRingBufferRowSets() {
+    return usingRingBufferRowSets;
+  }
+
+  /**
+   * Sets whether the hops of this transformation use lock-free ring buffer row sets instead of blocking queues.
+   *
+   * @param usingRingBufferRowSets
+   *          true if ring buffer row sets should be used, false otherwise
+   */
+  public void setUsingRingBufferRowSets( boolean usingRingBufferRowSets ) {
+    this.usingRingBufferRowSets = usingRingBufferRowSets;
+  }
+
+  /**
+   * Gets the wait strategy used by the ring buffer row sets.
+   *
+   * @return the row set wait strategy
+   */
+  public RingBufferRowSet.WaitStrategy getRowSetWaitStrategy() {
+    return rowSetWaitStrategy;
+  }
+
+  /**
+   * Sets the wait strategy used by the ring buffer row sets.
+   *
+   * @param rowSetWaitStrategy
+   *          the row set wait strategy to set
+   */
+  public void setRowSetWaitStrategy( RingBufferRowSet.WaitStrategy rowSetWaitStrategy ) {
+    this.rowSetWaitStrategy = rowSetWaitStrategy;
+  }
+
   /**
    * Checks whether the transformation is using thread priority management.
    *
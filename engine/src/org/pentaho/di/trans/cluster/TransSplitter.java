@@ -80,6 +80,8 @@ public class TransSplitter {
     new SlaveStepCopyPartitionDistribution();
   private int socketsBufferSize;
   private boolean compressingSocketStreams;
+  private boolean batchSocketTransport;
+  private String socketsCompressionType;
 
   private Map<String, Integer> portCache;
 
@@ -186,6 +188,8 @@ public class TransSplitter {
           Const.toInt(
             originalTransformation.environmentSubstitute( clusterSchema.getSocketsBufferSize() ), 50000 );
         compressingSocketStreams = clusterSchema.isSocketsCompressed();
+        batchSocketTransport = clusterSchema.isSocketsBatchTransport();
+        socketsCompressionType = clusterSchema.getSocketsCompressionType();
 
         // Validate the number of slaves. We need at least one to have a valid cluster
         //
@@ -335,6 +339,10 @@ public class TransSplitter {
     // Priority management
     transMeta.setUsingThreadPriorityManagment( originalTransformation.isUsingThreadPriorityManagment() );
 
+    // Row set implementation
+    transMeta.setUsingRingBufferRowSets( originalTransformation.isUsingRingBufferRowSets() );
+    transMeta.setRowSetWaitStrategy( originalTransformation.getRowSetWaitStrategy() );
+
     // Unique connections
     transMeta.setUsingUniqueConnections( originalTransformation.isUsingUniqueConnections() );
 
@@ -570,6 +578,7 @@ public class TransSplitter {
                         masterStepCopyNr, sourceSlaveServer.getName(), masterSlaveServer.getName(),
                         socketsBufferSize, compressingSocketStreams, originalTransformation
                           .getStepFields( previousStep ) );
+                    setSocketTransport( remoteMasterStep );
                     masterStep.getRemoteInputSteps().add( remoteMasterStep );
 
                     RemoteStep remoteSlaveStep =
@@ -579,6 +588,7 @@ public class TransSplitter {
                         masterStepCopyNr, sourceSlaveServer.getName(), masterSlaveServer.getName(),
                         socketsBufferSize, compressingSocketStreams, originalTransformation
                           .getStepFields( previousStep ) );
+                    setSocketTransport( remoteSlaveStep );
                     slaveStep.getRemoteOutputSteps().add( remoteSlaveStep );
 
                     // OK, create a partition number for the target step in the partition distribution...
@@ -712,6 +722,7 @@ public class TransSplitter {
                         referenceStep.getName(), targetCopyNr, masterSlaveServer.getName(), targetSlaveServer
                           .getName(), socketsBufferSize, compressingSocketStreams, originalTransformation
                           .getStepFields( previousStep ) );
+                    setSocketTransport( remoteMasterStep );
                     sourceStep.getRemoteOutputSteps().add( remoteMasterStep );
 
                     RemoteStep remoteSlaveStep =
@@ -721,6 +732,7 @@ public class TransSplitter {
                         referenceStep.getName(), targetCopyNr, masterSlaveServer.getName(), targetSlaveServer
                           .getName(), socketsBufferSize, compressingSocketStreams, originalTransformation
                           .getStepFields( previousStep ) );
+                    setSocketTransport( remoteSlaveStep );
                     targetStep.getRemoteInputSteps().add( remoteSlaveStep );
 
                     // OK, create a partition number for the target step in the partition distribution...
@@ -922,6 +934,7 @@ public class TransSplitter {
                                     .getName(), targetCopyNr, targetSlaveServer.getName(), sourceSlaveServer
                                     .getName(), socketsBufferSize, compressingSocketStreams,
                                   originalTransformation.getStepFields( previousStep ) );
+                              setSocketTransport( remoteOutputStep );
                               sourceStep.getRemoteOutputSteps().add( remoteOutputStep );
 
                               // OK, so the source step is sending rows out on the reserved ports
@@ -938,6 +951,7 @@ public class TransSplitter {
                                     .getName(), targetCopyNr, sourceSlaveServer.getName(), targetSlaveServer
                                     .getName(), socketsBufferSize, compressingSocketStreams,
                                   originalTransformation.getStepFields( previousStep ) );
+                              setSocketTransport( remoteInputStep );
                               targetStep.getRemoteInputSteps().add( remoteInputStep );
                             }
                             // OK, save the partition number for the target step in the partition distribution...
@@ -1357,6 +1371,17 @@ public class TransSplitter {
    *          the reference step
    * @return the number of step copies that we run.
    */
+  /**
+   * Apply the socket transport options of the cluster schema to a remote step.
+   *
+   * @param remoteStep
+   *          the remote step to configure
+   */
+  private void setSocketTransport( RemoteStep remoteStep ) {
+    remoteStep.setBatchTransport( batchSocketTransport );
+    remoteStep.setCompressionType( socketsCompressionType );
+  }
+
   private int determineNrOfStepCopies( SlaveServer slaveServer, StepMeta step ) {
     if ( !step.isClustered() ) {
       return step.getCopies();
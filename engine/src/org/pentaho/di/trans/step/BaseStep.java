@@ -40,12 +40,15 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.pentaho.di.core.BatchRowSet;
 import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.ExtensionDataInterface;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.RowSetSignal;
+import org.pentaho.di.core.SignalingRowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleRowException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -68,9 +71,11 @@ import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.ObjectRevision;
 import org.pentaho.di.repository.Repository;
 import org.pentaho.di.repository.RepositoryDirectory;
+import org.pentaho.di.trans.BasePartitioner;
 import org.pentaho.di.trans.SlaveStepCopyPartitionDistribution;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.steps.mapping.Mapping;
@@ -360,10 +365,11 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   private int upperBufferBoundary;
 
-  /**
-   * The lower buffer size boundary after which we manage the thread priority a little bit to prevent excessive locking
-   */
-  private int lowerBufferBoundary;
+  /** Raised by the input row sets when they receive rows or are done, it's what getRow() waits for */
+  private final RowSetSignal inputSignal = new RowSetSignal();
+
+  /** The maximum time in ms to wait for the input signal before looking at the input row sets again */
+  private long inputWaitTimeout;
 
   /** maximum number of errors to allow */
   private Long maxErrors = -1L;
@@ -508,7 +514,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     dispatch();
 
     upperBufferBoundary = (int) ( transMeta.getSizeRowset() * 0.99 );
-    lowerBufferBoundary = (int) ( transMeta.getSizeRowset() * 0.01 );
+    inputWaitTimeout = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
   }
 
   /*
@@ -855,6 +861,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * Increments the number of lines read from previous steps by a number of lines
+   *
+   * @param nrLines
+   *          the number of lines to add
+   * @return Returns the new value
+   */
+  public long addLinesRead( long nrLines ) {
+    synchronized ( statusCountersLock ) {
+      linesRead += nrLines;
+      return linesRead;
+    }
+  }
+
   /**
    * Decrements the number of lines read from previous steps by one
    *
@@ -956,6 +976,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * Increments the number of lines written to next steps by a number of lines
+   *
+   * @param nrLines
+   *          the number of lines to add
+   * @return Returns the new value
+   */
+  public long addLinesWritten( long nrLines ) {
+    synchronized ( statusCountersLock ) {
+      linesWritten += nrLines;
+      return linesWritten;
+    }
+  }
+
   /**
    * Decrements the number of lines written to next steps by one
    *
@@ -1265,6 +1299,69 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * putRows is the batch version of putRow(): it passes a whole chunk of rows described by the same metadata to the
+   * next steps. The pause, stop and startup checks are done once per chunk instead of once per row. When there is a
+   * single output rowset and no partitioning or custom row distribution, the rows are handed over in bulk as well.
+   * Otherwise every row is passed on through putRow().
+   *
+   * @param rowMeta
+   *          The description of the rows
+   * @param rows
+   *          The rows to put to the destination rowset(s).
+   * @throws KettleStepException
+   */
+  public void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+    if ( rows.isEmpty() ) {
+      return;
+    }
+
+    boolean bulk =
+      repartitioning == StepPartitioningMeta.PARTITIONING_METHOD_NONE
+        && rowDistribution == null && outputRowSets.size() == 1 && !terminator && rowListeners.isEmpty()
+        && outputRowSets.get( 0 ) instanceof BatchRowSet;
+    if ( !bulk ) {
+      for ( Object[] row : rows ) {
+        putRow( rowMeta, row );
+      }
+      return;
+    }
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    while ( paused.get() && !stopped.get() ) {
+      try {
+        Thread.sleep( 1 );
+      } catch ( InterruptedException e ) {
+        throw new KettleStepException( e );
+      }
+    }
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+      }
+      stopAll();
+      return;
+    }
+
+    waitUntilTransformationIsStarted();
+
+    // Loop until the target rowset accepted all the rows
+    //
+    BatchRowSet rs = (BatchRowSet) outputRowSets.get( 0 );
+    int index = 0;
+    while ( index < rows.size() ) {
+      int nrPut = rs.putRows( rowMeta, rows, index );
+      if ( nrPut > 0 ) {
+        index += nrPut;
+        addLinesWritten( nrPut );
+      } else if ( isStopped() ) {
+        break;
+      }
+    }
+  }
+
   /**
    * Copy always to all target steps/copies
    *
@@ -1282,6 +1379,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * Partition the rows for the next step with the given partitioning. The partitioner reports on the log channel of
+   * this step.
+   */
+  private void useNextStepPartitioningMeta( StepPartitioningMeta partitioningMeta ) {
+    nextStepPartitioningMeta = partitioningMeta;
+    if ( partitioningMeta != null && partitioningMeta.getPartitioner() instanceof BasePartitioner ) {
+      ( (BasePartitioner) partitioningMeta.getPartitioner() ).setLogChannel( log );
+    }
+  }
+
   private void specialPartitioning( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
     if ( nextStepPartitioningMeta == null ) {
       // Look up the partitioning of the next step.
@@ -1289,7 +1397,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       //
       List<StepMeta> nextSteps = transMeta.findNextSteps( stepMeta );
       if ( nextSteps.size() > 0 ) {
-        nextStepPartitioningMeta = nextSteps.get( 0 ).getStepPartitioningMeta();
+        useNextStepPartitioningMeta( nextSteps.get( 0 ).getStepPartitioningMeta() );
       }
 
       // TODO: throw exception if we're not partitioning yet.
@@ -1689,6 +1797,53 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * Wait until any of the input row sets receives rows or is done, or until the step is stopped. The wait is bounded by
+   * the row set get timeout, see {@link Const#KETTLE_ROWSET_GET_TIMEOUT}. Input row sets that can't raise the signal
+   * are looked at again after a millisecond.
+   */
+  private void waitForInput() {
+    long ticket = inputSignal.prepareWait();
+    long timeout = inputWaitTimeout;
+
+    // Look at the row sets once more now that they will wake us up: rows can have arrived while we looked around.
+    // The signal is (re-)attached every time since row sets can be added to the step while it runs.
+    //
+    synchronized ( inputRowSets ) {
+      for ( RowSet rowSet : inputRowSets ) {
+        if ( rowSet instanceof SignalingRowSet ) {
+          ( (SignalingRowSet) rowSet ).setConsumerSignal( inputSignal );
+        } else {
+          timeout = 1;
+        }
+      }
+      for ( RowSet rowSet : inputRowSets ) {
+        if ( rowSet.size() > 0 || rowSet.isDone() ) {
+          inputSignal.cancelWait();
+          return;
+        }
+      }
+    }
+    if ( isStopped() ) {
+      inputSignal.cancelWait();
+      return;
+    }
+
+    // On a thread of the step task pool, let the pool run the other tasks while we wait
+    //
+    StepTaskPool pool = StepTaskPool.getWorkerPool();
+    if ( pool != null ) {
+      pool.beginBlocking();
+    }
+    try {
+      inputSignal.await( ticket, timeout, TimeUnit.MILLISECONDS );
+    } finally {
+      if ( pool != null ) {
+        pool.endBlocking();
+      }
+    }
+  }
+
   /**
    * Wait until the transformation is completely running and all threads have been started.
    */
@@ -1770,19 +1925,6 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       inputRowSet = currentInputStream();
     }
 
-    // To reduce stress on the locking system we are going to allow
-    // The buffer to grow beyond "a few" entries.
-    // We'll only do that if the previous step has not ended...
-    //
-    if ( isUsingThreadPriorityManagment()
-      && !inputRowSet.isDone() && inputRowSet.size() <= lowerBufferBoundary && !isStopped() ) {
-      try {
-        Thread.sleep( 0, 1 );
-      } catch ( InterruptedException e ) {
-        // Ignore sleep interruption exception
-      }
-    }
-
     // See if this step is receiving partitioned data...
     // In that case it might be the case that one input row set is receiving
     // all data and
@@ -1793,14 +1935,15 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // alternatively.
     // So in THIS particular case it is safe to just read 100 rows from one
     // rowset, then switch to another etc.
-    // We can use timeouts to switch from one to another...
+    // If none of the row sets has a row, we wait until one of them receives rows or is done.
     //
+    int nrEmptyRowSets = 0;
     while ( row == null && !isStopped() ) {
       // Get a row from the input in row set ...
-      // Timeout immediately if nothing is there to read.
+      // Don't wait if nothing is there to read.
       // We will then switch to the next row set to read from...
       //
-      row = inputRowSet.getRowWait( 1, TimeUnit.MILLISECONDS );
+      row = inputRowSet.getRowImmediate();
       if ( row != null ) {
         incrementLinesRead();
         blockPointer++;
@@ -1811,15 +1954,21 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // the input stream and move on to the next one...
         //
         if ( inputRowSet.isDone() ) {
-          row = inputRowSet.getRowWait( 1, TimeUnit.MILLISECONDS );
+          row = inputRowSet.getRowImmediate();
           if ( row == null ) {
             inputRowSets.remove( currentInputRowSetNr );
             if ( inputRowSets.isEmpty() ) {
               return null; // We're completely done.
             }
+            nrEmptyRowSets = 0;
           } else {
             incrementLinesRead();
           }
+        } else if ( ++nrEmptyRowSets >= inputRowSets.size() ) {
+          // We went round all the input row sets: block until there is something to read
+          //
+          waitForInput();
+          nrEmptyRowSets = 0;
         }
         nextInputStream();
         inputRowSet = currentInputStream();
@@ -1876,6 +2025,101 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return row;
   }
 
+  /**
+   * getRows is the batch version of getRow(): it waits for input the same way, but then returns all the rows that are
+   * immediately available, up to a maximum. The pause, stop and startup checks are done once per chunk. Steps with
+   * more than one input rowset, row listeners or safe mode enabled get a chunk of a single row from getRow(). So do
+   * the steps of single threaded transformations: their executor calls processRow() once for every row waiting in
+   * the input, so a chunk would leave it calling with an empty input.
+   *
+   * @param maxRows
+   *          the maximum number of rows to return
+   * @return a list with at least one row or null if there is no more input.
+   * @throws KettleException
+   */
+  public List<Object[]> getRows( int maxRows ) throws KettleException {
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    while ( paused.get() && !stopped.get() ) {
+      try {
+        Thread.sleep( 100 );
+      } catch ( InterruptedException e ) {
+        throw new KettleStepException( e );
+      }
+    }
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopLookingForMoreRows" ) );
+      }
+      stopAll();
+      return null;
+    }
+
+    // Small startup check
+    //
+    waitUntilTransformationIsStarted();
+
+    // See if we need to open sockets to remote input steps...
+    //
+    openRemoteInputStepSocketsOnce();
+
+    if ( inputRowSets.size() != 1 || !( inputRowSets.get( 0 ) instanceof BatchRowSet ) || !rowListeners.isEmpty()
+      || trans.isSafeModeEnabled() || isSingleThreaded() ) {
+      Object[] row = getRow();
+      if ( row == null ) {
+        return null;
+      }
+      List<Object[]> rows = new ArrayList<Object[]>( 1 );
+      rows.add( row );
+      return rows;
+    }
+
+    BatchRowSet inputRowSet = (BatchRowSet) inputRowSets.get( 0 );
+    List<Object[]> rows = new ArrayList<Object[]>( Math.min( maxRows, inputRowSet.size() + 1 ) );
+    while ( rows.isEmpty() && !isStopped() ) {
+      if ( inputRowSet.getRows( rows, maxRows ) == 0 ) {
+        if ( inputRowSet.isDone() ) {
+          // Try once more, the last rows could have arrived right before the done flag was set.
+          //
+          if ( inputRowSet.getRows( rows, maxRows ) == 0 ) {
+            inputRowSets.remove( 0 );
+            return null; // We're completely done.
+          }
+        } else {
+          waitForInput();
+        }
+      }
+    }
+    if ( rows.isEmpty() ) {
+      return null; // stopped
+    }
+    addLinesRead( rows.size() );
+
+    // Also set the meta data on the first occurrence.
+    //
+    if ( inputRowMeta == null ) {
+      inputRowMeta = inputRowSet.getRowMeta();
+    }
+
+    // Check the rejection rates etc. as well.
+    verifyRejectionRates();
+
+    return rows;
+  }
+
+  /**
+   * @return true if this step is run by the single threaded executor, one processRow() call per input row
+   */
+  private boolean isSingleThreaded() {
+    if ( transMeta == null ) {
+      return false;
+    }
+    TransformationType type = transMeta.getTransformationType();
+    return type == TransformationType.SingleThreaded || type == TransformationType.SerialSingleThreaded;
+  }
+
   /**
    * Opens socket connections to the remote input steps of this step. <br>
    * This method should be used by steps that don't call getRow() first in which it is executed automatically. <br>
@@ -2085,19 +2329,6 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
     Object[] rowData = null;
 
-    // To reduce stress on the locking system we are going to allow
-    // The buffer to grow beyond "a few" entries.
-    // We'll only do that if the previous step has not ended...
-    //
-    if ( isUsingThreadPriorityManagment()
-      && !rowSet.isDone() && rowSet.size() <= lowerBufferBoundary && !isStopped() ) {
-      try {
-        Thread.sleep( 0, 1 );
-      } catch ( InterruptedException e ) {
-        // Ignore sleep interruption exception
-      }
-    }
-
     // Grab a row... If nothing received after a timeout, try again.
     //
     rowData = rowSet.getRow();
@@ -2608,7 +2839,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
 
     if ( stepMeta.getTargetStepPartitioningMeta() != null ) {
-      nextStepPartitioningMeta = stepMeta.getTargetStepPartitioningMeta();
+      useNextStepPartitioningMeta( stepMeta.getTargetStepPartitioningMeta() );
     }
 
     if ( log.isDetailed() ) {
@@ -2868,6 +3099,9 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   public void setStopped( boolean stopped ) {
     this.stopped.set( stopped );
+    if ( stopped ) {
+      inputSignal.signal();
+    }
   }
 
   /*
@@ -3438,6 +3672,21 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       && ( lines % getTransMeta().getFeedbackSize() ) == 0;
   }
 
+  /**
+   * Checks whether feedback should be given after a chunk of rows moved the line counter from previousLines to lines.
+   *
+   * @param previousLines
+   *          the number of lines before the chunk was processed
+   * @param lines
+   *          the number of lines after the chunk was processed
+   * @return true if a feedback boundary was crossed
+   */
+  protected boolean checkFeedback( long previousLines, long lines ) {
+    return getTransMeta().isFeedbackShown()
+      && ( lines > 0 ) && ( getTransMeta().getFeedbackSize() > 0 )
+      && ( previousLines / getTransMeta().getFeedbackSize() ) != ( lines / getTransMeta().getFeedbackSize() );
+  }
+
   /**
    * @return the rowMeta
    */
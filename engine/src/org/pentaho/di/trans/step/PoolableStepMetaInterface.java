@@ -0,0 +1,32 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+/**
+ * Marks the metadata of a step that can run as a task on the {@link StepTaskPool} in a transformation with the Thread
+ * Pool transformation type. A step run as a task shares its thread with other steps, so it may only read and write
+ * rows through its row sets and must not wait for anything else: other transformations, remote servers, files or
+ * databases. The steps whose metadata doesn't implement this interface get a thread of their own.
+ */
+public interface PoolableStepMetaInterface {
+}
@@ -35,8 +35,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.pentaho.di.cluster.ClusterSchema;
 import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.exception.KettleEOFException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
@@ -95,6 +98,12 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
   private int bufferSize;
   private boolean compressingStreams;
 
+  /** Send the rows in compressed columnar batches, see {@link RemoteStepBatchWriter} */
+  private boolean batchTransport;
+
+  /** The name of the compression provider used by the batch transport */
+  private String compressionType;
+
   private GZIPOutputStream gzipOutputStream;
 
   private String sourceSlaveServerName;
@@ -165,6 +174,8 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     xml.append( XMLHandler.addTagValue( "port", port, false ) );
     xml.append( XMLHandler.addTagValue( "buffer_size", bufferSize, false ) );
     xml.append( XMLHandler.addTagValue( "compressed_streams", compressingStreams, false ) );
+    xml.append( XMLHandler.addTagValue( "batch_transport", batchTransport, false ) );
+    xml.append( XMLHandler.addTagValue( "compression_type", compressionType, false ) );
 
     xml.append( XMLHandler.addTagValue( "source_step_name", sourceStep, false ) );
     xml.append( XMLHandler.addTagValue( "source_step_copy", sourceStepCopyNr, false ) );
@@ -193,6 +204,8 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     port = XMLHandler.getTagValue( node, "port" );
     bufferSize = Integer.parseInt( XMLHandler.getTagValue( node, "buffer_size" ) );
     compressingStreams = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "compressed_streams" ) );
+    batchTransport = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "batch_transport" ) );
+    compressionType = XMLHandler.getTagValue( node, "compression_type" );
 
     sourceStep = XMLHandler.getTagValue( node, "source_step_name" );
     sourceStepCopyNr = Integer.parseInt( XMLHandler.getTagValue( node, "source_step_copy" ) );
@@ -258,6 +271,36 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     this.port = port;
   }
 
+  /**
+   * @return true if the rows are sent in compressed columnar batches with credit based flow control
+   */
+  public boolean isBatchTransport() {
+    return batchTransport;
+  }
+
+  /**
+   * @param batchTransport
+   *          true to send the rows in compressed columnar batches with credit based flow control
+   */
+  public void setBatchTransport( boolean batchTransport ) {
+    this.batchTransport = batchTransport;
+  }
+
+  /**
+   * @return the name of the compression provider used by the batch transport when the streams are compressed
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider used by the batch transport when the streams are compressed
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
   public synchronized void openServerSocket( BaseStep baseStep ) throws IOException {
     this.baseStep = baseStep;
     int portNumber = Integer.parseInt( baseStep.environmentSubstitute( port ) );
@@ -334,6 +377,11 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
           socket = serverSocket.accept();
 
+          if ( batchTransport ) {
+            sendBatches( rowSet );
+            return;
+          }
+
           // Create the output stream...
           if ( compressingStreams ) {
             gzipOutputStream = new GZIPOutputStream( socket.getOutputStream(), 50000 );
@@ -428,6 +476,81 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     return rowSet;
   }
 
+  /**
+   * Send the rows of the row set to the remote step in batches. Credits granted by the reader arrive on the input
+   * channel of the same socket.
+   *
+   * @param rowSet
+   *          the row set to read the rows from
+   */
+  private void sendBatches( BlockingRowSet rowSet ) throws KettleException, IOException {
+    baseStep.logBasic( "Server socket accepted for port ["
+      + port + "], sending row batches to server " + targetSlaveServerName );
+
+    Object[] rowData = baseStep.getRowFrom( rowSet );
+    if ( rowData == null ) {
+      return;
+    }
+
+    RemoteStepBatchWriter writer =
+      new RemoteStepBatchWriter( socket.getOutputStream(), socket.getInputStream(), rowSet.getRowMeta(),
+        getCompressionProvider(), RemoteStepBatchWriter.DEFAULT_BATCH_SIZE );
+
+    while ( rowData != null && !baseStep.isStopped() ) {
+      // It's too confusing to count these twice, so decrement
+      baseStep.decrementLinesRead();
+      baseStep.decrementLinesWritten();
+
+      writer.putRow( rowData );
+      baseStep.incrementLinesOutput();
+
+      if ( baseStep.log.isDebug() ) {
+        baseStep.logDebug( "Sent row to port " + port + " : " + rowSet.getRowMeta().getString( rowData ) );
+      }
+      rowData = baseStep.getRowFrom( rowSet );
+    }
+    writer.close();
+  }
+
+  /**
+   * Read the rows sent by the remote step in batches and pass them to the row set.
+   *
+   * @param rowSet
+   *          the row set to write the rows to
+   */
+  private void receiveBatches( BlockingRowSet rowSet ) throws KettleException, IOException {
+    RemoteStepBatchReader reader =
+      new RemoteStepBatchReader( inputStream, socket.getOutputStream(), RemoteStepBatchReader.DEFAULT_CREDIT_WINDOW );
+    RowMetaInterface rowMeta = reader.getRowMeta();
+
+    Object[] rowData = reader.getRow();
+    while ( rowData != null && !baseStep.isStopped() ) {
+      baseStep.incrementLinesInput();
+      baseStep.decrementLinesRead();
+
+      if ( baseStep.log.isDebug() ) {
+        baseStep.logDebug( "Received row from remote step: " + rowMeta.getString( rowData ) );
+      }
+
+      baseStep.putRowTo( rowMeta, rowData, rowSet );
+      baseStep.decrementLinesWritten();
+      rowData = reader.getRow();
+    }
+  }
+
+  private CompressionProvider getCompressionProvider() throws KettleException {
+    if ( !compressingStreams ) {
+      return null;
+    }
+    String providerName = Const.NVL( compressionType, ClusterSchema.DEFAULT_SOCKETS_COMPRESSION_TYPE );
+    CompressionProvider provider =
+      CompressionProviderFactory.getInstance().getCompressionProviderByName( providerName );
+    if ( provider == null ) {
+      throw new KettleException( "Compression provider '" + providerName + "' is not available" );
+    }
+    return provider;
+  }
+
   /**
    * Close left-over sockets, streams and so on.
    */
@@ -529,13 +652,17 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
         connected = true;
 
-        if ( compressingStreams ) {
+        if ( batchTransport ) {
+          // The batch reader buffers and decompresses by itself
+          inputStream = new DataInputStream( socket.getInputStream() );
+        } else if ( compressingStreams ) {
           gzipInputStream = new GZIPInputStream( socket.getInputStream() );
           bufferedInputStream = new BufferedInputStream( gzipInputStream, bufferSize );
+          inputStream = new DataInputStream( bufferedInputStream );
         } else {
           bufferedInputStream = new BufferedInputStream( socket.getInputStream(), bufferSize );
+          inputStream = new DataInputStream( bufferedInputStream );
         }
-        inputStream = new DataInputStream( bufferedInputStream );
 
         lastException = null;
       } catch ( Exception e ) {
@@ -591,39 +718,42 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     Runnable runnable = new Runnable() {
       public void run() {
         try {
+          if ( batchTransport ) {
+            receiveBatches( rowSet );
+          } else {
+            // First read the row meta data from the socket...
+            //
+            RowMetaInterface rowMeta = null;
+            while ( !baseStep.isStopped() && rowMeta == null ) {
+              try {
+                rowMeta = new RowMeta( inputStream );
+              } catch ( SocketTimeoutException e ) {
+                rowMeta = null;
+              }
+            }
 
-          // First read the row meta data from the socket...
-          //
-          RowMetaInterface rowMeta = null;
-          while ( !baseStep.isStopped() && rowMeta == null ) {
-            try {
-              rowMeta = new RowMeta( inputStream );
-            } catch ( SocketTimeoutException e ) {
-              rowMeta = null;
+            if ( rowMeta == null ) {
+              throw new KettleEOFException(); // leave now.
             }
-          }
 
-          if ( rowMeta == null ) {
-            throw new KettleEOFException(); // leave now.
-          }
+            // And a first row of data...
+            //
+            Object[] rowData = getRowOfData( rowMeta );
 
-          // And a first row of data...
-          //
-          Object[] rowData = getRowOfData( rowMeta );
+            // Now get the data itself, row by row...
+            //
+            while ( rowData != null && !baseStep.isStopped() ) {
+              baseStep.incrementLinesInput();
+              baseStep.decrementLinesRead();
 
-          // Now get the data itself, row by row...
-          //
-          while ( rowData != null && !baseStep.isStopped() ) {
-            baseStep.incrementLinesInput();
-            baseStep.decrementLinesRead();
+              if ( baseStep.log.isDebug() ) {
+                baseStep.logDebug( "Received row from remote step: " + rowMeta.getString( rowData ) );
+              }
 
-            if ( baseStep.log.isDebug() ) {
-              baseStep.logDebug( "Received row from remote step: " + rowMeta.getString( rowData ) );
+              baseStep.putRowTo( rowMeta, rowData, rowSet );
+              baseStep.decrementLinesWritten();
+              rowData = getRowOfData( rowMeta );
             }
-
-            baseStep.putRowTo( rowMeta, rowData, rowSet );
-            baseStep.decrementLinesWritten();
-            rowData = getRowOfData( rowMeta );
           }
         } catch ( KettleEOFException e ) {
           // Nothing, we're simply done reading...
@@ -0,0 +1,261 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.pentaho.di.core.compress.CompressionInputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Reads rows sent by a {@link RemoteStepBatchWriter}.<br>
+ * <br>
+ * Every batch is fetched with a single read into a buffer that is re-used for the whole stream, then inflated in one go
+ * and decoded column by column. Once half of the credit window is consumed, new credits are sent back to the writer.
+ */
+public class RemoteStepBatchReader {
+  /** The number of batches the writer can send ahead of the reader */
+  public static final int DEFAULT_CREDIT_WINDOW = 8;
+
+  private RowMetaInterface rowMeta;
+  private CompressionProvider compressionProvider;
+
+  private DataInputStream inputStream;
+  private DataOutputStream creditStream;
+  private int creditWindow;
+  private int consumedBatches;
+
+  private byte[] storedBuffer;
+  private byte[] rawBuffer;
+  private Object[][] rows;
+  private int nrRows;
+  private int rowIndex;
+  private boolean endOfStream;
+
+  /**
+   * Read the header from the stream and grant the writer its initial credits.
+   *
+   * @param inputStream
+   *          the stream to receive the batches from
+   * @param creditStream
+   *          the stream to send credits to the writer on
+   * @param creditWindow
+   *          the number of batches the writer can send ahead of the reader
+   * @throws KettleFileException
+   *           in case the header is invalid or the compression provider is not available
+   * @throws KettleEOFException
+   *           in case the stream is closed before the header is received
+   */
+  public RemoteStepBatchReader( InputStream inputStream, OutputStream creditStream, int creditWindow )
+    throws KettleFileException, KettleEOFException {
+    this.inputStream = new DataInputStream( new BufferedInputStream( inputStream, 64 * 1024 ) );
+    this.creditStream = new DataOutputStream( creditStream );
+    this.creditWindow = Math.max( 1, creditWindow );
+
+    String providerName;
+    try {
+      if ( this.inputStream.readInt() != RemoteStepBatchWriter.MAGIC ) {
+        throw new KettleFileException( "The remote step didn't send a batch transport header" );
+      }
+      int version = this.inputStream.readInt();
+      if ( version != RemoteStepBatchWriter.VERSION ) {
+        throw new KettleFileException( "Unsupported batch transport version: " + version );
+      }
+      providerName = this.inputStream.readUTF();
+      rowMeta = new RowMeta( this.inputStream );
+    } catch ( KettleFileException e ) {
+      throw e;
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( e );
+    } catch ( Exception e ) {
+      throw new KettleFileException( "Unable to read the header of the remote step stream", e );
+    }
+
+    if ( !RemoteStepBatchWriter.NO_COMPRESSION.equals( providerName ) ) {
+      compressionProvider = CompressionProviderFactory.getInstance().getCompressionProviderByName( providerName );
+      if ( compressionProvider == null ) {
+        throw new KettleFileException( "Compression provider '"
+          + providerName + "' used by the remote step is not available" );
+      }
+    }
+
+    sendCredits( this.creditWindow );
+  }
+
+  /**
+   * @return the row metadata sent in the header
+   */
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  /**
+   * Read the next row.
+   *
+   * @return the next row or null if the writer has sent all its rows
+   * @throws KettleFileException
+   */
+  public Object[] getRow() throws KettleFileException {
+    if ( rowIndex == nrRows && !readBatch() ) {
+      return null;
+    }
+    Object[] row = rows[rowIndex];
+    rows[rowIndex++] = null;
+    return row;
+  }
+
+  private boolean readBatch() throws KettleFileException {
+    if ( endOfStream ) {
+      return false;
+    }
+    try {
+      int batchRows = inputStream.readInt();
+      if ( batchRows == 0 ) {
+        endOfStream = true;
+        return false;
+      }
+      int rawLength = inputStream.readInt();
+      int length = inputStream.readInt();
+
+      storedBuffer = ensureCapacity( storedBuffer, length );
+      inputStream.readFully( storedBuffer, 0, length );
+
+      byte[] batch;
+      if ( compressionProvider == null ) {
+        batch = storedBuffer;
+      } else {
+        rawBuffer = ensureCapacity( rawBuffer, rawLength );
+        CompressionInputStream compressionStream =
+          compressionProvider.createInputStream( new ByteArrayInputStream( storedBuffer, 0, length ) );
+        int offset = 0;
+        while ( offset < rawLength ) {
+          int read = compressionStream.read( rawBuffer, offset, rawLength - offset );
+          if ( read < 0 ) {
+            throw new EOFException( "Compressed batch from remote step is too short" );
+          }
+          offset += read;
+        }
+        compressionStream.close();
+        batch = rawBuffer;
+      }
+
+      // The batch is in memory, the writer can send the next ones
+      //
+      consumedBatches++;
+      if ( consumedBatches * 2 >= creditWindow ) {
+        sendCredits( consumedBatches );
+        consumedBatches = 0;
+      }
+
+      decodeBatch( new DataInputStream( new ByteArrayInputStream( batch, 0, rawLength ) ), batchRows );
+      return true;
+    } catch ( KettleFileException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleFileException( "Unable to read a batch of rows from the remote step", e );
+    }
+  }
+
+  private void decodeBatch( DataInputStream batchStream, int batchRows ) throws Exception {
+    if ( rows == null || rows.length < batchRows ) {
+      rows = new Object[batchRows][];
+    }
+    for ( int r = 0; r < batchRows; r++ ) {
+      rows[r] = RowDataUtil.allocateRowData( rowMeta.size() );
+    }
+    byte[] nulls = new byte[( batchRows + 7 ) / 8];
+
+    for ( int c = 0; c < rowMeta.size(); c++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( c );
+      batchStream.readFully( nulls );
+      for ( int r = 0; r < batchRows; r++ ) {
+        if ( ( nulls[r >> 3] & ( 1 << ( r & 7 ) ) ) == 0 ) {
+          rows[r][c] = readValue( batchStream, valueMeta );
+        }
+      }
+    }
+    nrRows = batchRows;
+    rowIndex = 0;
+  }
+
+  private Object readValue( DataInputStream batchStream, ValueMetaInterface valueMeta ) throws Exception {
+    switch ( valueMeta.getStorageType() ) {
+      case ValueMetaInterface.STORAGE_TYPE_BINARY_STRING:
+        byte[] bytes = new byte[batchStream.readInt()];
+        batchStream.readFully( bytes );
+        return bytes;
+      case ValueMetaInterface.STORAGE_TYPE_INDEXED:
+        return Integer.valueOf( batchStream.readInt() );
+      default:
+        break;
+    }
+
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_STRING:
+        byte[] string = new byte[batchStream.readInt()];
+        batchStream.readFully( string );
+        return new String( string, "UTF-8" );
+      case ValueMetaInterface.TYPE_INTEGER:
+        return Long.valueOf( batchStream.readLong() );
+      case ValueMetaInterface.TYPE_NUMBER:
+        return Double.valueOf( batchStream.readDouble() );
+      case ValueMetaInterface.TYPE_DATE:
+        return new Date( batchStream.readLong() );
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return Boolean.valueOf( batchStream.readBoolean() );
+      default:
+        return valueMeta.readData( batchStream );
+    }
+  }
+
+  private void sendCredits( int credits ) throws KettleFileException {
+    try {
+      creditStream.writeInt( credits );
+      creditStream.flush();
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to send credits to the remote step", e );
+    }
+  }
+
+  private static byte[] ensureCapacity( byte[] buffer, int length ) {
+    if ( buffer == null || buffer.length < length ) {
+      return new byte[length];
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,287 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.pentaho.di.core.compress.CompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Writes rows to a remote step using the batch transport.<br>
+ * <br>
+ * The stream starts with a header: a magic number, the protocol version, the name of the compression provider used
+ * for the batches and the row metadata. The metadata is sent only once. Then follow the batches. Each batch is framed
+ * by the number of rows it holds, its uncompressed size and its stored size, followed by the (compressed) batch data. A
+ * batch with 0 rows marks the end of the stream.<br>
+ * <br>
+ * The data of a batch is stored column by column: for every field a bitmap of the null values followed by the non-null
+ * values in a compact fixed layout per data type. Values of types without a compact layout are serialized by the value
+ * metadata itself.<br>
+ * <br>
+ * The reader grants the writer credits: the number of batches it is willing to receive. The writer never sends more
+ * batches than it has credits for, so a slow reader stops the writer before the socket buffers fill up.
+ *
+ * @see RemoteStepBatchReader
+ */
+public class RemoteStepBatchWriter {
+  public static final int MAGIC = 0x4B524D54; // "KRMT"
+  public static final int VERSION = 1;
+
+  /** The name of the compression provider that leaves the batches uncompressed */
+  public static final String NO_COMPRESSION = "None";
+
+  /** The maximum number of rows per batch */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * A byte array output stream that gives access to its buffer so we don't have to copy it to write it.
+   */
+  static class BatchBuffer extends ByteArrayOutputStream {
+    BatchBuffer( int size ) {
+      super( size );
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  private RowMetaInterface rowMeta;
+  private CompressionProvider compressionProvider;
+
+  private DataOutputStream outputStream;
+  private DataInputStream creditStream;
+  private int credits;
+
+  private Object[][] rows;
+  private int nrRows;
+
+  private BatchBuffer batchBuffer;
+  private DataOutputStream batchStream;
+  private BatchBuffer compressedBuffer;
+
+  /**
+   * Create a new batch writer and send the header.
+   *
+   * @param outputStream
+   *          the stream to send the batches over
+   * @param creditStream
+   *          the stream to receive credits from the reader on
+   * @param rowMeta
+   *          the metadata of the rows to send
+   * @param compressionProvider
+   *          the provider to compress batches with or null for no compression
+   * @param batchSize
+   *          the maximum number of rows per batch
+   * @throws KettleFileException
+   *           in case the header can't be sent
+   */
+  public RemoteStepBatchWriter( OutputStream outputStream, InputStream creditStream, RowMetaInterface rowMeta,
+    CompressionProvider compressionProvider, int batchSize ) throws KettleFileException {
+    this.rowMeta = rowMeta;
+    if ( compressionProvider != null && !NO_COMPRESSION.equals( compressionProvider.getName() ) ) {
+      this.compressionProvider = compressionProvider;
+      this.compressedBuffer = new BatchBuffer( 64 * 1024 );
+    }
+
+    this.outputStream = new DataOutputStream( new BufferedOutputStream( outputStream, 64 * 1024 ) );
+    this.creditStream = new DataInputStream( creditStream );
+    this.rows = new Object[Math.max( 1, batchSize )][];
+
+    batchBuffer = new BatchBuffer( 64 * 1024 );
+    batchStream = new DataOutputStream( batchBuffer );
+
+    try {
+      this.outputStream.writeInt( MAGIC );
+      this.outputStream.writeInt( VERSION );
+      this.outputStream.writeUTF( this.compressionProvider == null ? NO_COMPRESSION : this.compressionProvider
+        .getName() );
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to send the header to the remote step", e );
+    }
+    rowMeta.writeMeta( this.outputStream );
+    flush();
+  }
+
+  /**
+   * Add a row to the current batch, sending the batch once it is full.
+   *
+   * @param row
+   *          the row to send
+   * @throws KettleFileException
+   */
+  public void putRow( Object[] row ) throws KettleFileException {
+    rows[nrRows++] = row;
+    if ( nrRows == rows.length ) {
+      sendBatch();
+    }
+  }
+
+  /**
+   * Send the rows of the current batch, even if it isn't full.
+   *
+   * @throws KettleFileException
+   */
+  public void flush() throws KettleFileException {
+    sendBatch();
+    try {
+      outputStream.flush();
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to flush the stream to the remote step", e );
+    }
+  }
+
+  private void sendBatch() throws KettleFileException {
+    if ( nrRows == 0 ) {
+      return;
+    }
+    try {
+      encodeBatch();
+      int rawLength = batchBuffer.size();
+
+      byte[] payload;
+      int length;
+      if ( compressionProvider == null ) {
+        payload = batchBuffer.getBuffer();
+        length = rawLength;
+      } else {
+        compressedBuffer.reset();
+        CompressionOutputStream compressionStream = compressionProvider.createOutputStream( compressedBuffer );
+        compressionStream.write( batchBuffer.getBuffer(), 0, rawLength );
+        compressionStream.close();
+        payload = compressedBuffer.getBuffer();
+        length = compressedBuffer.size();
+      }
+
+      // Wait for the reader to allow another batch
+      //
+      if ( credits == 0 ) {
+        outputStream.flush();
+        credits = creditStream.readInt();
+      }
+      credits--;
+
+      outputStream.writeInt( nrRows );
+      outputStream.writeInt( rawLength );
+      outputStream.writeInt( length );
+      outputStream.write( payload, 0, length );
+
+      for ( int i = 0; i < nrRows; i++ ) {
+        rows[i] = null;
+      }
+      nrRows = 0;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to send a batch of rows to the remote step", e );
+    }
+  }
+
+  private void encodeBatch() throws IOException, KettleFileException {
+    batchBuffer.reset();
+    byte[] nulls = new byte[( nrRows + 7 ) / 8];
+
+    for ( int c = 0; c < rowMeta.size(); c++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( c );
+
+      for ( int i = 0; i < nulls.length; i++ ) {
+        nulls[i] = 0;
+      }
+      for ( int r = 0; r < nrRows; r++ ) {
+        if ( rows[r][c] == null ) {
+          nulls[r >> 3] |= 1 << ( r & 7 );
+        }
+      }
+      batchStream.write( nulls );
+
+      for ( int r = 0; r < nrRows; r++ ) {
+        if ( ( nulls[r >> 3] & ( 1 << ( r & 7 ) ) ) == 0 ) {
+          writeValue( valueMeta, rows[r][c] );
+        }
+      }
+    }
+    batchStream.flush();
+  }
+
+  private void writeValue( ValueMetaInterface valueMeta, Object value ) throws IOException, KettleFileException {
+    switch ( valueMeta.getStorageType() ) {
+      case ValueMetaInterface.STORAGE_TYPE_BINARY_STRING:
+        byte[] bytes = (byte[]) value;
+        batchStream.writeInt( bytes.length );
+        batchStream.write( bytes );
+        return;
+      case ValueMetaInterface.STORAGE_TYPE_INDEXED:
+        batchStream.writeInt( ( (Integer) value ).intValue() );
+        return;
+      default:
+        break;
+    }
+
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_STRING:
+        byte[] string = ( (String) value ).getBytes( "UTF-8" );
+        batchStream.writeInt( string.length );
+        batchStream.write( string );
+        break;
+      case ValueMetaInterface.TYPE_INTEGER:
+        batchStream.writeLong( ( (Long) value ).longValue() );
+        break;
+      case ValueMetaInterface.TYPE_NUMBER:
+        batchStream.writeDouble( ( (Double) value ).doubleValue() );
+        break;
+      case ValueMetaInterface.TYPE_DATE:
+        batchStream.writeLong( ( (Date) value ).getTime() );
+        break;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        batchStream.writeBoolean( ( (Boolean) value ).booleanValue() );
+        break;
+      default:
+        valueMeta.writeData( batchStream, value );
+        break;
+    }
+  }
+
+  /**
+   * Send the last batch and the end marker. The underlying streams are not closed.
+   *
+   * @throws KettleFileException
+   */
+  public void close() throws KettleFileException {
+    sendBatch();
+    try {
+      outputStream.writeInt( 0 );
+      outputStream.flush();
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to send the end of the stream to the remote step", e );
+    }
+  }
+}
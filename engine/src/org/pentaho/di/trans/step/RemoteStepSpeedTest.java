@@ -0,0 +1,210 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Measures the throughput of the classic row by row socket transport of remote steps against the batch transport,
+ * over a loopback connection.
+ */
+public class RemoteStepSpeedTest {
+  public static final int ITERATIONS = 2000000;
+
+  private RowMetaInterface rowMeta;
+  private Object[] row;
+
+  public RemoteStepSpeedTest() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "amount", ValueMetaInterface.TYPE_NUMBER ) );
+    rowMeta.addValueMeta( new ValueMeta( "date", ValueMetaInterface.TYPE_DATE ) );
+    rowMeta.addValueMeta( new ValueMeta( "flag", ValueMetaInterface.TYPE_BOOLEAN ) );
+    row =
+      new Object[] {
+        Long.valueOf( 12345L ), "Some customer name", Double.valueOf( 123.45 ), new Date(), Boolean.TRUE, };
+  }
+
+  /**
+   * Send rows over a loopback socket the way RemoteStep does without the batch transport.
+   *
+   * @return the elapsed time in ms
+   */
+  public long runClassicTest( final boolean compressed, final int iterations ) throws Exception {
+    final ServerSocket serverSocket = new ServerSocket( 0, 1, InetAddress.getByName( "127.0.0.1" ) );
+    long startTime = System.currentTimeMillis();
+
+    Thread writer = new Thread( new Runnable() {
+      public void run() {
+        try {
+          Socket socket = serverSocket.accept();
+          GZIPOutputStream gzipOutputStream = null;
+          OutputStream outputStream = socket.getOutputStream();
+          if ( compressed ) {
+            gzipOutputStream = new GZIPOutputStream( outputStream, 50000 );
+            outputStream = gzipOutputStream;
+          }
+          DataOutputStream dataOutputStream =
+            new DataOutputStream( new BufferedOutputStream( outputStream, 50000 ) );
+          rowMeta.writeMeta( dataOutputStream );
+          for ( int i = 0; i < iterations; i++ ) {
+            rowMeta.writeData( dataOutputStream, row );
+          }
+          dataOutputStream.flush();
+          if ( gzipOutputStream != null ) {
+            gzipOutputStream.finish();
+          }
+          socket.shutdownOutput();
+        } catch ( Exception e ) {
+          e.printStackTrace();
+        }
+      }
+    } );
+    writer.start();
+
+    Socket socket = new Socket( serverSocket.getInetAddress(), serverSocket.getLocalPort() );
+    DataInputStream inputStream;
+    if ( compressed ) {
+      inputStream =
+        new DataInputStream( new BufferedInputStream( new GZIPInputStream( socket.getInputStream() ), 50000 ) );
+    } else {
+      inputStream = new DataInputStream( new BufferedInputStream( socket.getInputStream(), 50000 ) );
+    }
+    RowMetaInterface readMeta = new RowMeta( inputStream );
+    int count = 0;
+    try {
+      while ( true ) {
+        readMeta.readData( inputStream );
+        count++;
+      }
+    } catch ( KettleEOFException e ) {
+      // done
+    }
+    writer.join();
+    socket.close();
+    serverSocket.close();
+
+    long stopTime = System.currentTimeMillis();
+    check( count, iterations );
+    return stopTime - startTime;
+  }
+
+  /**
+   * Send rows over a loopback socket with the batch transport.
+   *
+   * @return the elapsed time in ms
+   */
+  public long runBatchTest( final CompressionProvider compressionProvider, final int iterations ) throws Exception {
+    final ServerSocket serverSocket = new ServerSocket( 0, 1, InetAddress.getByName( "127.0.0.1" ) );
+    long startTime = System.currentTimeMillis();
+
+    Thread writer = new Thread( new Runnable() {
+      public void run() {
+        try {
+          Socket socket = serverSocket.accept();
+          RemoteStepBatchWriter batchWriter =
+            new RemoteStepBatchWriter( socket.getOutputStream(), socket.getInputStream(), rowMeta,
+              compressionProvider, RemoteStepBatchWriter.DEFAULT_BATCH_SIZE );
+          for ( int i = 0; i < iterations; i++ ) {
+            batchWriter.putRow( row );
+          }
+          batchWriter.close();
+          socket.shutdownOutput();
+        } catch ( Exception e ) {
+          e.printStackTrace();
+        }
+      }
+    } );
+    writer.start();
+
+    Socket socket = new Socket( serverSocket.getInetAddress(), serverSocket.getLocalPort() );
+    RemoteStepBatchReader batchReader =
+      new RemoteStepBatchReader( socket.getInputStream(), socket.getOutputStream(),
+        RemoteStepBatchReader.DEFAULT_CREDIT_WINDOW );
+    int count = 0;
+    while ( batchReader.getRow() != null ) {
+      count++;
+    }
+    writer.join();
+    socket.close();
+    serverSocket.close();
+
+    long stopTime = System.currentTimeMillis();
+    check( count, iterations );
+    return stopTime - startTime;
+  }
+
+  private static void check( int count, int iterations ) {
+    if ( count != iterations ) {
+      throw new RuntimeException( "Received " + count + " rows, expected " + iterations );
+    }
+  }
+
+  private static void report( String name, long time ) {
+    System.out.println( "Time to send "
+      + ITERATIONS + " rows with '" + name + "' : " + time + " ms ("
+      + ( 1000L * ITERATIONS / Math.max( 1L, time ) ) + " r/s)" );
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleEnvironment.init( false );
+    RemoteStepSpeedTest speedTest = new RemoteStepSpeedTest();
+    CompressionProviderFactory factory = CompressionProviderFactory.getInstance();
+
+    // Warm up the JIT compiler before measuring anything
+    //
+    speedTest.runClassicTest( false, ITERATIONS / 10 );
+    speedTest.runBatchTest( null, ITERATIONS / 10 );
+
+    report( "classic", speedTest.runClassicTest( false, ITERATIONS ) );
+    report( "classic (GZip)", speedTest.runClassicTest( true, ITERATIONS ) );
+    report( "batch", speedTest.runBatchTest( null, ITERATIONS ) );
+    for ( String name : new String[] { "GZip", "Snappy", } ) {
+      CompressionProvider provider = factory.getCompressionProviderByName( name );
+      if ( provider != null ) {
+        report( "batch (" + name + ")", speedTest.runBatchTest( provider, ITERATIONS ) );
+      }
+    }
+    System.out.println();
+  }
+}
@@ -0,0 +1,164 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * The row set used between the steps of a transformation with the Thread Pool transformation type. Next to buffering
+ * rows like {@link BlockingRowSet} it wakes up the step tasks on either end: the consumer as soon as a row was put in
+ * it or the producer finished, the producer once the consumer took enough rows to make room for more.<br>
+ * <br>
+ * Waiting for rows or room from a thread of the {@link StepTaskPool} is reported to the pool, so that it can keep the
+ * other tasks going in the meantime.
+ */
+public class ScheduledRowSet extends BlockingRowSet {
+  private final int maxSize;
+
+  private volatile StepTask producer;
+  private volatile StepTask consumer;
+  private volatile StepTaskPool pool;
+
+  public ScheduledRowSet( int maxSize ) {
+    super( maxSize );
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    boolean added = super.putRowWait( rowMeta, rowData, 0, tu );
+    if ( !added && time > 0 ) {
+      StepTaskPool waitingPool = getWaitingPool();
+      if ( waitingPool != null ) {
+        waitingPool.beginBlocking();
+        try {
+          added = super.putRowWait( rowMeta, rowData, time, tu );
+        } finally {
+          waitingPool.endBlocking();
+        }
+      } else {
+        added = super.putRowWait( rowMeta, rowData, time, tu );
+      }
+    }
+    if ( added ) {
+      wakeUpConsumer();
+    }
+    return added;
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    Object[] row = super.getRowImmediate();
+    if ( row != null ) {
+      wakeUpProducer();
+    }
+    return row;
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    Object[] row = super.getRowImmediate();
+    if ( row == null && timeout > 0 ) {
+      StepTaskPool waitingPool = getWaitingPool();
+      if ( waitingPool != null ) {
+        waitingPool.beginBlocking();
+        try {
+          row = super.getRowWait( timeout, tu );
+        } finally {
+          waitingPool.endBlocking();
+        }
+      } else {
+        row = super.getRowWait( timeout, tu );
+      }
+    }
+    if ( row != null ) {
+      wakeUpProducer();
+    }
+    return row;
+  }
+
+  @Override
+  public int getRows( List<Object[]> rows, int maxRows ) {
+    int nrRows = super.getRows( rows, maxRows );
+    if ( nrRows > 1 ) {
+      wakeUpProducer();
+    }
+    return nrRows;
+  }
+
+  @Override
+  public void setDone() {
+    super.setDone();
+    wakeUpConsumer();
+  }
+
+  /**
+   * @return true if there is no room left for another row without waiting
+   */
+  public boolean isFull() {
+    return size() >= maxSize;
+  }
+
+  private StepTaskPool getWaitingPool() {
+    StepTaskPool taskPool = pool;
+    return taskPool != null && taskPool.isWorkerThread() ? taskPool : null;
+  }
+
+  private void wakeUpConsumer() {
+    StepTask task = consumer;
+    if ( task != null && task.isWaitingForRows() ) {
+      task.wakeUp();
+    }
+  }
+
+  private void wakeUpProducer() {
+    // Only wake up the producer once there is room for a decent number of rows
+    //
+    StepTask task = producer;
+    if ( task != null && task.isWaitingForRoom() && size() <= maxSize / 2 ) {
+      task.wakeUp();
+    }
+  }
+
+  /**
+   * @param producer
+   *          the task of the step copy putting rows in this row set
+   */
+  public void setProducer( StepTask producer ) {
+    this.producer = producer;
+    this.pool = producer.getPool();
+  }
+
+  /**
+   * @param consumer
+   *          the task of the step copy getting rows from this row set
+   */
+  public void setConsumer( StepTask consumer ) {
+    this.consumer = consumer;
+    this.pool = consumer.getPool();
+  }
+}
@@ -35,6 +35,7 @@ import org.owasp.esapi.ESAPI;
 import org.owasp.esapi.Encoder;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.memory.MemoryBudgetManager;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.xml.XMLHandler;
@@ -60,6 +61,7 @@ public class StepStatus {
   private String priority;
   private boolean stopped;
   private boolean paused;
+  private long memoryReserved;
 
   private RowMetaInterface sampleRowMeta;
   private List<Object[]> sampleRows;
@@ -103,6 +105,10 @@ public class StepStatus {
       baseStep.isRunning() ? "   " + baseStep.rowsetInputSize() + "/" + baseStep.rowsetOutputSize() : "-";
     this.stopped = baseStep.isStopped();
     this.paused = baseStep.isPaused();
+    if ( baseStep.getLogChannel() != null ) {
+      this.memoryReserved =
+        MemoryBudgetManager.getInstance().getReservedBytes( baseStep.getLogChannel().getLogChannelId() );
+    }
   }
 
   public String getHTMLTableRow( boolean urlInStepname ) {
@@ -113,7 +119,7 @@ public class StepStatus {
       + "<th>" + linesOutput + "</th> " + "<th>" + linesUpdated + "</th> " + "<th>" + linesRejected + "</th> "
       + "<th>" + errors + "</th> " + "<th>" + encoder.encodeForHTML( statusDescription ) + "</th> " + "<th>"
       + seconds + "</th> " + "<th>" + encoder.encodeForHTML( speed ) + "</th> " + "<th>"
-      + encoder.encodeForHTML( priority ) + "</th> " + "</tr>";
+      + encoder.encodeForHTML( priority ) + "</th> " + "<th>" + ( memoryReserved / 1024 ) + "</th> " + "</tr>";
   }
 
   public String getXML() throws KettleException {
@@ -136,6 +142,7 @@ public class StepStatus {
       xml.append( XMLHandler.addTagValue( "priority", priority, false ) );
       xml.append( XMLHandler.addTagValue( "stopped", stopped, false ) );
       xml.append( XMLHandler.addTagValue( "paused", paused, false ) );
+      xml.append( XMLHandler.addTagValue( "memoryReserved", memoryReserved, false ) );
 
       if ( sampleRowMeta != null ) {
         xml.append( XMLHandler.openTag( "samples" ) );
@@ -177,6 +184,7 @@ public class StepStatus {
     priority = XMLHandler.getTagValue( node, "priority" );
     stopped = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "stopped" ) );
     paused = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "paused" ) );
+    memoryReserved = Const.toLong( XMLHandler.getTagValue( node, "memoryReserved" ), 0L );
 
     Node samplesNode = XMLHandler.getSubNode( node, "samples" );
     if ( samplesNode != null ) {
@@ -475,6 +483,21 @@ public class StepStatus {
     return paused;
   }
 
+  /**
+   * @return the number of bytes the step has reserved with the memory budget manager
+   */
+  public long getMemoryReserved() {
+    return memoryReserved;
+  }
+
+  /**
+   * @param memoryReserved
+   *          the number of bytes the step has reserved with the memory budget manager
+   */
+  public void setMemoryReserved( long memoryReserved ) {
+    this.memoryReserved = memoryReserved;
+  }
+
   /**
    * @param paused
    *          the paused to set
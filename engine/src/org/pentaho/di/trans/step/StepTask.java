@@ -0,0 +1,183 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.RowSet;
+
+/**
+ * Runs a step copy as a task on the {@link StepTaskPool} instead of on a thread of its own, see the Thread Pool
+ * transformation type.<br>
+ * <br>
+ * A run processes rows for as long as the step has input and room in its output, up to {@link #ROWS_PER_SLICE} rows.
+ * After that the task is queued again to give other tasks a turn. If there are no rows to read or no room to write
+ * the task goes idle until the {@link ScheduledRowSet} it is waiting on wakes it up, so that idle steps don't take up
+ * a thread or poll for rows.
+ */
+public class StepTask extends RunThread {
+  /** The maximum number of rows processed before another task gets a turn */
+  public static final int ROWS_PER_SLICE = 1000;
+
+  private static final int STATE_IDLE = 0;
+  private static final int STATE_QUEUED = 1;
+  private static final int STATE_RUNNING = 2;
+  private static final int STATE_FINISHED = 3;
+
+  private static final int READY = 0;
+  private static final int NO_ROWS = 1;
+  private static final int NO_ROOM = 2;
+
+  private final StepTaskPool pool;
+  private final AtomicInteger state;
+  private volatile int waitingFor;
+  private boolean started;
+
+  public StepTask( StepMetaDataCombi combi, StepTaskPool pool ) {
+    super( combi );
+    this.pool = pool;
+    this.state = new AtomicInteger( STATE_IDLE );
+    this.waitingFor = READY;
+  }
+
+  @Override
+  public void run() {
+    state.set( STATE_RUNNING );
+
+    boolean finished = false;
+    int readiness = READY;
+    int nrRows = 0;
+    try {
+      if ( !started ) {
+        started = true;
+        stepStarted();
+      }
+
+      while ( nrRows < ROWS_PER_SLICE && ( readiness = getReadiness() ) == READY ) {
+        if ( !step.processRow( meta, data ) || step.isStopped() ) {
+          finished = true;
+          break;
+        }
+        nrRows++;
+      }
+    } catch ( Throwable t ) {
+      finished = true;
+      stepFailed( t );
+    }
+
+    if ( finished ) {
+      state.set( STATE_FINISHED );
+      stepEnded();
+      return;
+    }
+
+    if ( readiness == READY ) {
+      // We used up our slice, get in line behind the other queued tasks
+      //
+      state.set( STATE_QUEUED );
+      pool.execute( this );
+      return;
+    }
+
+    waitingFor = readiness;
+    state.set( STATE_IDLE );
+
+    // Rows or room that became available before we were idle didn't wake us up, so look again. If we are now waiting
+    // for something else, we need to go idle again for that reason.
+    //
+    if ( getReadiness() != readiness ) {
+      wakeUp();
+    }
+  }
+
+  /**
+   * Queue the task to run if it is idle.
+   */
+  public void wakeUp() {
+    if ( state.compareAndSet( STATE_IDLE, STATE_QUEUED ) ) {
+      pool.execute( this );
+    }
+  }
+
+  private int getReadiness() {
+    // Let a stopped step finish
+    //
+    if ( step.isStopped() ) {
+      return READY;
+    }
+
+    // We would block putting rows in a full row set
+    //
+    List<RowSet> outputRowSets = step.getOutputRowSets();
+    for ( int i = 0; i < outputRowSets.size(); i++ ) {
+      RowSet rowSet = outputRowSets.get( i );
+      if ( rowSet instanceof ScheduledRowSet && ( (ScheduledRowSet) rowSet ).isFull() ) {
+        return NO_ROOM;
+      }
+    }
+
+    // Steps without input generate rows, the others need at least one row or finished input to continue
+    //
+    List<RowSet> inputRowSets = step.getInputRowSets();
+    if ( inputRowSets.isEmpty() ) {
+      return READY;
+    }
+    for ( int i = 0; i < inputRowSets.size(); i++ ) {
+      RowSet rowSet = inputRowSets.get( i );
+      if ( rowSet.size() > 0 || rowSet.isDone() ) {
+        return READY;
+      }
+    }
+    return NO_ROWS;
+  }
+
+  /**
+   * @return true if the task is idle because none of its input row sets had rows
+   */
+  public boolean isWaitingForRows() {
+    return state.get() == STATE_IDLE && waitingFor == NO_ROWS;
+  }
+
+  /**
+   * @return true if the task is idle because one of its output row sets was full
+   */
+  public boolean isWaitingForRoom() {
+    return state.get() == STATE_IDLE && waitingFor == NO_ROOM;
+  }
+
+  /**
+   * @return true if the step finished and was disposed
+   */
+  public boolean isFinished() {
+    return state.get() == STATE_FINISHED;
+  }
+
+  public StepInterface getStep() {
+    return step;
+  }
+
+  public StepTaskPool getPool() {
+    return pool;
+  }
+}
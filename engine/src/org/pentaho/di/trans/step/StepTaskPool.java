@@ -0,0 +1,229 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.logging.LogChannel;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * The threads that run the step copies of transformations with the Thread Pool transformation type, see
+ * {@link StepTask}. The pool is shared by all these transformations in the JVM.<br>
+ * <br>
+ * Normally there are as many threads as set in {@link Const#KETTLE_STEP_THREAD_POOL_SIZE}. A step that can't go on
+ * without rows from another step would keep a thread busy, so while a worker waits in a {@link ScheduledRowSet} a
+ * spare thread takes over running the other tasks. The spare threads are kept around to be used again, threads that
+ * have been idle for a minute stop.
+ */
+public class StepTaskPool {
+  private static Class<?> PKG = BaseStep.class; // for i18n purposes, needed by Translator2!!
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static StepTaskPool pool = null;
+
+  private final int parallelism;
+  private final BlockingQueue<Runnable> queue;
+
+  private int nrWorkers;
+  private int nrIdle;
+  private int nrBlocked;
+  private int nrSpare;
+  private int workerNr;
+
+  StepTaskPool( int parallelism ) {
+    this.parallelism = parallelism;
+    this.queue = new LinkedBlockingQueue<Runnable>();
+  }
+
+  public static final synchronized StepTaskPool getInstance() {
+    if ( pool != null ) {
+      return pool;
+    }
+    int parallelism =
+      Const.toInt( System.getProperty( Const.KETTLE_STEP_THREAD_POOL_SIZE ), Runtime
+        .getRuntime().availableProcessors() );
+    pool = new StepTaskPool( Math.max( 1, parallelism ) );
+    return pool;
+  }
+
+  /**
+   * Queue a task to be run by one of the threads of the pool.
+   *
+   * @param task
+   *          the task to run
+   */
+  public void execute( Runnable task ) {
+    queue.add( task );
+    synchronized ( this ) {
+      if ( nrIdle == 0 ) {
+        addWorker();
+      }
+    }
+  }
+
+  /**
+   * Called by a worker before it waits for something another task has to do. A spare thread takes over if otherwise
+   * fewer threads than the parallelism of the pool would be able to run the queued tasks.
+   */
+  void beginBlocking() {
+    synchronized ( this ) {
+      nrBlocked++;
+      if ( nrIdle == 0 && !queue.isEmpty() ) {
+        addWorker();
+      }
+    }
+  }
+
+  /**
+   * Called by a worker after it waited, see {@link #beginBlocking()}.
+   */
+  void endBlocking() {
+    synchronized ( this ) {
+      nrBlocked--;
+    }
+  }
+
+  /**
+   * @return the pool of the current thread or null if it isn't a thread of a step task pool
+   */
+  static StepTaskPool getWorkerPool() {
+    Thread thread = Thread.currentThread();
+    return thread instanceof Worker ? ( (Worker) thread ).getPool() : null;
+  }
+
+  /**
+   * @return true if the current thread is a thread of this pool
+   */
+  boolean isWorkerThread() {
+    Thread thread = Thread.currentThread();
+    return thread instanceof Worker && ( (Worker) thread ).getPool() == this;
+  }
+
+  /**
+   * @return the number of threads running tasks without waiting on other tasks
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return the number of threads currently in the pool
+   */
+  public synchronized int getNrWorkers() {
+    return nrWorkers;
+  }
+
+  private void addWorker() {
+    if ( nrWorkers - nrSpare - nrBlocked < parallelism ) {
+      if ( nrSpare > 0 ) {
+        notifyAll();
+      } else {
+        nrWorkers++;
+        Worker worker = new Worker( this, "Step task pool thread " + ( ++workerNr ) );
+        worker.start();
+      }
+    }
+  }
+
+  private void runWorker() {
+    while ( true ) {
+      Runnable task;
+      synchronized ( this ) {
+        // Threads that took over while others were blocked wait until they are needed again
+        //
+        while ( nrWorkers - nrSpare - nrBlocked > parallelism ) {
+          long waitStart = System.currentTimeMillis();
+          nrSpare++;
+          try {
+            wait( KEEP_ALIVE_SECONDS * 1000 );
+          } catch ( InterruptedException e ) {
+            // Look again
+          }
+          nrSpare--;
+          if ( System.currentTimeMillis() - waitStart >= KEEP_ALIVE_SECONDS * 1000
+            && nrWorkers - nrSpare - nrBlocked > parallelism ) {
+            nrWorkers--;
+            return;
+          }
+        }
+        nrIdle++;
+      }
+      try {
+        task = queue.poll( KEEP_ALIVE_SECONDS, TimeUnit.SECONDS );
+      } catch ( InterruptedException e ) {
+        task = null;
+      }
+      synchronized ( this ) {
+        nrIdle--;
+        if ( task == null ) {
+          nrWorkers--;
+          // A task might have been queued while we were counted as idle
+          //
+          if ( !queue.isEmpty() && nrIdle == 0 ) {
+            addWorker();
+          }
+          return;
+        }
+      }
+      try {
+        task.run();
+      } catch ( Throwable t ) {
+        // The step tasks handle their own errors, this thread needs to stay alive regardless
+        //
+        LogChannelInterface log = LogChannel.GENERAL;
+        String name = task.toString();
+        if ( task instanceof StepTask ) {
+          StepInterface step = ( (StepTask) task ).getStep();
+          log = step.getLogChannel();
+          name = step.getStepname();
+        }
+        log.logError( BaseMessages.getString( PKG, "StepTaskPool.Log.UnexpectedError", name ), t );
+      }
+    }
+  }
+
+  private static class Worker extends Thread {
+    private final StepTaskPool pool;
+
+    Worker( StepTaskPool pool, String name ) {
+      super( name );
+      this.pool = pool;
+      setDaemon( true );
+    }
+
+    StepTaskPool getPool() {
+      return pool;
+    }
+
+    @Override
+    public void run() {
+      pool.runWorker();
+    }
+  }
+}
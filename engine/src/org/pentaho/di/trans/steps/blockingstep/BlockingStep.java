@@ -38,6 +38,8 @@ import org.apache.commons.vfs.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.memory.MemoryBudgetManager;
+import org.pentaho.di.core.memory.RowSizeEstimator;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
@@ -68,10 +70,12 @@ public class BlockingStep extends BaseStep implements StepInterface {
   private boolean addBuffer( RowMetaInterface rowMeta, Object[] r ) {
     if ( r != null ) {
       data.buffer.add( r ); // Save row
+      reserveMemory( rowMeta, r );
     }
 
     // Time to write to disk: buffer in core is full!
     if ( data.buffer.size() == meta.getCacheSize() // Buffer is full: dump to disk
+      || data.memoryExhausted // Our share of the memory budget is used up: dump to disk
       || ( data.files.size() > 0 && r == null && data.buffer.size() > 0 ) // No more records: join from disk
     ) {
       // Then write them to disk...
@@ -113,11 +117,27 @@ public class BlockingStep extends BaseStep implements StepInterface {
       }
 
       data.buffer.clear();
+      data.memoryReservation.releaseAll();
+      data.memoryExhausted = false;
     }
 
     return true;
   }
 
+  /**
+   * Keep track of the memory taken by the buffer and reserve it with the memory budget every 1000 rows.
+   */
+  private void reserveMemory( RowMetaInterface rowMeta, Object[] r ) {
+    data.unreservedBytes += RowSizeEstimator.estimateRowSize( rowMeta, r );
+    data.memoryCounter++;
+    if ( data.memoryCounter >= 1000 ) {
+      data.memoryExhausted =
+        !data.memoryReservation.reserve( data.unreservedBytes ) || data.memoryReservation.isOverQuota();
+      data.unreservedBytes = 0;
+      data.memoryCounter = 0;
+    }
+  }
+
   private Object[] getBuffer() {
     Object[] retval;
 
@@ -238,6 +258,9 @@ public class BlockingStep extends BaseStep implements StepInterface {
         logError( e.getLocalizedMessage(), e );
       }
     }
+    if ( data.memoryReservation != null ) {
+      data.memoryReservation.close();
+    }
     super.dispose( smi, sdi );
   }
 
@@ -246,7 +269,8 @@ public class BlockingStep extends BaseStep implements StepInterface {
     data = (BlockingStepData) sdi;
 
     if ( super.init( smi, sdi ) ) {
-      // Add init code here.
+      data.memoryReservation =
+        MemoryBudgetManager.getInstance().register( getLogChannelId(), getStepname() + "." + getCopy() );
       return true;
     }
     return false;
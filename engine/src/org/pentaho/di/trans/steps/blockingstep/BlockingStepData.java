@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs.FileObject;
+import org.pentaho.di.core.memory.MemoryReservation;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -46,6 +47,11 @@ public class BlockingStepData extends BaseStepData implements StepDataInterface
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
 
+  public MemoryReservation memoryReservation;
+  public long unreservedBytes;
+  public int memoryCounter;
+  public boolean memoryExhausted;
+
   public BlockingStepData() {
     super();
 
@@ -39,6 +39,8 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
 
   private int[] tempIndexes;
 
+  private CalculatorOperation[] operations;
+
   public CalculatorData() {
     super();
   }
@@ -74,4 +76,12 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
   public void setTempIndexes( int[] tempIndexes ) {
     this.tempIndexes = tempIndexes;
   }
+
+  public CalculatorOperation[] getOperations() {
+    return operations;
+  }
+
+  public void setOperations( CalculatorOperation[] operations ) {
+    this.operations = operations;
+  }
 }
@@ -0,0 +1,639 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.calculator;
+
+import java.math.BigDecimal;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueDataUtil;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBase;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * A calculation of the Calculator step, compiled for the layout of the input rows.<br>
+ * <br>
+ * The positions and the metadata of the arguments, the data type of the result and the metadata to convert the result
+ * to the type of the target field are resolved once instead of for every row. Constants are converted to the target
+ * type once and additions, subtractions, multiplications and divisions of two integers or two numbers are calculated
+ * without going through the generic {@link ValueDataUtil} functions. The other calculations are dispatched on the
+ * calculation type like before.
+ */
+public abstract class CalculatorOperation {
+  private static Class<?> PKG = CalculatorMeta.class; // for i18n purposes, needed by Translator2!!
+
+  protected final CalculatorMetaFunction function;
+  protected final ValueMetaInterface metaA;
+  protected final ValueMetaInterface metaB;
+  protected final ValueMetaInterface metaC;
+
+  protected final int index;
+
+  private final int functionNr;
+  private final int indexA;
+  private final int indexB;
+  private final int indexC;
+  private final ValueMetaInterface targetMeta;
+  private final int resultType;
+
+  /** The metadata to convert the result to the target type with, null if no conversion is needed */
+  private final ValueMetaInterface resultMeta;
+
+  protected CalculatorOperation( CalculatorMetaFunction function, int functionNr, int index,
+    Calculator.FieldIndexes indexes, RowMetaInterface calcRowMeta ) {
+    this.function = function;
+    this.functionNr = functionNr;
+    this.index = index;
+    this.indexA = indexes.indexA;
+    this.indexB = indexes.indexB;
+    this.indexC = indexes.indexC;
+    this.metaA = indexA >= 0 ? calcRowMeta.getValueMeta( indexA ) : null;
+    this.metaB = indexB >= 0 ? calcRowMeta.getValueMeta( indexB ) : null;
+    this.metaC = indexC >= 0 ? calcRowMeta.getValueMeta( indexC ) : null;
+    this.targetMeta = calcRowMeta.getValueMeta( index );
+    this.resultType = getResultType( function.getCalcType(), metaA, metaB, metaC );
+
+    ValueMetaInterface conversionMeta = null;
+    if ( targetMeta.getType() != resultType ) {
+      try {
+        conversionMeta = ValueMetaFactory.createValueMeta( "result", resultType );
+        conversionMeta.setConversionMask( function.getConversionMask() );
+        conversionMeta.setGroupingSymbol( function.getGroupingSymbol() );
+        conversionMeta.setDecimalSymbol( function.getDecimalSymbol() );
+        conversionMeta.setCurrencySymbol( function.getCurrencySymbol() );
+      } catch ( Exception e ) {
+        conversionMeta = null; // reported for every row with a result, see convertResult()
+      }
+    }
+    this.resultMeta = conversionMeta;
+  }
+
+  /**
+   * Compile a calculation.
+   *
+   * @param function
+   *          the calculation
+   * @param functionNr
+   *          the index of the calculation in the list of calculations
+   * @param index
+   *          the index of the calculated field in the row with all the fields
+   * @param indexes
+   *          the indexes of the arguments in the row with all the fields
+   * @param calcRowMeta
+   *          the metadata of the row with all the fields, including the temporary ones
+   * @param space
+   *          the variables to substitute in variable substitutions
+   * @return the compiled calculation
+   */
+  public static CalculatorOperation compile( CalculatorMetaFunction function, int functionNr, int index,
+    Calculator.FieldIndexes indexes, RowMetaInterface calcRowMeta, VariableSpace space ) {
+    CalculatorOperation operation = null;
+    switch ( function.getCalcType() ) {
+      case CalculatorMetaFunction.CALC_CONSTANT:
+        operation = Constant.compile( function, functionNr, index, indexes, calcRowMeta );
+        break;
+      case CalculatorMetaFunction.CALC_ADD:
+      case CalculatorMetaFunction.CALC_SUBTRACT:
+      case CalculatorMetaFunction.CALC_MULTIPLY:
+      case CalculatorMetaFunction.CALC_DIVIDE:
+        operation = Arithmetic.compile( function, functionNr, index, indexes, calcRowMeta );
+        break;
+      default:
+        break;
+    }
+    return operation != null ? operation : compileGeneric( function, functionNr, index, indexes, calcRowMeta, space );
+  }
+
+  /**
+   * Compile a calculation without specialising it, used to measure the difference.
+   */
+  static CalculatorOperation compileGeneric( CalculatorMetaFunction function, int functionNr, int index,
+    Calculator.FieldIndexes indexes, RowMetaInterface calcRowMeta, VariableSpace space ) {
+    return new Generic( function, functionNr, index, indexes, calcRowMeta, space );
+  }
+
+  /**
+   * Calculate the field and store it in the row.
+   *
+   * @param calcData
+   *          the row with all the fields, including the temporary ones
+   * @throws KettleValueException
+   *           in case there is a calculation error
+   */
+  public void calculate( Object[] calcData ) throws KettleValueException {
+    Object dataA = indexA >= 0 ? calcData[indexA] : null;
+    Object dataB = indexB >= 0 ? calcData[indexB] : null;
+    Object dataC = indexC >= 0 ? calcData[indexC] : null;
+    calcData[index] = convertResult( calculate( dataA, dataB, dataC ) );
+  }
+
+  /**
+   * Calculate the result from the arguments.
+   *
+   * @return the result, in the data type returned by {@link #getResultType(int, ValueMetaInterface,
+   *         ValueMetaInterface, ValueMetaInterface)}
+   */
+  protected abstract Object calculate( Object dataA, Object dataB, Object dataC ) throws KettleValueException;
+
+  /**
+   * Convert a result to the data type of the target field.
+   */
+  protected Object convertResult( Object result ) throws KettleValueException {
+    // If we don't have a target data type, throw an error.
+    // Otherwise the result is non-deterministic.
+    //
+    if ( targetMeta.getType() == ValueMetaInterface.TYPE_NONE ) {
+      throw new KettleValueException( BaseMessages.getString( PKG, "Calculator.Log.NoType" )
+        + ( functionNr + 1 ) + " : " + function.getFieldName() + " = " + function.getCalcTypeDesc() + " / "
+        + function.getCalcTypeLongDesc() );
+    }
+
+    if ( result == null || targetMeta.getType() == resultType ) {
+      return result;
+    }
+    if ( resultMeta == null ) {
+      throw new KettleValueException( "Error creating value" );
+    }
+    try {
+      return targetMeta.convertData( resultMeta, result );
+    } catch ( Exception ex ) {
+      throw new KettleValueException( "resultType: " + resultType + "; targetMeta: " + targetMeta.getType(), ex );
+    }
+  }
+
+  /**
+   * The data types are those of the first argument field, except for:<br>
+   * - add and multiply: a string if one of the arguments is a string<br>
+   * - subtract: an integer for dates<br>
+   * - constants, most date functions, hex encode / decode and other functions with a fixed result type
+   */
+  static int getResultType( int calcType, ValueMetaInterface metaA, ValueMetaInterface metaB,
+    ValueMetaInterface metaC ) {
+    int resultType = metaA != null ? metaA.getType() : ValueMetaInterface.TYPE_NONE;
+    switch ( calcType ) {
+      case CalculatorMetaFunction.CALC_NONE:
+      case CalculatorMetaFunction.CALC_COPY_OF_FIELD:
+      case CalculatorMetaFunction.CALC_DIVIDE:
+      case CalculatorMetaFunction.CALC_SQUARE:
+      case CalculatorMetaFunction.CALC_SQUARE_ROOT:
+      case CalculatorMetaFunction.CALC_PERCENT_1:
+      case CalculatorMetaFunction.CALC_PERCENT_2:
+      case CalculatorMetaFunction.CALC_PERCENT_3:
+      case CalculatorMetaFunction.CALC_COMBINATION_1:
+      case CalculatorMetaFunction.CALC_COMBINATION_2:
+      case CalculatorMetaFunction.CALC_ROUND_1:
+      case CalculatorMetaFunction.CALC_ROUND_2:
+      case CalculatorMetaFunction.CALC_ROUND_STD_1:
+      case CalculatorMetaFunction.CALC_ROUND_STD_2:
+      case CalculatorMetaFunction.CALC_CEIL:
+      case CalculatorMetaFunction.CALC_FLOOR:
+      case CalculatorMetaFunction.CALC_NVL:
+      case CalculatorMetaFunction.CALC_ABS:
+      case CalculatorMetaFunction.CALC_REMOVE_TIME_FROM_DATE:
+        return resultType;
+      case CalculatorMetaFunction.CALC_ADD:
+      case CalculatorMetaFunction.CALC_MULTIPLY:
+        return metaA.isString() || metaB.isString() ? ValueMetaInterface.TYPE_STRING : resultType;
+      case CalculatorMetaFunction.CALC_SUBTRACT:
+        return metaA.isDate() ? ValueMetaInterface.TYPE_INTEGER : resultType;
+      case CalculatorMetaFunction.CALC_ADD3:
+        return metaA.isString() || metaB.isString() || metaC.isString()
+          ? ValueMetaInterface.TYPE_STRING : resultType;
+      default:
+        if ( calcType > 0 && calcType < CalculatorMetaFunction.calcDefaultResultType.length ) {
+          return CalculatorMetaFunction.calcDefaultResultType[calcType];
+        }
+        return resultType; // unknown calculation types are reported for every row
+    }
+  }
+
+  /**
+   * @return true if the value metadata returns the data itself as integer or number in normal storage
+   */
+  private static boolean isPlainValueMeta( ValueMetaInterface valueMeta ) {
+    Class<?> valueMetaClass = valueMeta.getClass();
+    return valueMeta.isStorageNormal()
+      && ( valueMetaClass == ValueMeta.class || valueMetaClass == ValueMetaBase.class
+        || valueMetaClass == ValueMetaInteger.class || valueMetaClass == ValueMetaNumber.class );
+  }
+
+  /**
+   * A constant, converted to the target data type once.
+   */
+  private static final class Constant extends CalculatorOperation {
+    private Object value;
+
+    private Constant( CalculatorMetaFunction function, int functionNr, int index, Calculator.FieldIndexes indexes,
+      RowMetaInterface calcRowMeta ) {
+      super( function, functionNr, index, indexes, calcRowMeta );
+    }
+
+    static CalculatorOperation compile( CalculatorMetaFunction function, int functionNr, int index,
+      Calculator.FieldIndexes indexes, RowMetaInterface calcRowMeta ) {
+      Constant constant = new Constant( function, functionNr, index, indexes, calcRowMeta );
+      try {
+        constant.value = constant.convertResult( function.getFieldA() );
+      } catch ( KettleValueException e ) {
+        return null; // the error is reported for every row
+      }
+      // The same value ends up in every row, so only share values that can't be modified
+      //
+      Object value = constant.value;
+      if ( value == null || value instanceof String || value instanceof Long || value instanceof Double
+        || value instanceof BigDecimal || value instanceof Boolean ) {
+        return constant;
+      }
+      return null;
+    }
+
+    @Override
+    public void calculate( Object[] calcData ) {
+      calcData[index] = value;
+    }
+
+    @Override
+    protected Object calculate( Object dataA, Object dataB, Object dataC ) {
+      return value;
+    }
+  }
+
+  /**
+   * A + B, A - B, A * B and A / B with two integer or two number arguments.
+   */
+  private static final class Arithmetic extends CalculatorOperation {
+    private final int calcType;
+    private final boolean integer;
+
+    private Arithmetic( CalculatorMetaFunction function, int functionNr, int index, Calculator.FieldIndexes indexes,
+      RowMetaInterface calcRowMeta ) {
+      super( function, functionNr, index, indexes, calcRowMeta );
+      this.calcType = function.getCalcType();
+      this.integer = metaA.getType() == ValueMetaInterface.TYPE_INTEGER;
+    }
+
+    static CalculatorOperation compile( CalculatorMetaFunction function, int functionNr, int index,
+      Calculator.FieldIndexes indexes, RowMetaInterface calcRowMeta ) {
+      if ( indexes.indexA < 0 || indexes.indexB < 0 ) {
+        return null;
+      }
+      ValueMetaInterface metaA = calcRowMeta.getValueMeta( indexes.indexA );
+      ValueMetaInterface metaB = calcRowMeta.getValueMeta( indexes.indexB );
+      if ( metaA.getType() != metaB.getType() || !isPlainValueMeta( metaA ) || !isPlainValueMeta( metaB )
+        || !( metaA.getType() == ValueMetaInterface.TYPE_INTEGER
+        || metaA.getType() == ValueMetaInterface.TYPE_NUMBER ) ) {
+        return null;
+      }
+      return new Arithmetic( function, functionNr, index, indexes, calcRowMeta );
+    }
+
+    @Override
+    protected Object calculate( Object dataA, Object dataB, Object dataC ) throws KettleValueException {
+      if ( integer && dataA instanceof Long && dataB instanceof Long ) {
+        long a = ( (Long) dataA ).longValue();
+        long b = ( (Long) dataB ).longValue();
+        switch ( calcType ) {
+          case CalculatorMetaFunction.CALC_ADD:
+            return Long.valueOf( a + b );
+          case CalculatorMetaFunction.CALC_SUBTRACT:
+            return Long.valueOf( a - b );
+          case CalculatorMetaFunction.CALC_MULTIPLY:
+            return Long.valueOf( a * b );
+          default:
+            return Long.valueOf( a / b );
+        }
+      }
+      if ( !integer && dataA instanceof Double && dataB instanceof Double ) {
+        double a = ( (Double) dataA ).doubleValue();
+        double b = ( (Double) dataB ).doubleValue();
+        switch ( calcType ) {
+          case CalculatorMetaFunction.CALC_ADD:
+            return Double.valueOf( a + b );
+          case CalculatorMetaFunction.CALC_SUBTRACT:
+            return Double.valueOf( a - b );
+          case CalculatorMetaFunction.CALC_MULTIPLY:
+            return Double.valueOf( a * b );
+          default:
+            return Double.valueOf( a / b );
+        }
+      }
+
+      // Nulls and anything unexpected
+      //
+      switch ( calcType ) {
+        case CalculatorMetaFunction.CALC_ADD:
+          return ValueDataUtil.plus( metaA, dataA, metaB, dataB );
+        case CalculatorMetaFunction.CALC_SUBTRACT:
+          return ValueDataUtil.minus( metaA, dataA, metaB, dataB );
+        case CalculatorMetaFunction.CALC_MULTIPLY:
+          return ValueDataUtil.multiply( metaA, dataA, metaB, dataB );
+        default:
+          return ValueDataUtil.divide( metaA, dataA, metaB, dataB );
+      }
+    }
+  }
+
+  /**
+   * Any calculation, dispatched on the calculation type.
+   */
+  private static final class Generic extends CalculatorOperation {
+    private final VariableSpace space;
+
+    private Generic( CalculatorMetaFunction function, int functionNr, int index, Calculator.FieldIndexes indexes,
+      RowMetaInterface calcRowMeta, VariableSpace space ) {
+      super( function, functionNr, index, indexes, calcRowMeta );
+      this.space = space;
+    }
+
+    @Override
+    protected Object calculate( Object dataA, Object dataB, Object dataC ) throws KettleValueException {
+      Object result = null;
+      switch ( function.getCalcType() ) {
+        case CalculatorMetaFunction.CALC_NONE:
+          break;
+        case CalculatorMetaFunction.CALC_COPY_OF_FIELD: // Create a copy of field A
+          result = dataA;
+          break;
+        case CalculatorMetaFunction.CALC_ADD: // A + B
+          result = ValueDataUtil.plus( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_SUBTRACT: // A - B
+          result = ValueDataUtil.minus( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_MULTIPLY: // A * B
+          result = ValueDataUtil.multiply( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_DIVIDE: // A / B
+          result = ValueDataUtil.divide( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_SQUARE: // A * A
+          result = ValueDataUtil.multiply( metaA, dataA, metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_SQUARE_ROOT: // SQRT( A )
+          result = ValueDataUtil.sqrt( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_PERCENT_1: // 100 * A / B
+          result = ValueDataUtil.percent1( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_PERCENT_2: // A - ( A * B / 100 )
+          result = ValueDataUtil.percent2( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_PERCENT_3: // A + ( A * B / 100 )
+          result = ValueDataUtil.percent3( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_COMBINATION_1: // A + B * C
+          result = ValueDataUtil.combination1( metaA, dataA, metaB, dataB, metaC, dataC );
+          break;
+        case CalculatorMetaFunction.CALC_COMBINATION_2: // SQRT( A*A + B*B )
+          result = ValueDataUtil.combination2( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ROUND_1: // ROUND( A )
+          result = ValueDataUtil.round( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ROUND_2: // ROUND( A , B )
+          result = ValueDataUtil.round( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ROUND_STD_1: // ROUND( A )
+          result = ValueDataUtil.round( metaA, dataA, java.math.BigDecimal.ROUND_HALF_UP );
+          break;
+        case CalculatorMetaFunction.CALC_ROUND_STD_2: // ROUND( A , B )
+          result = ValueDataUtil.round( metaA, dataA, metaB, dataB, java.math.BigDecimal.ROUND_HALF_UP );
+          break;
+        case CalculatorMetaFunction.CALC_CEIL: // CEIL( A )
+          result = ValueDataUtil.ceil( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_FLOOR: // FLOOR( A )
+          result = ValueDataUtil.floor( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_CONSTANT: // Set field to constant value...
+          result = function.getFieldA(); // A string
+          break;
+        case CalculatorMetaFunction.CALC_NVL: // Replace null values with another value
+          result = ValueDataUtil.nvl( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ADD_DAYS: // Add B days to date field A
+          result = ValueDataUtil.addDays( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ADD_HOURS: // Add B hours to date field A
+          result = ValueDataUtil.addHours( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ADD_MINUTES: // Add B minutes to date field A
+          result = ValueDataUtil.addMinutes( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_YEAR_OF_DATE: // What is the year (Integer) of a date?
+          result = ValueDataUtil.yearOfDate( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_MONTH_OF_DATE: // What is the month (Integer) of a date?
+          result = ValueDataUtil.monthOfDate( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DAY_OF_YEAR: // What is the day of year (Integer) of a date?
+          result = ValueDataUtil.dayOfYear( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DAY_OF_MONTH: // What is the day of month (Integer) of a date?
+          result = ValueDataUtil.dayOfMonth( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DAY_OF_WEEK: // What is the day of week (Integer) of a date?
+          result = ValueDataUtil.dayOfWeek( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_WEEK_OF_YEAR: // What is the week of year (Integer) of a date?
+          result = ValueDataUtil.weekOfYear( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_WEEK_OF_YEAR_ISO8601: // What is the week of year (Integer) of a date ISO8601
+                                                               // style?
+          result = ValueDataUtil.weekOfYearISO8601( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_YEAR_OF_DATE_ISO8601: // What is the year (Integer) of a date ISO8601 style?
+          result = ValueDataUtil.yearOfDateISO8601( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_BYTE_TO_HEX_ENCODE: // Byte to Hex encode string field A
+          result = ValueDataUtil.byteToHexEncode( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_HEX_TO_BYTE_DECODE: // Hex to Byte decode string field A
+          result = ValueDataUtil.hexToByteDecode( metaA, dataA );
+          break;
+
+        case CalculatorMetaFunction.CALC_CHAR_TO_HEX_ENCODE: // Char to Hex encode string field A
+          result = ValueDataUtil.charToHexEncode( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_HEX_TO_CHAR_DECODE: // Hex to Char decode string field A
+          result = ValueDataUtil.hexToCharDecode( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_CRC32: // CRC32
+          result = ValueDataUtil.ChecksumCRC32( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ADLER32: // ADLER32
+          result = ValueDataUtil.ChecksumAdler32( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_MD5: // MD5
+          result = ValueDataUtil.createChecksum( metaA, dataA, "MD5" );
+          break;
+        case CalculatorMetaFunction.CALC_SHA1: // SHA-1
+          result = ValueDataUtil.createChecksum( metaA, dataA, "SHA-1" );
+          break;
+        case CalculatorMetaFunction.CALC_LEVENSHTEIN_DISTANCE: // LEVENSHTEIN DISTANCE
+          result = ValueDataUtil.getLevenshtein_Distance( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_METAPHONE: // METAPHONE
+          result = ValueDataUtil.get_Metaphone( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DOUBLE_METAPHONE: // Double METAPHONE
+          result = ValueDataUtil.get_Double_Metaphone( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ABS: // ABS( A )
+          result = ValueDataUtil.abs( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_TIME_FROM_DATE: // Remove Time from field A
+          result = ValueDataUtil.removeTimeFromDate( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_DIFF: // DateA - DateB
+          result = ValueDataUtil.DateDiff( metaA, dataA, metaB, dataB, "d" );
+          break;
+        case CalculatorMetaFunction.CALC_ADD3: // A + B + C
+          result = ValueDataUtil.plus3( metaA, dataA, metaB, dataB, metaC, dataC );
+          break;
+        case CalculatorMetaFunction.CALC_INITCAP: // InitCap( A )
+          result = ValueDataUtil.initCap( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_UPPER_CASE: // UpperCase( A )
+          result = ValueDataUtil.upperCase( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_LOWER_CASE: // UpperCase( A )
+          result = ValueDataUtil.lowerCase( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_MASK_XML: // escapeXML( A )
+          result = ValueDataUtil.escapeXML( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_USE_CDATA: // CDATA( A )
+          result = ValueDataUtil.useCDATA( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_CR: // REMOVE CR FROM A
+          result = ValueDataUtil.removeCR( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_LF: // REMOVE LF FROM A
+          result = ValueDataUtil.removeLF( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_CRLF: // REMOVE CRLF FROM A
+          result = ValueDataUtil.removeCRLF( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_TAB: // REMOVE TAB FROM A
+          result = ValueDataUtil.removeTAB( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_GET_ONLY_DIGITS: // GET ONLY DIGITS FROM A
+          result = ValueDataUtil.getDigits( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REMOVE_DIGITS: // REMOVE DIGITS FROM A
+          result = ValueDataUtil.removeDigits( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_STRING_LEN: // RETURN THE LENGTH OF A
+          result = ValueDataUtil.stringLen( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_LOAD_FILE_CONTENT_BINARY: // LOAD CONTENT OF A FILE A IN A BLOB
+          result = ValueDataUtil.loadFileContentInBinary( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ADD_TIME_TO_DATE: // Add time B to a date A
+          result = ValueDataUtil.addTimeToDate( metaA, dataA, metaB, dataB, metaC, dataC );
+          break;
+        case CalculatorMetaFunction.CALC_QUARTER_OF_DATE: // What is the quarter (Integer) of a date?
+          result = ValueDataUtil.quarterOfDate( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_SUBSTITUTE_VARIABLE: // variable substitution in string
+          result = space.environmentSubstitute( dataA.toString() );
+          break;
+        case CalculatorMetaFunction.CALC_UNESCAPE_XML: // UnescapeXML( A )
+          result = ValueDataUtil.unEscapeXML( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ESCAPE_HTML: // EscapeHTML( A )
+          result = ValueDataUtil.escapeHTML( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_UNESCAPE_HTML: // UnescapeHTML( A )
+          result = ValueDataUtil.unEscapeHTML( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_ESCAPE_SQL: // EscapeSQL( A )
+          result = ValueDataUtil.escapeSQL( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_WORKING_DIFF: // DateWorkingDiff( A , B)
+          result = ValueDataUtil.DateWorkingDiff( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_ADD_MONTHS: // Add B months to date field A
+          result = ValueDataUtil.addMonths( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_CHECK_XML_FILE_WELL_FORMED: // Check if file A is well formed
+          result = ValueDataUtil.isXMLFileWellFormed( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_CHECK_XML_WELL_FORMED: // Check if xml A is well formed
+          result = ValueDataUtil.isXMLWellFormed( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_GET_FILE_ENCODING: // Get file encoding from a file A
+          result = ValueDataUtil.getFileEncoding( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DAMERAU_LEVENSHTEIN: // DAMERAULEVENSHTEIN DISTANCE
+          result = ValueDataUtil.getDamerauLevenshtein_Distance( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_NEEDLEMAN_WUNSH: // NEEDLEMANWUNSH DISTANCE
+          result = ValueDataUtil.getNeedlemanWunsch_Distance( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_JARO: // Jaro DISTANCE
+          result = ValueDataUtil.getJaro_Similitude( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_JARO_WINKLER: // Jaro DISTANCE
+          result = ValueDataUtil.getJaroWinkler_Similitude( metaA, dataA, metaB, dataB );
+          break;
+        case CalculatorMetaFunction.CALC_SOUNDEX: // SOUNDEX
+          result = ValueDataUtil.get_SoundEx( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_REFINED_SOUNDEX: // REFINEDSOUNDEX
+          result = ValueDataUtil.get_RefinedSoundEx( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_DIFF_MSEC: // DateA - DateB (ms)
+          result = ValueDataUtil.DateDiff( metaA, dataA, metaB, dataB, "ms" );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_DIFF_SEC: // DateA - DateB (s)
+          result = ValueDataUtil.DateDiff( metaA, dataA, metaB, dataB, "s" );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_DIFF_MN: // DateA - DateB (mn)
+          result = ValueDataUtil.DateDiff( metaA, dataA, metaB, dataB, "mn" );
+          break;
+        case CalculatorMetaFunction.CALC_DATE_DIFF_HR: // DateA - DateB (h)
+          result = ValueDataUtil.DateDiff( metaA, dataA, metaB, dataB, "h" );
+          break;
+        case CalculatorMetaFunction.CALC_HOUR_OF_DAY:
+          result = ValueDataUtil.hourOfDay( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_MINUTE_OF_HOUR:
+          result = ValueDataUtil.minuteOfHour( metaA, dataA );
+          break;
+        case CalculatorMetaFunction.CALC_SECOND_OF_MINUTE:
+          result = ValueDataUtil.secondOfMinute( metaA, dataA );
+          break;
+        default:
+          throw new KettleValueException( BaseMessages.getString( PKG, "Calculator.Log.UnknownCalculationType" )
+            + function.getCalcType() );
+      }
+      return result;
+    }
+  }
+}
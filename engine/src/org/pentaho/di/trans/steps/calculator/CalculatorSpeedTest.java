@@ -0,0 +1,164 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.calculator;
+
+import java.util.Date;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.variables.Variables;
+
+/**
+ * Measures the time to calculate 20 fields with the operations the Calculator step compiles against the same
+ * calculations dispatched on the calculation type for every row.
+ */
+public class CalculatorSpeedTest {
+  public static final int ROWS = 1000000;
+
+  private RowMetaInterface inputRowMeta;
+  private RowMetaInterface calcRowMeta;
+  private CalculatorMetaFunction[] functions;
+  private Calculator.FieldIndexes[] indexes;
+  private Object[][] rows;
+
+  public CalculatorSpeedTest() {
+    inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMeta( "a", ValueMetaInterface.TYPE_INTEGER ) );
+    inputRowMeta.addValueMeta( new ValueMeta( "b", ValueMetaInterface.TYPE_INTEGER ) );
+    inputRowMeta.addValueMeta( new ValueMeta( "x", ValueMetaInterface.TYPE_NUMBER ) );
+    inputRowMeta.addValueMeta( new ValueMeta( "y", ValueMetaInterface.TYPE_NUMBER ) );
+    inputRowMeta.addValueMeta( new ValueMeta( "s", ValueMetaInterface.TYPE_STRING ) );
+    inputRowMeta.addValueMeta( new ValueMeta( "d", ValueMetaInterface.TYPE_DATE ) );
+
+    functions =
+      new CalculatorMetaFunction[] {
+        function( "c100", CalculatorMetaFunction.CALC_CONSTANT, "100", null, ValueMetaInterface.TYPE_INTEGER, true ),
+        function( "sum", CalculatorMetaFunction.CALC_ADD, "a", "b", ValueMetaInterface.TYPE_INTEGER, true ),
+        function( "diff", CalculatorMetaFunction.CALC_SUBTRACT, "a", "b", ValueMetaInterface.TYPE_INTEGER, false ),
+        function( "prod", CalculatorMetaFunction.CALC_MULTIPLY, "a", "b", ValueMetaInterface.TYPE_INTEGER, true ),
+        function( "quot", CalculatorMetaFunction.CALC_DIVIDE, "a", "c100", ValueMetaInterface.TYPE_INTEGER, false ),
+        function( "xy", CalculatorMetaFunction.CALC_ADD, "x", "y", ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "xmy", CalculatorMetaFunction.CALC_SUBTRACT, "x", "y", ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "xty", CalculatorMetaFunction.CALC_MULTIPLY, "x", "y", ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "xdy", CalculatorMetaFunction.CALC_DIVIDE, "x", "y", ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "pct", CalculatorMetaFunction.CALC_PERCENT_1, "x", "y", ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "sq", CalculatorMetaFunction.CALC_SQUARE, "x", null, ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "rnd", CalculatorMetaFunction.CALC_ROUND_1, "xdy", null, ValueMetaInterface.TYPE_NUMBER, false ),
+        function( "abs", CalculatorMetaFunction.CALC_ABS, "diff", null, ValueMetaInterface.TYPE_INTEGER, false ),
+        function( "nvl", CalculatorMetaFunction.CALC_NVL, "s", "s", ValueMetaInterface.TYPE_STRING, false ),
+        function( "up", CalculatorMetaFunction.CALC_UPPER_CASE, "s", null, ValueMetaInterface.TYPE_STRING, false ),
+        function( "len", CalculatorMetaFunction.CALC_STRING_LEN, "s", null, ValueMetaInterface.TYPE_INTEGER, false ),
+        function( "year", CalculatorMetaFunction.CALC_YEAR_OF_DATE, "d", null, ValueMetaInterface.TYPE_INTEGER,
+          false ),
+        function( "later", CalculatorMetaFunction.CALC_ADD_DAYS, "d", "a", ValueMetaInterface.TYPE_DATE, false ),
+        function( "total", CalculatorMetaFunction.CALC_ADD, "sum", "prod", ValueMetaInterface.TYPE_INTEGER, false ),
+        function( "ratio", CalculatorMetaFunction.CALC_DIVIDE, "xy", "xty", ValueMetaInterface.TYPE_NUMBER, false ), };
+
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( functions );
+    calcRowMeta = meta.getAllFields( inputRowMeta );
+
+    indexes = new Calculator.FieldIndexes[functions.length];
+    for ( int i = 0; i < functions.length; i++ ) {
+      CalculatorMetaFunction function = functions[i];
+      indexes[i] = new Calculator.FieldIndexes();
+      indexes[i].indexName = calcRowMeta.indexOfValue( function.getFieldName() );
+      boolean constant = function.getCalcType() == CalculatorMetaFunction.CALC_CONSTANT;
+      indexes[i].indexA = constant ? -1 : calcRowMeta.indexOfValue( function.getFieldA() );
+      indexes[i].indexB = function.getFieldB() == null ? 0 : calcRowMeta.indexOfValue( function.getFieldB() );
+      indexes[i].indexC = -1;
+    }
+
+    rows = new Object[1000][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] =
+        new Object[] {
+          Long.valueOf( i ), Long.valueOf( i % 17 + 1 ), Double.valueOf( i * 1.25 ), Double.valueOf( i % 13 + 0.5 ),
+          "Some string " + i, new Date( 1000000000000L + i * 86400000L ), };
+    }
+  }
+
+  private static CalculatorMetaFunction function( String name, int calcType, String fieldA, String fieldB,
+    int valueType, boolean removed ) {
+    return new CalculatorMetaFunction(
+      name, calcType, fieldA, fieldB, null, valueType, -1, -1, removed, null, null, null, null );
+  }
+
+  private CalculatorOperation[] compile( boolean specialised ) {
+    CalculatorOperation[] operations = new CalculatorOperation[functions.length];
+    for ( int i = 0; i < functions.length; i++ ) {
+      int index = inputRowMeta.size() + i;
+      if ( specialised ) {
+        operations[i] =
+          CalculatorOperation.compile( functions[i], i, index, indexes[i], calcRowMeta, new Variables() );
+      } else {
+        operations[i] =
+          CalculatorOperation.compileGeneric( functions[i], i, index, indexes[i], calcRowMeta, new Variables() );
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Calculate all the fields of the test rows until the given number of rows is reached.
+   *
+   * @return the elapsed time in ms
+   */
+  public long runTest( CalculatorOperation[] operations, int nrRows ) throws Exception {
+    long startTime = System.currentTimeMillis();
+
+    for ( int r = 0; r < nrRows; r++ ) {
+      Object[] calcData = RowDataUtil.resizeArray( rows[r % rows.length], calcRowMeta.size() );
+      for ( CalculatorOperation operation : operations ) {
+        operation.calculate( calcData );
+      }
+    }
+
+    long stopTime = System.currentTimeMillis();
+    return stopTime - startTime;
+  }
+
+  private static void report( String name, long time ) {
+    System.out.println( "Time to calculate "
+      + ROWS + " rows with '" + name + "' : " + time + " ms (" + ( 1000L * ROWS / Math.max( 1L, time ) ) + " r/s)" );
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleEnvironment.init( false );
+    CalculatorSpeedTest speedTest = new CalculatorSpeedTest();
+    CalculatorOperation[] generic = speedTest.compile( false );
+    CalculatorOperation[] compiled = speedTest.compile( true );
+
+    // Warm up the JIT compiler before measuring anything
+    //
+    speedTest.runTest( generic, ROWS / 10 );
+    speedTest.runTest( compiled, ROWS / 10 );
+
+    report( "dispatched on the calculation type", speedTest.runTest( generic, ROWS ) );
+    report( "compiled operations", speedTest.runTest( compiled, ROWS ) );
+    System.out.println();
+  }
+}
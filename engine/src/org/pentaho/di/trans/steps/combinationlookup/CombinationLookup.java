@@ -25,14 +25,13 @@ package org.pentaho.di.trans.steps.combinationlookup;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
-import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.ByteArrayLookupCache;
+import org.pentaho.di.core.cache.EvictionPolicy;
+import org.pentaho.di.core.cache.SharedLookupCaches;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleConfigException;
@@ -40,6 +39,7 @@ import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
@@ -111,7 +111,7 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     }
   }
 
-  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) {
+  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
     // Short circuit if cache is disabled.
     if ( meta.getCacheSize() == -1 ) {
       return null;
@@ -119,8 +119,43 @@ public class CombinationLookup extends BaseStep implements StepInterface {
 
     // try to find the row in the cache...
     //
-    Long tk = data.cache.get( new RowMetaAndData( rowMeta, row ) );
-    return tk;
+    byte[] value = data.cache.get( getCacheKey( rowMeta, row ) );
+    return value == null ? null : getTechnicalKey( value );
+  }
+
+  /**
+   * Serialize the key fields with normal storage, so that equal keys have equal bytes in the cache.
+   */
+  private byte[] getCacheKey( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
+    Object[] key = new Object[data.cacheKeyRowMeta.size()];
+    for ( int i = 0; i < key.length; i++ ) {
+      key[i] = rowMeta.getValueMeta( i ).convertToNormalStorageType( row[i] );
+    }
+    return RowMeta.extractData( data.cacheKeyRowMeta, key );
+  }
+
+  private static byte[] getCacheValue( Long tk ) {
+    if ( tk == null ) {
+      return new byte[0];
+    }
+    long value = tk.longValue();
+    byte[] bytes = new byte[8];
+    for ( int i = 7; i >= 0; i-- ) {
+      bytes[i] = (byte) value;
+      value >>>= 8;
+    }
+    return bytes;
+  }
+
+  private static Long getTechnicalKey( byte[] cacheValue ) {
+    if ( cacheValue.length == 0 ) {
+      return null;
+    }
+    long value = 0L;
+    for ( int i = 0; i < 8; i++ ) {
+      value = ( value << 8 ) | ( cacheValue[i] & 0xFF );
+    }
+    return Long.valueOf( value );
   }
 
   /**
@@ -141,74 +176,29 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     }
 
     // store it in the cache if needed.
-    data.cache.put( new RowMetaAndData( rowMeta, row ), tk );
-
-    // check if the size is not too big...
-    // Allow for a buffer overrun of 20% and then remove those 20% in one go.
-    // Just to keep performance in track.
-    //
-    int tenPercent = meta.getCacheSize() / 10;
-    if ( meta.getCacheSize() > 0 && data.cache.size() > meta.getCacheSize() + tenPercent ) {
-      // Which cache entries do we delete here?
-      // We delete those with the lowest technical key...
-      // Those would arguably be the "oldest" dimension entries.
-      // Oh well... Nothing is going to be perfect here...
-      //
-      // Getting the lowest 20% requires some kind of sorting algorithm and I'm not sure we want to do that.
-      // Sorting is slow and even in the best case situation we need to do 2 passes over the cache entries...
-      //
-      // Perhaps we should get 20% random values and delete everything below the lowest but one TK.
-      //
-      List<RowMetaAndData> keys = new ArrayList<RowMetaAndData>( data.cache.keySet() );
-      int sizeBefore = keys.size();
-      List<Long> samples = new ArrayList<Long>();
-
-      // Take 10 sample technical keys....
-      int stepsize = keys.size() / 5;
-      if ( stepsize < 1 ) {
-        stepsize = 1; // make sure we have no endless loop
-      }
-      for ( int i = 0; i < keys.size(); i += stepsize ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          samples.add( value );
-        }
-      }
-      // Sort these 5 elements...
-      Collections.sort( samples );
-
-      // What is the smallest?
-      // Take the second, not the fist in the list, otherwise we would be removing a single entry = not good.
-      if ( samples.size() > 1 ) {
-        data.smallestCacheKey = samples.get( 1 ).longValue();
-      } else { // except when there is only one sample
-        data.smallestCacheKey = samples.get( 0 ).longValue();
-      }
-
-      // Remove anything in the cache <= smallest.
-      // This makes it almost single pass...
-      // This algorithm is not 100% correct, but I guess it beats sorting the whole cache all the time.
-      //
-      for ( int i = 0; i < keys.size(); i++ ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          if ( value.longValue() <= data.smallestCacheKey ) {
-            data.cache.remove( key ); // this one has to go.
-          }
-        }
-      }
-
-      int sizeAfter = data.cache.size();
-      logDetailed( "Reduced the lookup cache from " + sizeBefore + " to " + sizeAfter + " rows." );
-    }
+    data.cache.put( getCacheKey( rowMeta, row ), getCacheValue( tk ) );
 
     if ( log.isRowLevel() ) {
       logRowlevel( "Cache store: key=" + rowMeta.getString( row ) + "    key=" + tk );
     }
   }
 
+  /**
+   * Create the cache of the key combinations, bounded by the number of rows and memory configured. If the copies of the
+   * step share the cache, the cache of the first copy is used.
+   */
+  private ByteArrayLookupCache createCache() {
+    ByteArrayLookupCache cache =
+      new ByteArrayLookupCache( meta.getCacheSize(), meta.getCacheMemoryLimit() * 1024L * 1024L, EvictionPolicy
+        .getPolicyByName( getVariable( Const.KETTLE_LOOKUP_CACHE_EVICTION ) ), "Y".equalsIgnoreCase( getVariable(
+        Const.KETTLE_LOOKUP_CACHE_OFF_HEAP, "N" ) ) );
+    if ( meta.isSharingCache() && meta.getCacheSize() >= 0 ) {
+      data.sharedCacheId = getTrans().getLogChannelId() + "/" + getStepname();
+      cache = (ByteArrayLookupCache) SharedLookupCaches.acquire( data.sharedCacheId, cache );
+    }
+    return cache;
+  }
+
   private boolean isAutoIncrement() {
     return techKeyCreation == CREATION_METHOD_AUTOINC;
   }
@@ -379,8 +369,24 @@ public class CombinationLookup extends BaseStep implements StepInterface {
         data.hashRowMeta.addValueMeta( getInputRowMeta().getValueMeta( data.keynrs[i] ) ); // KEYi = ?
       }
 
+      // The cache stores the keys serialized with normal storage
+      //
+      data.cacheKeyRowMeta = data.hashRowMeta.clone();
+      for ( int i = 0; i < data.cacheKeyRowMeta.size(); i++ ) {
+        data.cacheKeyRowMeta.getValueMeta( i ).setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      }
+      data.cache = createCache();
+
       setCombiLookup( getInputRowMeta() );
-      preloadCache( data.hashRowMeta );
+
+      // When the copies share the cache, the first copy preloads it for all of them.
+      //
+      synchronized ( data.cache ) {
+        if ( !data.cache.isPopulated() ) {
+          preloadCache( data.hashRowMeta );
+          data.cache.setPopulated( true );
+        }
+      }
     }
 
     try {
@@ -670,11 +676,6 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       data.realSchemaName = environmentSubstitute( meta.getSchemaName() );
       data.realTableName = environmentSubstitute( meta.getTablename() );
 
-      if ( meta.getCacheSize() > 0 ) {
-        data.cache = new HashMap<RowMetaAndData, Long>( (int) ( meta.getCacheSize() * 1.5 ) );
-      } else {
-        data.cache = new HashMap<RowMetaAndData, Long>();
-      }
       if ( meta.getDatabaseMeta() == null ) {
         logError( BaseMessages.getString( PKG, "CombinationLookup.Init.ConnectionMissing", getStepname() ) );
         return false;
@@ -722,6 +723,20 @@ public class CombinationLookup extends BaseStep implements StepInterface {
         data.db.disconnect();
       }
     }
+    if ( data.cache != null ) {
+      if ( log.isDetailed() && data.cache.getEvictionCount() > 0 ) {
+        logDetailed( BaseMessages.getString( PKG, "CombinationLookup.Log.CacheStatistics", data.cache.getHitCount(),
+          data.cache.getMissCount(), data.cache.getEvictionCount() ) );
+      }
+      if ( isGatheringMetrics() ) {
+        log.snap( Metrics.METRIC_LOOKUP_CACHE_EVICTIONS, data.cache.getEvictionCount() );
+      }
+      if ( data.sharedCacheId != null ) {
+        SharedLookupCaches.release( data.sharedCacheId );
+        data.sharedCacheId = null;
+      }
+      data.cache = null;
+    }
 
     super.dispose( smi, sdi );
   }
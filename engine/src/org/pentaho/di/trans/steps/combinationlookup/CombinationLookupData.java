@@ -23,10 +23,9 @@
 package org.pentaho.di.trans.steps.combinationlookup;
 
 import java.sql.PreparedStatement;
-import java.util.Map;
 
-import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.cache.ByteArrayLookupCache;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -39,7 +38,9 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
   public Database db;
   public int[] keynrs; // nrs in row of the keys
 
-  public Map<RowMetaAndData, Long> cache;
+  public ByteArrayLookupCache cache;
+  public String sharedCacheId;
+  public RowMetaInterface cacheKeyRowMeta;
 
   public RowMetaInterface outputRowMeta;
   public RowMetaInterface lookupRowMeta;
@@ -53,7 +54,6 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
 
   public PreparedStatement prepStatementLookup;
   public PreparedStatement prepStatementInsert;
-  public long smallestCacheKey;
 
   /**
    * Default Constructor
@@ -107,6 +107,12 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
   /** Limit the cache size to this! */
   private int cacheSize;
 
+  /** Limit the memory used by the cache to this many MB, 0 for no limit */
+  private int cacheMemoryLimit;
+
+  /** Flag to share the cache among the copies of the step */
+  private boolean sharingCache;
+
   /** Use the auto-increment feature of the database to generate keys. */
   private boolean useAutoinc;
 
@@ -187,6 +193,36 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     this.cacheSize = cacheSize;
   }
 
+  /**
+   * @return the maximum number of MB used by the cache, 0 for no limit
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          the maximum number of MB used by the cache, 0 for no limit
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
+  /**
+   * @return true if the copies of the step share a single cache
+   */
+  public boolean isSharingCache() {
+    return sharingCache;
+  }
+
+  /**
+   * @param sharingCache
+   *          true if the copies of the step share a single cache
+   */
+  public void setSharingCache( boolean sharingCache ) {
+    this.sharingCache = sharingCache;
+  }
+
   /**
    * @return Returns the hashField.
    */
@@ -373,6 +409,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       commitSize = Const.toInt( commit, 0 );
       csize = XMLHandler.getTagValue( stepnode, "cache_size" );
       cacheSize = Const.toInt( csize, 0 );
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
+      sharingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_shared" ) );
 
       replaceFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "replace" ) );
       preloadCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preloadCache" ) );
@@ -414,6 +452,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     databaseMeta = null;
     commitSize = 100;
     cacheSize = DEFAULT_CACHE_SIZE;
+    cacheMemoryLimit = 0;
+    sharingCache = false;
     replaceFields = false;
     preloadCache = false;
     useHash = false;
@@ -459,6 +499,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       databaseMeta == null ? "" : databaseMeta.getName() ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "commit", commitSize ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_shared", sharingCache ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "replace", replaceFields ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "preloadCache", preloadCache ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "crc", useHash ) );
@@ -495,6 +537,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       tablename = rep.getStepAttributeString( id_step, "table" );
       commitSize = (int) rep.getStepAttributeInteger( id_step, "commit" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
+      sharingCache = rep.getStepAttributeBoolean( id_step, "cache_shared" );
       replaceFields = rep.getStepAttributeBoolean( id_step, "replace" );
       preloadCache = rep.getStepAttributeBoolean( id_step, "preloadCache" );
       useHash = rep.getStepAttributeBoolean( id_step, "crc" );
@@ -527,6 +571,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       rep.saveDatabaseMetaStepAttribute( id_transformation, id_step, "id_connection", databaseMeta );
       rep.saveStepAttribute( id_transformation, id_step, "commit", commitSize );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_shared", sharingCache );
       rep.saveStepAttribute( id_transformation, id_step, "replace", replaceFields );
       rep.saveStepAttribute( id_transformation, id_step, "preloadCache", preloadCache );
 
@@ -44,6 +44,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
@@ -55,7 +56,7 @@ import org.w3c.dom.Node;
  * Created on 4-apr-2003
  *
  */
-public class ConstantMeta extends BaseStepMeta implements StepMetaInterface {
+public class ConstantMeta extends BaseStepMeta implements StepMetaInterface, PoolableStepMetaInterface {
   private static Class<?> PKG = ConstantMeta.class; // for i18n purposes, needed by Translator2!!
 
   private String[] currency;
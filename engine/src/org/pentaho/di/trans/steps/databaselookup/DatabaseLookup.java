@@ -22,21 +22,33 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
-import org.pentaho.di.core.TimedRow;
+import org.pentaho.di.core.cache.CacheWeigher;
+import org.pentaho.di.core.cache.EvictionPolicy;
+import org.pentaho.di.core.cache.LookupCache;
+import org.pentaho.di.core.cache.SharedLookupCaches;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.database.MSSQLServerDatabaseMeta;
+import org.pentaho.di.core.database.OracleDatabaseMeta;
+import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.memory.RowSizeEstimator;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -61,6 +73,15 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class DatabaseLookup extends BaseStep implements StepInterface {
   private static Class<?> PKG = DatabaseLookupMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** Oracle allows at most 1000 expressions in an IN list */
+  private static final int ORACLE_MAX_IN_LIST_SIZE = 1000;
+
+  /** SQL Server allows at most 2100 parameters in a statement, leave some for the driver */
+  private static final int MSSQL_MAX_PARAMETERS = 2000;
+
+  /** Other databases and drivers have higher limits on the number of parameters, PostgreSQL has 32767 */
+  private static final int MAX_PARAMETERS = 32767;
+
   private DatabaseLookupMeta meta;
   private DatabaseLookupData data;
 
@@ -79,39 +100,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
    *           In case something goes wrong.
    */
   private synchronized Object[] lookupValues( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
-    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
-
-    Object[] lookupRow = new Object[data.lookupMeta.size()];
-    int lookupIndex = 0;
-
-    for ( int i = 0; i < meta.getStreamKeyField1().length; i++ ) {
-      if ( data.keynrs[i] >= 0 ) {
-        ValueMetaInterface input = inputRowMeta.getValueMeta( data.keynrs[i] );
-        ValueMetaInterface value = data.lookupMeta.getValueMeta( lookupIndex );
-        lookupRow[lookupIndex] = row[data.keynrs[i]];
-
-        // Try to convert type if needed
-        if ( input.getType() != value.getType()
-            || ValueMetaInterface.STORAGE_TYPE_BINARY_STRING == input.getStorageType() ) {
-          lookupRow[lookupIndex] = value.convertData( input, lookupRow[lookupIndex] );
-          value.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
-        }
-        lookupIndex++;
-      }
-      if ( data.keynrs2[i] >= 0 ) {
-        ValueMetaInterface input = inputRowMeta.getValueMeta( data.keynrs2[i] );
-        ValueMetaInterface value = data.lookupMeta.getValueMeta( lookupIndex );
-        lookupRow[lookupIndex] = row[data.keynrs2[i]];
-
-        // Try to convert type if needed
-        if ( input.getType() != value.getType()
-            || ValueMetaInterface.STORAGE_TYPE_BINARY_STRING == input.getStorageType() ) {
-          lookupRow[lookupIndex] = value.convertData( input, lookupRow[lookupIndex] );
-          value.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
-        }
-        lookupIndex++;
-      }
-    }
+    Object[] lookupRow = getLookupRow( inputRowMeta, row );
 
     Object[] add;
     boolean cache_now = false;
@@ -122,6 +111,9 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       add = getRowFromCache( data.lookupMeta, lookupRow );
       if ( add != null ) {
         cacheHit = true;
+        data.cacheHits++;
+      } else {
+        data.cacheMisses++;
       }
     } else {
       add = null;
@@ -146,6 +138,82 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       }
     }
 
+    return addLookupValues( inputRowMeta, row, lookupRow, add, cacheHit, cache_now, data.db.getReturnRowMeta() );
+  }
+
+  /**
+   * Look up the key of a single row in the database, without checking the cache first.
+   */
+  private Object[] lookupInDatabase( RowMetaInterface inputRowMeta, Object[] row, Object[] lookupRow )
+    throws KettleException {
+    data.db.setValuesLookup( data.lookupMeta, lookupRow );
+    Object[] add = data.db.getLookup( meta.isFailingOnMultipleResults(), meta.getDatabaseMeta().isMySQLVariant() );
+    RowMetaInterface lookupRowMeta = data.db.getReturnRowMeta();
+    return addLookupValues( inputRowMeta, row, lookupRow, add, false, true, lookupRowMeta );
+  }
+
+  /**
+   * Get the values to look up from the input row, converted to the data types of the key fields in the table.
+   */
+  private Object[] getLookupRow( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
+    Object[] lookupRow = new Object[data.lookupMeta.size()];
+    int lookupIndex = 0;
+
+    for ( int i = 0; i < meta.getStreamKeyField1().length; i++ ) {
+      if ( data.keynrs[i] >= 0 ) {
+        ValueMetaInterface input = inputRowMeta.getValueMeta( data.keynrs[i] );
+        ValueMetaInterface value = data.lookupMeta.getValueMeta( lookupIndex );
+        lookupRow[lookupIndex] = row[data.keynrs[i]];
+
+        // Try to convert type if needed
+        if ( input.getType() != value.getType()
+            || ValueMetaInterface.STORAGE_TYPE_BINARY_STRING == input.getStorageType() ) {
+          lookupRow[lookupIndex] = value.convertData( input, lookupRow[lookupIndex] );
+          value.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+        }
+        lookupIndex++;
+      }
+      if ( data.keynrs2[i] >= 0 ) {
+        ValueMetaInterface input = inputRowMeta.getValueMeta( data.keynrs2[i] );
+        ValueMetaInterface value = data.lookupMeta.getValueMeta( lookupIndex );
+        lookupRow[lookupIndex] = row[data.keynrs2[i]];
+
+        // Try to convert type if needed
+        if ( input.getType() != value.getType()
+            || ValueMetaInterface.STORAGE_TYPE_BINARY_STRING == input.getStorageType() ) {
+          lookupRow[lookupIndex] = value.convertData( input, lookupRow[lookupIndex] );
+          value.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+        }
+        lookupIndex++;
+      }
+    }
+    return lookupRow;
+  }
+
+  /**
+   * Add the looked up values to the input row. If nothing was found the default values are added, the row is sent to
+   * error handling or it is eaten.
+   *
+   * @param inputRowMeta
+   *          the metadata of the input row
+   * @param row
+   *          the input row
+   * @param lookupRow
+   *          the looked up key values
+   * @param add
+   *          the found values or null if nothing was found
+   * @param cacheHit
+   *          true if the values come from the cache
+   * @param cache_now
+   *          true if the values come from the database and can be stored in the cache
+   * @param returnedRowMeta
+   *          the metadata of the values as the database returned them
+   * @return the output row or null if there is no output row for this input row
+   */
+  private Object[] addLookupValues( RowMetaInterface inputRowMeta, Object[] row, Object[] lookupRow, Object[] add,
+    boolean cacheHit, boolean cache_now, RowMetaInterface returnedRowMeta ) throws KettleException {
+    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
+
     if ( add == null ) { // nothing was found, unknown code: add default values
       if ( meta.isEatingRowOnLookupFailure() ) {
         return null;
@@ -187,7 +255,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         // that should not be a problem.
         //
         for ( int i = 0; i < types.length; i++ ) {
-          ValueMetaInterface returned = data.db.getReturnRowMeta().getValueMeta( i );
+          ValueMetaInterface returned = returnedRowMeta.getValueMeta( i );
           ValueMetaInterface expected = data.returnMeta.getValueMeta( i );
 
           if ( returned != null && types[i] > 0 &&
@@ -225,64 +293,52 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     // * specified in the step.
     // */
     // if (!data.look.containsKey(rowMetaAndData)) {
-    // data.look.put(rowMetaAndData, new TimedRow(add));
+    // data.look.put(rowMetaAndData, add);
     // }
-    data.look.put( rowMetaAndData, new TimedRow( add ) );
-
-    // See if we have to limit the cache_size.
-    // Sample 10% of the rows in the cache.
-    // Remove everything below the second lowest date.
-    // That should on average remove more than 10% of the entries
-    // It's not exact science, but it will be faster than the old algorithm
-
-    // DEinspanjer 2009-02-01: If you had previously set a cache size and then turned on load all, this
-    // method would throw out entries if the previous cache size wasn't big enough.
-    if ( !meta.isLoadingAllDataInCache() && meta.getCacheSize() > 0 && data.look.size() > meta.getCacheSize() ) {
-      List<RowMetaAndData> keys = new ArrayList<RowMetaAndData>( data.look.keySet() );
-      List<Date> samples = new ArrayList<Date>();
-      int incr = keys.size() / 10;
-      if ( incr == 0 ) {
-        incr = 1;
-      }
-      for ( int k = 0; k < keys.size(); k += incr ) {
-        RowMetaAndData key = keys.get( k );
-        TimedRow timedRow = data.look.get( key );
-        samples.add( timedRow.getLogDate() );
-      }
-
-      Collections.sort( samples );
-
-      if ( samples.size() > 1 ) {
-        Date smallest = samples.get( 1 );
-
-        // Everything below the smallest date goes away...
-        for ( RowMetaAndData key : keys ) {
-          TimedRow timedRow = data.look.get( key );
+    data.look.put( rowMetaAndData, add );
+  }
 
-          if ( timedRow.getLogDate().compareTo( smallest ) < 0 ) {
-            data.look.remove( key );
+  /**
+   * Create the cache, bounded by the number of rows and memory configured, unless all the data is loaded in it. If the
+   * copies of the step share the cache, the cache of the first copy is used.
+   */
+  private LookupCache<RowMetaAndData, Object[]> createCache() {
+    boolean loadAll = meta.isLoadingAllDataInCache();
+    EvictionPolicy policy = EvictionPolicy.getPolicyByName( getVariable( Const.KETTLE_LOOKUP_CACHE_EVICTION ) );
+    LookupCache<RowMetaAndData, Object[]> cache =
+      new LookupCache<RowMetaAndData, Object[]>(
+        loadAll ? 0 : meta.getCacheSize(), loadAll ? 0L : meta.getCacheMemoryLimit() * 1024L * 1024L,
+        loadAll ? 0L : meta.getCacheTimeToLive() * 1000L, policy, new CacheWeigher<RowMetaAndData, Object[]>() {
+          public long weigh( RowMetaAndData key, Object[] value ) {
+            return RowSizeEstimator.HASH_MAP_ENTRY
+              + RowSizeEstimator.estimateRowSize( key.getRowMeta(), key.getData() )
+              + RowSizeEstimator.estimateRowSize( data.returnMeta, value );
           }
-        }
-      }
+        } );
+
+    if ( meta.isSharingCache() ) {
+      data.sharedCacheId = getTrans().getLogChannelId() + "/" + getStepname();
+      cache = SharedLookupCaches.acquire( data.sharedCacheId, cache );
     }
+    return cache;
   }
 
   private Object[] getRowFromCache( RowMetaInterface lookupMeta, Object[] lookupRow ) throws KettleException {
     if ( data.allEquals ) {
       // only do the hashtable lookup when all equals otherwise conditions >, <, <> will give wrong results
-      TimedRow timedRow = data.look.get( new RowMetaAndData( data.lookupMeta, lookupRow ) );
-      if ( timedRow != null ) {
-        return timedRow.getRow();
-      }
+      return data.look.get( new RowMetaAndData( data.lookupMeta, lookupRow ) );
     } else { // special handling of conditions <,>, <> etc.
       if ( !data.hasDBCondition ) { // e.g. LIKE not handled by this routine, yet
         // TODO: find an alternative way to look up the data based on the condition.
         // Not all conditions are "=" so we are going to have to evaluate row by row
         // A sorted list or index might be a good solution here...
         //
-        Enumeration<RowMetaAndData> keys = data.look.keys();
-        while ( keys.hasMoreElements() ) {
-          RowMetaAndData key = keys.nextElement();
+        // Only the data loaded at startup is cached in this case, the keys don't change
+        //
+        if ( data.lookKeys == null ) {
+          data.lookKeys = data.look.getKeys();
+        }
+        for ( RowMetaAndData key : data.lookKeys ) {
           // Now verify that the key is matching our conditions...
           //
           boolean match = true;
@@ -339,9 +395,9 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
             lookupIndex++;
           }
           if ( match ) {
-            TimedRow timedRow = data.look.get( key );
-            if ( timedRow != null ) {
-              return timedRow.getRow();
+            Object[] add = data.look.peek( key );
+            if ( add != null ) {
+              return add;
             }
           }
         }
@@ -449,15 +505,26 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (DatabaseLookupMeta) smi;
+    data = (DatabaseLookupData) sdi;
+
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      if ( data.batchLookup && !data.batchRows.isEmpty() ) {
+        try {
+          lookupBatch();
+        } catch ( KettleException e ) {
+          logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
+            + e.getMessage() );
+          setErrors( 1 );
+          stopAll();
+        }
+      }
+      reportLookupMetrics();
       setOutputDone();
       return false;
     }
 
-    meta = (DatabaseLookupMeta) smi;
-    data = (DatabaseLookupData) sdi;
-
     if ( first ) {
       first = false;
 
@@ -466,11 +533,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
 
       if ( meta.isCached() ) {
-        if ( meta.getCacheSize() > 0 ) {
-          data.look = new Hashtable<RowMetaAndData, TimedRow>( (int) ( meta.getCacheSize() * 1.5 ) );
-        } else {
-          data.look = new Hashtable<RowMetaAndData, TimedRow>();
-        }
+        data.look = createCache();
       }
 
       data.db.setLookup(
@@ -525,10 +588,18 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
 
       // If the user selected to load all data into the cache at startup, that's what we do now...
       //
+      // When the copies share the cache, the first copy loads the data for all of them.
+      //
       if ( meta.isCached() && meta.isLoadingAllDataInCache() ) {
-        loadAllTableDataIntoTheCache();
+        synchronized ( data.look ) {
+          if ( !data.look.isPopulated() ) {
+            loadAllTableDataIntoTheCache();
+            data.look.setPopulated( true );
+          }
+        }
       }
 
+      initBatchLookup();
     }
 
     if ( log.isRowLevel() ) {
@@ -536,6 +607,25 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         + getInputRowMeta().getString( r ) );
     }
 
+    if ( data.batchLookup ) {
+      // Collect the rows, look up their keys all at once
+      //
+      data.batchRows.add( r );
+      if ( data.batchRows.size() >= data.batchSize ) {
+        try {
+          lookupBatch();
+        } catch ( KettleException e ) {
+          logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
+            + e.getMessage() );
+          setErrors( 1 );
+          stopAll();
+          setOutputDone(); // signal end to receiver(s)
+          return false;
+        }
+      }
+      return true;
+    }
+
     try {
       // add new lookup values to the row
       Object[] outputRow = lookupValues( getInputRowMeta(), r );
@@ -568,6 +658,340 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Batched lookups are possible when all the key conditions are "=" and the lookups go to the database.
+   */
+  private void initBatchLookup() {
+    data.batchLookup =
+      meta.getLookupBatchSize() > 1 && data.allEquals && !( meta.isCached() && meta.isLoadingAllDataInCache() )
+        && meta.getTableKeyField().length > 0 && data.lookupMeta.size() == meta.getTableKeyField().length;
+    if ( !data.batchLookup ) {
+      if ( meta.getLookupBatchSize() > 1 ) {
+        logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupNotPossible" ) );
+      }
+      return;
+    }
+
+    data.batchSize = meta.getLookupBatchSize();
+    int maximumBatchSize = getMaximumBatchSize( meta.getDatabaseMeta(), data.lookupMeta.size() );
+    if ( data.batchSize > maximumBatchSize ) {
+      logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchSizeLimited", data.batchSize,
+        maximumBatchSize ) );
+      data.batchSize = maximumBatchSize;
+    }
+    data.batchRows = new ArrayList<Object[]>( data.batchSize );
+
+    // Always use the same number of parameters so the database can re-use the prepared statement.
+    //
+    data.batchSql = getBatchLookupSql( data.batchSize );
+    data.batchParamsMeta = new RowMeta();
+    for ( int i = 0; i < data.batchSize; i++ ) {
+      for ( int k = 0; k < data.lookupMeta.size(); k++ ) {
+        data.batchParamsMeta.addValueMeta( data.lookupMeta.getValueMeta( k ).clone() );
+      }
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupSQL", data.batchSql ) );
+    }
+  }
+
+  /**
+   * Databases limit the size of an IN list or the number of parameters of a statement.
+   *
+   * @param dbMeta
+   *          the database to look up the keys in
+   * @param nrKeyFields
+   *          the number of key fields
+   * @return the maximum number of keys to look up in one query
+   */
+  static int getMaximumBatchSize( DatabaseMeta dbMeta, int nrKeyFields ) {
+    if ( dbMeta.getDatabaseInterface() instanceof OracleDatabaseMeta ) {
+      return ORACLE_MAX_IN_LIST_SIZE;
+    }
+    if ( dbMeta.getDatabaseInterface() instanceof MSSQLServerDatabaseMeta ) {
+      return Math.max( 1, MSSQL_MAX_PARAMETERS / nrKeyFields );
+    }
+    return Math.max( 1, MAX_PARAMETERS / nrKeyFields );
+  }
+
+  /**
+   * Build the query to look up the values of several keys at once. The returned values come first, followed by the
+   * keys to match the result rows with the input rows.
+   *
+   * @param nrKeys
+   *          the number of keys to look up
+   * @return the SQL with the key values as parameters
+   */
+  String getBatchLookupSql( int nrKeys ) {
+    DatabaseMeta dbMeta = meta.getDatabaseMeta();
+    String[] keyFields = meta.getTableKeyField();
+
+    StringBuilder sql = new StringBuilder( "SELECT " );
+    for ( int i = 0; i < meta.getReturnValueField().length; i++ ) {
+      sql.append( dbMeta.quoteField( meta.getReturnValueField()[i] ) ).append( ", " );
+    }
+    for ( int i = 0; i < keyFields.length; i++ ) {
+      if ( i > 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( dbMeta.quoteField( keyFields[i] ) );
+    }
+    sql.append( " FROM " ).append(
+      dbMeta.getQuotedSchemaTableCombination(
+        environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta.getTablename() ) ) );
+
+    sql.append( " WHERE " );
+    if ( keyFields.length == 1 ) {
+      sql.append( dbMeta.quoteField( keyFields[0] ) ).append( " IN ( " );
+      for ( int n = 0; n < nrKeys; n++ ) {
+        sql.append( n > 0 ? ", ?" : "?" );
+      }
+      sql.append( " )" );
+    } else {
+      for ( int n = 0; n < nrKeys; n++ ) {
+        sql.append( n > 0 ? " OR ( " : "( " );
+        for ( int i = 0; i < keyFields.length; i++ ) {
+          if ( i > 0 ) {
+            sql.append( " AND " );
+          }
+          sql.append( dbMeta.quoteField( keyFields[i] ) ).append( " = ?" );
+        }
+        sql.append( " )" );
+      }
+    }
+
+    if ( !Const.isEmpty( meta.getOrderByClause() ) ) {
+      sql.append( " ORDER BY " ).append( meta.getOrderByClause() );
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Look up the keys of the collected rows that are not in the cache with one query, then pass the rows on in their
+   * original order.<br>
+   * <br>
+   * The result rows are matched with the keys the way Java compares them, while the database might ignore the case or
+   * the trailing spaces of strings. When the query returns a key that wasn't asked for, the database compares
+   * differently: the rows of the batch, and all the following rows, are looked up one by one. Keys that only differ in
+   * case or trailing spaces from another key of the batch are looked up one by one as well.
+   *
+   * @throws KettleException
+   *           in case the query fails or a row fails without error handling
+   */
+  private void lookupBatch() throws KettleException {
+    RowMetaInterface inputRowMeta = getInputRowMeta();
+    List<Object[]> rows = data.batchRows;
+    int nrRows = rows.size();
+    int nrReturnValues = meta.getReturnValueField().length;
+
+    Object[][] lookupRows = new Object[nrRows][];
+    Object[][] found = new Object[nrRows][];
+    Map<RowMetaAndData, Object[]> missing = new LinkedHashMap<RowMetaAndData, Object[]>();
+
+    for ( int i = 0; i < nrRows; i++ ) {
+      lookupRows[i] = getLookupRow( inputRowMeta, rows.get( i ) );
+      if ( meta.isCached() ) {
+        found[i] = getRowFromCache( data.lookupMeta, lookupRows[i] );
+        if ( found[i] != null ) {
+          data.cacheHits++;
+          continue;
+        }
+        data.cacheMisses++;
+      }
+      missing.put( new RowMetaAndData( data.lookupMeta, lookupRows[i] ), null );
+    }
+
+    // Query the database for the missing keys, the first row found for a key wins like in a single lookup
+    //
+    Set<RowMetaAndData> multipleResults = new HashSet<RowMetaAndData>();
+    Set<RowMetaAndData> ambiguousKeys = getAmbiguousKeys( missing.keySet() );
+    boolean unexpectedKeys = false;
+    RowMetaInterface returnedRowMeta = null;
+    if ( !missing.isEmpty() ) {
+      Object[] params = new Object[data.batchParamsMeta.size()];
+      int index = 0;
+      Object[] key = null;
+      Iterator<RowMetaAndData> keys = missing.keySet().iterator();
+      for ( int n = 0; n < data.batchSize; n++ ) {
+        // Repeat the last key to fill up the parameters
+        if ( keys.hasNext() ) {
+          key = keys.next().getData();
+        }
+        for ( int k = 0; k < key.length; k++ ) {
+          params[index++] = key[k];
+        }
+      }
+
+      data.batchCount++;
+      data.batchKeys += missing.size();
+
+      ResultSet resultSet = data.db.openQuery( data.batchSql, data.batchParamsMeta, params );
+      try {
+        returnedRowMeta = data.db.getReturnRowMeta();
+        Object[] result = data.db.getRow( resultSet, null, returnedRowMeta );
+        while ( result != null ) {
+          Object[] resultKey = new Object[data.lookupMeta.size()];
+          for ( int k = 0; k < resultKey.length; k++ ) {
+            ValueMetaInterface keyMeta = data.lookupMeta.getValueMeta( k );
+            ValueMetaInterface resultKeyMeta = returnedRowMeta.getValueMeta( nrReturnValues + k );
+            resultKey[k] = result[nrReturnValues + k];
+            if ( keyMeta.getType() != resultKeyMeta.getType()
+              || resultKeyMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_BINARY_STRING ) {
+              resultKey[k] = keyMeta.convertData( resultKeyMeta, resultKey[k] );
+            }
+          }
+          RowMetaAndData lookupKey = new RowMetaAndData( data.lookupMeta, resultKey );
+          if ( missing.containsKey( lookupKey ) ) {
+            if ( missing.get( lookupKey ) == null ) {
+              missing.put( lookupKey, RowDataUtil.resizeArray( result, nrReturnValues ) );
+            } else {
+              multipleResults.add( lookupKey );
+            }
+          } else {
+            unexpectedKeys = true;
+          }
+          result = data.db.getRow( resultSet, null, returnedRowMeta );
+        }
+      } finally {
+        data.db.closeQuery( resultSet );
+        // Don't let the single row lookups read their results with the metadata of the batch query
+        data.db.resetReturnRowMeta();
+      }
+    }
+
+    if ( unexpectedKeys ) {
+      logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchKeysCompareDifferently" ) );
+      data.batchLookup = false;
+    }
+
+    // Pass the rows on in the original order
+    //
+    Set<RowMetaAndData> readKeys = new HashSet<RowMetaAndData>();
+    for ( int i = 0; i < nrRows; i++ ) {
+      Object[] r = rows.get( i );
+      try {
+        Object[] add = found[i];
+        boolean cacheHit = add != null;
+        boolean cacheNow = false;
+        Object[] outputRow;
+        if ( !cacheHit
+          && ( unexpectedKeys || ( !ambiguousKeys.isEmpty()
+            && ambiguousKeys.contains( getCaseInsensitiveKey( lookupRows[i] ) ) ) ) ) {
+          outputRow = lookupInDatabase( inputRowMeta, r, lookupRows[i] );
+        } else {
+          if ( !cacheHit ) {
+            RowMetaAndData lookupKey = new RowMetaAndData( data.lookupMeta, lookupRows[i] );
+            if ( meta.isFailingOnMultipleResults() && multipleResults.contains( lookupKey ) ) {
+              throw new KettleDatabaseException( BaseMessages.getString(
+                PKG, "DatabaseLookup.ERROR0005.MultipleResultsFound", data.lookupMeta.getString( lookupRows[i] ) ) );
+            }
+            add = missing.get( lookupKey );
+            // The values of a key that was read before in this batch are already converted
+            cacheHit = add != null && !readKeys.add( lookupKey );
+            cacheNow = !cacheHit;
+          }
+          outputRow = addLookupValues( inputRowMeta, r, lookupRows[i], add, cacheHit, cacheNow, returnedRowMeta );
+        }
+        if ( outputRow != null ) {
+          putRow( data.outputRowMeta, outputRow );
+
+          if ( log.isRowLevel() ) {
+            logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
+              + inputRowMeta.getString( r ) );
+          }
+          if ( checkFeedback( getLinesRead() ) ) {
+            logBasic( "linenr " + getLinesRead() );
+          }
+        }
+      } catch ( KettleException e ) {
+        if ( getStepMeta().isDoingErrorHandling() ) {
+          putError( inputRowMeta, r, 1, e.getMessage(), null, "DBLOOKUPD001" );
+        } else {
+          throw e;
+        }
+      }
+    }
+    rows.clear();
+  }
+
+  /**
+   * Find the keys that the database might consider equal to another key of the batch: the string keys that only differ
+   * in case or trailing spaces.
+   *
+   * @param keys
+   *          the distinct keys of the batch
+   * @return the case insensitive keys shared by several keys of the batch
+   */
+  private Set<RowMetaAndData> getAmbiguousKeys( Set<RowMetaAndData> keys ) throws KettleValueException {
+    Set<RowMetaAndData> ambiguousKeys = new HashSet<RowMetaAndData>();
+    if ( !hasStringKey() ) {
+      return ambiguousKeys;
+    }
+    Set<RowMetaAndData> caseInsensitiveKeys = new HashSet<RowMetaAndData>();
+    for ( RowMetaAndData key : keys ) {
+      RowMetaAndData caseInsensitiveKey = getCaseInsensitiveKey( key.getData() );
+      if ( !caseInsensitiveKeys.add( caseInsensitiveKey ) ) {
+        ambiguousKeys.add( caseInsensitiveKey );
+      }
+    }
+    return ambiguousKeys;
+  }
+
+  private boolean hasStringKey() {
+    for ( int k = 0; k < data.lookupMeta.size(); k++ ) {
+      if ( data.lookupMeta.getValueMeta( k ).isString() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the key with its strings in lower case and without trailing spaces
+   */
+  private RowMetaAndData getCaseInsensitiveKey( Object[] lookupRow ) throws KettleValueException {
+    Object[] key = new Object[lookupRow.length];
+    for ( int k = 0; k < key.length; k++ ) {
+      ValueMetaInterface keyMeta = data.lookupMeta.getValueMeta( k );
+      if ( keyMeta.isString() && lookupRow[k] != null ) {
+        key[k] = Const.rtrim( keyMeta.getString( lookupRow[k] ) ).toLowerCase( Locale.ROOT );
+      } else {
+        key[k] = lookupRow[k];
+      }
+    }
+    return new RowMetaAndData( data.lookupMeta, key );
+  }
+
+  /**
+   * Report the cache hits and misses, the entries evicted from the cache and the average number of keys looked up per
+   * query.
+   */
+  private void reportLookupMetrics() {
+    if ( data.look != null && ( data.look.getEvictionCount() > 0 || data.look.getExpirationCount() > 0 ) ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.CacheStatistics", data.look.size(),
+          data.look.getEvictionCount(), data.look.getExpirationCount() ) );
+      }
+      if ( isGatheringMetrics() ) {
+        log.snap( Metrics.METRIC_LOOKUP_CACHE_EVICTIONS, data.look.getEvictionCount() );
+      }
+    }
+    if ( data.batchCount > 0 || data.cacheHits > 0 || data.cacheMisses > 0 ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.LookupStatistics", data.cacheHits,
+          data.cacheMisses, data.batchCount, data.batchKeys ) );
+      }
+      if ( isGatheringMetrics() ) {
+        log.snap( Metrics.METRIC_DATABASE_LOOKUP_CACHE_HITS, data.cacheHits );
+        log.snap( Metrics.METRIC_DATABASE_LOOKUP_CACHE_MISSES, data.cacheMisses );
+        log.snap( Metrics.METRIC_DATABASE_LOOKUP_BATCH_QUERIES, data.batchCount );
+        if ( data.batchCount > 0 ) {
+          log.snap( Metrics.METRIC_DATABASE_LOOKUP_BATCH_SIZE, data.batchKeys / data.batchCount );
+        }
+      }
+    }
+  }
+
   private void loadAllTableDataIntoTheCache() throws KettleException {
     DatabaseMeta dbMeta = meta.getDatabaseMeta();
 
@@ -710,7 +1134,12 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
 
     // Recover memory immediately, allow in-memory data to be garbage collected
     //
+    if ( data.sharedCacheId != null ) {
+      SharedLookupCaches.release( data.sharedCacheId );
+      data.sharedCacheId = null;
+    }
     data.look = null;
+    data.lookKeys = null;
 
     super.dispose( smi, sdi );
   }
@@ -22,10 +22,10 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
-import java.util.Hashtable;
+import java.util.List;
 
 import org.pentaho.di.core.RowMetaAndData;
-import org.pentaho.di.core.TimedRow;
+import org.pentaho.di.core.cache.LookupCache;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -36,7 +36,9 @@ import org.pentaho.di.trans.step.StepDataInterface;
  * @since 24-jan-2005
  */
 public class DatabaseLookupData extends BaseStepData implements StepDataInterface {
-  public Hashtable<RowMetaAndData, TimedRow> look; // to store values in used to look up things...
+  public LookupCache<RowMetaAndData, Object[]> look; // to store values in used to look up things...
+  public List<RowMetaAndData> lookKeys; // the keys of the cache, for lookups that are not all "="
+  public String sharedCacheId; // the ID of the cache shared by the step copies
   public Database db;
 
   public Object[] nullif; // Not found: default values...
@@ -52,6 +54,18 @@ public class DatabaseLookupData extends BaseStepData implements StepDataInterfac
   public int[] conditions;
   public boolean hasDBCondition;
 
+  /** Look up the keys of several input rows in one query? */
+  public boolean batchLookup;
+  public int batchSize;
+  public List<Object[]> batchRows;
+  public String batchSql;
+  public RowMetaInterface batchParamsMeta;
+
+  public long cacheHits;
+  public long cacheMisses;
+  public long batchCount;
+  public long batchKeys;
+
   public DatabaseLookupData() {
     super();
 
@@ -116,6 +116,18 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
   /** Flag to make it load all data into the cache at startup */
   private boolean loadingAllDataInCache;
 
+  /** Limit the memory used by the cache to this many MB, 0 for no limit */
+  private int cacheMemoryLimit;
+
+  /** Expire the cached rows this many seconds after they were read, 0 to keep them */
+  private int cacheTimeToLive;
+
+  /** Flag to share the cache among the copies of the step */
+  private boolean sharingCache;
+
+  /** Look up the keys of this many input rows in a single query, 0 or 1 for a query per row */
+  private int lookupBatchSize;
+
   /** Have the lookup fail if multiple results were found, renders the orderByClause useless */
   private boolean failingOnMultipleResults;
 
@@ -156,6 +168,66 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     this.cacheSize = cacheSize;
   }
 
+  /**
+   * @return The maximum number of MB used by the cache, 0 for no limit.
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          The maximum number of MB used by the cache, 0 for no limit.
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
+  /**
+   * @return The number of seconds after which cached rows are read again from the database, 0 to keep them.
+   */
+  public int getCacheTimeToLive() {
+    return cacheTimeToLive;
+  }
+
+  /**
+   * @param cacheTimeToLive
+   *          The number of seconds after which cached rows are read again from the database, 0 to keep them.
+   */
+  public void setCacheTimeToLive( int cacheTimeToLive ) {
+    this.cacheTimeToLive = cacheTimeToLive;
+  }
+
+  /**
+   * @return true if the copies of the step share a single cache.
+   */
+  public boolean isSharingCache() {
+    return sharingCache;
+  }
+
+  /**
+   * @param sharingCache
+   *          true if the copies of the step share a single cache.
+   */
+  public void setSharingCache( boolean sharingCache ) {
+    this.sharingCache = sharingCache;
+  }
+
+  /**
+   * @return The number of input rows of which the keys are looked up in a single query, 0 or 1 for a query per row.
+   */
+  public int getLookupBatchSize() {
+    return lookupBatchSize;
+  }
+
+  /**
+   * @param lookupBatchSize
+   *          The number of input rows of which the keys are looked up in a single query, 0 or 1 for a query per row.
+   */
+  public void setLookupBatchSize( int lookupBatchSize ) {
+    this.lookupBatchSize = lookupBatchSize;
+  }
+
   /**
    * @return Returns the database.
    */
@@ -390,6 +462,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       loadingAllDataInCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_load_all" ) );
       csize = XMLHandler.getTagValue( stepnode, "cache_size" );
       cacheSize = Const.toInt( csize, 0 );
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
+      cacheTimeToLive = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_time_to_live" ), 0 );
+      sharingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_shared" ) );
+      lookupBatchSize = Const.toInt( XMLHandler.getTagValue( stepnode, "lookup_batch_size" ), 0 );
       schemaName = XMLHandler.getTagValue( stepnode, "lookup", "schema" );
       tablename = XMLHandler.getTagValue( stepnode, "lookup", "table" );
 
@@ -443,6 +519,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     databaseMeta = null;
     cached = false;
     cacheSize = 0;
+    cacheMemoryLimit = 0;
+    cacheTimeToLive = 0;
+    sharingCache = false;
+    lookupBatchSize = 0;
     schemaName = "";
     tablename = BaseMessages.getString( PKG, "DatabaseLookupMeta.Default.TableName" );
 
@@ -507,6 +587,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache", cached ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_load_all", loadingAllDataInCache ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_time_to_live", cacheTimeToLive ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_shared", sharingCache ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "lookup_batch_size", lookupBatchSize ) );
     retval.append( "    <lookup>" ).append( Const.CR );
     retval.append( "      " ).append( XMLHandler.addTagValue( "schema", schemaName ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "table", tablename ) );
@@ -545,6 +629,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       cached = rep.getStepAttributeBoolean( id_step, "cache" );
       loadingAllDataInCache = rep.getStepAttributeBoolean( id_step, "cache_load_all" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
+      cacheTimeToLive = (int) rep.getStepAttributeInteger( id_step, "cache_time_to_live" );
+      sharingCache = rep.getStepAttributeBoolean( id_step, "cache_shared" );
+      lookupBatchSize = (int) rep.getStepAttributeInteger( id_step, "lookup_batch_size" );
       schemaName = rep.getStepAttributeString( id_step, "lookup_schema" );
       tablename = rep.getStepAttributeString( id_step, "lookup_table" );
       orderByClause = rep.getStepAttributeString( id_step, "lookup_orderby" );
@@ -582,6 +670,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       rep.saveStepAttribute( id_transformation, id_step, "cache", cached );
       rep.saveStepAttribute( id_transformation, id_step, "cache_load_all", loadingAllDataInCache );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_time_to_live", cacheTimeToLive );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_shared", sharingCache );
+      rep.saveStepAttribute( id_transformation, id_step, "lookup_batch_size", lookupBatchSize );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_schema", schemaName );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_table", tablename );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_orderby", orderByClause );
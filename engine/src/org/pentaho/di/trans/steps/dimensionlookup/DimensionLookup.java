@@ -25,12 +25,14 @@ package org.pentaho.di.trans.steps.dimensionlookup;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.ByteArrayLookupCache;
+import org.pentaho.di.core.cache.EvictionPolicy;
+import org.pentaho.di.core.cache.SharedLookupCaches;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.database.MySQLDatabaseMeta;
@@ -38,7 +40,7 @@ import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
-import org.pentaho.di.core.hash.ByteArrayHashMap;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
@@ -182,8 +184,7 @@ public class DimensionLookup extends BaseStep implements StepInterface {
             data.cacheKeyRowMeta.addValueMeta( key.clone() );
           }
 
-          data.cache =
-            new ByteArrayHashMap( meta.getCacheSize() > 0 ? meta.getCacheSize() : 5000, data.cacheKeyRowMeta );
+          data.cache = createCache();
         }
       }
 
@@ -1507,79 +1508,27 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     byte[] valuePart = RowMeta.extractData( data.cacheValueRowMeta, returnValues );
     data.cache.put( keyPart, valuePart );
 
-    // check if the size is not too big...
-    // Allow for a buffer overrun of 20% and then remove those 20% in one go.
-    // Just to keep performance in track.
-    //
-    int tenPercent = meta.getCacheSize() / 10;
-    if ( meta.getCacheSize() > 0 && data.cache.size() > meta.getCacheSize() + tenPercent ) {
-      // Which cache entries do we delete here?
-      // We delete those with the lowest technical key...
-      // Those would arguably be the "oldest" dimension entries.
-      // Oh well... Nothing is going to be perfect here...
-      //
-      // Getting the lowest 20% requires some kind of sorting algorithm and I'm not sure we want to do that.
-      // Sorting is slow and even in the best case situation we need to do 2 passes over the cache entries...
-      //
-      // Perhaps we should get 20% random values and delete everything below the lowest but one TK.
-      //
-      List<byte[]> keys = data.cache.getKeys();
-      int sizeBefore = keys.size();
-      List<Long> samples = new ArrayList<Long>();
-
-      // Take 10 sample technical keys....
-      int stepsize = keys.size() / 5;
-      if ( stepsize < 1 ) {
-        stepsize = 1; // make shure we have no endless loop
-      }
-      for ( int i = 0; i < keys.size(); i += stepsize ) {
-        byte[] key = keys.get( i );
-        byte[] value = data.cache.get( key );
-        if ( value != null ) {
-          Object[] values = RowMeta.getRow( data.cacheValueRowMeta, value );
-          Long tk = data.cacheValueRowMeta.getInteger( values, 0 );
-          samples.add( tk );
-        }
-      }
-      // Sort these 5 elements...
-      Collections.sort( samples );
-
-      // What is the smallest?
-      // Take the second, not the fist in the list, otherwise we would be removing a single entry = not good.
-      if ( samples.size() > 1 ) {
-        data.smallestCacheKey = samples.get( 1 );
-      } else if ( !samples.isEmpty() ) { // except when there is only one sample
-        data.smallestCacheKey = samples.get( 0 );
-      } else {
-        // If no samples found nothing to remove, we're done
-        return;
-      }
-
-      // Remove anything in the cache <= smallest.
-      // This makes it almost single pass...
-      // This algorithm is not 100% correct, but I guess it beats sorting the whole cache all the time.
-      //
-      for ( int i = 0; i < keys.size(); i++ ) {
-        byte[] key = keys.get( i );
-        byte[] value = data.cache.get( key );
-        if ( value != null ) {
-          Object[] values = RowMeta.getRow( data.cacheValueRowMeta, value );
-          long tk = data.cacheValueRowMeta.getInteger( values, 0 ).longValue();
-          if ( tk <= data.smallestCacheKey ) {
-            data.cache.remove( key ); // this one has to go.
-          }
-        }
-      }
-
-      int sizeAfter = data.cache.size();
-      logDetailed( "Reduced the lookup cache from " + sizeBefore + " to " + sizeAfter + " rows." );
-    }
-
     if ( log.isRowLevel() ) {
       logRowlevel( "Cache store: key=" + keyValues + "    values=" + returnValues );
     }
   }
 
+  /**
+   * Create the cache of the natural keys, bounded by the number of rows and memory configured. If the copies of the
+   * step share the cache, the cache of the first copy is used.
+   */
+  private ByteArrayLookupCache createCache() {
+    ByteArrayLookupCache cache =
+      new ByteArrayLookupCache( meta.getCacheSize(), meta.getCacheMemoryLimit() * 1024L * 1024L, EvictionPolicy
+        .getPolicyByName( getVariable( Const.KETTLE_LOOKUP_CACHE_EVICTION ) ), "Y".equalsIgnoreCase( getVariable(
+        Const.KETTLE_LOOKUP_CACHE_OFF_HEAP, "N" ) ) );
+    if ( meta.isSharingCache() ) {
+      data.sharedCacheId = getTrans().getLogChannelId() + "/" + getStepname();
+      cache = (ByteArrayLookupCache) SharedLookupCaches.acquire( data.sharedCacheId, cache );
+    }
+    return cache;
+  }
+
   /**
    * @return the cache value row metadata. The items that are cached is basically the return row metadata:<br>
    *         - Technical key (Integer) - Version (Integer) -
@@ -1739,6 +1688,20 @@ public class DimensionLookup extends BaseStep implements StepInterface {
         data.db.disconnect();
       }
     }
+    if ( data.cache != null ) {
+      if ( log.isDetailed() && data.cache.getEvictionCount() > 0 ) {
+        logDetailed( BaseMessages.getString( PKG, "DimensionLookup.Log.CacheStatistics", data.cache.getHitCount(),
+          data.cache.getMissCount(), data.cache.getEvictionCount() ) );
+      }
+      if ( isGatheringMetrics() ) {
+        log.snap( Metrics.METRIC_LOOKUP_CACHE_EVICTIONS, data.cache.getEvictionCount() );
+      }
+      if ( data.sharedCacheId != null ) {
+        SharedLookupCaches.release( data.sharedCacheId );
+        data.sharedCacheId = null;
+      }
+      data.cache = null;
+    }
     super.dispose( smi, sdi );
   }
 
@@ -27,7 +27,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.pentaho.di.core.database.Database;
-import org.pentaho.di.core.hash.ByteArrayHashMap;
+import org.pentaho.di.core.cache.ByteArrayLookupCache;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -48,9 +48,8 @@ public class DimensionLookupData extends BaseStepData implements StepDataInterfa
   public int[] fieldnrs; // nrs in row of the fields
   public int datefieldnr; // Nr of datefield field in row
 
-  public ByteArrayHashMap cache;
-
-  public long smallestCacheKey;
+  public ByteArrayLookupCache cache;
+  public String sharedCacheId;
 
   public Long notFoundTk;
 
@@ -103,7 +102,6 @@ public class DimensionLookupData extends BaseStepData implements StepDataInterfa
 
     db = null;
     valueDateNow = null;
-    smallestCacheKey = -1;
     realTableName = null;
     realSchemaName = null;
   }
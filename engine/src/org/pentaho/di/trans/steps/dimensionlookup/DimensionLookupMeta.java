@@ -187,6 +187,12 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
   /** The size of the cache in ROWS : -1 means: not set, 0 means: cache all */
   private int cacheSize;
 
+  /** Limit the memory used by the cache to this many MB, 0 for no limit */
+  private int cacheMemoryLimit;
+
+  /** Flag to share the cache among the copies of the step */
+  private boolean sharingCache;
+
   /** Flag to indicate we're going to use an alternative start date */
   private boolean usingStartDateAlternative;
 
@@ -671,6 +677,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     versionField = "version";
 
     cacheSize = 5000;
+    cacheMemoryLimit = 0;
+    sharingCache = false;
     preloadingCache = false;
   }
 
@@ -806,6 +814,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     retval.append( "      " ).append( XMLHandler.addTagValue( "max_year", maxYear ) );
 
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_shared", sharingCache ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "preload_cache", preloadingCache ) );
 
     retval.append( "      " ).append(
@@ -884,6 +894,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       setTechKeyCreation( XMLHandler.getTagValue( fields, "return", "creation_method" ) );
 
       cacheSize = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_size" ), -1 );
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
+      sharingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_shared" ) );
       preloadingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preload_cache" ) );
 
       usingStartDateAlternative =
@@ -937,6 +949,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       maxYear = (int) rep.getStepAttributeInteger( id_step, "max_year" );
 
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
+      sharingCache = rep.getStepAttributeBoolean( id_step, "cache_shared" );
       preloadingCache = rep.getStepAttributeBoolean( id_step, "preload_cache" );
 
       usingStartDateAlternative = rep.getStepAttributeBoolean( id_step, "use_start_date_alternative" );
@@ -989,6 +1003,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       rep.saveStepAttribute( id_transformation, id_step, "max_year", maxYear );
 
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_shared", sharingCache );
       rep.saveStepAttribute( id_transformation, id_step, "preload_cache", preloadingCache );
 
       rep.saveStepAttribute( id_transformation, id_step, "use_start_date_alternative", usingStartDateAlternative );
@@ -1776,6 +1792,36 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     this.cacheSize = cacheSize;
   }
 
+  /**
+   * @return the maximum number of MB used by the cache, 0 for no limit
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          the maximum number of MB used by the cache, 0 for no limit
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
+  /**
+   * @return true if the copies of the step share a single cache
+   */
+  public boolean isSharingCache() {
+    return sharingCache;
+  }
+
+  /**
+   * @param sharingCache
+   *          true if the copies of the step share a single cache
+   */
+  public void setSharingCache( boolean sharingCache ) {
+    this.sharingCache = sharingCache;
+  }
+
   /**
    * @return the usingStartDateAlternative
    */
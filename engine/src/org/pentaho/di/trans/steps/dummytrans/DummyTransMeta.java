@@ -38,6 +38,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
@@ -50,7 +51,7 @@ import org.w3c.dom.Node;
  *
  */
 
-public class DummyTransMeta extends BaseStepMeta implements StepMetaInterface {
+public class DummyTransMeta extends BaseStepMeta implements StepMetaInterface, PoolableStepMetaInterface {
   private static Class<?> PKG = DummyTransMeta.class; // for i18n purposes, needed by Translator2!!
 
   public DummyTransMeta() {
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.filterrows;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
@@ -54,9 +55,9 @@ public class FilterRows extends BaseStep implements StepInterface {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
   }
 
-  private synchronized boolean keepRow( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
+  private boolean keepRow( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     try {
-      return meta.getCondition().evaluate( rowMeta, row );
+      return data.condition.evaluate( row );
     } catch ( Exception e ) {
       String message =
         BaseMessages.getString( PKG, "FilterRows.Exception.UnexpectedErrorFoundInEvaluationFuction" );
@@ -73,8 +74,9 @@ public class FilterRows extends BaseStep implements StepInterface {
 
     boolean keep;
 
-    Object[] r = getRow(); // Get next usable row from input rowset(s)!
-    if ( r == null ) { // no more input to be expected...
+    long previousLinesRead = getLinesRead();
+    List<Object[]> rows = getRows( Const.ROWS_IN_CHUNK ); // Get next usable rows from input rowset(s)!
+    if ( rows == null ) { // no more input to be expected...
 
       setOutputDone();
       return false;
@@ -89,6 +91,10 @@ public class FilterRows extends BaseStep implements StepInterface {
       // if filter refers to non-existing fields, throw exception
       checkNonExistingFields();
 
+      // Every copy compiles its own condition for the layout of the input rows
+      //
+      data.condition = meta.getCondition().compile( getInputRowMeta() );
+
       // Cache the position of the RowSet for the output.
       //
       if ( data.chosesTargetSteps ) {
@@ -115,30 +121,36 @@ public class FilterRows extends BaseStep implements StepInterface {
       }
     }
 
-    keep = keepRow( getInputRowMeta(), r ); // Keep this row?
     if ( !data.chosesTargetSteps ) {
-      if ( keep ) {
-        putRow( data.outputRowMeta, r ); // copy row to output rowset(s);
+      List<Object[]> keptRows = new ArrayList<Object[]>( rows.size() );
+      for ( Object[] r : rows ) {
+        if ( keepRow( getInputRowMeta(), r ) ) { // Keep this row?
+          keptRows.add( r );
+        }
       }
+      putRows( data.outputRowMeta, keptRows ); // copy rows to output rowset(s);
     } else {
-      if ( keep ) {
-        if ( data.trueRowSet != null ) {
-          if ( log.isRowLevel() ) {
-            logRowlevel( "Sending row to true  :" + data.trueStepname + " : " + getInputRowMeta().getString( r ) );
+      for ( Object[] r : rows ) {
+        keep = keepRow( getInputRowMeta(), r ); // Keep this row?
+        if ( keep ) {
+          if ( data.trueRowSet != null ) {
+            if ( log.isRowLevel() ) {
+              logRowlevel( "Sending row to true  :" + data.trueStepname + " : " + getInputRowMeta().getString( r ) );
+            }
+            putRowTo( data.outputRowMeta, r, data.trueRowSet );
           }
-          putRowTo( data.outputRowMeta, r, data.trueRowSet );
-        }
-      } else {
-        if ( data.falseRowSet != null ) {
-          if ( log.isRowLevel() ) {
-            logRowlevel( "Sending row to false :" + data.falseStepname + " : " + getInputRowMeta().getString( r ) );
+        } else {
+          if ( data.falseRowSet != null ) {
+            if ( log.isRowLevel() ) {
+              logRowlevel( "Sending row to false :" + data.falseStepname + " : " + getInputRowMeta().getString( r ) );
+            }
+            putRowTo( data.outputRowMeta, r, data.falseRowSet );
           }
-          putRowTo( data.outputRowMeta, r, data.falseRowSet );
         }
       }
     }
 
-    if ( checkFeedback( getLinesRead() ) ) {
+    if ( checkFeedback( previousLinesRead, getLinesRead() ) ) {
       if ( log.isBasic() ) {
         logBasic( BaseMessages.getString( PKG, "FilterRows.Log.LineNumber" ) + getLinesRead() );
       }
@@ -155,10 +167,6 @@ public class FilterRows extends BaseStep implements StepInterface {
     data = (FilterRowsData) sdi;
 
     if ( super.init( smi, sdi ) ) {
-      // PDI-6785
-      // could it be a better idea to have a clone on the condition in data and do this on the first row?
-      meta.getCondition().clearFieldPositions();
-
       List<StreamInterface> targetStreams = meta.getStepIOMeta().getTargetStreams();
       data.trueStepname = targetStreams.get( 0 ).getStepname();
       data.falseStepname = targetStreams.get( 1 ).getStepname();
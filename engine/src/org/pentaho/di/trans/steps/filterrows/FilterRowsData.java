@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.filterrows;
 
+import org.pentaho.di.core.CompiledCondition;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -35,6 +36,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
 public class FilterRowsData extends BaseStepData implements StepDataInterface {
 
   public RowMetaInterface outputRowMeta;
+  public CompiledCondition condition;
   public RowSet trueRowSet;
   public RowSet falseRowSet;
   public boolean chosesTargetSteps;
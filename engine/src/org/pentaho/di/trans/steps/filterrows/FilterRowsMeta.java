@@ -44,6 +44,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepIOMeta;
 import org.pentaho.di.trans.step.StepIOMetaInterface;
@@ -62,7 +63,7 @@ import org.w3c.dom.Node;
  *
  */
 
-public class FilterRowsMeta extends BaseStepMeta implements StepMetaInterface {
+public class FilterRowsMeta extends BaseStepMeta implements StepMetaInterface, PoolableStepMetaInterface {
   private static Class<?> PKG = FilterRowsMeta.class; // for i18n purposes, needed by Translator2!!
 
   /**
@@ -42,6 +42,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
@@ -58,7 +59,7 @@ import org.w3c.dom.Node;
  *
  * @since 22-jun-2006
  */
-public class InjectorMeta extends BaseStepMeta implements StepMetaInterface {
+public class InjectorMeta extends BaseStepMeta implements StepMetaInterface, PoolableStepMetaInterface {
   private static Class<?> PKG = InjectorMeta.class; // for i18n purposes, needed by Translator2!!
 
   private String[] fieldname;
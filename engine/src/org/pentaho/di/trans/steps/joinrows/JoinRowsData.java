@@ -29,6 +29,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.List;
 
+import org.pentaho.di.core.CompiledCondition;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -65,6 +66,8 @@ public class JoinRowsData extends BaseStepData implements StepDataInterface {
 
   public RowMetaInterface outputRowMeta;
 
+  public CompiledCondition condition;
+
   public JoinRowsData() {
     super();
   }
@@ -22,6 +22,11 @@
 
 package org.pentaho.di.trans.steps.jsoninput;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -261,6 +266,24 @@ public class JsonInput extends BaseStep implements StepInterface {
 
   private void parseJson() throws Exception {
 
+    if ( data.streamReader != null ) {
+      // The rows are read while parsing, see nextRecord()
+      //
+      Reader reader;
+      if ( data.file != null ) {
+        reader = new BufferedReader( new InputStreamReader( KettleVFS.getInputStream( data.filename ) ) );
+      } else if ( meta.isReadUrl() ) {
+        URL url = new URL( data.stringToParse );
+        reader = new BufferedReader( new InputStreamReader( url.openConnection().getInputStream() ) );
+      } else {
+        reader = new StringReader( data.stringToParse );
+      }
+      data.streamReader.open( reader );
+      data.streamRecord = null;
+      data.recordnr = 0;
+      return;
+    }
+
     // Read JSON source
     if ( data.file != null ) {
       data.jsonReader.readFile( data.filename );
@@ -386,13 +409,13 @@ public class JsonInput extends BaseStep implements StepInterface {
   private Object[] getOneRow() throws KettleException {
 
     if ( !meta.isInFields() ) {
-      while ( ( data.recordnr >= data.nrrecords || data.file == null ) ) {
+      while ( ( !nextRecord() || data.file == null ) ) {
         if ( !openNextFile() ) {
           return null;
         }
       }
     } else {
-      while ( ( data.recordnr >= data.nrrecords || data.readrow == null ) ) {
+      while ( ( !nextRecord() || data.readrow == null ) ) {
         if ( !ReadNextString() ) {
           return null;
         }
@@ -405,6 +428,17 @@ public class JsonInput extends BaseStep implements StepInterface {
     return buildRow();
   }
 
+  /**
+   * @return true if there is a record to build a row from in the current document
+   */
+  private boolean nextRecord() throws KettleException {
+    if ( data.streamReader != null ) {
+      data.streamRecord = data.streamReader.nextRecord();
+      return data.streamRecord != null;
+    }
+    return data.recordnr < data.nrrecords;
+  }
+
   private Object[] buildRow() throws KettleException {
     // Create new row...
     Object[] outputRowData = null;
@@ -420,13 +454,17 @@ public class JsonInput extends BaseStep implements StepInterface {
       // Get field
       JsonInputField field = meta.getInputFields()[i];
 
-      // get json array for field
-      JSONArray jsona = data.resultList.get( i ).getJSONArray();
       String nodevalue = null;
-      if ( jsona != null ) {
-        Object jo = jsona.get( data.recordnr );
-        if ( jo != null ) {
-          nodevalue = jo.toString();
+      if ( data.streamReader != null ) {
+        nodevalue = data.streamRecord[i];
+      } else {
+        // get json array for field
+        JSONArray jsona = data.resultList.get( i ).getJSONArray();
+        if ( jsona != null ) {
+          Object jo = jsona.get( data.recordnr );
+          if ( jo != null ) {
+            nodevalue = jo.toString();
+          }
         }
       }
 
@@ -531,9 +569,18 @@ public class JsonInput extends BaseStep implements StepInterface {
       }
 
       try {
-        // Init a new JSON reader
-        data.jsonReader = new JsonReader();
-        data.jsonReader.SetIgnoreMissingPath( meta.isIgnoreMissingPath() );
+        if ( meta.isStreamingParser() ) {
+          // Compile the paths, no script engine needed
+          String[] paths = new String[data.nrInputFields];
+          for ( int i = 0; i < data.nrInputFields; i++ ) {
+            paths[i] = meta.getInputFields()[i].getPath();
+          }
+          data.streamReader = new JsonStreamReader( paths, meta.isIgnoreMissingPath() );
+        } else {
+          // Init a new JSON reader
+          data.jsonReader = new JsonReader();
+          data.jsonReader.SetIgnoreMissingPath( meta.isIgnoreMissingPath() );
+        }
 
       } catch ( KettleException e ) {
         logError( e.getMessage() );
@@ -554,6 +601,9 @@ public class JsonInput extends BaseStep implements StepInterface {
         // Ignore errors
       }
     }
+    if ( data.streamReader != null ) {
+      data.streamReader.close();
+    }
     data.resultList = null;
     super.dispose( smi, sdi );
   }
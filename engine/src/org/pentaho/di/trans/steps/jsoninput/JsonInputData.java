@@ -81,6 +81,9 @@ public class JsonInputData extends BaseStepData implements StepDataInterface {
   public JsonReader jsonReader;
   public List<NJSONArray> resultList;
 
+  public JsonStreamReader streamReader;
+  public String[] streamRecord;
+
   public String stringToParse;
 
   public JsonInputData() {
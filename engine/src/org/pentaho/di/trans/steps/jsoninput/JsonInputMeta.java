@@ -121,6 +121,9 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
 
   private boolean ignoreMissingPath;
 
+  /** Flag : read the rows while parsing, see {@link JsonStreamReader} */
+  private boolean streamingParser;
+
   /** Flag : read url as source */
   private boolean readurl;
 
@@ -494,6 +497,21 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
     this.ignoreMissingPath = ignoreMissingPath;
   }
 
+  /**
+   * @return true if the rows are read while the document is parsed, without loading it in memory
+   */
+  public boolean isStreamingParser() {
+    return streamingParser;
+  }
+
+  /**
+   * @param streamingParser
+   *          true to read the rows while the document is parsed, without loading it in memory
+   */
+  public void setStreamingParser( boolean streamingParser ) {
+    this.streamingParser = streamingParser;
+  }
+
   /**
    * @return Returns the rowNumberField.
    */
@@ -562,6 +580,7 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "    " + XMLHandler.addTagValue( "IsIgnoreEmptyFile", IsIgnoreEmptyFile ) );
     retval.append( "    " + XMLHandler.addTagValue( "doNotFailIfNoFile", doNotFailIfNoFile ) );
     retval.append( "    " + XMLHandler.addTagValue( "ignoreMissingPath", ignoreMissingPath ) );
+    retval.append( "    " + XMLHandler.addTagValue( "streamingParser", streamingParser ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "rownum_field", rowNumberField ) );
 
@@ -631,6 +650,7 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
       readurl = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "readurl" ) );
       IsIgnoreEmptyFile = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "IsIgnoreEmptyFile" ) );
       ignoreMissingPath = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "ignoreMissingPath" ) );
+      streamingParser = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "streamingParser" ) );
 
       doNotFailIfNoFile = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "doNotFailIfNoFile" ) );
       includeRowNumber = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "rownum" ) );
@@ -703,6 +723,7 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
 
     IsIgnoreEmptyFile = false;
     ignoreMissingPath = false;
+    streamingParser = false;
     doNotFailIfNoFile = true;
     includeFilename = false;
     filenameField = "";
@@ -846,6 +867,7 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
 
       IsIgnoreEmptyFile = rep.getStepAttributeBoolean( id_step, "IsIgnoreEmptyFile" );
       ignoreMissingPath = rep.getStepAttributeBoolean( id_step, "ignoreMissingPath" );
+      streamingParser = rep.getStepAttributeBoolean( id_step, "streamingParser" );
 
       doNotFailIfNoFile = rep.getStepAttributeBoolean( id_step, "doNotFailIfNoFile" );
 
@@ -911,6 +933,7 @@ public class JsonInputMeta extends BaseStepMeta implements StepMetaInterface {
 
       rep.saveStepAttribute( id_transformation, id_step, "IsIgnoreEmptyFile", IsIgnoreEmptyFile );
       rep.saveStepAttribute( id_transformation, id_step, "ignoreMissingPath", ignoreMissingPath );
+      rep.saveStepAttribute( id_transformation, id_step, "streamingParser", streamingParser );
 
       rep.saveStepAttribute( id_transformation, id_step, "doNotFailIfNoFile", doNotFailIfNoFile );
 
@@ -0,0 +1,160 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.jsoninput;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import org.pentaho.di.core.KettleEnvironment;
+
+/**
+ * Measures the time to read the rows of a generated JSON file with the script engine based {@link JsonReader} against
+ * the {@link JsonStreamReader}, using the same field definitions.
+ */
+public class JsonInputSpeedTest {
+  public static final int RECORDS = 200000;
+
+  private JsonInputField[] fields;
+
+  public JsonInputSpeedTest() {
+    String[] names = { "id", "name", "amount", "city", "tags" };
+    String[] paths =
+      {
+        "$.store.book[*].id", "$.store.book[*].name", "$.store.book[*].amount", "$.store.book[*].address.city",
+        "$.store.book[*].tags" };
+    fields = new JsonInputField[names.length];
+    for ( int i = 0; i < names.length; i++ ) {
+      fields[i] = new JsonInputField( names[i] );
+      fields[i].setPath( paths[i] );
+    }
+  }
+
+  public File createFile( int records ) throws Exception {
+    File file = File.createTempFile( "json-input-speed-test", ".json" );
+    file.deleteOnExit();
+    Writer writer = new BufferedWriter( new FileWriter( file ) );
+    try {
+      writer.write( "{\"store\":{\"name\":\"Speed test\",\"book\":[" );
+      for ( int i = 0; i < records; i++ ) {
+        if ( i > 0 ) {
+          writer.write( "," );
+        }
+        writer.write( "{\"id\":" + i + ",\"name\":\"Some customer name " + i + "\",\"amount\":" + ( i * 1.25 )
+          + ",\"address\":{\"street\":\"Main street\",\"city\":\"City " + ( i % 100 ) + "\"}"
+          + ",\"tags\":[\"a\",\"b\"]}" );
+      }
+      writer.write( "]}}" );
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  /**
+   * Read the rows the way the step does with the script engine: parse the whole file, evaluate every path.
+   *
+   * @return the elapsed time in ms
+   */
+  public long runScriptEngineTest( File file, int records ) throws Exception {
+    long startTime = System.currentTimeMillis();
+
+    JsonReader reader = new JsonReader();
+    reader.readFile( file.getAbsolutePath() );
+    NJSONArray[] values = new NJSONArray[fields.length];
+    for ( int i = 0; i < fields.length; i++ ) {
+      values[i] = reader.getPath( fields[i].getPath() );
+    }
+    int count = 0;
+    for ( int r = 0; r < values[0].size(); r++ ) {
+      for ( int i = 0; i < fields.length; i++ ) {
+        Object value = values[i].getJSONArray().get( r );
+        if ( value != null ) {
+          value.toString();
+        }
+      }
+      count++;
+    }
+
+    long stopTime = System.currentTimeMillis();
+    check( count, records );
+    return stopTime - startTime;
+  }
+
+  /**
+   * Read the rows with the streaming parser.
+   *
+   * @return the elapsed time in ms
+   */
+  public long runStreamingTest( File file, int records ) throws Exception {
+    long startTime = System.currentTimeMillis();
+
+    String[] paths = new String[fields.length];
+    for ( int i = 0; i < fields.length; i++ ) {
+      paths[i] = fields[i].getPath();
+    }
+    JsonStreamReader reader = new JsonStreamReader( paths, false );
+    reader.open( new BufferedReader( new FileReader( file ) ) );
+    int count = 0;
+    while ( reader.nextRecord() != null ) {
+      count++;
+    }
+
+    long stopTime = System.currentTimeMillis();
+    check( count, records );
+    return stopTime - startTime;
+  }
+
+  private static void check( int count, int records ) {
+    if ( count != records ) {
+      throw new RuntimeException( "Read " + count + " rows, expected " + records );
+    }
+  }
+
+  private static void report( String name, long time ) {
+    System.out.println( "Time to read "
+      + RECORDS + " rows with '" + name + "' : " + time + " ms (" + ( 1000L * RECORDS / Math.max( 1L, time ) )
+      + " r/s)" );
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleEnvironment.init( false );
+    JsonInputSpeedTest speedTest = new JsonInputSpeedTest();
+
+    // Warm up the JIT compiler before measuring anything
+    //
+    File warmUp = speedTest.createFile( RECORDS / 10 );
+    speedTest.runScriptEngineTest( warmUp, RECORDS / 10 );
+    speedTest.runStreamingTest( warmUp, RECORDS / 10 );
+    warmUp.delete();
+
+    File file = speedTest.createFile( RECORDS );
+    report( "script engine", speedTest.runScriptEngineTest( file, RECORDS ) );
+    report( "streaming parser", speedTest.runStreamingTest( file, RECORDS ) );
+    file.delete();
+    System.out.println();
+  }
+}
@@ -0,0 +1,486 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.jsoninput;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Reads rows from a JSON document while it is parsed, without building the document in memory and without a script
+ * engine.<br>
+ * <br>
+ * The paths of the fields are compiled to a subset of JsonPath: the root <code>$</code>, child fields (
+ * <code>.name</code> or <code>['name']</code>), wildcards (<code>.*</code> or <code>[*]</code>) and array indexes (
+ * <code>[0]</code>). The common part of the paths up to the last wildcard they share selects the records, the rest of
+ * every path selects the field value in a record. For example <code>$.store.book[*].author</code> and
+ * <code>$.store.book[*].title</code> give a row with the author and the title of every book. Only the values of the
+ * current record are kept in memory.
+ */
+public class JsonStreamReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private final String[] paths;
+  private final boolean ignoreMissingPath;
+
+  private final List<Segment> recordPath;
+  private final List<List<Segment>> fieldPaths;
+
+  private final JSONParser parser;
+  private final Handler handler;
+
+  private Reader reader;
+  private boolean resume;
+
+  /**
+   * @param paths
+   *          the paths of the fields to read
+   * @param ignoreMissingPath
+   *          true to give back null values for paths that are not found in a document, false to fail
+   * @throws KettleException
+   *           in case a path is not supported
+   */
+  public JsonStreamReader( String[] paths, boolean ignoreMissingPath ) throws KettleException {
+    this.paths = paths;
+    this.ignoreMissingPath = ignoreMissingPath;
+
+    List<List<Segment>> compiled = new ArrayList<List<Segment>>();
+    for ( String path : paths ) {
+      compiled.add( compile( path ) );
+    }
+
+    // The records are selected by the common part of the paths, up to its last wildcard
+    //
+    int common = compiled.isEmpty() ? 0 : compiled.get( 0 ).size();
+    for ( List<Segment> path : compiled ) {
+      int i = 0;
+      while ( i < common && i < path.size() && path.get( i ).equals( compiled.get( 0 ).get( i ) ) ) {
+        i++;
+      }
+      common = i;
+    }
+    int recordLength = 0;
+    for ( int i = 0; i < common; i++ ) {
+      if ( compiled.get( 0 ).get( i ).wildcard ) {
+        recordLength = i + 1;
+      }
+    }
+    recordPath = compiled.isEmpty() ? new ArrayList<Segment>() : compiled.get( 0 ).subList( 0, recordLength );
+
+    fieldPaths = new ArrayList<List<Segment>>();
+    for ( int f = 0; f < compiled.size(); f++ ) {
+      List<Segment> fieldPath = compiled.get( f ).subList( recordLength, compiled.get( f ).size() );
+      for ( Segment segment : fieldPath ) {
+        if ( segment.wildcard ) {
+          throw new KettleException( BaseMessages.getString(
+            PKG, "JsonReader.Error.PathNotSupportedInStreamingMode", paths[f] ) );
+        }
+      }
+      fieldPaths.add( fieldPath );
+    }
+
+    parser = new JSONParser();
+    handler = new Handler();
+  }
+
+  /**
+   * Start reading a new document. The previous document is closed.
+   *
+   * @param reader
+   *          the reader to read the document from
+   */
+  public void open( Reader reader ) {
+    close();
+    this.reader = reader;
+    this.resume = false;
+    handler.reset();
+  }
+
+  /**
+   * Parse the document until the next record is read.
+   *
+   * @return the values of the fields of the next record as strings or null if the document has no more records
+   * @throws KettleException
+   *           in case the document can't be read or parsed, or a path is missing
+   */
+  public String[] nextRecord() throws KettleException {
+    if ( reader == null ) {
+      return null;
+    }
+    try {
+      while ( !handler.recordReady && !handler.finished ) {
+        parser.parse( reader, handler, resume );
+        resume = true;
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ParsingFile", e ), e );
+    } catch ( ParseException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ParsingFile", e ), e );
+    }
+
+    if ( handler.recordReady ) {
+      handler.recordReady = false;
+      handler.nrRecords++;
+      return handler.values.clone();
+    }
+
+    // End of the document: check the paths we never found
+    //
+    for ( int f = 0; f < paths.length; f++ ) {
+      if ( !handler.foundInDocument[f] && !ignoreMissingPath ) {
+        close();
+        throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", paths[f] ) );
+      }
+    }
+    close();
+    if ( handler.nrRecords == 0 && ignoreMissingPath && paths.length > 0 ) {
+      // Like the script engine: a single row with null values when nothing is found
+      //
+      handler.nrRecords++;
+      return new String[paths.length];
+    }
+    return null;
+  }
+
+  /**
+   * Close the reader of the current document.
+   */
+  public void close() {
+    if ( reader != null ) {
+      try {
+        reader.close();
+      } catch ( IOException e ) {
+        // Ignore errors
+      }
+      reader = null;
+    }
+  }
+
+  /**
+   * Compile a path into segments.
+   *
+   * @param path
+   *          the JsonPath expression
+   * @return the segments of the path after the root
+   * @throws KettleException
+   *           in case the path uses features that are not supported in streaming mode
+   */
+  static List<Segment> compile( String path ) throws KettleException {
+    KettleException unsupported =
+      new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.PathNotSupportedInStreamingMode", path ) );
+    if ( path == null || !path.trim().startsWith( "$" ) ) {
+      throw unsupported;
+    }
+    String p = path.trim();
+    List<Segment> segments = new ArrayList<Segment>();
+    int i = 1;
+    while ( i < p.length() ) {
+      char c = p.charAt( i );
+      if ( c == '.' ) {
+        int start = i + 1;
+        int end = start;
+        while ( end < p.length() && p.charAt( end ) != '.' && p.charAt( end ) != '[' ) {
+          end++;
+        }
+        String name = p.substring( start, end ).trim();
+        if ( name.length() == 0 || name.startsWith( "@" ) || name.indexOf( '(' ) >= 0 ) {
+          throw unsupported; // deep scan (..) or script expressions
+        }
+        segments.add( "*".equals( name ) ? Segment.WILDCARD : new Segment( name, -1 ) );
+        i = end;
+      } else if ( c == '[' ) {
+        int start = i + 1;
+        if ( start < p.length() && ( p.charAt( start ) == '\'' || p.charAt( start ) == '"' ) ) {
+          int endQuote = p.indexOf( p.charAt( start ), start + 1 );
+          if ( endQuote < 0 || endQuote + 1 >= p.length() || p.charAt( endQuote + 1 ) != ']' ) {
+            throw unsupported;
+          }
+          segments.add( new Segment( p.substring( start + 1, endQuote ), -1 ) );
+          i = endQuote + 2;
+        } else {
+          int end = p.indexOf( ']', start );
+          if ( end < 0 ) {
+            throw unsupported;
+          }
+          String inner = p.substring( start, end ).trim();
+          if ( "*".equals( inner ) ) {
+            segments.add( Segment.WILDCARD );
+          } else if ( inner.length() > 0 && inner.length() < 10 && inner.matches( "[0-9]+" ) ) {
+            segments.add( new Segment( null, Integer.parseInt( inner ) ) );
+          } else {
+            throw unsupported; // filters, slices, unions, negative indexes
+          }
+          i = end + 1;
+        }
+      } else {
+        throw unsupported;
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * A step in a compiled path: a child field name, an array index or a wildcard.
+   */
+  static final class Segment {
+    static final Segment WILDCARD = new Segment( null, -1 );
+
+    final String name;
+    final int index;
+    final boolean wildcard;
+
+    Segment( String name, int index ) {
+      this.name = name;
+      this.index = index;
+      this.wildcard = name == null && index < 0;
+    }
+
+    boolean matches( Object location ) {
+      if ( wildcard ) {
+        return true;
+      }
+      if ( name != null ) {
+        return name.equals( location );
+      }
+      return location instanceof Integer && ( (Integer) location ).intValue() == index;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof Segment ) ) {
+        return false;
+      }
+      Segment other = (Segment) obj;
+      return wildcard == other.wildcard && index == other.index
+        && ( name == null ? other.name == null : name.equals( other.name ) );
+    }
+
+    @Override
+    public int hashCode() {
+      return name == null ? index : name.hashCode();
+    }
+  }
+
+  /**
+   * Builds the JSON text of a container value selected by a field path.
+   */
+  private static final class Capture {
+    private final int field;
+    private final LinkedList<Object> stack = new LinkedList<Object>();
+    private String key;
+    private Object root;
+
+    Capture( int field ) {
+      this.field = field;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    void add( Object value ) {
+      if ( stack.isEmpty() ) {
+        root = value;
+      } else if ( stack.getLast() instanceof JSONObject ) {
+        ( (JSONObject) stack.getLast() ).put( key, value );
+      } else {
+        ( (JSONArray) stack.getLast() ).add( value );
+      }
+    }
+
+    void start( Object container ) {
+      add( container );
+      stack.addLast( container );
+    }
+
+    /**
+     * @return true if the captured value is complete
+     */
+    boolean end() {
+      stack.removeLast();
+      return stack.isEmpty();
+    }
+  }
+
+  private final class Handler implements ContentHandler {
+    private final List<Object> location = new ArrayList<Object>();
+    private final List<Boolean> arrays = new ArrayList<Boolean>();
+    private final List<Capture> captures = new ArrayList<Capture>();
+
+    private String[] values = new String[paths.length];
+    private boolean[] foundInDocument = new boolean[paths.length];
+    private boolean inRecord;
+    private int recordDepth;
+    private boolean recordReady;
+    private boolean finished;
+    private long nrRecords;
+
+    void reset() {
+      location.clear();
+      arrays.clear();
+      captures.clear();
+      Arrays.fill( values, null );
+      Arrays.fill( foundInDocument, false );
+      inRecord = false;
+      recordReady = false;
+      finished = false;
+      nrRecords = 0;
+    }
+
+    @Override
+    public void startJSON() throws ParseException, IOException {
+      // Nothing to do
+    }
+
+    @Override
+    public void endJSON() throws ParseException, IOException {
+      finished = true;
+    }
+
+    @Override
+    public boolean startObject() throws ParseException, IOException {
+      startValue( null, true );
+      for ( Capture capture : captures ) {
+        capture.start( new JSONObject() );
+      }
+      location.add( null );
+      arrays.add( Boolean.FALSE );
+      return true;
+    }
+
+    @Override
+    public boolean endObject() throws ParseException, IOException {
+      return endContainer();
+    }
+
+    @Override
+    public boolean startObjectEntry( String key ) throws ParseException, IOException {
+      location.set( location.size() - 1, key );
+      for ( Capture capture : captures ) {
+        capture.key = key;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() throws ParseException, IOException {
+      return true;
+    }
+
+    @Override
+    public boolean startArray() throws ParseException, IOException {
+      startValue( null, true );
+      for ( Capture capture : captures ) {
+        capture.start( new JSONArray() );
+      }
+      location.add( Integer.valueOf( -1 ) );
+      arrays.add( Boolean.TRUE );
+      return true;
+    }
+
+    @Override
+    public boolean endArray() throws ParseException, IOException {
+      return endContainer();
+    }
+
+    @Override
+    public boolean primitive( Object value ) throws ParseException, IOException {
+      startValue( value, false );
+      for ( Capture capture : captures ) {
+        capture.add( value );
+      }
+      return endValue();
+    }
+
+    private boolean endContainer() {
+      for ( int i = captures.size() - 1; i >= 0; i-- ) {
+        Capture capture = captures.get( i );
+        if ( capture.end() ) {
+          values[capture.field] = capture.root.toString();
+          captures.remove( i );
+        }
+      }
+      location.remove( location.size() - 1 );
+      arrays.remove( arrays.size() - 1 );
+      return endValue();
+    }
+
+    private void startValue( Object value, boolean container ) {
+      // A value in an array: move to the next index
+      //
+      int depth = location.size();
+      if ( depth > 0 && arrays.get( depth - 1 ) ) {
+        location.set( depth - 1, Integer.valueOf( (Integer) location.get( depth - 1 ) + 1 ) );
+      }
+
+      if ( !inRecord ) {
+        if ( !matches( recordPath, 0 ) ) {
+          return;
+        }
+        inRecord = true;
+        recordDepth = depth;
+        Arrays.fill( values, null );
+      }
+
+      for ( int f = 0; f < fieldPaths.size(); f++ ) {
+        if ( matches( fieldPaths.get( f ), recordDepth ) ) {
+          foundInDocument[f] = true;
+          if ( container ) {
+            captures.add( new Capture( f ) );
+          } else {
+            values[f] = value == null ? null : value.toString();
+          }
+        }
+      }
+    }
+
+    private boolean endValue() {
+      if ( inRecord && location.size() == recordDepth ) {
+        inRecord = false;
+        recordReady = true;
+        return false; // pause parsing, the record is complete
+      }
+      return true;
+    }
+
+    private boolean matches( List<Segment> path, int offset ) {
+      if ( path.size() != location.size() - offset ) {
+        return false;
+      }
+      for ( int i = 0; i < path.size(); i++ ) {
+        if ( !path.get( i ).matches( location.get( offset + i ) ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -63,6 +63,10 @@ import org.pentaho.di.trans.steps.mappingoutput.MappingOutput;
 public class Mapping extends BaseStep implements StepInterface {
   private static Class<?> PKG = MappingMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The IDs of the steps that connect the mapping to this step */
+  private static final String MAPPING_INPUT_STEP_ID = "MappingInput";
+  private static final String MAPPING_OUTPUT_STEP_ID = "MappingOutput";
+
   private MappingMeta meta;
   private MappingData data;
 
@@ -86,6 +90,7 @@ public class Mapping extends BaseStep implements StepInterface {
       switch ( getData().mappingTransMeta.getTransformationType() ) {
         case Normal:
         case SerialSingleThreaded:
+        case ThreadPool:
 
           // Before we start, let's see if there are loose ends to tie up...
           //
@@ -206,7 +211,8 @@ public class Mapping extends BaseStep implements StepInterface {
           // Since everything is running in the MappingThreads we don't have to do
           // anything else here but wait...
           //
-          if ( getTransMeta().getTransformationType() == TransformationType.Normal ) {
+          if ( getTransMeta().getTransformationType() == TransformationType.Normal
+            || getTransMeta().getTransformationType() == TransformationType.ThreadPool ) {
             getData().getMappingTrans().waitUntilFinished();
 
             // Set some statistics from the mapping...
@@ -230,27 +236,27 @@ public class Mapping extends BaseStep implements StepInterface {
                 "Multiple input or output steps are not supported for a single threaded mapping." );
           }
 
-          // Object[] row = getRow();
-          // RowMetaInterface rowMeta = getInputRowMeta();
-
-          // for (int count=0;count<(data.mappingTransMeta.getSizeRowset()/2) && row!=null;count++) {
-          // // Pass each row over to the mapping input step, fill the buffer...
-          //
-          // mappingInputs[0].getInputRowSets().get(0).putRow(rowMeta, row);
+          // The mapping stays prepared: we pass it the rows one by one through the row producer of the mapping input
+          // step and let all its steps process the row right away.
           //
-          // row = getRow();
-          // }
-
-          System.out.println( "# of input buffers: " + mappingInputs[0].getInputRowSets().size() );
-          if ( mappingInputs[0].getInputRowSets().size() > 0 ) {
-            System.out.println( "Input buffer 0 size: " + mappingInputs[0].getInputRowSets().get( 0 ).size() );
+          Object[] row = getRow();
+          if ( row == null ) {
+            disposeSingleThreadedMapping();
+            setOutputDone();
+            return false;
           }
 
-          // Now execute one batch...Basic logging
-          //
+          getData().rowProducer.putRow( getInputRowMeta(), row );
+
           boolean result = getData().singleThreadedTransExcecutor.oneIteration();
           if ( !result ) {
-            getData().singleThreadedTransExcecutor.dispose();
+            long errors = getData().getMappingTrans().getResult().getNrErrors();
+            disposeSingleThreadedMapping();
+            if ( errors > 0 ) {
+              logError( BaseMessages.getString( PKG, "Mapping.Log.ErrorOccurredInSubTransformation" ) );
+              setErrors( errors );
+              stopAll();
+            }
             setOutputDone();
             return false;
           }
@@ -330,6 +336,7 @@ public class Mapping extends BaseStep implements StepInterface {
     switch ( getData().mappingTransMeta.getTransformationType() ) {
       case Normal:
       case SerialSingleThreaded:
+      case ThreadPool:
         break;
 
       case SingleThreaded:
@@ -441,7 +448,16 @@ public class Mapping extends BaseStep implements StepInterface {
         addInputRenames( getData().inputRenameList, inputDefinition.getValueRenames() );
       }
 
-      mappingInputTarget.setConnectorSteps( sourceSteps, inputDefinition.getValueRenames(), getStepname() );
+      if ( getData().singleThreadedTransExcecutor != null ) {
+        // The single threaded mapping doesn't read from the source steps, this step passes the rows on.
+        //
+        mappingInputTarget.setConnectorSteps( new StepInterface[0], inputDefinition.getValueRenames(), getStepname() );
+        if ( getData().rowProducer == null ) {
+          getData().rowProducer = getData().getMappingTrans().addRowProducer( mappingInputTarget.getStepname(), 0 );
+        }
+      } else {
+        mappingInputTarget.setConnectorSteps( sourceSteps, inputDefinition.getValueRenames(), getStepname() );
+      }
     }
 
     // Now we have a List of connector threads.
@@ -526,6 +542,17 @@ public class Mapping extends BaseStep implements StepInterface {
   void initTransFromMeta() throws KettleException {
     // Create the transformation from meta-data...
     //
+    // In pooled mode the mapping is kept prepared in the single threaded engine, if all its steps allow it
+    //
+    if ( meta.isPooledExecution() ) {
+      String problem = getPooledExecutionProblem();
+      if ( problem == null ) {
+        getData().mappingTransMeta.setTransformationType( TransformationType.SingleThreaded );
+      } else {
+        logBasic( BaseMessages.getString( PKG, "Mapping.Log.PooledExecutionNotPossible", problem ) );
+      }
+    }
+
     getData().setMappingTrans( new Trans( getData().mappingTransMeta, this ) );
 
     if ( getData().mappingTransMeta.getTransformationType() != TransformationType.Normal ) {
@@ -556,6 +583,47 @@ public class Mapping extends BaseStep implements StepInterface {
     setMappingParameters( data.mappingTrans, data.mappingTransMeta, meta.getMappingParameters() );
   }
 
+  /**
+   * The mapping can only be kept prepared in the single threaded engine if this step can pass it all the rows: it
+   * needs a single "Mapping Input" and "Mapping Output" step, no other source steps and all steps need to support the
+   * single threaded engine.
+   *
+   * @return null if pooled execution is possible, the reason why not otherwise
+   */
+  String getPooledExecutionProblem() {
+    TransMeta mappingTransMeta = getData().mappingTransMeta;
+    List<StepMeta> steps = mappingTransMeta.getTransHopSteps( false );
+    if ( steps.isEmpty() ) {
+      return BaseMessages.getString( PKG, "Mapping.PooledExecution.NoSteps" );
+    }
+    int nrInputs = 0;
+    int nrOutputs = 0;
+    for ( StepMeta stepMeta : steps ) {
+      if ( MAPPING_INPUT_STEP_ID.equals( stepMeta.getStepID() ) ) {
+        nrInputs++;
+      } else if ( MAPPING_OUTPUT_STEP_ID.equals( stepMeta.getStepID() ) ) {
+        nrOutputs++;
+      }
+      boolean supported = false;
+      for ( TransformationType type : stepMeta.getStepMetaInterface().getSupportedTransformationTypes() ) {
+        if ( type == TransformationType.SingleThreaded ) {
+          supported = true;
+        }
+      }
+      if ( !supported ) {
+        return BaseMessages.getString( PKG, "Mapping.PooledExecution.StepNotSupported", stepMeta.getName() );
+      }
+      if ( mappingTransMeta.findPreviousSteps( stepMeta ).isEmpty()
+        && !MAPPING_INPUT_STEP_ID.equals( stepMeta.getStepID() ) ) {
+        return BaseMessages.getString( PKG, "Mapping.PooledExecution.SourceStep", stepMeta.getName() );
+      }
+    }
+    if ( nrInputs != 1 || nrOutputs != 1 ) {
+      return BaseMessages.getString( PKG, "Mapping.PooledExecution.InputOutputSteps" );
+    }
+    return null;
+  }
+
   void initServletConfig() {
     TransStepUtil.initServletConfig( getTrans(), getData().getMappingTrans() );
   }
@@ -605,7 +673,27 @@ public class Mapping extends BaseStep implements StepInterface {
     }
   }
 
+  private void disposeSingleThreadedMapping() throws KettleException {
+    if ( getData().singleThreadedTransExcecutor == null ) {
+      return;
+    }
+    if ( getData().rowProducer != null ) {
+      getData().rowProducer.finished();
+    }
+    getData().singleThreadedTransExcecutor.dispose();
+    getData().singleThreadedTransExcecutor = null;
+    getTrans().getActiveSubtransformations().remove( getStepname() );
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    // Clean up the single threaded mapping if we stopped before all rows were processed
+    //
+    try {
+      disposeSingleThreadedMapping();
+    } catch ( KettleException e ) {
+      log.logError( "Error disposing of the single threaded mapping: ", e );
+    }
+
     // Close the running transformation
     if ( getData().wasStarted ) {
       // Wait until the child transformation has finished.
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.RowProducer;
 import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -56,6 +57,7 @@ public class MappingData extends BaseStepData implements StepDataInterface {
   protected int linesUpdatedStepNr = -1;
   protected int linesRejectedStepNr = -1;
   public SingleThreadedTransExecutor singleThreadedTransExcecutor;
+  public RowProducer rowProducer;
 
   public MappingData() {
     super();
@@ -96,6 +96,12 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
   private boolean allowingMultipleInputs;
   private boolean allowingMultipleOutputs;
 
+  /**
+   * Keep the mapping prepared in the single threaded engine and pass it the rows one by one, rather than running it in
+   * its own threads
+   */
+  private boolean pooledExecution;
+
   /*
    * This repository object is injected from the outside at runtime or at design time. It comes from either Spoon or
    * Trans
@@ -223,6 +229,7 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
       String multiOutput = XMLHandler.getTagValue( stepnode, "allow_multiple_output" );
       allowingMultipleOutputs =
         Const.isEmpty( multiOutput ) ? outputMappings.size() > 1 : "Y".equalsIgnoreCase( multiOutput );
+      pooledExecution = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "pooled_execution" ) );
 
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString(
@@ -284,6 +291,7 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "allow_multiple_input", allowingMultipleInputs ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "allow_multiple_output", allowingMultipleOutputs ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "pooled_execution", pooledExecution ) );
 
     return retval.toString();
   }
@@ -355,6 +363,7 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
       rep.getStepAttributeBoolean( id_step, 0, "allow_multiple_input", inputMappings.size() > 1 );
     allowingMultipleOutputs =
       rep.getStepAttributeBoolean( id_step, 0, "allow_multiple_output", outputMappings.size() > 1 );
+    pooledExecution = rep.getStepAttributeBoolean( id_step, "pooled_execution" );
   }
 
   public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
@@ -380,6 +389,7 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
 
     rep.saveStepAttribute( id_transformation, id_step, 0, "allow_multiple_input", allowingMultipleInputs );
     rep.saveStepAttribute( id_transformation, id_step, 0, "allow_multiple_output", allowingMultipleOutputs );
+    rep.saveStepAttribute( id_transformation, id_step, "pooled_execution", pooledExecution );
   }
 
   public void setDefault() {
@@ -395,6 +405,7 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
 
     allowingMultipleInputs = false;
     allowingMultipleOutputs = false;
+    pooledExecution = false;
   }
 
   public void getFields( RowMetaInterface row, String origin, RowMetaInterface[] info, StepMeta nextStep,
@@ -1090,6 +1101,21 @@ public class MappingMeta extends BaseStepMeta implements StepMetaInterface, HasR
     this.allowingMultipleOutputs = allowingMultipleOutputs;
   }
 
+  /**
+   * @return true if the mapping is kept prepared in the single threaded engine and gets the rows one by one
+   */
+  public boolean isPooledExecution() {
+    return pooledExecution;
+  }
+
+  /**
+   * @param pooledExecution
+   *          true if the mapping is kept prepared in the single threaded engine and gets the rows one by one
+   */
+  public void setPooledExecution( boolean pooledExecution ) {
+    this.pooledExecution = pooledExecution;
+  }
+
   /**
    * @return The objects referenced in the step, like a mapping, a transformation, a job, ...
    */
@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.memgroupby;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -32,6 +33,8 @@ import org.apache.commons.math.stat.descriptive.rank.Percentile;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.memory.MemoryBudgetManager;
+import org.pentaho.di.core.memory.RowSizeEstimator;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -143,6 +146,15 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       //
       initGroupMeta( data.inputRowMeta );
 
+      // In parallel aggregation mode the copies share their partial aggregates
+      //
+      if ( meta.isParallelAggregation() && getTrans() != null ) {
+        List<StepInterface> copies = getTrans().findStepInterfaces( getStepname() );
+        int nrCopies = copies == null ? 1 : copies.size();
+        if ( nrCopies > 1 ) {
+          data.merge = MemoryGroupByMerge.getMerge( getTrans(), getStepname(), nrCopies );
+        }
+      }
     }
 
     if ( first ) {
@@ -161,6 +173,20 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     //
     if ( r == null ) // no more input to be expected... (or none received in the first place)
     {
+      if ( data.merge != null ) {
+        List<HashMap<HashEntry, Aggregate>> partials = data.merge.finish( getCopy(), data.map );
+        if ( partials == null ) {
+          // Another copy is still aggregating, the last one to finish sends out the result
+          //
+          setOutputDone();
+          return false;
+        }
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.MergingPartialAggregates", partials.size() ) );
+        }
+        mergePartialAggregates( partials );
+        MemoryGroupByMerge.removeMerge( getTrans(), getStepname() );
+      }
       handleLastOfGroup();
 
       setOutputDone();
@@ -183,6 +209,155 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Merge the partial aggregates of all the step copies, in copy order, into the hash map of this copy.<br>
+   * Used for junits in MemoryGroupByParallelAggregationTest
+   *
+   * @param partials
+   *          the hash maps of the step copies
+   * @throws KettleException
+   */
+  void mergePartialAggregates( List<HashMap<HashEntry, Aggregate>> partials ) throws KettleException {
+    HashMap<HashEntry, Aggregate> merged = new HashMap<HashEntry, Aggregate>();
+    for ( HashMap<HashEntry, Aggregate> partial : partials ) {
+      if ( partial == null ) {
+        continue;
+      }
+      for ( Map.Entry<HashEntry, Aggregate> entry : partial.entrySet() ) {
+        Aggregate aggregate = merged.get( entry.getKey() );
+        if ( aggregate == null ) {
+          merged.put( entry.getKey(), entry.getValue() );
+        } else {
+          mergeAggregate( aggregate, entry.getValue() );
+        }
+      }
+    }
+    data.map = merged;
+  }
+
+  /**
+   * Merge the aggregate of a group calculated by another step copy into an aggregate of the same group. The other copy
+   * is considered to have received its rows after this one.<br>
+   * Used for junits in MemoryGroupByParallelAggregationTest
+   *
+   * @param aggregate
+   *          the aggregate to merge into
+   * @param other
+   *          the aggregate to merge
+   * @throws KettleException
+   */
+  @SuppressWarnings( "unchecked" )
+  void mergeAggregate( Aggregate aggregate, Aggregate other ) throws KettleException {
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      Object value = aggregate.agg[i];
+      Object otherValue = other.agg[i];
+      ValueMetaInterface valueMeta = data.aggMeta.getValueMeta( i );
+
+      switch ( meta.getAggregateType()[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+          aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, valueMeta, otherValue );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, valueMeta, otherValue );
+          aggregate.counts[i] += other.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MEDIAN:
+        case MemoryGroupByMeta.TYPE_GROUP_PERCENTILE:
+          ( (List<Double>) value ).addAll( (List<Double>) otherValue );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION:
+          // Combine the means and the sums of squared differences of both sets
+          //
+          if ( other.counts[i] == 0 ) {
+            break;
+          }
+          if ( aggregate.counts[i] == 0 ) {
+            aggregate.agg[i] = otherValue;
+            aggregate.mean[i] = other.mean[i];
+            aggregate.counts[i] = other.counts[i];
+            break;
+          }
+          double n = aggregate.counts[i];
+          double otherN = other.counts[i];
+          double delta = other.mean[i] - aggregate.mean[i];
+          double sum = value == null ? 0.0 : (Double) value;
+          double otherSum = otherValue == null ? 0.0 : (Double) otherValue;
+
+          aggregate.agg[i] = sum + otherSum + delta * delta * n * otherN / ( n + otherN );
+          aggregate.mean[i] = aggregate.mean[i] + delta * otherN / ( n + otherN );
+          aggregate.counts[i] += other.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT:
+          if ( other.distinctObjs == null || other.distinctObjs[i] == null ) {
+            break;
+          }
+          if ( aggregate.distinctObjs == null ) {
+            aggregate.distinctObjs = new Set[meta.getSubjectField().length];
+          }
+          if ( aggregate.distinctObjs[i] == null ) {
+            aggregate.distinctObjs[i] = new TreeSet<Object>();
+          }
+          aggregate.distinctObjs[i].addAll( other.distinctObjs[i] );
+          aggregate.agg[i] = Long.valueOf( aggregate.distinctObjs[i].size() );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          aggregate.counts[i] += other.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MIN:
+          if ( otherValue == null && !minNullIsValued ) {
+            break;
+          }
+          if ( valueMeta.compare( otherValue, value ) < 0 ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MAX:
+          if ( valueMeta.compare( otherValue, value ) > 0 ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_FIRST:
+          if ( value == null ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_LAST:
+          if ( otherValue != null ) {
+            aggregate.agg[i] = otherValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_FIRST_INCL_NULL:
+          if ( aggregate.counts[i] == 0 ) {
+            aggregate.agg[i] = otherValue;
+            aggregate.counts[i] = other.counts[i];
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_LAST_INCL_NULL:
+          aggregate.agg[i] = otherValue;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA:
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING:
+          String separator = ", ";
+          if ( meta.getAggregateType()[i] == MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING ) {
+            separator = "";
+            if ( !Const.isEmpty( meta.getValueField()[i] ) ) {
+              separator = environmentSubstitute( meta.getValueField()[i] );
+            }
+          }
+          StringBuilder sb = (StringBuilder) value;
+          StringBuilder otherSb = (StringBuilder) otherValue;
+          if ( sb.length() > 0 && otherSb.length() > 0 ) {
+            sb.append( separator );
+          }
+          sb.append( otherSb );
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
   private void handleLastOfGroup() throws KettleException {
     // Dump the content of the map...
     //
@@ -249,6 +424,7 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       // Store it in the map!
       //
       data.map.put( entry, aggregate );
+      claimMemory( groupData );
     }
 
     for ( int i = 0; i < data.subjectnrs.length; i++ ) {
@@ -536,12 +712,39 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
   }
 
+  /**
+   * The groups can't be written to disk, but we let the memory budget know how much memory they take. That makes
+   * other steps spill sooner and lets us warn before we run out of memory.
+   */
+  private void claimMemory( Object[] groupData ) {
+    if ( data.memoryReservation == null ) {
+      return;
+    }
+    data.unclaimedBytes +=
+      RowSizeEstimator.estimateRowSize( data.groupMeta, groupData ) + RowSizeEstimator.estimateRowSize( data.aggMeta )
+        + RowSizeEstimator.HASH_MAP_ENTRY;
+    data.memoryCounter++;
+    if ( data.memoryCounter >= 1000 ) {
+      boolean withinBudget = data.memoryReservation.claim( data.unclaimedBytes );
+      if ( !withinBudget && !data.memoryWarningLogged ) {
+        logBasic( BaseMessages.getString(
+          PKG, "MemoryGroupBy.Log.MemoryBudgetExceeded", data.map.size(), data.memoryReservation
+            .getReservedBytes() / ( 1024 * 1024 ) ) );
+        data.memoryWarningLogged = true;
+      }
+      data.unclaimedBytes = 0;
+      data.memoryCounter = 0;
+    }
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (MemoryGroupByMeta) smi;
     data = (MemoryGroupByData) sdi;
 
     if ( super.init( smi, sdi ) ) {
       data.map = new HashMap<HashEntry, Aggregate>( 5000 );
+      data.memoryReservation =
+        MemoryBudgetManager.getInstance().register( getLogChannelId(), getStepname() + "." + getCopy() );
 
       return true;
     }
@@ -551,6 +754,9 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     super.dispose( smi, sdi );
+    if ( ( (MemoryGroupByData) sdi ).memoryReservation != null ) {
+      ( (MemoryGroupByData) sdi ).memoryReservation.close();
+    }
     ( (MemoryGroupByData) sdi ).clear();
   }
 
@@ -562,6 +768,11 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     // Clear the complete cache...
     //
     data.map.clear();
+    if ( data.memoryReservation != null ) {
+      data.memoryReservation.releaseAll();
+    }
+    data.unclaimedBytes = 0;
+    data.memoryCounter = 0;
 
     data.newBatch = true;
   }
@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.memgroupby;
 import java.util.HashMap;
 
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.memory.MemoryReservation;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -68,6 +69,11 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
 
   public HashMap<HashEntry, Aggregate> map;
 
+  public MemoryReservation memoryReservation;
+  public long unclaimedBytes;
+  public int memoryCounter;
+  public boolean memoryWarningLogged;
+
   public RowMetaInterface aggMeta;
   public RowMetaInterface groupMeta;
   public RowMetaInterface entryMeta;
@@ -90,6 +96,9 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
 
   public boolean newBatch;
 
+  /** The partial aggregates of all the copies in parallel aggregation mode, null otherwise */
+  public MemoryGroupByMerge merge;
+
   public MemoryGroupByData() {
     super();
 
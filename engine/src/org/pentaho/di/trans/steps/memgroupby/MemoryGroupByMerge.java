@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.HashEntry;
+
+/**
+ * Collects the partial aggregates of the copies of a Memory Group By step running in parallel aggregation mode. Every
+ * copy aggregates the rows it receives and hands its hash map over once its input is done. The last copy to finish
+ * gets all the partial aggregates, in copy order, to merge them and to send out the result.
+ */
+public class MemoryGroupByMerge {
+  private final int nrCopies;
+  private final List<HashMap<HashEntry, Aggregate>> partials;
+  private int nrFinished;
+
+  MemoryGroupByMerge( int nrCopies ) {
+    this.nrCopies = nrCopies;
+    this.partials = new ArrayList<HashMap<HashEntry, Aggregate>>( nrCopies );
+    for ( int i = 0; i < nrCopies; i++ ) {
+      partials.add( null );
+    }
+  }
+
+  /**
+   * Get the merge shared by the copies of a step in a transformation, create it for the first copy asking.
+   *
+   * @param trans
+   *          the transformation the step runs in
+   * @param stepname
+   *          the name of the step
+   * @param nrCopies
+   *          the number of copies of the step
+   * @return the shared merge
+   */
+  public static MemoryGroupByMerge getMerge( Trans trans, String stepname, int nrCopies ) {
+    Map<String, Object> extensionDataMap = trans.getExtensionDataMap();
+    synchronized ( extensionDataMap ) {
+      String key = getKey( stepname );
+      MemoryGroupByMerge merge = (MemoryGroupByMerge) extensionDataMap.get( key );
+      if ( merge == null ) {
+        merge = new MemoryGroupByMerge( nrCopies );
+        extensionDataMap.put( key, merge );
+      }
+      return merge;
+    }
+  }
+
+  /**
+   * Remove the merge of a step from the transformation, after the result is sent out.
+   *
+   * @param trans
+   *          the transformation the step runs in
+   * @param stepname
+   *          the name of the step
+   */
+  public static void removeMerge( Trans trans, String stepname ) {
+    Map<String, Object> extensionDataMap = trans.getExtensionDataMap();
+    synchronized ( extensionDataMap ) {
+      extensionDataMap.remove( getKey( stepname ) );
+    }
+  }
+
+  private static String getKey( String stepname ) {
+    return MemoryGroupByMerge.class.getName() + "." + stepname;
+  }
+
+  /**
+   * Hand over the partial aggregates of a step copy.
+   *
+   * @param copyNr
+   *          the copy number of the step
+   * @param map
+   *          the partial aggregates of the step copy
+   * @return the partial aggregates of all the copies in copy order if this was the last copy to finish, null
+   *         otherwise.
+   */
+  public synchronized List<HashMap<HashEntry, Aggregate>> finish( int copyNr, HashMap<HashEntry, Aggregate> map ) {
+    partials.set( copyNr, map );
+    nrFinished++;
+    if ( nrFinished < nrCopies ) {
+      return null;
+    }
+    return new ArrayList<HashMap<HashEntry, Aggregate>>( partials );
+  }
+
+  public int getNrCopies() {
+    return nrCopies;
+  }
+}
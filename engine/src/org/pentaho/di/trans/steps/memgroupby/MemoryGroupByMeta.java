@@ -132,6 +132,9 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
   /** Flag to indicate that we always give back one row. Defaults to true for existing transformations. */
   private boolean alwaysGivingBackOneRow;
 
+  /** Flag to indicate that the step copies aggregate their own rows and the last copy to finish merges the results */
+  private boolean parallelAggregation;
+
   public MemoryGroupByMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -264,6 +267,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
       } else {
         alwaysGivingBackOneRow = "Y".equalsIgnoreCase( giveBackRow );
       }
+      parallelAggregation = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "parallel_aggregation" ) );
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString(
         PKG, "MemoryGroupByMeta.Exception.UnableToLoadStepInfoFromXML" ), e );
@@ -303,6 +307,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
     int nrfields = 0;
 
     allocate( sizegroup, nrfields );
+    parallelAggregation = false;
   }
 
   public void getFields( RowMetaInterface r, String origin, RowMetaInterface[] info, StepMeta nextStep,
@@ -395,6 +400,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
     StringBuffer retval = new StringBuffer( 500 );
 
     retval.append( "      " ).append( XMLHandler.addTagValue( "give_back_row", alwaysGivingBackOneRow ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "parallel_aggregation", parallelAggregation ) );
 
     retval.append( "      <group>" ).append( Const.CR );
     for ( int i = 0; i < groupField.length; i++ ) {
@@ -443,6 +449,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
       }
 
       alwaysGivingBackOneRow = rep.getStepAttributeBoolean( id_step, 0, "give_back_row", hasNumberOfValues );
+      parallelAggregation = rep.getStepAttributeBoolean( id_step, "parallel_aggregation" );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString(
         PKG, "MemoryGroupByMeta.Exception.UnexpectedErrorInReadingStepInfoFromRepository" ), e );
@@ -452,6 +459,7 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
   public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
     try {
       rep.saveStepAttribute( id_transformation, id_step, "give_back_row", alwaysGivingBackOneRow );
+      rep.saveStepAttribute( id_transformation, id_step, "parallel_aggregation", parallelAggregation );
 
       for ( int i = 0; i < groupField.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "group_name", groupField[i] );
@@ -511,4 +519,20 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
   public void setAlwaysGivingBackOneRow( boolean alwaysGivingBackOneRow ) {
     this.alwaysGivingBackOneRow = alwaysGivingBackOneRow;
   }
+
+  /**
+   * @return true if the step copies aggregate the rows they receive and the last copy to finish merges the results
+   */
+  public boolean isParallelAggregation() {
+    return parallelAggregation;
+  }
+
+  /**
+   * @param parallelAggregation
+   *          true to let the step copies aggregate the rows they receive and merge the results in the last copy to
+   *          finish
+   */
+  public void setParallelAggregation( boolean parallelAggregation ) {
+    this.parallelAggregation = parallelAggregation;
+  }
 }
@@ -53,6 +53,13 @@ public class RowsFromResult extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    // When the rows are injected with a row producer, for example by a Transformation Executor that keeps the
+    // transformation prepared, we pass the rows along instead of reading the previous result.
+    //
+    if ( !getInputRowSets().isEmpty() ) {
+      return injectedRow( sdi );
+    }
+
     Result previousResult = getTrans().getPreviousResult();
     if ( previousResult == null || getLinesRead() >= previousResult.getRows().size() ) {
       setOutputDone();
@@ -79,4 +86,25 @@ public class RowsFromResult extends BaseStep implements StepInterface {
 
     return true;
   }
+
+  private boolean injectedRow( StepDataInterface sdi ) throws KettleException {
+    Object[] row = getRow();
+    if ( row == null ) {
+      setOutputDone();
+      return false;
+    }
+
+    data = (RowsFromResultData) sdi;
+    data.outputRowMeta = getInputRowMeta();
+
+    putRow( data.outputRowMeta, row );
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "RowsFromResult.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
 }
@@ -51,6 +51,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.PoolableStepMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInjectionMetaEntry;
 import org.pentaho.di.trans.step.StepInterface;
@@ -65,7 +66,8 @@ import org.w3c.dom.Node;
  *
  * Created on 02-jun-2003
  */
-public class SelectValuesMeta extends BaseStepMeta implements StepMetaInterface, StepMetaInjectionInterface {
+public class SelectValuesMeta extends BaseStepMeta implements StepMetaInterface, StepMetaInjectionInterface,
+  PoolableStepMetaInterface {
   private static Class<?> PKG = SelectValuesMeta.class; // for i18n purposes, needed by Translator2!!
 
   // SELECT mode
@@ -22,27 +22,27 @@
 
 package org.pentaho.di.trans.steps.sort;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.vfs.FileObject;
 import org.apache.commons.vfs.FileSystemException;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.memory.MemoryBudgetManager;
+import org.pentaho.di.core.memory.RowSizeEstimator;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.vfs.KettleVFS;
@@ -64,6 +64,11 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class SortRows extends BaseStep implements StepInterface {
   private static Class<?> PKG = SortRows.class; // for i18n
 
+  /** Buffers with fewer rows than this are sorted in a single thread */
+  static final int PARALLEL_SORT_THRESHOLD = 50000;
+
+  static final int DEFAULT_MERGE_FAN_IN = 128;
+
   private SortRowsMeta meta;
   private SortRowsData data;
 
@@ -86,14 +91,27 @@ public class SortRows extends BaseStep implements StepInterface {
 
     // Save row
     data.buffer.add( r );
+    if ( data.memoryReservation != null ) {
+      data.unreservedBytes += RowSizeEstimator.estimateRowSize( data.outputRowMeta, r );
+    }
 
-    // Check the free memory every 1000 rows...
+    // Check the memory every 1000 rows...
     //
     data.freeCounter++;
     if ( data.sortSize <= 0 && data.freeCounter >= 1000 ) {
-      data.freeMemoryPct = Const.getPercentageFreeMemory();
       data.freeCounter = 0;
 
+      // Reserve the memory taken by the rows added since the last check
+      //
+      if ( data.memoryReservation != null ) {
+        data.memoryExhausted =
+            !data.memoryReservation.reserve( data.unreservedBytes ) || data.memoryReservation.isOverQuota();
+        data.unreservedBytes = 0;
+      }
+      if ( data.freeMemoryPctLimit > 0 ) {
+        data.freeMemoryPct = Const.getPercentageFreeMemory();
+      }
+
       if ( log.isDetailed() ) {
         data.memoryReporting++;
         if ( data.memoryReporting >= 10 ) {
@@ -110,6 +128,7 @@ public class SortRows extends BaseStep implements StepInterface {
     doSort |=
         data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
             && data.buffer.size() >= data.minSortSize;
+    doSort |= data.memoryExhausted;
     if ( log.isDebug() ) {
       this.logDebug( BaseMessages.getString( PKG, "SortRows.Debug.StartDumpToDisk", data.freeMemoryPct, data.buffer
           .size() ) );
@@ -132,8 +151,6 @@ public class SortRows extends BaseStep implements StepInterface {
     quickSort( data.buffer );
 
     // Then write them to disk...
-    DataOutputStream dos;
-    GZIPOutputStream gzos;
     int p;
 
     try {
@@ -142,14 +159,9 @@ public class SortRows extends BaseStep implements StepInterface {
               getTransMeta() );
 
       data.files.add( fileObject ); // Remember the files!
-      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-      if ( data.compressFiles ) {
-        gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-        dos = new DataOutputStream( gzos );
-      } else {
-        dos = new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
-        gzos = null;
-      }
+      SortRowsSpillWriter writer =
+          new SortRowsSpillWriter( KettleVFS.getOutputStream( fileObject, false ), data.outputRowMeta,
+              data.compressionProvider, SortRowsSpillWriter.DEFAULT_BLOCK_SIZE );
 
       // Just write the data, nothing else
       List<Integer> duplicates = new ArrayList<Integer>();
@@ -186,7 +198,7 @@ public class SortRows extends BaseStep implements StepInterface {
           }
         }
         if ( !skip ) {
-          data.outputRowMeta.writeData( dos, data.buffer.get( p ) );
+          writer.putRow( data.buffer.get( p ) );
         }
       }
 
@@ -205,19 +217,18 @@ public class SortRows extends BaseStep implements StepInterface {
 
       // Clear the list
       data.buffer.clear();
+      releaseMemory();
 
       // Close temp-file
-      dos.close(); // close data stream
-      if ( gzos != null ) {
-        gzos.close(); // close gzip stream
-      }
-      outputStream.close(); // close file stream
+      writer.close();
 
       // How much memory do we have left?
       //
-      data.freeMemoryPct = Const.getPercentageFreeMemory();
+      if ( data.freeMemoryPctLimit > 0 ) {
+        data.freeMemoryPct = Const.getPercentageFreeMemory();
+      }
       data.freeCounter = 0;
-      if ( data.sortSize <= 0 ) {
+      if ( data.sortSize <= 0 && data.freeMemoryPctLimit > 0 ) {
         if ( log.isDetailed() ) {
           logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.AvailableMemory", data.freeMemoryPct ) );
         }
@@ -230,10 +241,76 @@ public class SortRows extends BaseStep implements StepInterface {
     data.getBufferIndex = 0;
   }
 
-  private DataInputStream getDataInputStream( GZIPInputStream gzipInputStream ) {
-    DataInputStream result = new DataInputStream( gzipInputStream );
-    data.gzis.add( gzipInputStream );
-    return result;
+  /**
+   * Merges the oldest temporary files into a single new one until no more than data.mergeFanIn files remain. That
+   * keeps the number of open files and the size of the merge heap limited for very large sorts.
+   */
+  void mergeTempFiles() throws KettleException {
+    while ( data.files.size() > data.mergeFanIn && !isStopped() ) {
+      // Merge just enough files to end up with mergeFanIn files
+      //
+      int nrFiles = Math.min( data.mergeFanIn, data.files.size() - data.mergeFanIn + 1 );
+      List<FileObject> mergeFiles = data.files.subList( 0, nrFiles );
+      List<Integer> mergeSizes = data.bufferSizes.subList( 0, nrFiles );
+
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MergingTempFiles", nrFiles, data.files.size() ) );
+      }
+
+      List<SortRowsSpillReader> readers = new ArrayList<SortRowsSpillReader>( nrFiles );
+      try {
+        FileObject fileObject =
+            KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
+                getTransMeta() );
+        SortRowsSpillWriter writer =
+            new SortRowsSpillWriter( KettleVFS.getOutputStream( fileObject, false ), data.outputRowMeta,
+                data.compressionProvider, SortRowsSpillWriter.DEFAULT_BLOCK_SIZE );
+
+        PriorityQueue<RowTempFile> heap = new PriorityQueue<RowTempFile>( nrFiles, data.comparator );
+        for ( int f = 0; f < nrFiles; f++ ) {
+          SortRowsSpillReader reader =
+              new SortRowsSpillReader( KettleVFS.getInputStream( mergeFiles.get( f ) ), data.outputRowMeta );
+          readers.add( reader );
+          Object[] row = reader.getRow();
+          if ( row != null ) {
+            heap.add( new RowTempFile( row, f ) );
+          }
+        }
+
+        int nrRows = 0;
+        while ( !heap.isEmpty() && !isStopped() ) {
+          RowTempFile smallest = heap.poll();
+          writer.putRow( smallest.row );
+          nrRows++;
+          smallest.row = readers.get( smallest.fileNumber ).getRow();
+          if ( smallest.row != null ) {
+            heap.add( smallest );
+          }
+        }
+        writer.close();
+
+        for ( int f = 0; f < nrFiles; f++ ) {
+          readers.get( f ).close();
+          mergeFiles.get( f ).delete();
+        }
+        readers.clear();
+
+        mergeFiles.clear();
+        mergeSizes.clear();
+        data.files.add( fileObject );
+        data.bufferSizes.add( nrRows );
+      } catch ( Exception e ) {
+        throw new KettleException( "Error merging temp-files!", e );
+      } finally {
+        for ( SortRowsSpillReader reader : readers ) {
+          try {
+            reader.close();
+          } catch ( IOException e ) {
+            // Ignore, the file is removed anyway
+          }
+        }
+      }
+    }
   }
 
   // get sorted rows from available files in iterative manner.
@@ -243,11 +320,15 @@ public class SortRows extends BaseStep implements StepInterface {
     Object[] retval;
 
     // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
+    if ( data.files.size() > 0 && data.spillReaders.isEmpty() ) {
       if ( log.isBasic() ) {
         logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
       }
 
+      // The smallest row of every file is kept in a heap so it takes log(files) comparisons per row to find the next one
+      //
+      data.tempRows = new PriorityQueue<RowTempFile>( data.files.size(), data.comparator );
+
       try {
         for ( int f = 0; f < data.files.size() && !isStopped(); f++ ) {
           FileObject fileObject = data.files.get( f );
@@ -255,15 +336,9 @@ public class SortRows extends BaseStep implements StepInterface {
           if ( log.isDetailed() ) {
             logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
           }
-          InputStream fi = KettleVFS.getInputStream( fileObject );
-          DataInputStream di;
-          data.fis.add( fi );
-          if ( data.compressFiles ) {
-            di = getDataInputStream( new GZIPInputStream( new BufferedInputStream( fi ) ) );
-          } else {
-            di = new DataInputStream( new BufferedInputStream( fi, 50000 ) );
-          }
-          data.dis.add( di );
+          SortRowsSpillReader reader =
+              new SortRowsSpillReader( KettleVFS.getInputStream( fileObject ), data.outputRowMeta );
+          data.spillReaders.add( reader );
 
           // How long is the buffer?
           int buffersize = data.bufferSizes.get( f );
@@ -274,14 +349,11 @@ public class SortRows extends BaseStep implements StepInterface {
           }
 
           if ( buffersize > 0 ) {
-            Object[] row = data.outputRowMeta.readData( di );
+            Object[] row = reader.getRow();
             data.rowbuffer.add( row ); // new row from input stream
             data.tempRows.add( new RowTempFile( row, f ) );
           }
         }
-
-        // Sort the data row buffer
-        Collections.sort( data.tempRows, data.comparator );
       } catch ( Exception e ) {
         logError( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
       }
@@ -299,7 +371,7 @@ public class SortRows extends BaseStep implements StepInterface {
     } else {
       // read from disk processing
 
-      if ( data.rowbuffer.size() == 0 ) {
+      if ( data.rowbuffer.size() == 0 || data.tempRows.isEmpty() ) {
         retval = null;
       } else {
         // We now have "filenr" rows waiting: which one is the smallest?
@@ -312,34 +384,28 @@ public class SortRows extends BaseStep implements StepInterface {
           }
         }
 
-        RowTempFile rowTempFile = data.tempRows.remove( 0 );
+        RowTempFile rowTempFile = data.tempRows.poll();
         retval = rowTempFile.row;
         int smallest = rowTempFile.fileNumber;
 
         // now get another Row for position smallest
 
         FileObject file = data.files.get( smallest );
-        DataInputStream di = data.dis.get( smallest );
-        InputStream fi = data.fis.get( smallest );
+        SortRowsSpillReader reader = data.spillReaders.get( smallest );
 
+        Object[] row2;
         try {
-          Object[] row2 = data.outputRowMeta.readData( di );
-          RowTempFile extra = new RowTempFile( row2, smallest );
-
-          int index = Collections.binarySearch( data.tempRows, extra, data.comparator );
-          if ( index < 0 ) {
-            data.tempRows.add( index * ( -1 ) - 1, extra );
-          } else {
-            data.tempRows.add( index, extra );
-          }
-        } catch ( KettleFileException fe ) { // empty file or EOF mostly
-          GZIPInputStream gzfi = ( data.compressFiles ) ? data.gzis.get( smallest ) : null;
+          row2 = reader.getRow();
+        } catch ( KettleFileException e ) {
+          throw new KettleValueException( e );
+        }
+
+        if ( row2 != null ) {
+          rowTempFile.row = row2;
+          data.tempRows.add( rowTempFile );
+        } else { // empty file or EOF
           try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
+            reader.close();
             file.delete();
           } catch ( IOException e ) {
             logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", smallest, file.toString() ) );
@@ -349,12 +415,7 @@ public class SortRows extends BaseStep implements StepInterface {
           }
 
           data.files.remove( smallest );
-          data.dis.remove( smallest );
-          data.fis.remove( smallest );
-
-          if ( gzfi != null ) {
-            data.gzis.remove( smallest );
-          }
+          data.spillReaders.remove( smallest );
 
           // Also update all file numbers in in data.tempRows if they are larger
           // than smallest.
@@ -364,8 +425,6 @@ public class SortRows extends BaseStep implements StepInterface {
               rtf.fileNumber--;
             }
           }
-        } catch ( SocketTimeoutException e ) {
-          throw new KettleValueException( e ); // should never happen on local files
         }
       }
     }
@@ -495,6 +554,12 @@ public class SortRows extends BaseStep implements StepInterface {
    * 
    */
   void passBuffer() throws KettleException {
+    // Keep the number of files we read from at the same time limited
+    //
+    if ( data.files.size() > data.mergeFanIn ) {
+      mergeTempFiles();
+    }
+
     // Now we can start the output!
     //
     Object[] r = getBuffer();
@@ -554,10 +619,12 @@ public class SortRows extends BaseStep implements StepInterface {
 
     data.sortSize = Const.toInt( environmentSubstitute( meta.getSortSize() ), -1 );
     data.freeMemoryPctLimit = Const.toInt( meta.getFreeMemoryLimit(), -1 );
-    if ( data.sortSize <= 0 && data.freeMemoryPctLimit <= 0 ) {
-      // Prefer the memory limit as it should never fail
+    if ( data.sortSize <= 0 ) {
+      // Without a fixed sort size we spill once our share of the JVM wide memory budget is used up.
+      // The free memory limit, if any, is checked as well.
       //
-      data.freeMemoryPctLimit = 25;
+      data.memoryReservation =
+          MemoryBudgetManager.getInstance().register( getLogChannelId(), getStepname() + "." + getCopy() );
     }
 
     // In memory buffer
@@ -569,8 +636,26 @@ public class SortRows extends BaseStep implements StepInterface {
     data.rowbuffer = new ArrayList<Object[]>( 5000 );
 
     data.compressFiles = getBooleanValueOfVariable( meta.getCompressFilesVariable(), meta.getCompressFiles() );
+    if ( data.compressFiles ) {
+      // Steps saved before the compression type could be chosen used GZip
+      //
+      String compressionType = Const.NVL( environmentSubstitute( meta.getCompressionType() ), "GZip" );
+      if ( !SortRowsMeta.isSpillCompressionType( compressionType ) ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.CompressionTypeNotSupported", compressionType ) );
+        return false;
+      }
+      data.compressionProvider =
+          CompressionProviderFactory.getInstance().getCompressionProviderByName( compressionType );
+      if ( data.compressionProvider == null ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.CompressionProviderNotFound", compressionType ) );
+        return false;
+      }
+    }
 
-    data.tempRows = new ArrayList<RowTempFile>();
+    data.sortThreads =
+        Const.toInt( getVariable( Const.KETTLE_SORT_ROWS_THREADS ), Runtime.getRuntime().availableProcessors() );
+    data.mergeFanIn =
+        Math.max( 2, Const.toInt( getVariable( Const.KETTLE_SORT_ROWS_MERGE_FANIN ), DEFAULT_MERGE_FAN_IN ) );
 
     data.minSortSize = 5000;
 
@@ -579,7 +664,15 @@ public class SortRows extends BaseStep implements StepInterface {
 
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    if ( data.sortExecutor != null ) {
+      data.sortExecutor.shutdownNow();
+      data.sortExecutor = null;
+    }
     clearBuffers();
+    if ( data.memoryReservation != null ) {
+      data.memoryReservation.close();
+      data.memoryReservation = null;
+    }
     super.dispose( smi, sdi );
   }
 
@@ -589,19 +682,17 @@ public class SortRows extends BaseStep implements StepInterface {
     data.buffer.clear();
     data.getBufferIndex = 0;
     data.rowbuffer.clear();
+    releaseMemory();
 
-    // close any open DataInputStream objects
-    if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
-      for ( DataInputStream dis : data.dis ) {
-        BaseStep.closeQuietly( dis );
-      }
-    }
-    // close any open InputStream objects
-    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
-      for ( InputStream is : data.fis ) {
-        BaseStep.closeQuietly( is );
+    // close any open temp-file readers
+    for ( SortRowsSpillReader reader : data.spillReaders ) {
+      try {
+        reader.close();
+      } catch ( IOException e ) {
+        // Ignore, the file is removed anyway
       }
     }
+    data.spillReaders.clear();
     // remove temp files
     for ( int f = 0; f < data.files.size(); f++ ) {
       FileObject fileToDelete = data.files.get( f );
@@ -615,12 +706,27 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Give the memory of the rows in the buffer back to the memory budget, once the buffer is cleared.
+   */
+  private void releaseMemory() {
+    if ( data.memoryReservation != null ) {
+      data.memoryReservation.releaseAll();
+    }
+    data.unreservedBytes = 0;
+    data.memoryExhausted = false;
+  }
+
   /**
    * Sort the entire vector, if it is not empty.
    */
   void quickSort( List<Object[]> elements ) throws KettleException {
     if ( elements.size() > 0 ) {
-      Collections.sort( elements, data.rowComparator );
+      if ( data.sortThreads > 1 && elements.size() >= PARALLEL_SORT_THRESHOLD ) {
+        parallelSort( elements );
+      } else {
+        Collections.sort( elements, data.rowComparator );
+      }
 
       long nrConversions = 0L;
       for ( ValueMetaInterface valueMeta : data.outputRowMeta.getValueMetaList() ) {
@@ -633,6 +739,100 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Sorts the elements with a parallel merge sort: the list is cut in one run per thread, the runs are sorted at the
+   * same time and then merged pair by pair, again in parallel. The result is stable, just like Collections.sort().
+   */
+  void parallelSort( List<Object[]> elements ) throws KettleException {
+    final Object[][] rows = elements.toArray( new Object[elements.size()][] );
+    final int size = rows.length;
+    int runSize = ( size + data.sortThreads - 1 ) / data.sortThreads;
+
+    if ( data.sortExecutor == null ) {
+      data.sortExecutor = Executors.newFixedThreadPool( data.sortThreads, new ThreadFactory() {
+        private int threadNr = 0;
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+          Thread thread = new Thread( runnable, getStepname() + " - sort " + ( ++threadNr ) );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    }
+
+    // Sort the runs...
+    //
+    List<Future<?>> tasks = new ArrayList<Future<?>>();
+    for ( int from = 0; from < size; from += runSize ) {
+      final int lo = from;
+      final int hi = Math.min( from + runSize, size );
+      tasks.add( data.sortExecutor.submit( new Runnable() {
+        @Override
+        public void run() {
+          Arrays.sort( rows, lo, hi, data.rowComparator );
+        }
+      } ) );
+    }
+    waitForSortTasks( tasks );
+
+    // Then merge them, doubling the run size every pass
+    //
+    Object[][] source = rows;
+    Object[][] target = new Object[size][];
+    for ( int width = runSize; width < size; width *= 2 ) {
+      final Object[][] from = source;
+      final Object[][] to = target;
+      for ( int start = 0; start < size; start += 2 * width ) {
+        final int lo = start;
+        final int mid = Math.min( start + width, size );
+        final int hi = Math.min( start + 2 * width, size );
+        tasks.add( data.sortExecutor.submit( new Runnable() {
+          @Override
+          public void run() {
+            mergeRuns( from, to, lo, mid, hi );
+          }
+        } ) );
+      }
+      waitForSortTasks( tasks );
+      source = to;
+      target = from;
+    }
+
+    elements.clear();
+    elements.addAll( Arrays.asList( source ) );
+  }
+
+  private void waitForSortTasks( List<Future<?>> tasks ) throws KettleException {
+    try {
+      for ( Future<?> task : tasks ) {
+        task.get();
+      }
+    } catch ( InterruptedException e ) {
+      throw new KettleException( "Interrupted while sorting rows", e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( "Error sorting rows", e.getCause() );
+    } finally {
+      tasks.clear();
+    }
+  }
+
+  /**
+   * Merges the sorted runs [lo, mid) and [mid, hi) of source into the same range of target. On equal keys the row of
+   * the first run goes first to keep the sort stable.
+   */
+  private void mergeRuns( Object[][] source, Object[][] target, int lo, int mid, int hi ) {
+    int i = lo;
+    int j = mid;
+    for ( int k = lo; k < hi; k++ ) {
+      if ( j >= hi || ( i < mid && data.rowComparator.compare( source[i], source[j] ) <= 0 ) ) {
+        target[k] = source[i++];
+      } else {
+        target[k] = source[j++];
+      }
+    }
+  }
+
   /**
    * Calling this method will alert the step that we finished passing records to the step. Specifically for steps like
    * "Sort Rows" it means that the buffered rows can be sorted and passed on.
@@ -22,14 +22,15 @@
 
 package org.pentaho.di.trans.steps.sort;
 
-import java.io.DataInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.vfs.FileObject;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.memory.MemoryReservation;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -43,20 +44,22 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public List<Object[]> buffer;
   public int getBufferIndex;
 
-  public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
-  public List<DataInputStream> dis;
+  public List<SortRowsSpillReader> spillReaders;
   public List<Object[]> rowbuffer;
   public List<Integer> bufferSizes;
 
   // To store rows and file references
-  public List<RowTempFile> tempRows;
+  public PriorityQueue<RowTempFile> tempRows;
 
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
   public RowMetaInterface outputRowMeta;
   public int sortSize;
   public boolean compressFiles;
+  public CompressionProvider compressionProvider;
+  public int sortThreads;
+  public int mergeFanIn;
+  ExecutorService sortExecutor;
   public int[] convertKeysToNative;
   public boolean convertAnyKeysToNative;
 
@@ -69,6 +72,10 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public int freeMemoryPctLimit;
   public int memoryReporting;
 
+  public MemoryReservation memoryReservation;
+  public long unreservedBytes;
+  public boolean memoryExhausted;
+
   /*
    * Group Fields Implementation heroic
    */
@@ -80,9 +87,7 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
     super();
 
     files = new ArrayList<FileObject>();
-    fis = new ArrayList<InputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
-    dis = new ArrayList<DataInputStream>();
+    spillReaders = new ArrayList<SortRowsSpillReader>();
     bufferSizes = new ArrayList<Integer>();
 
     previous = null; // Heroic
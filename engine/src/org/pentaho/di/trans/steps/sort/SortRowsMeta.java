@@ -94,6 +94,18 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
   /** The variable to use to set the compressFiles option boolean */
   private String compressFilesVariable;
 
+  /** The name of the compression provider used to compress the blocks of the temporary files */
+  private String compressionType;
+
+  /** The compression provider used for the temporary files of new Sort Rows steps */
+  public static final String DEFAULT_COMPRESSION_TYPE = "Snappy";
+
+  /**
+   * The compression providers that can compress the temporary files. The blocks are written to a plain stream, the
+   * archive formats (Zip) and Hadoop-snappy need more than that.
+   */
+  public static final String[] SPILL_COMPRESSION_TYPES = new String[] { "None", "GZip", "Snappy" };
+
   public SortRowsMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -195,6 +207,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
       freeMemoryLimit = XMLHandler.getTagValue( stepnode, "free_memory" );
       compressFiles = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compress" ) );
       compressFilesVariable = XMLHandler.getTagValue( stepnode, "compress_variable" );
+      compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
       onlyPassingUniqueRows = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "unique_rows" ) );
 
       Node fields = XMLHandler.getSubNode( stepnode, "fields" );
@@ -225,6 +238,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
     freeMemoryLimit = null;
     compressFiles = false;
     compressFilesVariable = null;
+    compressionType = DEFAULT_COMPRESSION_TYPE;
     onlyPassingUniqueRows = false;
 
     int nrfields = 0;
@@ -247,6 +261,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "      " ).append( XMLHandler.addTagValue( "free_memory", freeMemoryLimit ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress", compressFiles ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress_variable", compressFilesVariable ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compression_type", compressionType ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "unique_rows", onlyPassingUniqueRows ) );
 
     retval.append( "    <fields>" ).append( Const.CR );
@@ -277,6 +292,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
 
       compressFiles = rep.getStepAttributeBoolean( id_step, "compress" );
       compressFilesVariable = rep.getStepAttributeString( id_step, "compress_variable" );
+      compressionType = rep.getStepAttributeString( id_step, "compression_type" );
 
       onlyPassingUniqueRows = rep.getStepAttributeBoolean( id_step, "unique_rows" );
 
@@ -303,6 +319,7 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "free_memory", freeMemoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "compress", compressFiles );
       rep.saveStepAttribute( id_transformation, id_step, "compress_variable", compressFilesVariable );
+      rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
       rep.saveStepAttribute( id_transformation, id_step, "unique_rows", onlyPassingUniqueRows );
 
       for ( int i = 0; i < fieldName.length; i++ ) {
@@ -491,6 +508,31 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface {
     this.compressFilesVariable = compressFilesVariable;
   }
 
+  /**
+   * @return the name of the compression provider used to compress the temporary files. Null means GZip, the
+   *         compression used before the provider could be chosen.
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider used to compress the temporary files
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of a compression provider
+   * @return true if the provider can be used to compress the temporary files, see {@link #SPILL_COMPRESSION_TYPES}
+   */
+  public static boolean isSpillCompressionType( String compressionType ) {
+    return Const.indexOfString( compressionType, SPILL_COMPRESSION_TYPES ) >= 0;
+  }
+
   /**
    * @return the caseSensitive
    */
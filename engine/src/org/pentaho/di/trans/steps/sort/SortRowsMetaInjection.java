@@ -47,6 +47,7 @@ public class SortRowsMetaInjection implements StepMetaInjectionInterface {
       FREE_MEMORY_TRESHOLD( ValueMetaInterface.TYPE_STRING, "The free memory treshold (in %)" ),
       ONLY_PASS_UNIQUE_ROWS( ValueMetaInterface.TYPE_STRING, "Only pass unique rows? (Y/N)" ),
       COMPRESS_TEMP_FILES( ValueMetaInterface.TYPE_STRING, "Compress temporary files? (Y/N)" ),
+      COMPRESSION_TYPE( ValueMetaInterface.TYPE_STRING, "The compression type of the temporary files (GZip, Snappy, ...)" ),
 
       FIELDS( ValueMetaInterface.TYPE_NONE, "All the fields to sort" ),
       FIELD( ValueMetaInterface.TYPE_NONE, "One field to sort" ),
@@ -95,8 +96,8 @@ public class SortRowsMetaInjection implements StepMetaInjectionInterface {
 
     Entry[] topEntries =
       new Entry[] {
-        Entry.SORT_SIZE_ROWS, Entry.ONLY_PASS_UNIQUE_ROWS, Entry.COMPRESS_TEMP_FILES, Entry.SORT_DIRECTORY,
-        Entry.SORT_FILE_PREFIX, Entry.FREE_MEMORY_TRESHOLD, };
+        Entry.SORT_SIZE_ROWS, Entry.ONLY_PASS_UNIQUE_ROWS, Entry.COMPRESS_TEMP_FILES, Entry.COMPRESSION_TYPE,
+        Entry.SORT_DIRECTORY, Entry.SORT_FILE_PREFIX, Entry.FREE_MEMORY_TRESHOLD, };
     for ( Entry topEntry : topEntries ) {
       all.add( new StepInjectionMetaEntry( topEntry.name(), topEntry.getValueType(), topEntry.getDescription() ) );
     }
@@ -181,6 +182,9 @@ public class SortRowsMetaInjection implements StepMetaInjectionInterface {
           case COMPRESS_TEMP_FILES:
             meta.setCompressFiles( "Y".equalsIgnoreCase( lookValue ) );
             break;
+          case COMPRESSION_TYPE:
+            meta.setCompressionType( lookValue );
+            break;
           case ONLY_PASS_UNIQUE_ROWS:
             meta.setOnlyPassingUniqueRows( "Y".equalsIgnoreCase( lookValue ) );
             break;
@@ -231,6 +235,7 @@ public class SortRowsMetaInjection implements StepMetaInjectionInterface {
     list.add( StepInjectionUtil.getEntry( Entry.FREE_MEMORY_TRESHOLD, meta.getFreeMemoryLimit() ) );
     list.add( StepInjectionUtil.getEntry( Entry.ONLY_PASS_UNIQUE_ROWS, meta.isOnlyPassingUniqueRows() ) );
     list.add( StepInjectionUtil.getEntry( Entry.COMPRESS_TEMP_FILES, meta.getCompressFiles() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.COMPRESSION_TYPE, meta.getCompressionType() ) );
 
     StepInjectionMetaEntry fieldsEntry = StepInjectionUtil.getEntry( Entry.FIELDS );
     list.add( fieldsEntry );
@@ -0,0 +1,189 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+import org.pentaho.di.core.compress.CompressionInputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Reads back a temporary (spill) file written by {@link SortRowsSpillWriter}.<br>
+ * <br>
+ * Every block is fetched with a single read into a buffer that is re-used for the whole file, then inflated in one go
+ * and the rows are de-serialized from memory. That keeps the number of I/O calls and codec invocations per row low
+ * during the merge phase, even with many files open at once.
+ */
+public class SortRowsSpillReader {
+  private RowMetaInterface rowMeta;
+  private RowMetaInterface fileRowMeta;
+  private CompressionProvider compressionProvider;
+
+  private DataInputStream fileStream;
+  private byte[] storedBuffer;
+  private byte[] rawBuffer;
+  private DataInputStream blockStream;
+  private int rowsLeftInBlock;
+  private boolean endOfFile;
+
+  /**
+   * Open a spill file and read its header.
+   *
+   * @param inputStream
+   *          the stream of the temporary file
+   * @param rowMeta
+   *          the metadata to read the rows with, it needs to have the same layout as the metadata in the header
+   * @throws KettleFileException
+   *           in case the file is not a valid sort file or the compression provider is not available
+   */
+  public SortRowsSpillReader( InputStream inputStream, RowMetaInterface rowMeta ) throws KettleFileException {
+    this.rowMeta = rowMeta;
+    fileStream = new DataInputStream( new BufferedInputStream( inputStream, 64 * 1024 ) );
+
+    String providerName;
+    try {
+      if ( fileStream.readInt() != SortRowsSpillWriter.MAGIC ) {
+        throw new KettleFileException( "This is not a sort file" );
+      }
+      int version = fileStream.readInt();
+      if ( version != SortRowsSpillWriter.VERSION ) {
+        throw new KettleFileException( "Unsupported sort file version: " + version );
+      }
+      providerName = fileStream.readUTF();
+      fileRowMeta = new RowMeta( fileStream );
+    } catch ( KettleFileException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleFileException( "Unable to read the header of the sort file", e );
+    }
+
+    if ( fileRowMeta.size() != rowMeta.size() ) {
+      throw new KettleFileException( "The sort file contains rows with "
+        + fileRowMeta.size() + " fields, expected " + rowMeta.size() );
+    }
+
+    if ( !SortRowsSpillWriter.NO_COMPRESSION.equals( providerName ) ) {
+      compressionProvider = CompressionProviderFactory.getInstance().getCompressionProviderByName( providerName );
+      if ( compressionProvider == null ) {
+        throw new KettleFileException( "Compression provider '" + providerName + "' of the sort file is not available" );
+      }
+    }
+  }
+
+  /**
+   * @return the row metadata stored in the file header
+   */
+  public RowMetaInterface getFileRowMeta() {
+    return fileRowMeta;
+  }
+
+  /**
+   * Read the next row from the file.
+   *
+   * @return the next row or null if there are no more rows in the file
+   * @throws KettleFileException
+   */
+  public Object[] getRow() throws KettleFileException {
+    if ( rowsLeftInBlock == 0 && !readBlock() ) {
+      return null;
+    }
+    try {
+      rowsLeftInBlock--;
+      return rowMeta.readData( blockStream );
+    } catch ( KettleEOFException e ) {
+      throw new KettleFileException( "Unexpected end of block in sort file", e );
+    } catch ( SocketTimeoutException e ) {
+      throw new KettleFileException( e ); // should never happen on local files
+    }
+  }
+
+  private boolean readBlock() throws KettleFileException {
+    if ( endOfFile ) {
+      return false;
+    }
+    try {
+      int rows = fileStream.readInt();
+      if ( rows == 0 ) {
+        endOfFile = true;
+        return false;
+      }
+      int rawLength = fileStream.readInt();
+      int length = fileStream.readInt();
+
+      storedBuffer = ensureCapacity( storedBuffer, length );
+      fileStream.readFully( storedBuffer, 0, length );
+
+      byte[] block;
+      if ( compressionProvider == null ) {
+        block = storedBuffer;
+      } else {
+        rawBuffer = ensureCapacity( rawBuffer, rawLength );
+        CompressionInputStream compressionStream =
+          compressionProvider.createInputStream( new ByteArrayInputStream( storedBuffer, 0, length ) );
+        int offset = 0;
+        while ( offset < rawLength ) {
+          int read = compressionStream.read( rawBuffer, offset, rawLength - offset );
+          if ( read < 0 ) {
+            throw new EOFException( "Compressed block in sort file is too short" );
+          }
+          offset += read;
+        }
+        compressionStream.close();
+        block = rawBuffer;
+      }
+
+      blockStream = new DataInputStream( new ByteArrayInputStream( block, 0, rawLength ) );
+      rowsLeftInBlock = rows;
+      return true;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to read a block from the sort file", e );
+    }
+  }
+
+  private static byte[] ensureCapacity( byte[] buffer, int length ) {
+    if ( buffer == null || buffer.length < length ) {
+      return new byte[length];
+    }
+    return buffer;
+  }
+
+  /**
+   * Close the file.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    fileStream.close();
+  }
+}
@@ -0,0 +1,181 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.pentaho.di.core.compress.CompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Writes sorted rows to a temporary (spill) file of the Sort Rows step.<br>
+ * <br>
+ * The file starts with a header: a magic number, the format version, the name of the compression provider used for
+ * the blocks and the row metadata. Then follow the blocks. Each block is framed by the number of rows it holds, its
+ * uncompressed size and its stored size, followed by the (compressed) serialized rows. A block with 0 rows marks the
+ * end of the file.<br>
+ * <br>
+ * Compressing blocks separately instead of the whole stream lets the reader fetch and inflate a block with a single
+ * read, and lets any provider of the CompressionProviderFactory be used, fast ones like Snappy in particular.
+ *
+ * @see SortRowsSpillReader
+ */
+public class SortRowsSpillWriter {
+  public static final int MAGIC = 0x4B534F52; // "KSOR"
+  public static final int VERSION = 1;
+
+  /** The name of the compression provider that leaves the blocks uncompressed */
+  public static final String NO_COMPRESSION = "None";
+
+  public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  /**
+   * A byte array output stream that gives access to its buffer so we don't have to copy it to write it.
+   */
+  static class BlockBuffer extends ByteArrayOutputStream {
+    BlockBuffer( int size ) {
+      super( size );
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  private RowMetaInterface rowMeta;
+  private CompressionProvider compressionProvider;
+  private int blockSize;
+
+  private DataOutputStream fileStream;
+  private BlockBuffer blockBuffer;
+  private DataOutputStream blockStream;
+  private BlockBuffer compressedBuffer;
+  private int rowsInBlock;
+
+  /**
+   * Create a new spill file writer and write the file header.
+   *
+   * @param outputStream
+   *          the stream of the temporary file
+   * @param rowMeta
+   *          the metadata of the rows to write
+   * @param compressionProvider
+   *          the provider to compress blocks with or null for no compression
+   * @param blockSize
+   *          the approximate number of uncompressed bytes per block
+   * @throws KettleFileException
+   *           in case the header can't be written
+   */
+  public SortRowsSpillWriter( OutputStream outputStream, RowMetaInterface rowMeta,
+    CompressionProvider compressionProvider, int blockSize ) throws KettleFileException {
+    this.rowMeta = rowMeta;
+    this.blockSize = blockSize;
+    if ( compressionProvider != null && !NO_COMPRESSION.equals( compressionProvider.getName() ) ) {
+      this.compressionProvider = compressionProvider;
+      this.compressedBuffer = new BlockBuffer( blockSize );
+    }
+
+    fileStream = new DataOutputStream( new BufferedOutputStream( outputStream, 64 * 1024 ) );
+    blockBuffer = new BlockBuffer( blockSize + blockSize / 8 );
+    blockStream = new DataOutputStream( blockBuffer );
+
+    try {
+      fileStream.writeInt( MAGIC );
+      fileStream.writeInt( VERSION );
+      fileStream.writeUTF( this.compressionProvider == null ? NO_COMPRESSION : this.compressionProvider.getName() );
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to write the header of the sort file", e );
+    }
+    rowMeta.writeMeta( fileStream );
+  }
+
+  /**
+   * Add a row to the current block, writing the block out once it is full.
+   *
+   * @param row
+   *          the row to write
+   * @throws KettleFileException
+   */
+  public void putRow( Object[] row ) throws KettleFileException {
+    rowMeta.writeData( blockStream, row );
+    rowsInBlock++;
+    if ( blockBuffer.size() >= blockSize ) {
+      writeBlock();
+    }
+  }
+
+  private void writeBlock() throws KettleFileException {
+    if ( rowsInBlock == 0 ) {
+      return;
+    }
+    try {
+      blockStream.flush();
+      int rawLength = blockBuffer.size();
+
+      byte[] payload;
+      int length;
+      if ( compressionProvider == null ) {
+        payload = blockBuffer.getBuffer();
+        length = rawLength;
+      } else {
+        compressedBuffer.reset();
+        CompressionOutputStream compressionStream = compressionProvider.createOutputStream( compressedBuffer );
+        compressionStream.write( blockBuffer.getBuffer(), 0, rawLength );
+        compressionStream.close();
+        payload = compressedBuffer.getBuffer();
+        length = compressedBuffer.size();
+      }
+
+      fileStream.writeInt( rowsInBlock );
+      fileStream.writeInt( rawLength );
+      fileStream.writeInt( length );
+      fileStream.write( payload, 0, length );
+
+      blockBuffer.reset();
+      rowsInBlock = 0;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to write a block to the sort file", e );
+    }
+  }
+
+  /**
+   * Write out the last block and the end marker, then close the file.
+   *
+   * @throws KettleFileException
+   */
+  public void close() throws KettleFileException {
+    writeBlock();
+    try {
+      fileStream.writeInt( 0 );
+      fileStream.close();
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to close the sort file", e );
+    }
+  }
+}
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.streamlookup;
 
+import java.io.File;
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.util.Collections;
@@ -33,6 +34,9 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.memory.MemoryBudgetManager;
+import org.pentaho.di.core.memory.RowSizeEstimator;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -218,6 +222,14 @@ public class StreamLookup extends BaseStep implements StepInterface {
       rowData = getRowFrom( rowSet );
     }
 
+    if ( data.diskIndex != null ) {
+      data.diskIndex.build();
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.LookupDataMapped", data.diskIndex.getRecords(),
+          data.diskIndex.getBytesMapped() / ( 1024 * 1024 ) ) );
+      }
+    }
+
     return true;
   }
 
@@ -293,8 +305,43 @@ public class StreamLookup extends BaseStep implements StepInterface {
     return RowDataUtil.addRowData( row, rowMeta.size(), add );
   }
 
+  /**
+   * The lookup data can't be written to disk, but we let the memory budget know how much memory it takes. That makes
+   * other steps spill sooner and lets us warn before we run out of memory.
+   */
+  private void claimMemory( RowMetaInterface keyMeta, Object[] keyData, RowMetaInterface valueMeta,
+    Object[] valueData ) {
+    if ( data.memoryReservation == null ) {
+      return;
+    }
+    data.unclaimedBytes +=
+      RowSizeEstimator.estimateRowSize( keyMeta, keyData ) + RowSizeEstimator.estimateRowSize( valueMeta, valueData )
+        + RowSizeEstimator.HASH_MAP_ENTRY;
+    data.memoryCounter++;
+    if ( data.memoryCounter >= 1000 ) {
+      boolean withinBudget = data.memoryReservation.claim( data.unclaimedBytes );
+      if ( !withinBudget && !data.memoryWarningLogged ) {
+        logBasic( BaseMessages.getString( PKG, "StreamLookup.Log.MemoryBudgetExceeded", data.memoryReservation
+          .getReservedBytes() / ( 1024 * 1024 ) ) );
+        data.memoryWarningLogged = true;
+      }
+      data.unclaimedBytes = 0;
+      data.memoryCounter = 0;
+    }
+  }
+
   private void addToCache( RowMetaInterface keyMeta, Object[] keyData, RowMetaInterface valueMeta,
-    Object[] valueData ) throws KettleValueException {
+    Object[] valueData ) throws KettleException {
+    if ( meta.isUsingDiskStorage() ) {
+      if ( data.diskIndex == null ) {
+        File directory = new File( getVariable( "java.io.tmpdir", System.getProperty( "java.io.tmpdir" ) ) );
+        data.diskIndex = new StreamLookupDiskIndex( directory, meta.getHotCacheSize() );
+      }
+      data.diskIndex.add( RowMeta.extractData( keyMeta, keyData ), RowMeta.extractData( valueMeta, valueData ) );
+      return;
+    }
+
+    claimMemory( keyMeta, keyData, valueMeta, valueData );
     if ( meta.isMemoryPreservationActive() ) {
       if ( meta.isUsingSortedList() ) {
         KeyValue keyValue = new KeyValue( keyData, valueData );
@@ -323,7 +370,7 @@ public class StreamLookup extends BaseStep implements StepInterface {
           data.longIndex.put( key, value );
         } else {
           if ( data.hashIndex == null ) {
-            data.hashIndex = new ByteArrayHashIndex( keyMeta );
+            data.hashIndex = new ByteArrayHashIndex( keyMeta, Const.ROWS_IN_ROWSET, data.offHeapCache );
           }
           data.hashIndex
             .put( RowMeta.extractData( keyMeta, keyData ), RowMeta.extractData( valueMeta, valueData ) );
@@ -337,6 +384,17 @@ public class StreamLookup extends BaseStep implements StepInterface {
   }
 
   private Object[] getFromCache( RowMetaInterface keyMeta, Object[] keyData ) throws KettleValueException {
+    if ( meta.isUsingDiskStorage() ) {
+      if ( data.diskIndex == null ) {
+        return null; // nothing was read from the lookup stream
+      }
+      byte[] value = data.diskIndex.get( RowMeta.extractData( keyMeta, keyData ) );
+      if ( value == null ) {
+        return null;
+      }
+      return RowMeta.getRow( data.cacheValueMeta, value );
+    }
+
     if ( meta.isMemoryPreservationActive() ) {
       if ( meta.isUsingSortedList() ) {
         KeyValue keyValue = new KeyValue( keyData, null );
@@ -355,6 +413,9 @@ public class StreamLookup extends BaseStep implements StepInterface {
           }
           return new Object[] { value, };
         } else {
+          if ( data.hashIndex == null ) {
+            return null; // nothing was read from the lookup stream
+          }
           try {
             byte[] value = data.hashIndex.get( RowMeta.extractData( keyMeta, keyData ) );
             if ( value == null ) {
@@ -398,6 +459,7 @@ public class StreamLookup extends BaseStep implements StepInterface {
         logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.StoppedProcessingWithEmpty", getLinesRead()
           + "" ) );
       }
+      reportDiskIndexMetrics();
       setOutputDone();
       return false;
     }
@@ -461,12 +523,34 @@ public class StreamLookup extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Report the hit ratio of the hot key cache and the size of the mapped files when the lookup data is on disk.
+   */
+  private void reportDiskIndexMetrics() {
+    if ( data.diskIndex == null ) {
+      return;
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.DiskIndexStatistics", data.diskIndex.getHits(),
+        data.diskIndex.getMisses(), data.diskIndex.getHitPercentage() ) );
+    }
+    if ( isGatheringMetrics() ) {
+      log.snap( Metrics.METRIC_STREAM_LOOKUP_CACHE_HIT_RATIO, data.diskIndex.getHitPercentage() );
+      log.snap( Metrics.METRIC_STREAM_LOOKUP_BYTES_MAPPED, data.diskIndex.getBytesMapped() );
+    }
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (StreamLookupMeta) smi;
     data = (StreamLookupData) sdi;
 
     if ( super.init( smi, sdi ) ) {
       data.readLookupValues = true;
+      data.offHeapCache = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_LOOKUP_CACHE_OFF_HEAP, "N" ) );
+      if ( !meta.isUsingDiskStorage() ) {
+        data.memoryReservation =
+          MemoryBudgetManager.getInstance().register( getLogChannelId(), getStepname() + "." + getCopy() );
+      }
 
       return true;
     }
@@ -479,8 +563,19 @@ public class StreamLookup extends BaseStep implements StepInterface {
     //
     data.look = null;
     data.list = null;
-    data.hashIndex = null;
+    if ( data.hashIndex != null ) {
+      data.hashIndex.clear();
+      data.hashIndex = null;
+    }
     data.longIndex = null;
+    if ( data.diskIndex != null ) {
+      data.diskIndex.close();
+      data.diskIndex = null;
+    }
+    if ( data.memoryReservation != null ) {
+      data.memoryReservation.close();
+      data.memoryReservation = null;
+    }
 
     super.dispose( smi, sdi );
   }
@@ -32,6 +32,7 @@ import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
 import org.pentaho.di.core.hash.LongHashIndex;
+import org.pentaho.di.core.memory.MemoryReservation;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -74,6 +75,12 @@ public class StreamLookupData extends BaseStepData implements StepDataInterface
   public ByteArrayHashIndex hashIndex;
   public LongHashIndex longIndex;
 
+  /** Store the keys and values of the hash index outside of the heap */
+  public boolean offHeapCache;
+
+  /** The lookup data in memory-mapped files, if it is stored on disk */
+  public StreamLookupDiskIndex diskIndex;
+
   public RowMetaInterface lookupMeta;
 
   public RowMetaInterface infoMeta;
@@ -90,6 +97,11 @@ public class StreamLookupData extends BaseStepData implements StepDataInterface
 
   public StreamInterface infoStream;
 
+  public MemoryReservation memoryReservation;
+  public long unclaimedBytes;
+  public int memoryCounter;
+  public boolean memoryWarningLogged;
+
   public StreamLookupData() {
     super();
     look = new HashMap<RowMetaAndData, Object[]>();
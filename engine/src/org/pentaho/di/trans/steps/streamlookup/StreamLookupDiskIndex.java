@@ -0,0 +1,465 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.streamlookup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleFileException;
+
+/**
+ * Keeps the lookup data of the Stream Lookup step in memory-mapped files instead of on the heap.<br>
+ * <br>
+ * While the lookup stream is read the serialized keys and values are appended to a data file. Once all the lookup rows
+ * are read, {@link #build()} maps the data file and creates an open addressing hash table of file offsets in a second
+ * mapped file. The operating system pages the data in and out as needed, so the lookup data can be much larger than
+ * the heap: lookups become slower instead of failing. A bounded LRU cache of the most recently used keys is kept in
+ * front of the mapped files.
+ */
+public class StreamLookupDiskIndex {
+  public static final int DEFAULT_HOT_CACHE_SIZE = 10000;
+
+  /** The files are mapped in segments of this size, a single mapping can't be larger than 2GB */
+  static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+  private static final int RECORD_HEADER = 8;
+  private static final int SKIP_MARKER = -1;
+
+  /** A slot in the hash table holds the top 24 bits of the hash code and the data file offset + 1 (0 is empty) */
+  private static final int OFFSET_BITS = 40;
+  private static final long OFFSET_MASK = ( 1L << OFFSET_BITS ) - 1;
+
+  private static final byte[] NOT_FOUND = new byte[0];
+
+  private final long segmentSize;
+  private final int segmentShift;
+  private final int hotCacheSize;
+
+  private File dataFile;
+  private File indexFile;
+  private DataOutputStream dataOutputStream;
+  private long dataLength;
+  private long records;
+
+  private RandomAccessFile dataRandomAccessFile;
+  private RandomAccessFile indexRandomAccessFile;
+  private MappedByteBuffer[] dataSegments;
+  private MappedByteBuffer[] indexSegments;
+  private long mask;
+  private int slotShift;
+  private long slotMask;
+
+  private Map<HotKey, byte[]> hotCache;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param directory
+   *          the directory to create the files in
+   * @param hotCacheSize
+   *          the maximum number of keys to keep in the LRU cache, 0 to disable it
+   * @throws KettleFileException
+   *           in case the data file can't be created
+   */
+  public StreamLookupDiskIndex( File directory, int hotCacheSize ) throws KettleFileException {
+    this( directory, hotCacheSize, DEFAULT_SEGMENT_SIZE );
+  }
+
+  StreamLookupDiskIndex( File directory, final int hotCacheSize, long segmentSize ) throws KettleFileException {
+    if ( Long.bitCount( segmentSize ) != 1 || segmentSize < RECORD_HEADER || segmentSize > DEFAULT_SEGMENT_SIZE ) {
+      throw new IllegalArgumentException( "The segment size has to be a power of 2 of at most 1GB: " + segmentSize );
+    }
+    this.segmentSize = segmentSize;
+    this.segmentShift = Long.numberOfTrailingZeros( segmentSize );
+    this.hotCacheSize = hotCacheSize;
+    this.hotCache = new LinkedHashMap<HotKey, byte[]>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<HotKey, byte[]> eldest ) {
+        return size() > hotCacheSize;
+      }
+    };
+
+    try {
+      dataFile = File.createTempFile( "streamlookup", ".dat", directory );
+      dataOutputStream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dataFile ), 500000 ) );
+    } catch ( IOException e ) {
+      close();
+      throw new KettleFileException( "Unable to create the stream lookup data file in directory " + directory, e );
+    }
+  }
+
+  /**
+   * Append a key and its value to the data file. If the same key is added more than once, the last value is used.
+   *
+   * @param key
+   *          the serialized key
+   * @param value
+   *          the serialized value
+   * @throws KettleFileException
+   *           in case the data can't be written
+   */
+  public void add( byte[] key, byte[] value ) throws KettleFileException {
+    if ( dataOutputStream == null ) {
+      throw new IllegalStateException( "The stream lookup index is already built" );
+    }
+    long length = RECORD_HEADER + key.length + value.length;
+    if ( length > segmentSize ) {
+      throw new KettleFileException( "A stream lookup row of " + length + " bytes is too large to store on disk" );
+    }
+    try {
+      // A record never spans two segments: skip to the next segment if it doesn't fit.
+      //
+      long remaining = segmentSize - ( dataLength & ( segmentSize - 1 ) );
+      if ( length > remaining ) {
+        long skip = remaining;
+        if ( skip >= 4 ) {
+          dataOutputStream.writeInt( SKIP_MARKER );
+          skip -= 4;
+        }
+        byte[] zeros = new byte[(int) Math.min( skip, 8192 )];
+        while ( skip > 0 ) {
+          int size = (int) Math.min( skip, zeros.length );
+          dataOutputStream.write( zeros, 0, size );
+          skip -= size;
+        }
+        dataLength += remaining;
+      }
+      if ( dataLength + length > OFFSET_MASK ) {
+        throw new KettleFileException( "The stream lookup data file can't be larger than " + OFFSET_MASK + " bytes" );
+      }
+
+      dataOutputStream.writeInt( key.length );
+      dataOutputStream.writeInt( value.length );
+      dataOutputStream.write( key );
+      dataOutputStream.write( value );
+      dataLength += length;
+      records++;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to write to the stream lookup data file " + dataFile, e );
+    }
+  }
+
+  /**
+   * Map the data file and build the hash table. No more keys can be added afterwards.
+   *
+   * @throws KettleFileException
+   *           in case the files can't be mapped
+   */
+  public void build() throws KettleFileException {
+    try {
+      dataOutputStream.close();
+      dataOutputStream = null;
+
+      dataRandomAccessFile = new RandomAccessFile( dataFile, "r" );
+      dataSegments = map( dataRandomAccessFile.getChannel(), FileChannel.MapMode.READ_ONLY, dataLength );
+
+      long capacity = 16;
+      while ( capacity * 7 / 10 <= records ) {
+        capacity <<= 1;
+      }
+      mask = capacity - 1;
+      slotShift = segmentShift - 3;
+      slotMask = ( 1L << slotShift ) - 1;
+
+      indexFile = File.createTempFile( "streamlookup", ".idx", dataFile.getParentFile() );
+      indexRandomAccessFile = new RandomAccessFile( indexFile, "rw" );
+      indexRandomAccessFile.setLength( capacity * 8 );
+      indexSegments = map( indexRandomAccessFile.getChannel(), FileChannel.MapMode.READ_WRITE, capacity * 8 );
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to map the stream lookup data file " + dataFile, e );
+    }
+
+    long position = 0;
+    while ( position < dataLength ) {
+      int segment = (int) ( position >>> segmentShift );
+      int offset = (int) ( position & ( segmentSize - 1 ) );
+      MappedByteBuffer buffer = dataSegments[segment];
+      if ( buffer.limit() - offset < RECORD_HEADER || buffer.getInt( offset ) == SKIP_MARKER ) {
+        position = (long) ( segment + 1 ) << segmentShift;
+        continue;
+      }
+      int keyLength = buffer.getInt( offset );
+      int valueLength = buffer.getInt( offset + 4 );
+      insert( position, hash( buffer, offset + RECORD_HEADER, keyLength ), buffer, offset + RECORD_HEADER, keyLength );
+      position += RECORD_HEADER + keyLength + valueLength;
+    }
+  }
+
+  private MappedByteBuffer[] map( FileChannel channel, FileChannel.MapMode mode, long length ) throws IOException {
+    int nrSegments = (int) ( ( length + segmentSize - 1 ) >>> segmentShift );
+    MappedByteBuffer[] segments = new MappedByteBuffer[nrSegments];
+    for ( int i = 0; i < nrSegments; i++ ) {
+      long start = (long) i << segmentShift;
+      segments[i] = channel.map( mode, start, Math.min( segmentSize, length - start ) );
+    }
+    return segments;
+  }
+
+  private void insert( long position, int hash, MappedByteBuffer buffer, int keyOffset, int keyLength ) {
+    long tag = tag( hash );
+    long slot = ( hash & 0xffffffffL ) & mask;
+    while ( true ) {
+      long entry = getSlot( slot );
+      if ( entry == 0L ) {
+        setSlot( slot, tag | ( position + 1 ) );
+        return;
+      }
+      if ( ( entry & ~OFFSET_MASK ) == tag ) {
+        MappedByteBuffer other = dataSegment( entry );
+        int otherOffset = dataOffset( entry );
+        if ( other.getInt( otherOffset ) == keyLength ) {
+          boolean equal = true;
+          for ( int i = 0; i < keyLength && equal; i++ ) {
+            equal = other.get( otherOffset + RECORD_HEADER + i ) == buffer.get( keyOffset + i );
+          }
+          if ( equal ) {
+            setSlot( slot, tag | ( position + 1 ) ); // the last value wins, like a hash map
+            return;
+          }
+        }
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+  }
+
+  /**
+   * Look up the value of a key, first in the LRU cache, then in the mapped files.
+   *
+   * @param key
+   *          the serialized key
+   * @return the serialized value or null if the key wasn't found
+   */
+  public byte[] get( byte[] key ) {
+    if ( dataSegments == null ) {
+      throw new IllegalStateException( "The stream lookup index isn't built yet" );
+    }
+    HotKey hotKey = null;
+    if ( hotCacheSize > 0 ) {
+      hotKey = new HotKey( key );
+      byte[] value = hotCache.get( hotKey );
+      if ( value != null ) {
+        hits++;
+        return value == NOT_FOUND ? null : value;
+      }
+    }
+    misses++;
+
+    byte[] value = find( key );
+    if ( hotKey != null ) {
+      hotCache.put( hotKey, value == null ? NOT_FOUND : value );
+    }
+    return value;
+  }
+
+  private byte[] find( byte[] key ) {
+    int hash = hash( key );
+    long tag = tag( hash );
+    long slot = ( hash & 0xffffffffL ) & mask;
+    while ( true ) {
+      long entry = getSlot( slot );
+      if ( entry == 0L ) {
+        return null;
+      }
+      if ( ( entry & ~OFFSET_MASK ) == tag ) {
+        MappedByteBuffer buffer = dataSegment( entry );
+        int offset = dataOffset( entry );
+        if ( buffer.getInt( offset ) == key.length ) {
+          boolean equal = true;
+          for ( int i = 0; i < key.length && equal; i++ ) {
+            equal = buffer.get( offset + RECORD_HEADER + i ) == key[i];
+          }
+          if ( equal ) {
+            byte[] value = new byte[buffer.getInt( offset + 4 )];
+            for ( int i = 0; i < value.length; i++ ) {
+              value[i] = buffer.get( offset + RECORD_HEADER + key.length + i );
+            }
+            return value;
+          }
+        }
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+  }
+
+  private long getSlot( long slot ) {
+    return indexSegments[(int) ( slot >>> slotShift )].getLong( (int) ( slot & slotMask ) << 3 );
+  }
+
+  private void setSlot( long slot, long entry ) {
+    indexSegments[(int) ( slot >>> slotShift )].putLong( (int) ( slot & slotMask ) << 3, entry );
+  }
+
+  private MappedByteBuffer dataSegment( long entry ) {
+    return dataSegments[(int) ( ( ( entry & OFFSET_MASK ) - 1 ) >>> segmentShift )];
+  }
+
+  private int dataOffset( long entry ) {
+    return (int) ( ( ( entry & OFFSET_MASK ) - 1 ) & ( segmentSize - 1 ) );
+  }
+
+  private static long tag( int hash ) {
+    return (long) ( hash >>> 8 ) << OFFSET_BITS;
+  }
+
+  private static int hash( byte[] key ) {
+    int hash = 1;
+    for ( int i = 0; i < key.length; i++ ) {
+      hash = 31 * hash + key[i];
+    }
+    return mix( hash );
+  }
+
+  private static int hash( MappedByteBuffer buffer, int offset, int length ) {
+    int hash = 1;
+    for ( int i = 0; i < length; i++ ) {
+      hash = 31 * hash + buffer.get( offset + i );
+    }
+    return mix( hash );
+  }
+
+  private static int mix( int hash ) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  /**
+   * Close and delete the files. The mappings themselves are released once they are garbage collected.
+   */
+  public void close() {
+    hotCache.clear();
+    dataSegments = null;
+    indexSegments = null;
+    try {
+      if ( dataOutputStream != null ) {
+        dataOutputStream.close();
+        dataOutputStream = null;
+      }
+    } catch ( IOException e ) {
+      // Ignore errors, we're cleaning up
+    }
+    closeQuietly( dataRandomAccessFile );
+    dataRandomAccessFile = null;
+    closeQuietly( indexRandomAccessFile );
+    indexRandomAccessFile = null;
+    delete( dataFile );
+    dataFile = null;
+    delete( indexFile );
+    indexFile = null;
+  }
+
+  private static void closeQuietly( RandomAccessFile file ) {
+    try {
+      if ( file != null ) {
+        file.close();
+      }
+    } catch ( IOException e ) {
+      // Ignore errors, we're cleaning up
+    }
+  }
+
+  private static void delete( File file ) {
+    // On some platforms a file can't be deleted while it's still mapped
+    //
+    if ( file != null && !file.delete() ) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * @return the number of keys and values added, including the duplicates
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * @return the number of bytes of the data and index files mapped in memory
+   */
+  public long getBytesMapped() {
+    long bytes = 0L;
+    if ( dataSegments != null ) {
+      bytes += dataLength;
+    }
+    if ( indexSegments != null ) {
+      bytes += ( mask + 1 ) * 8;
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the number of lookups answered by the LRU cache
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that had to go to the mapped files
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the percentage of lookups answered by the LRU cache
+   */
+  public long getHitPercentage() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0L : hits * 100 / lookups;
+  }
+
+  private static final class HotKey {
+    private final byte[] key;
+    private final int hashCode;
+
+    HotKey( byte[] key ) {
+      this.key = key;
+      this.hashCode = Arrays.hashCode( key );
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      return obj instanceof HotKey && Arrays.equals( key, ( (HotKey) obj ).key );
+    }
+  }
+}
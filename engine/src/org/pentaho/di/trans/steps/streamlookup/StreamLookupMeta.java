@@ -89,6 +89,12 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
   /** The content of the key and lookup is a single Integer (long) */
   private boolean usingIntegerPair;
 
+  /** Keep the lookup data in memory-mapped files instead of on the heap */
+  private boolean usingDiskStorage;
+
+  /** The number of recently used keys to keep on the heap when the lookup data is stored on disk */
+  private int hotCacheSize;
+
   public StreamLookupMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -120,6 +126,9 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preserve_memory" ) ) );
       setUsingSortedList( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "sorted_list" ) ) );
       setUsingIntegerPair( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "integer_pair" ) ) );
+      setUsingDiskStorage( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "disk_storage" ) ) );
+      setHotCacheSize( Const.toInt(
+        XMLHandler.getTagValue( stepnode, "hot_cache_size" ), StreamLookupDiskIndex.DEFAULT_HOT_CACHE_SIZE ) );
 
       Node lookup = XMLHandler.getSubNode( stepnode, "lookup" );
       nrkeys = XMLHandler.countNodes( lookup, "key" );
@@ -166,6 +175,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     setMemoryPreservationActive( true );
     setUsingSortedList( false );
     setUsingIntegerPair( false );
+    setUsingDiskStorage( false );
+    setHotCacheSize( StreamLookupDiskIndex.DEFAULT_HOT_CACHE_SIZE );
 
     allocate( 0, 0 );
   }
@@ -207,6 +218,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     retval.append( "    " ).append( XMLHandler.addTagValue( "preserve_memory", isMemoryPreservationActive() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sorted_list", isUsingSortedList() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "integer_pair", isUsingIntegerPair() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "disk_storage", isUsingDiskStorage() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "hot_cache_size", getHotCacheSize() ) );
 
     retval.append( "    <lookup>" ).append( Const.CR );
     for ( int i = 0; i < getKeystream().length; i++ ) {
@@ -240,6 +253,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( rep.getStepAttributeBoolean( id_step, "preserve_memory" ) );
       setUsingSortedList( rep.getStepAttributeBoolean( id_step, "sorted_list" ) );
       setUsingIntegerPair( rep.getStepAttributeBoolean( id_step, "integer_pair" ) );
+      setUsingDiskStorage( rep.getStepAttributeBoolean( id_step, "disk_storage" ) );
+      setHotCacheSize( (int) rep.getStepAttributeInteger( id_step, "hot_cache_size" ) );
 
       int nrkeys = rep.countNrStepAttributes( id_step, "lookup_key_name" );
       int nrvalues = rep.countNrStepAttributes( id_step, "return_value_name" );
@@ -275,6 +290,8 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       rep.saveStepAttribute( id_transformation, id_step, "preserve_memory", isMemoryPreservationActive() );
       rep.saveStepAttribute( id_transformation, id_step, "sorted_list", isUsingSortedList() );
       rep.saveStepAttribute( id_transformation, id_step, "integer_pair", isUsingIntegerPair() );
+      rep.saveStepAttribute( id_transformation, id_step, "disk_storage", isUsingDiskStorage() );
+      rep.saveStepAttribute( id_transformation, id_step, "hot_cache_size", getHotCacheSize() );
 
       for ( int i = 0; i < getKeystream().length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "lookup_key_name", getKeystream()[i] );
@@ -608,4 +625,34 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
   public void setUsingIntegerPair( boolean usingIntegerPair ) {
     this.usingIntegerPair = usingIntegerPair;
   }
+
+  /**
+   * @return true if the lookup data is kept in memory-mapped files instead of on the heap
+   */
+  public boolean isUsingDiskStorage() {
+    return usingDiskStorage;
+  }
+
+  /**
+   * @param usingDiskStorage
+   *          true to keep the lookup data in memory-mapped files instead of on the heap
+   */
+  public void setUsingDiskStorage( boolean usingDiskStorage ) {
+    this.usingDiskStorage = usingDiskStorage;
+  }
+
+  /**
+   * @return the number of recently used keys kept on the heap when the lookup data is stored on disk
+   */
+  public int getHotCacheSize() {
+    return hotCacheSize;
+  }
+
+  /**
+   * @param hotCacheSize
+   *          the number of recently used keys kept on the heap when the lookup data is stored on disk, 0 to disable
+   */
+  public void setHotCacheSize( int hotCacheSize ) {
+    this.hotCacheSize = hotCacheSize;
+  }
 }
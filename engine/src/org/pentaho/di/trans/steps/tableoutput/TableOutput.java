@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.tableoutput;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -58,6 +59,8 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class TableOutput extends BaseStep implements StepInterface {
   private static Class<?> PKG = TableOutputMeta.class; // for i18n purposes, needed by Translator2!!
 
+  private static final int MAX_INITIAL_BATCH_CAPACITY = 10000;
+
   private TableOutputMeta meta;
   private TableOutputData data;
 
@@ -70,9 +73,19 @@ public class TableOutput extends BaseStep implements StepInterface {
     meta = (TableOutputMeta) smi;
     data = (TableOutputData) sdi;
 
-    Object[] r = getRow(); // this also waits for a previous step to be finished.
-    if ( r == null ) { // no more input to be expected...
+    long previousLinesRead = getLinesRead();
+    List<Object[]> rows = getRows( Const.ROWS_IN_CHUNK ); // this also waits for a previous step to be finished.
+    if ( rows == null ) { // no more input to be expected...
 
+      if ( data.batchWriter != null ) {
+        try {
+          finishBatchWriter();
+        } catch ( KettleException e ) {
+          logError( "Because of an error, this step can't continue: ", e );
+          setErrors( 1 );
+          stopAll();
+        }
+      }
       return false;
     }
 
@@ -115,13 +128,21 @@ public class TableOutput extends BaseStep implements StepInterface {
     }
 
     try {
-      Object[] outputRowData = writeToTable( getInputRowMeta(), r );
-      if ( outputRowData != null ) {
-        putRow( data.outputRowMeta, outputRowData ); // in case we want it go further...
-        incrementLinesOutput();
+      if ( data.asyncWrite ) {
+        writeToTableAsync( rows );
+      } else {
+        List<Object[]> outputRows = new ArrayList<Object[]>( rows.size() );
+        for ( Object[] r : rows ) {
+          Object[] outputRowData = writeToTable( getInputRowMeta(), r );
+          if ( outputRowData != null ) {
+            outputRows.add( outputRowData );
+            incrementLinesOutput();
+          }
+        }
+        putRows( data.outputRowMeta, outputRows ); // in case we want it go further...
       }
 
-      if ( checkFeedback( getLinesRead() ) ) {
+      if ( checkFeedback( previousLinesRead, getLinesRead() ) ) {
         if ( log.isBasic() ) {
           logBasic( "linenr " + getLinesRead() );
         }
@@ -330,16 +351,7 @@ public class TableOutput extends BaseStep implements StepInterface {
       } else {
         data.db.clearBatch( insertStatement );
         data.db.rollback();
-        StringBuffer msg = new StringBuffer( "Error batch inserting rows into table [" + tableName + "]." );
-        msg.append( Const.CR );
-        msg.append( "Errors encountered (first 10):" ).append( Const.CR );
-        for ( int x = 0; x < be.getExceptionsList().size() && x < 10; x++ ) {
-          Exception exception = be.getExceptionsList().get( x );
-          if ( exception.getMessage() != null ) {
-            msg.append( exception.getMessage() ).append( Const.CR );
-          }
-        }
-        throw new KettleException( msg.toString(), be );
+        throw new KettleException( getBatchErrorMessage( tableName, be ), be );
       }
     } catch ( KettleDatabaseException dbe ) {
       if ( getStepMeta().isDoingErrorHandling() ) {
@@ -403,9 +415,8 @@ public class TableOutput extends BaseStep implements StepInterface {
 
         if ( rowIsSafe ) // A commit was done and the rows are all safe (no error)
         {
+          putRows( data.outputRowMeta, data.batchBuffer );
           for ( int i = 0; i < data.batchBuffer.size(); i++ ) {
-            Object[] row = data.batchBuffer.get( i );
-            putRow( data.outputRowMeta, row );
             incrementLinesOutput();
           }
           // Clear the buffer
@@ -422,6 +433,117 @@ public class TableOutput extends BaseStep implements StepInterface {
     return outputRowData;
   }
 
+  /**
+   * Hand the rows over to the batch writer thread. The rows are passed on once the writer committed them.
+   *
+   * @param rows
+   *          the input rows
+   * @throws KettleException
+   *           in case writing a batch failed without error handling
+   */
+  protected void writeToTableAsync( List<Object[]> rows ) throws KettleException {
+    if ( data.batchWriter == null ) {
+      startBatchWriter();
+    }
+
+    for ( Object[] r : rows ) {
+      Object[] insertRowData = r;
+      if ( meta.specifyFields() ) {
+        insertRowData = new Object[data.valuenrs.length];
+        for ( int idx = 0; idx < data.valuenrs.length; idx++ ) {
+          insertRowData[idx] = r[data.valuenrs[idx]];
+        }
+      }
+      data.batch.addRow( insertRowData, r );
+
+      if ( data.batch.size() >= data.commitSize ) {
+        data.batchWriter.submit( data.batch );
+        data.batch = new TableOutputBatchWriter.Batch( Math.min( data.commitSize, MAX_INITIAL_BATCH_CAPACITY ) );
+      }
+    }
+
+    processWrittenBatches( data.batchWriter );
+  }
+
+  private void startBatchWriter() throws KettleException {
+    PreparedStatement insertStatement = data.preparedStatements.get( data.tableName );
+    if ( insertStatement == null ) {
+      String sql =
+        data.db.getInsertStatement(
+          environmentSubstitute( meta.getSchemaName() ), data.tableName, data.insertRowMeta );
+      if ( log.isDetailed() ) {
+        logDetailed( "Prepared statement : " + sql );
+      }
+      insertStatement = data.db.prepareSQL( sql );
+      data.preparedStatements.put( data.tableName, insertStatement );
+    }
+
+    data.batch = new TableOutputBatchWriter.Batch( Math.min( data.commitSize, MAX_INITIAL_BATCH_CAPACITY ) );
+    data.batchWriter =
+      new TableOutputBatchWriter(
+        data.db, insertStatement, data.insertRowMeta, getStepMeta().isDoingErrorHandling() );
+    data.batchWriter.start( getStepname() + "." + getCopy() + " - batch writer" );
+  }
+
+  /**
+   * Write the last batch, wait for the writer thread to finish and pass on the remaining rows.
+   *
+   * @throws KettleException
+   *           in case writing a batch failed without error handling
+   */
+  private void finishBatchWriter() throws KettleException {
+    TableOutputBatchWriter batchWriter = data.batchWriter;
+    data.batchWriter = null;
+
+    if ( data.batch.size() > 0 ) {
+      batchWriter.submit( data.batch );
+    }
+    data.batch = null;
+    batchWriter.finish();
+    processWrittenBatches( batchWriter );
+  }
+
+  /**
+   * Pass on the rows of the batches that were committed, send the rows of failed batches to error handling.
+   */
+  private void processWrittenBatches( TableOutputBatchWriter batchWriter ) throws KettleException {
+    TableOutputBatchWriter.Batch batch = batchWriter.nextCompleted();
+    while ( batch != null ) {
+      KettleDatabaseBatchException be = batch.getException();
+      if ( !batch.isWritten() ) {
+        // Skipped after an earlier batch failed, the error is already reported
+        if ( log.isDetailed() ) {
+          logDetailed( "Skipped a batch of " + batch.size() + " rows after an earlier error" );
+        }
+      } else if ( be == null ) {
+        putRows( data.outputRowMeta, batch.getOutputRows() );
+        for ( int i = 0; i < batch.size(); i++ ) {
+          incrementLinesOutput();
+        }
+      } else if ( getStepMeta().isDoingErrorHandling() ) {
+        data.batchBuffer.addAll( batch.getOutputRows() );
+        processBatchException( be.toString(), be.getUpdateCounts(), be.getExceptionsList() );
+      } else {
+        throw new KettleException( getBatchErrorMessage( data.tableName, be ), be );
+      }
+      batch = batchWriter.nextCompleted();
+    }
+  }
+
+  private String getBatchErrorMessage( String tableName, KettleDatabaseBatchException be ) {
+    StringBuffer msg = new StringBuffer( "Error batch inserting rows into table [" + tableName + "]." );
+    msg.append( Const.CR );
+    msg.append( "Errors encountered (first 10):" ).append( Const.CR );
+    List<Exception> exceptions = be.getExceptionsList();
+    for ( int x = 0; exceptions != null && x < exceptions.size() && x < 10; x++ ) {
+      Exception exception = exceptions.get( x );
+      if ( exception.getMessage() != null ) {
+        msg.append( exception.getMessage() ).append( Const.CR );
+      }
+    }
+    return msg.toString();
+  }
+
   private void processBatchException( String errorMessage, int[] updateCounts, List<Exception> exceptionsList ) throws KettleException {
     // There was an error with the commit
     // We should put all the failing rows out there...
@@ -492,6 +614,15 @@ public class TableOutput extends BaseStep implements StepInterface {
             && data.commitSize > 0 && !meta.isReturningGeneratedKeys()
             && !getTransMeta().isUsingUniqueConnections() && !data.useSafePoints;
 
+        // The batches can be executed in a separate thread while the next batch is filled, as long as all the rows go
+        // to the same table.
+        //
+        data.asyncWrite =
+          meta.isAsyncWrite() && data.batchMode && !meta.isTableNameInField() && !meta.isPartitioningEnabled();
+        if ( meta.isAsyncWrite() && !data.asyncWrite ) {
+          logBasic( BaseMessages.getString( PKG, "TableOutput.Log.AsyncWriteNotPossible" ) );
+        }
+
         // Per PDI-6211 : give a warning that batch mode operation in combination with step error handling can lead to
         // incorrectly processed rows.
         //
@@ -558,6 +689,17 @@ public class TableOutput extends BaseStep implements StepInterface {
 
     if ( data.db != null ) {
       try {
+        if ( data.batchWriter != null ) {
+          // We stopped before the end of the input: commit what we have, like in batch mode
+          //
+          if ( getErrors() == 0 ) {
+            finishBatchWriter();
+          } else {
+            data.batchWriter.abort();
+            data.batchWriter = null;
+          }
+        }
+
         for ( String schemaTable : data.preparedStatements.keySet() ) {
           // Get a commit counter per prepared statement to keep track of separate tables, etc.
           //
@@ -0,0 +1,281 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseBatchException;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Executes and commits the batches of the Table Output step in a separate thread.<br>
+ * <br>
+ * The step thread fills a batch with rows and submits it. While the writer thread sets the values, executes the batch
+ * and commits, the step fills the next batch, so the step keeps reading rows during the database round trips. At most
+ * one batch waits to be written, which limits the memory used and slows the step down to the pace of the database.<br>
+ * <br>
+ * The written batches come back to the step thread in the order they were submitted. The step passes the rows on or,
+ * when the batch failed, sends them to error handling using the update counts of the batch. From the moment the writer
+ * is started until it is finished, the writer thread is the only one using the database connection and the prepared
+ * statement.
+ */
+public class TableOutputBatchWriter implements Runnable {
+
+  /**
+   * A batch of rows written in one transaction.
+   */
+  public static class Batch {
+    private final List<Object[]> insertRows;
+    private final List<Object[]> outputRows;
+
+    private boolean written;
+    private KettleDatabaseBatchException exception;
+
+    public Batch( int size ) {
+      insertRows = new ArrayList<Object[]>( size );
+      outputRows = new ArrayList<Object[]>( size );
+    }
+
+    /**
+     * @param insertRow
+     *          the values to insert, in the order of the insert row metadata
+     * @param outputRow
+     *          the row to pass on to the next steps once the insert row is committed
+     */
+    public void addRow( Object[] insertRow, Object[] outputRow ) {
+      insertRows.add( insertRow );
+      outputRows.add( outputRow );
+    }
+
+    public int size() {
+      return insertRows.size();
+    }
+
+    public List<Object[]> getInsertRows() {
+      return insertRows;
+    }
+
+    public List<Object[]> getOutputRows() {
+      return outputRows;
+    }
+
+    /**
+     * @return true if the rows were sent to the database, false if the batch was skipped after an earlier failure
+     */
+    public boolean isWritten() {
+      return written;
+    }
+
+    /**
+     * @return the error writing the batch or null if all the rows were committed
+     */
+    public KettleDatabaseBatchException getException() {
+      return exception;
+    }
+  }
+
+  private static final Batch END_OF_BATCHES = new Batch( 0 );
+
+  private final Database db;
+  private final PreparedStatement insertStatement;
+  private final RowMetaInterface insertRowMeta;
+  private final boolean continueOnError;
+
+  private final BlockingQueue<Batch> pending;
+  private final BlockingQueue<Batch> completed;
+
+  private Thread thread;
+  private volatile boolean aborted;
+  private volatile boolean failed;
+
+  /**
+   * @param db
+   *          the connected database, used exclusively by the writer thread while it runs
+   * @param insertStatement
+   *          the prepared insert statement
+   * @param insertRowMeta
+   *          the metadata of the inserted values
+   * @param continueOnError
+   *          true if the failed rows are sent to error handling: the other rows are committed and writing continues.
+   *          If false the transaction is rolled back and the following batches are skipped.
+   */
+  public TableOutputBatchWriter( Database db, PreparedStatement insertStatement, RowMetaInterface insertRowMeta,
+    boolean continueOnError ) {
+    this.db = db;
+    this.insertStatement = insertStatement;
+    this.insertRowMeta = insertRowMeta;
+    this.continueOnError = continueOnError;
+
+    this.pending = new ArrayBlockingQueue<Batch>( 1 );
+    this.completed = new LinkedBlockingQueue<Batch>();
+  }
+
+  /**
+   * Start the writer thread.
+   *
+   * @param name
+   *          the name of the thread
+   */
+  public void start( String name ) {
+    thread = new Thread( this, name );
+    thread.setDaemon( true );
+    thread.start();
+  }
+
+  /**
+   * Hand a batch over to the writer thread. If the previous batch is still waiting to be written, this waits until
+   * the writer picks it up.
+   *
+   * @param batch
+   *          the batch to write
+   * @throws KettleException
+   *           in case the writer thread stopped or the wait was interrupted
+   */
+  public void submit( Batch batch ) throws KettleException {
+    try {
+      while ( !pending.offer( batch, 100, TimeUnit.MILLISECONDS ) ) {
+        if ( !thread.isAlive() ) {
+          throw new KettleException( "The batch writer thread stopped unexpectedly" );
+        }
+      }
+    } catch ( InterruptedException e ) {
+      throw new KettleException( "Interrupted while handing a batch to the writer thread", e );
+    }
+  }
+
+  /**
+   * @return the next written batch in the order they were submitted, or null if no batch was written since the last
+   *         call.
+   */
+  public Batch nextCompleted() {
+    return completed.poll();
+  }
+
+  /**
+   * Write the submitted batches and wait for the writer thread to finish.
+   *
+   * @throws KettleException
+   *           in case the wait was interrupted
+   */
+  public void finish() throws KettleException {
+    submit( END_OF_BATCHES );
+    try {
+      thread.join();
+    } catch ( InterruptedException e ) {
+      throw new KettleException( "Interrupted while waiting for the writer thread to finish", e );
+    }
+  }
+
+  /**
+   * Skip the batches that aren't written yet and wait for the writer thread to finish.
+   */
+  public void abort() {
+    aborted = true;
+    pending.clear();
+    try {
+      finish();
+    } catch ( KettleException e ) {
+      // The thread is stopping anyway
+    }
+  }
+
+  /**
+   * @return true if writing a batch failed and the transaction was rolled back
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  public void run() {
+    try {
+      while ( true ) {
+        Batch batch = pending.take();
+        if ( batch == END_OF_BATCHES ) {
+          break;
+        }
+        if ( !aborted && !failed ) {
+          write( batch );
+        }
+        completed.add( batch );
+      }
+    } catch ( InterruptedException e ) {
+      // Stopped
+    }
+  }
+
+  private void write( Batch batch ) {
+    batch.written = true;
+    try {
+      try {
+        for ( Object[] insertRow : batch.getInsertRows() ) {
+          db.setValues( insertRowMeta, insertRow, insertStatement );
+          db.insertRow( insertStatement, true, false );
+        }
+        insertStatement.executeBatch();
+        db.commit();
+        insertStatement.clearBatch();
+      } catch ( KettleDatabaseBatchException be ) {
+        batch.exception = be;
+      } catch ( KettleDatabaseException dbe ) {
+        // Not a batch problem, we don't know which rows made it
+        batch.exception = toBatchException( dbe );
+      } catch ( SQLException ex ) {
+        batch.exception = Database.createKettleDatabaseBatchException( "Error updating batch", ex );
+      }
+
+      if ( batch.exception != null ) {
+        db.clearBatch( insertStatement );
+        if ( continueOnError ) {
+          db.commit( true );
+        } else {
+          db.rollback();
+          failed = true;
+        }
+      }
+    } catch ( KettleDatabaseException e ) {
+      // Clearing or ending the transaction failed: stop writing
+      if ( batch.exception == null ) {
+        batch.exception = toBatchException( e );
+      }
+      failed = true;
+    }
+  }
+
+  private static KettleDatabaseBatchException toBatchException( KettleDatabaseException e ) {
+    KettleDatabaseBatchException be = new KettleDatabaseBatchException( e.getMessage(), e );
+    List<Exception> exceptions = new ArrayList<Exception>( 1 );
+    exceptions.add( e );
+    be.setExceptionsList( exceptions );
+    return be;
+  }
+}
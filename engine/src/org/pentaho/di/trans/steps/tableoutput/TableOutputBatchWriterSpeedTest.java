@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import java.sql.PreparedStatement;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.logging.LoggingObjectType;
+import org.pentaho.di.core.logging.SimpleLoggingObject;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.steps.tableoutput.TableOutputBatchWriter.Batch;
+
+/**
+ * Compares the rows/s writing batches in the calling thread with the batch writer at several batch sizes, on an
+ * in-memory H2 database (the H2 driver needs to be on the classpath). Both spend the same time creating the rows, the
+ * writer overlaps it with the database work.
+ */
+public class TableOutputBatchWriterSpeedTest {
+  public static final int ROWS = 50000;
+
+  private static final String INSERT = "INSERT INTO target ( id, name ) VALUES ( ?, ? )";
+
+  private Database db;
+  private RowMetaInterface rowMeta;
+  private PreparedStatement insertStatement;
+  private int nextId;
+
+  public TableOutputBatchWriterSpeedTest() throws Exception {
+    DatabaseMeta databaseMeta = new DatabaseMeta( "h2", "H2", "Native", null, "mem:tableoutputspeed", null, "sa", "" );
+    db = new Database( new SimpleLoggingObject( "speed test", LoggingObjectType.STEP, null ), databaseMeta );
+    db.connect();
+    db.execStatement( "CREATE TABLE target ( id INTEGER PRIMARY KEY, name VARCHAR(50) )" );
+    db.setCommit( 1000 );
+
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    insertStatement = db.prepareSQL( INSERT );
+  }
+
+  /**
+   * Write the rows in the calling thread, the way Table Output does without the batch writer.
+   *
+   * @return the elapsed time in ns
+   */
+  public long runSynchronousTest( int batchSize ) throws Exception {
+    long startTime = System.nanoTime();
+    for ( int i = 0; i < ROWS; i += batchSize ) {
+      Batch batch = createBatch( batchSize );
+      for ( Object[] row : batch.getInsertRows() ) {
+        db.setValues( rowMeta, row, insertStatement );
+        db.insertRow( insertStatement, true, false );
+      }
+      insertStatement.executeBatch();
+      db.commit();
+      insertStatement.clearBatch();
+    }
+    return System.nanoTime() - startTime;
+  }
+
+  /**
+   * Write the rows with the batch writer.
+   *
+   * @return the elapsed time in ns
+   */
+  public long runBatchWriterTest( int batchSize ) throws Exception {
+    long startTime = System.nanoTime();
+    TableOutputBatchWriter writer = new TableOutputBatchWriter( db, insertStatement, rowMeta, false );
+    writer.start( "speed test writer" );
+    for ( int i = 0; i < ROWS; i += batchSize ) {
+      writer.submit( createBatch( batchSize ) );
+    }
+    writer.finish();
+    if ( writer.isFailed() ) {
+      throw new RuntimeException( "The batch writer failed" );
+    }
+    return System.nanoTime() - startTime;
+  }
+
+  private Batch createBatch( int size ) {
+    Batch batch = new Batch( size );
+    for ( int i = 0; i < size; i++ ) {
+      long id = nextId++;
+      Object[] row = new Object[] { Long.valueOf( id ), "Some name for row " + id };
+      batch.addRow( row, row.clone() );
+    }
+    return batch;
+  }
+
+  public void close() throws Exception {
+    insertStatement.close();
+    db.setCommit( 0 );
+    db.execStatement( "DROP TABLE target" );
+    db.disconnect();
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleEnvironment.init( false );
+    TableOutputBatchWriterSpeedTest speedTest = new TableOutputBatchWriterSpeedTest();
+
+    // Warm up the JIT compiler before measuring anything
+    //
+    speedTest.runSynchronousTest( 100 );
+    speedTest.runBatchWriterTest( 100 );
+
+    int[] batchSizes = { 10, 100, 1000, 10000 };
+    for ( int batchSize : batchSizes ) {
+      long syncTime = speedTest.runSynchronousTest( batchSize );
+      long asyncTime = speedTest.runBatchWriterTest( batchSize );
+      System.out.println( "Batch size " + batchSize + " : " + ( ROWS * 1000000000L / syncTime )
+        + " rows/s in the step thread, " + ( ROWS * 1000000000L / asyncTime ) + " rows/s with the batch writer" );
+    }
+    speedTest.close();
+  }
+}
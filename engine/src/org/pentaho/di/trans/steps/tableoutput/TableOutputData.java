@@ -78,6 +78,11 @@ public class TableOutputData extends BaseStepData implements StepDataInterface {
 
   public int commitSize;
 
+  /** Execute the batches in a separate writer thread? */
+  public boolean asyncWrite;
+  public TableOutputBatchWriter batchWriter;
+  public TableOutputBatchWriter.Batch batch;
+
   public TableOutputData() {
     super();
 
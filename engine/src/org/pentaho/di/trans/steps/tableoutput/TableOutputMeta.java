@@ -74,6 +74,9 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
   private boolean ignoreErrors;
   private boolean useBatchUpdate;
 
+  /** Execute the batches and commits in a separate writer thread while the next batch is filled */
+  private boolean asyncWrite;
+
   private boolean partitioningEnabled;
   private String partitioningField;
   private boolean partitioningDaily;
@@ -402,6 +405,21 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     return useBatchUpdate;
   }
 
+  /**
+   * @return true if the batches are executed and committed by a separate writer thread
+   */
+  public boolean isAsyncWrite() {
+    return asyncWrite;
+  }
+
+  /**
+   * @param asyncWrite
+   *          true if the batches are executed and committed by a separate writer thread
+   */
+  public void setAsyncWrite( boolean asyncWrite ) {
+    this.asyncWrite = asyncWrite;
+  }
+
   private void readData( Node stepnode, List<? extends SharedObjectInterface> databases ) throws KettleXMLException {
     try {
       String con = XMLHandler.getTagValue( stepnode, "connection" );
@@ -412,6 +430,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "truncate" ) );
       ignoreErrors = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "ignore_errors" ) );
       useBatchUpdate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_batch" ) );
+      asyncWrite = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "async_write" ) );
 
       // If not present it will be false to be compatible with pre-v3.2
       specifyFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "specify_fields" ) );
@@ -470,6 +489,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     retval.append( "    " + XMLHandler.addTagValue( "truncate", truncateTable ) );
     retval.append( "    " + XMLHandler.addTagValue( "ignore_errors", ignoreErrors ) );
     retval.append( "    " + XMLHandler.addTagValue( "use_batch", useBatchUpdate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "async_write", asyncWrite ) );
     retval.append( "    " + XMLHandler.addTagValue( "specify_fields", specifyFields ) );
 
     retval.append( "    " + XMLHandler.addTagValue( "partitioning_enabled", partitioningEnabled ) );
@@ -510,6 +530,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = rep.getStepAttributeBoolean( id_step, "truncate" );
       ignoreErrors = rep.getStepAttributeBoolean( id_step, "ignore_errors" );
       useBatchUpdate = rep.getStepAttributeBoolean( id_step, "use_batch" );
+      asyncWrite = rep.getStepAttributeBoolean( id_step, "async_write" );
       specifyFields = rep.getStepAttributeBoolean( id_step, "specify_fields" );
 
       partitioningEnabled = rep.getStepAttributeBoolean( id_step, "partitioning_enabled" );
@@ -548,6 +569,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       rep.saveStepAttribute( id_transformation, id_step, "truncate", truncateTable );
       rep.saveStepAttribute( id_transformation, id_step, "ignore_errors", ignoreErrors );
       rep.saveStepAttribute( id_transformation, id_step, "use_batch", useBatchUpdate );
+      rep.saveStepAttribute( id_transformation, id_step, "async_write", asyncWrite );
       rep.saveStepAttribute( id_transformation, id_step, "specify_fields", specifyFields );
 
       rep.saveStepAttribute( id_transformation, id_step, "partitioning_enabled", partitioningEnabled );
@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The part of a file read by a copy of a Text File Input step running in parallel. A copy reads the lines that start
+ * in its block: it skips the partial line at the start of the block and finishes the line that runs past the end.
+ */
+public class TextFileBlock {
+  private int fileIndex;
+  private long startOffset;
+  private long endOffset;
+
+  /**
+   * @param fileIndex
+   *          the index of the file in the list of files to read
+   * @param startOffset
+   *          the offset of the first byte of the block
+   * @param endOffset
+   *          the offset of the first byte after the block, Long.MAX_VALUE to read the whole file
+   */
+  public TextFileBlock( int fileIndex, long startOffset, long endOffset ) {
+    this.fileIndex = fileIndex;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+  }
+
+  /**
+   * Split the files in a block of about the same size for every step copy. A block can span several files, the files
+   * are split at arbitrary offsets.
+   *
+   * @param fileSizes
+   *          the sizes of the files in bytes
+   * @param stepNr
+   *          the (unique) number of the step copy
+   * @param nrSteps
+   *          the number of step copies
+   * @return the blocks to read by the step copy, in file order
+   */
+  public static List<TextFileBlock> getBlocks( long[] fileSizes, int stepNr, int nrSteps ) {
+    long totalSize = 0L;
+    for ( long size : fileSizes ) {
+      totalSize += size;
+    }
+
+    // For example: 50000 bytes in 5 files of 10000 bytes, read by 2 copies.
+    // Copy 0 reads 0-24999: files 0 and 1 and the first half of file 2, copy 1 reads the rest.
+    //
+    long start = totalSize * stepNr / nrSteps;
+    long end = totalSize * ( stepNr + 1 ) / nrSteps;
+
+    List<TextFileBlock> blocks = new ArrayList<TextFileBlock>();
+    long fileOffset = 0L;
+    for ( int i = 0; i < fileSizes.length; i++ ) {
+      long fileEnd = fileOffset + fileSizes[i];
+      if ( start < fileEnd && end > fileOffset ) {
+        long blockStart = Math.max( 0L, start - fileOffset );
+        long blockEnd = end >= fileEnd ? Long.MAX_VALUE : end - fileOffset;
+        blocks.add( new TextFileBlock( i, blockStart, blockEnd ) );
+      }
+      fileOffset = fileEnd;
+    }
+    return blocks;
+  }
+
+  /**
+   * Hand out complete files to the step copies, in turn.
+   *
+   * @param nrFiles
+   *          the number of files to read
+   * @param stepNr
+   *          the (unique) number of the step copy
+   * @param nrSteps
+   *          the number of step copies
+   * @return the files to read by the step copy, as complete blocks
+   */
+  public static List<TextFileBlock> getFiles( int nrFiles, int stepNr, int nrSteps ) {
+    List<TextFileBlock> blocks = new ArrayList<TextFileBlock>();
+    for ( int i = stepNr; i < nrFiles; i += nrSteps ) {
+      blocks.add( new TextFileBlock( i, 0L, Long.MAX_VALUE ) );
+    }
+    return blocks;
+  }
+
+  public int getFileIndex() {
+    return fileIndex;
+  }
+
+  public long getStartOffset() {
+    return startOffset;
+  }
+
+  public long getEndOffset() {
+    return endOffset;
+  }
+
+  /**
+   * @return true if the block starts at the beginning of the file, so the header is read
+   */
+  public boolean isStartOfFile() {
+    return startOffset == 0L;
+  }
+}
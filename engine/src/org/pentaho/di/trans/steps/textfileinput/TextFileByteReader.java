@@ -0,0 +1,296 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Reads the lines of a text file as bytes, without decoding them. This is the byte oriented counterpart of
+ * {@link TextFileInput#getLine(org.pentaho.di.core.logging.LogChannelInterface, java.io.InputStreamReader,
+ * EncodingType, int, StringBuilder)} and recognizes the line ends of the DOS, Unix and mixed file formats the same way.
+ * The line feeds are taken from a {@link TextFileLineSplitter} so the encoding is respected.<br>
+ * <br>
+ * If breaks in enclosures are allowed, line feeds found inside an enclosed field are part of the line.<br>
+ * <br>
+ * To read a part of a file (see {@link TextFileBlock}) the reader can start at the first line after an offset and stop
+ * at the first line that starts at or after another.
+ */
+public class TextFileByteReader {
+  private static Class<?> PKG = TextFileInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  public static final int DEFAULT_BUFFER_SIZE = 50000;
+
+  private InputStream inputStream;
+  private int fileFormatType;
+  private boolean breakInEnclosureAllowed;
+
+  private byte carriageReturn;
+  private byte lineFeed;
+  private byte[] enclosure;
+  private byte[] escape;
+
+  private byte[] buffer;
+  private int bufferEnd;
+  private boolean endOfFile;
+
+  /** The offset in the file of the start of the buffer */
+  private long bufferOffset;
+  /** Lines starting at or after this offset in the file are not read */
+  private long endOffset = Long.MAX_VALUE;
+
+  /** The start of the line in the buffer */
+  private int lineStart;
+  /** The position of the next byte to look at */
+  private int position;
+  /** The end of the line so far, smaller than position when carriage returns are dropped */
+  private int writePosition;
+
+  /**
+   * @param inputStream
+   *          the (uncompressed) stream to read from
+   * @param fileFormatType
+   *          one of the TextFileInputMeta.FILE_FORMAT_* types
+   * @param splitter
+   *          the splitter of the lines, it knows the bytes of the line feeds and enclosures
+   * @param breakInEnclosureAllowed
+   *          true if fields in an enclosure can contain line feeds
+   */
+  public TextFileByteReader( InputStream inputStream, int fileFormatType, TextFileLineSplitter splitter,
+    boolean breakInEnclosureAllowed ) {
+    this( inputStream, fileFormatType, splitter, breakInEnclosureAllowed, DEFAULT_BUFFER_SIZE );
+  }
+
+  public TextFileByteReader( InputStream inputStream, int fileFormatType, TextFileLineSplitter splitter,
+    boolean breakInEnclosureAllowed, int bufferSize ) {
+    this.inputStream = inputStream;
+    this.fileFormatType = fileFormatType;
+    this.carriageReturn = splitter.getCarriageReturn();
+    this.lineFeed = splitter.getLineFeed();
+    this.enclosure = splitter.getEnclosure();
+    this.escape = splitter.getEscape();
+    this.breakInEnclosureAllowed = breakInEnclosureAllowed && !splitter.isFixedWidth() && enclosure.length > 0;
+    this.buffer = new byte[Math.max( 16, bufferSize )];
+  }
+
+  /**
+   * Read the next line.
+   *
+   * @return the bytes of the line without the line feed or null if there are no more lines
+   * @throws KettleFileException
+   *           in case the file can't be read or a DOS file contains a single line feed
+   */
+  public byte[] readLine() throws KettleFileException {
+    if ( bufferOffset + position >= endOffset ) {
+      return null;
+    }
+    lineStart = position;
+    writePosition = position;
+    boolean inEnclosure = false;
+
+    try {
+      while ( true ) {
+        if ( !ensureAvailable( 1 ) ) {
+          // End of the file, the last line doesn't need a line feed
+          //
+          return writePosition > lineStart ? getLine() : null;
+        }
+
+        if ( breakInEnclosureAllowed ) {
+          if ( isEscapedEnclosure() ) {
+            // An escaped enclosure doesn't open or close anything
+            copy( escape.length + enclosure.length );
+            continue;
+          }
+          if ( isEnclosure() ) {
+            inEnclosure = !inEnclosure;
+            copy( enclosure.length );
+            continue;
+          }
+        }
+
+        if ( inEnclosure ) {
+          copy( 1 );
+          continue;
+        }
+
+        byte b = buffer[position];
+
+        switch ( fileFormatType ) {
+          case TextFileInputMeta.FILE_FORMAT_DOS:
+            if ( b == carriageReturn || b == lineFeed ) {
+              position++;
+              if ( !ensureAvailable( 1 ) || ( buffer[position] != carriageReturn && buffer[position] != lineFeed ) ) {
+                throw new KettleFileException( BaseMessages.getString( PKG, "TextFileInput.Log.SingleLineFound" ) );
+              }
+              position++;
+              return getLine();
+            }
+            break;
+          case TextFileInputMeta.FILE_FORMAT_UNIX:
+            if ( b == carriageReturn || b == lineFeed ) {
+              position++;
+              return getLine();
+            }
+            break;
+          case TextFileInputMeta.FILE_FORMAT_MIXED:
+            // The line feed ends the line, carriage returns are ignored
+            if ( b == lineFeed ) {
+              position++;
+              return getLine();
+            }
+            if ( b == carriageReturn ) {
+              position++;
+              continue;
+            }
+            break;
+          default:
+            break;
+        }
+        copy( 1 );
+      }
+    } catch ( IOException e ) {
+      if ( writePosition == lineStart ) {
+        throw new KettleFileException( BaseMessages.getString(
+          PKG, "TextFileInput.Log.Error.ExceptionReadingLine", e.toString() ), e );
+      }
+      return getLine();
+    }
+  }
+
+  /**
+   * Only read the lines starting in a block of the file. This needs to be called before the first line is read.
+   *
+   * @param block
+   *          the block of the file to read
+   * @throws KettleFileException
+   *           in case the file can't be read
+   */
+  public void setBlock( TextFileBlock block ) throws KettleFileException {
+    endOffset = block.getEndOffset();
+    if ( block.getStartOffset() <= 0 ) {
+      return;
+    }
+
+    try {
+      // Skip to the byte before the block: if it ends a line, the block starts with a complete line
+      //
+      long toSkip = block.getStartOffset() - 1;
+      while ( toSkip > 0 ) {
+        long skipped = inputStream.skip( toSkip );
+        if ( skipped <= 0 ) {
+          // Some streams only skip what they have buffered, make sure we're not at the end
+          if ( inputStream.read() < 0 ) {
+            endOfFile = true;
+            return;
+          }
+          skipped = 1;
+        }
+        toSkip -= skipped;
+      }
+      bufferOffset = block.getStartOffset() - 1;
+
+      // Skip the rest of the line that started in the previous block
+      //
+      lineStart = position;
+      while ( ensureAvailable( 1 ) ) {
+        byte b = buffer[position++];
+        lineStart = position;
+        if ( b == lineFeed || ( b == carriageReturn && fileFormatType == TextFileInputMeta.FILE_FORMAT_UNIX ) ) {
+          break;
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleFileException( BaseMessages.getString(
+        PKG, "TextFileInput.Log.Error.ExceptionReadingLine", e.toString() ), e );
+    }
+  }
+
+  private boolean isEscapedEnclosure() throws IOException {
+    return escape.length > 0 && !Arrays.equals( escape, enclosure )
+      && ensureAvailable( escape.length + enclosure.length )
+      && TextFileLineSplitter.matches( buffer, position, bufferEnd, escape )
+      && TextFileLineSplitter.matches( buffer, position + escape.length, bufferEnd, enclosure );
+  }
+
+  private boolean isEnclosure() throws IOException {
+    return ensureAvailable( enclosure.length )
+      && TextFileLineSplitter.matches( buffer, position, bufferEnd, enclosure );
+  }
+
+  private void copy( int length ) {
+    if ( writePosition != position ) {
+      System.arraycopy( buffer, position, buffer, writePosition, length );
+    }
+    position += length;
+    writePosition += length;
+  }
+
+  private byte[] getLine() {
+    byte[] line = new byte[writePosition - lineStart];
+    System.arraycopy( buffer, lineStart, line, 0, line.length );
+    return line;
+  }
+
+  /**
+   * Make sure the next bytes are in the buffer, reading more data if needed. The current line is kept.
+   *
+   * @return false if the end of the file comes first
+   */
+  private boolean ensureAvailable( int length ) throws IOException {
+    while ( position + length > bufferEnd ) {
+      if ( endOfFile ) {
+        return false;
+      }
+
+      if ( lineStart > 0 ) {
+        // Move the line to the start of the buffer
+        //
+        System.arraycopy( buffer, lineStart, buffer, 0, bufferEnd - lineStart );
+        bufferOffset += lineStart;
+        bufferEnd -= lineStart;
+        position -= lineStart;
+        writePosition -= lineStart;
+        lineStart = 0;
+      } else if ( bufferEnd == buffer.length ) {
+        // A very long line, grow the buffer
+        //
+        byte[] newBuffer = new byte[buffer.length * 2];
+        System.arraycopy( buffer, 0, newBuffer, 0, bufferEnd );
+        buffer = newBuffer;
+      }
+
+      int read = inputStream.read( buffer, bufferEnd, buffer.length - bufferEnd );
+      if ( read < 0 ) {
+        endOfFile = true;
+      } else {
+        bufferEnd += read;
+      }
+    }
+    return true;
+  }
+}
@@ -43,7 +43,7 @@ public class TextFileFilterProcessor {
 
     if ( filters.length == 0 ) {
       // This makes processing faster in case there are no filters.
-      filters = null;
+      this.filters = null;
     }
   }
 
@@ -108,6 +108,13 @@ public class TextFileFilterProcessor {
     return filterOK;
   }
 
+  /**
+   * @return true if there are filters to process, false if all lines are taken
+   */
+  public boolean hasFilters() {
+    return filters != null;
+  }
+
   /**
    * Was processing requested to be stopped. Can only be true when doFilters was false.
    *
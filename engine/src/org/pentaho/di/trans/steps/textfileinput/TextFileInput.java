@@ -24,6 +24,8 @@ package org.pentaho.di.trans.steps.textfileinput;
 
 import java.io.BufferedInputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -32,6 +34,7 @@ import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.vfs.FileObject;
+import org.apache.commons.vfs.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
@@ -78,6 +81,9 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
   private static final int BUFFER_SIZE_INPUT_STREAM = 500;
 
+  /** The name of the compression provider that reads the files as they are */
+  private static final String NONE_COMPRESSION = "None";
+
   private TextFileInputMeta meta;
 
   private TextFileInputData data;
@@ -633,7 +639,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       boolean addPath, boolean addSize, boolean addIsHidden, boolean addLastModificationDate, boolean addUri,
       boolean addRootUri, String shortFilename, String path, boolean hidden, Date modificationDateTime, String uri,
       String rooturi, String extension, long size ) throws KettleException {
-    if ( textFileLine == null || textFileLine.line == null ) {
+    if ( textFileLine == null || ( textFileLine.line == null && textFileLine.bytes == null ) ) {
       return null;
     }
 
@@ -657,8 +663,19 @@ public class TextFileInput extends BaseStep implements StepInterface {
     }
 
     try {
-      // System.out.println("Convertings line to string ["+line+"]");
-      String[] strings = convertLineToStrings( log, textFileLine.line, info, delimiter, enclosure, escapeCharacter );
+      // Lines read as bytes are split without decoding them, see TextFileLineSplitter
+      //
+      String[] strings = null;
+      TextFileLineSplitter splitter = null;
+      int nrValues;
+      if ( textFileLine.bytes != null ) {
+        splitter = textFileLine.splitter;
+        splitter.split( textFileLine.bytes );
+        nrValues = nrfields;
+      } else {
+        strings = convertLineToStrings( log, textFileLine.line, info, delimiter, enclosure, escapeCharacter );
+        nrValues = strings.length;
+      }
       int shiftFields = ( passThruFields == null ? 0 : nrPassThruFields );
       for ( fieldnr = 0; fieldnr < nrfields; fieldnr++ ) {
         TextFileInputField f = info.getInputFields()[fieldnr];
@@ -672,10 +689,18 @@ public class TextFileInput extends BaseStep implements StepInterface {
         String ifnull = fieldnr < nrfields ? f.getIfNullValue() : "";
         int trim_type = fieldnr < nrfields ? f.getTrimType() : ValueMetaInterface.TRIM_TYPE_NONE;
 
-        if ( fieldnr < strings.length ) {
-          String pol = strings[fieldnr];
+        if ( fieldnr < nrValues ) {
+          String pol = null;
           try {
-            value = valueMeta.convertDataFromString( pol, convertMeta, nullif, ifnull, trim_type );
+            if ( valueMeta.isStorageBinaryString() ) {
+              // Lazy conversion: pass the bytes as they are read
+              //
+              value = splitter != null ? splitter.getBytes( fieldnr )
+                : convertStringToBinaryString( valueMeta, strings[fieldnr] );
+            } else {
+              pol = splitter != null ? splitter.getString( fieldnr ) : strings[fieldnr];
+              value = valueMeta.convertDataFromString( pol, convertMeta, nullif, ifnull, trim_type );
+            }
           } catch ( Exception e ) {
             // OK, give some feedback!
             String message =
@@ -822,6 +847,17 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
   }
 
+  private static byte[] convertStringToBinaryString( ValueMetaInterface valueMeta, String string )
+    throws UnsupportedEncodingException {
+    if ( string == null ) {
+      return null;
+    }
+    if ( Const.isEmpty( valueMeta.getStringEncoding() ) ) {
+      return string.getBytes();
+    }
+    return string.getBytes( valueMeta.getStringEncoding() );
+  }
+
   @Override
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     data = (TextFileInputData) sdi;
@@ -895,6 +931,17 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
       handleMissingFiles();
 
+      // Take our share of the files when running in parallel
+      //
+      divideFiles();
+      if ( data.blocks != null && data.blocks.isEmpty() ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "TextFileInput.Log.NothingToReadInParallel" ) );
+        }
+        setOutputDone();
+        return false;
+      }
+
       // Open the first file & read the required rows in the buffer, stop
       // if it fails and not set to skip bad files...
       if ( !openNextFile() ) {
@@ -925,14 +972,14 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
         // Read a number of lines...
         for ( int i = 0; i < repeats && !data.doneReading; i++ ) {
-          String line = getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder );
+          TextFileLine line = readLine();
           if ( line != null ) {
             // Filter row?
             boolean isFilterLastLine = false;
             boolean filterOK = checkFilterRow( line, isFilterLastLine );
             if ( filterOK ) {
               // logRowlevel("LINE READ: "+line);
-              data.lineBuffer.add( new TextFileLine( line, lineNumberInFile, data.file ) );
+              data.lineBuffer.add( line );
             } else {
               if ( isFilterLastLine ) {
                 data.doneReading = true;
@@ -976,7 +1023,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       if ( !data.doneWithHeader && data.pageLinesRead == 0 ) // We are reading header lines
       {
         if ( log.isRowLevel() ) {
-          logRowlevel( "P-HEADER (" + data.headerLinesRead + ") : " + textLine.line );
+          logRowlevel( "P-HEADER (" + data.headerLinesRead + ") : " + textLine.getLine() );
         }
         data.headerLinesRead++;
         if ( data.headerLinesRead >= meta.getNrHeaderLines() ) {
@@ -989,17 +1036,15 @@ public class TextFileInput extends BaseStep implements StepInterface {
           // See if we are dealing with wrapped lines:
           if ( meta.isLineWrapped() ) {
             for ( int i = 0; i < meta.getNrWraps(); i++ ) {
-              String extra = "";
               if ( data.lineBuffer.size() > 0 ) {
-                extra = data.lineBuffer.get( 0 ).line;
+                textLine.append( data.lineBuffer.get( 0 ) );
                 data.lineBuffer.remove( 0 );
               }
-              textLine.line += extra;
             }
           }
 
           if ( log.isRowLevel() ) {
-            logRowlevel( "P-DATA: " + textLine.line );
+            logRowlevel( "P-DATA: " + textLine.getLine() );
           }
           // Read a normal line on a page of data.
           data.pageLinesRead++;
@@ -1037,7 +1082,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
           if ( meta.hasFooter() && data.footerLinesRead < meta.getNrFooterLines() ) {
             if ( log.isRowLevel() ) {
-              logRowlevel( "P-FOOTER: " + textLine.line );
+              logRowlevel( "P-FOOTER: " + textLine.getLine() );
             }
             data.footerLinesRead++;
           }
@@ -1078,12 +1123,10 @@ public class TextFileInput extends BaseStep implements StepInterface {
           // See if we are dealing with wrapped lines:
           if ( meta.isLineWrapped() ) {
             for ( int i = 0; i < meta.getNrWraps(); i++ ) {
-              String extra = "";
               if ( data.lineBuffer.size() > 0 ) {
-                extra = data.lineBuffer.get( 0 ).line;
+                textLine.append( data.lineBuffer.get( 0 ) );
                 data.lineBuffer.remove( 0 );
               }
-              textLine.line += extra;
             }
           }
           if ( data.filePlayList.isProcessingNeeded( textLine.file, textLine.lineNumber,
@@ -1244,15 +1287,15 @@ public class TextFileInput extends BaseStep implements StepInterface {
    *          (dummy input param, only set when return value is false)
    * @return true when the line should be taken (when false, isFilterLastLine will be set)
    */
-  private boolean checkFilterRow( String line, boolean isFilterLastLine ) {
+  private boolean checkFilterRow( TextFileLine line, boolean isFilterLastLine ) {
     boolean filterOK = true;
 
     // check for noEmptyLines
-    if ( meta.noEmptyLines() && line.length() == 0 ) {
+    if ( meta.noEmptyLines() && line.isEmpty() ) {
       filterOK = false;
-    } else {
+    } else if ( data.filterProcessor.hasFilters() ) {
       // check the filters
-      filterOK = data.filterProcessor.doFilters( line );
+      filterOK = data.filterProcessor.doFilters( line.getLine() );
       if ( !filterOK ) {
         if ( data.filterProcessor.isStopProcessing() ) {
           data.doneReading = true;
@@ -1308,7 +1351,10 @@ public class TextFileInput extends BaseStep implements StepInterface {
          * data.sis.close(); }
          */
         data.in.close();
-        data.isr.close();
+        if ( data.isr != null ) {
+          data.isr.close();
+        }
+        data.byteReader = null;
         data.filename = null; // send it down the next time.
         if ( data.file != null ) {
           data.file.close();
@@ -1350,6 +1396,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       // Is this the last file?
       data.isLastFile = ( data.filenr == data.getFiles().nrOfFiles() - 1 );
       data.file = data.getFiles().getFile( data.filenr );
+      TextFileBlock block = data.blocks != null ? data.blocks.get( data.filenr ) : null;
       data.filename = KettleVFS.getFilename( data.file );
 
       // Move file pointer ahead!
@@ -1408,15 +1455,27 @@ public class TextFileInput extends BaseStep implements StepInterface {
         logDetailed( "This is a compressed file being handled by the " + provider.getName() + " provider" );
       }
 
-      if ( meta.getEncoding() != null && meta.getEncoding().length() > 0 ) {
-        data.isr =
-            new InputStreamReader( new BufferedInputStream( data.in, BUFFER_SIZE_INPUT_STREAM ), meta.getEncoding() );
+      if ( data.lineSplitter != null ) {
+        // Read the lines as bytes, the byte reader does its own buffering
+        //
+        data.isr = null;
+        data.byteReader =
+            new TextFileByteReader( data.in, data.fileFormatType, data.lineSplitter, meta.isBreakInEnclosureAllowed() );
+        data.encodingType = EncodingType.SINGLE;
+        if ( block != null ) {
+          data.byteReader.setBlock( block );
+        }
       } else {
-        data.isr = new InputStreamReader( new BufferedInputStream( data.in, BUFFER_SIZE_INPUT_STREAM ) );
-      }
+        if ( meta.getEncoding() != null && meta.getEncoding().length() > 0 ) {
+          data.isr =
+              new InputStreamReader( new BufferedInputStream( data.in, BUFFER_SIZE_INPUT_STREAM ), meta.getEncoding() );
+        } else {
+          data.isr = new InputStreamReader( new BufferedInputStream( data.in, BUFFER_SIZE_INPUT_STREAM ) );
+        }
 
-      String encoding = data.isr.getEncoding();
-      data.encodingType = EncodingType.guessEncodingType( encoding );
+        String encoding = data.isr.getEncoding();
+        data.encodingType = EncodingType.guessEncodingType( encoding );
+      }
 
       // /////////////////////////////////////////////////////////////////////////////
       // Read the first lines...
@@ -1430,7 +1489,10 @@ public class TextFileInput extends BaseStep implements StepInterface {
        * OK, read a number of lines in the buffer: The header rows The nr rows in the page : optional The footer rows
        */
       int bufferSize = 1;
-      bufferSize += meta.hasHeader() ? meta.getNrHeaderLines() : 0;
+      // A block in the middle of a file doesn't start with the header
+      //
+      boolean hasHeader = meta.hasHeader() && ( block == null || block.isStartOfFile() );
+      bufferSize += hasHeader ? meta.getNrHeaderLines() : 0;
       bufferSize += meta.isLayoutPaged() ? meta.getNrLinesPerPage() * ( Math.max( 0, meta.getNrWraps() ) + 1 ) : 0;
       bufferSize += meta.hasFooter() ? meta.getNrFooterLines() : 0;
 
@@ -1438,33 +1500,29 @@ public class TextFileInput extends BaseStep implements StepInterface {
       if ( meta.isLayoutPaged() ) {
         for ( int i = 0; i < meta.getNrLinesDocHeader(); i++ ) {
           // Just skip these...
-          getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder ); // header and
-                                                                                                    // footer: not
-                                                                                                    // wrapped
+          readLine(); // header and footer: not wrapped
           lineNumberInFile++;
         }
       }
 
-      String line;
+      TextFileLine line;
       for ( int i = 0; i < bufferSize && !data.doneReading; i++ ) {
-        line = getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder );
+        line = readLine();
         if ( line != null ) {
           // when there is no header, check the filter for the first line
-          if ( !meta.hasHeader() || i >= meta.getNrHeaderLines() ) {
+          if ( !hasHeader || i >= meta.getNrHeaderLines() ) {
             // Filter row?
             boolean isFilterLastLine = false;
             boolean filterOK = checkFilterRow( line, isFilterLastLine );
             if ( filterOK ) {
-              data.lineBuffer.add( new TextFileLine( line, lineNumberInFile, data.file ) ); // Store it in the
-              // line buffer...
+              data.lineBuffer.add( line ); // Store it in the line buffer...
             } else {
               bufferSize++; // grab another line, this one got filtered
             }
           } else { // there is a header, so don't checkFilterRow
 
-            if ( !meta.noEmptyLines() || line.length() != 0 ) {
-              data.lineBuffer.add( new TextFileLine( line, lineNumberInFile, data.file ) ); // Store it in the line
-                                                                                            // buffer...
+            if ( !meta.noEmptyLines() || !line.isEmpty() ) {
+              data.lineBuffer.add( line ); // Store it in the line buffer...
             }
           }
         } else {
@@ -1478,7 +1536,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       data.pageLinesRead = 0;
 
       // Set a flags
-      data.doneWithHeader = !meta.hasHeader();
+      data.doneWithHeader = !hasHeader;
     } catch ( Exception e ) {
       String errorMsg =
           "Couldn't open file #" + data.filenr + " : " + data.file.getName().getFriendlyURI() + " --> " + e.toString();
@@ -1492,6 +1550,95 @@ public class TextFileInput extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * When running in parallel, keep the files or the parts of the files read by this step copy. Files are only split
+   * if they are read as bytes and nothing depends on reading a file from start to end: compression, footers, pages,
+   * wrapped lines, breaks in enclosures or line numbers in the file. Otherwise complete files are handed out to the
+   * step copies in turn.
+   */
+  private void divideFiles() throws KettleException {
+    int nrSteps = getUniqueStepCountAcrossSlaves();
+    if ( !meta.isRunningInParallel() || meta.isAcceptingFilenames() || nrSteps <= 1 ) {
+      return;
+    }
+    int stepNr = getUniqueStepNrAcrossSlaves();
+    List<FileObject> files = data.getFiles().getFiles();
+
+    if ( isSplittingFiles() ) {
+      long[] fileSizes = new long[files.size()];
+      try {
+        for ( int i = 0; i < fileSizes.length; i++ ) {
+          fileSizes[i] = files.get( i ).getContent().getSize();
+        }
+      } catch ( FileSystemException e ) {
+        throw new KettleException(
+            BaseMessages.getString( PKG, "TextFileInput.Exception.ErrorPreparingParallelRun" ), e );
+      }
+      data.blocks = TextFileBlock.getBlocks( fileSizes, stepNr, nrSteps );
+    } else {
+      data.blocks = TextFileBlock.getFiles( files.size(), stepNr, nrSteps );
+    }
+
+    List<FileObject> blockFiles = new ArrayList<FileObject>( data.blocks.size() );
+    for ( TextFileBlock block : data.blocks ) {
+      blockFiles.add( files.get( block.getFileIndex() ) );
+    }
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "TextFileInput.Log.ParallelFiles", Integer.toString( blockFiles
+          .size() ), Integer.toString( files.size() ), Integer.toString( stepNr ), Integer.toString( nrSteps ) ) );
+    }
+    files.clear();
+    files.addAll( blockFiles );
+  }
+
+  private boolean isSplittingFiles() {
+    boolean lineNumbersByFile = meta.includeRowNumber() && meta.isRowNumberByFile();
+    boolean lineNumberFiles =
+        meta.getLineNumberFilesDestinationDirectory() != null || data.filePlayList != FilePlayListAll.INSTANCE;
+    return data.lineSplitter != null && NONE_COMPRESSION.equals( meta.getFileCompression() )
+        && !meta.isBreakInEnclosureAllowed() && !meta.hasFooter() && !meta.isLayoutPaged() && !meta.isLineWrapped()
+        && !lineNumbersByFile && !lineNumberFiles;
+  }
+
+  /**
+   * Read the next line of the current file, as bytes if possible.
+   *
+   * @return the next line or null if there are no more lines in the file
+   */
+  private TextFileLine readLine() throws KettleFileException {
+    if ( data.byteReader != null ) {
+      byte[] bytes = data.byteReader.readLine();
+      return bytes == null ? null : new TextFileLine( bytes, data.lineSplitter, lineNumberInFile, data.file );
+    }
+    String line = getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder );
+    return line == null ? null : new TextFileLine( line, lineNumberInFile, data.file );
+  }
+
+  /**
+   * Single byte encodings and UTF-8 can be read as bytes, without decoding every line and field. The other encodings
+   * use an InputStreamReader.
+   *
+   * @return the splitter for the lines read as bytes or null if the lines need to be decoded
+   */
+  private TextFileLineSplitter createLineSplitter() {
+    Charset charset;
+    try {
+      charset = Const.isEmpty( meta.getEncoding() ) ? Charset.defaultCharset() : Charset.forName( meta.getEncoding() );
+    } catch ( IllegalArgumentException e ) {
+      // Unknown encoding, the error is reported when the file is opened
+      return null;
+    }
+    boolean fixedWidth = data.fileType == TextFileInputMeta.FILE_TYPE_FIXED;
+    if ( !TextFileLineSplitter.isSupported( charset, fixedWidth ) ) {
+      return null;
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "TextFileInput.Log.ReadingBytes", charset.name() ) );
+    }
+    return new TextFileLineSplitter( charset, fixedWidth, meta.getInputFields(), data.separator, data.enclosure,
+        data.escapeCharacter );
+  }
+
   @Override
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (TextFileInputMeta) smi;
@@ -1544,6 +1691,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       data.separator = environmentSubstitute( meta.getSeparator() );
       data.enclosure = environmentSubstitute( meta.getEnclosure() );
       data.escapeCharacter = environmentSubstitute( meta.getEscapeCharacter() );
+      data.lineSplitter = createLineSplitter();
 
       // Add additional fields
       if ( !Const.isEmpty( meta.getShortFileNameField() ) ) {
@@ -75,6 +75,15 @@ public class TextFileInputData extends BaseStepData implements StepDataInterface
 
   public InputStreamReader isr;
 
+  /** Reads the lines as bytes when the encoding allows it, isr is null in that case */
+  public TextFileByteReader byteReader;
+
+  /** Splits the lines read by the byte reader, null if the lines are read as Strings */
+  public TextFileLineSplitter lineSplitter;
+
+  /** The parts of the files read by this step copy when running in parallel, null to read all the files */
+  public List<TextFileBlock> blocks;
+
   public boolean doneReading;
 
   public int headerLinesRead;
@@ -211,6 +211,12 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
   /** Indicate whether or not we want to date fields strictly according to the format or lenient */
   private boolean dateFormatLenient;
 
+  /** Pass the fields on as binary strings, they are only converted when they are used */
+  private boolean lazyConversionActive;
+
+  /** Divide the files (and the lines in the files) over the step copies */
+  private boolean runningInParallel;
+
   /** Specifies the Locale of the Date format, null means the default */
   private Locale dateFormatLocale;
 
@@ -852,6 +858,8 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
     lineNumberFilesDestinationDirectory = null;
     lineNumberFilesExtension = "line";
     dateFormatLenient = true;
+    lazyConversionActive = false;
+    runningInParallel = false;
     rowNumberByFile = false;
 
     int nrfiles = 0;
@@ -914,6 +922,17 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
         v.setDateFormatLenient( dateFormatLenient );
         v.setDateFormatLocale( dateFormatLocale );
         v.setTrimType( field.getTrimType() );
+        if ( isLazyConversion( field ) ) {
+          v.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+          v.setStringEncoding( space.environmentSubstitute( encoding ) );
+
+          // The bytes read are converted using a String copy of the field
+          //
+          ValueMetaInterface storageMetadata = ValueMetaFactory.cloneValueMeta( v, ValueMetaInterface.TYPE_STRING );
+          storageMetadata.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+          storageMetadata.setLength( -1, -1 );
+          v.setStorageMetadata( storageMetadata );
+        }
 
         row.addValueMeta( v );
       } catch ( Exception e ) {
@@ -1132,6 +1151,8 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
       XMLHandler.addTagValue( "line_number_files_extension", lineNumberFilesExtension ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "date_format_lenient", dateFormatLenient ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "lazy_conversion", lazyConversionActive ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "parallel", runningInParallel ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "date_format_locale", dateFormatLocale.toString() ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "shortFileFieldName", shortFileFieldName ) );
@@ -1290,6 +1311,8 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
       // Backward compatible
 
       dateFormatLenient = !NO.equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "date_format_lenient" ) );
+      lazyConversionActive = YES.equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "lazy_conversion" ) );
+      runningInParallel = YES.equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "parallel" ) );
       String dateLocale = XMLHandler.getTagValue( stepnode, "date_format_locale" );
       if ( dateLocale != null ) {
         dateFormatLocale = EnvUtil.createLocale( dateLocale );
@@ -1446,6 +1469,8 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
       lineNumberFilesExtension = rep.getStepAttributeString( id_step, "line_number_files_ext" );
 
       dateFormatLenient = rep.getStepAttributeBoolean( id_step, 0, "date_format_lenient", true );
+      lazyConversionActive = rep.getStepAttributeBoolean( id_step, 0, "lazy_conversion", false );
+      runningInParallel = rep.getStepAttributeBoolean( id_step, 0, "parallel", false );
 
       String dateLocale = rep.getStepAttributeString( id_step, 0, "date_format_locale" );
       if ( dateLocale != null ) {
@@ -1557,6 +1582,8 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
       rep.saveStepAttribute( id_transformation, id_step, "line_number_files_ext", lineNumberFilesExtension );
 
       rep.saveStepAttribute( id_transformation, id_step, "date_format_lenient", dateFormatLenient );
+      rep.saveStepAttribute( id_transformation, id_step, "lazy_conversion", lazyConversionActive );
+      rep.saveStepAttribute( id_transformation, id_step, "parallel", runningInParallel );
       rep.saveStepAttribute( id_transformation, id_step, "date_format_locale", dateFormatLocale.toString() );
 
       rep.saveStepAttribute( id_transformation, id_step, "shortFileFieldName", shortFileFieldName );
@@ -1860,6 +1887,49 @@ public class TextFileInputMeta extends BaseStepMeta implements StepMetaInterface
     this.dateFormatLenient = dateFormatLenient;
   }
 
+  /**
+   * @return true if the fields are passed on as binary strings and converted when they are used
+   */
+  public boolean isLazyConversionActive() {
+    return lazyConversionActive;
+  }
+
+  /**
+   * @param lazyConversionActive
+   *          true to pass the fields on as binary strings and convert them when they are used
+   */
+  public void setLazyConversionActive( boolean lazyConversionActive ) {
+    this.lazyConversionActive = lazyConversionActive;
+  }
+
+  /**
+   * @return true if the step copies divide the files to read between them
+   */
+  public boolean isRunningInParallel() {
+    return runningInParallel;
+  }
+
+  /**
+   * @param runningInParallel
+   *          true to let the step copies divide the files to read between them
+   */
+  public void setRunningInParallel( boolean runningInParallel ) {
+    this.runningInParallel = runningInParallel;
+  }
+
+  /**
+   * Fields with a null-if or if-null value, repeated fields and fields of which the conversion errors are ignored need
+   * the converted value while reading, these are never converted lazily.
+   *
+   * @param field
+   *          the field to read
+   * @return true if the field is passed on as a binary string
+   */
+  public boolean isLazyConversion( TextFileInputField field ) {
+    return lazyConversionActive && !errorIgnored && Const.isEmpty( field.getNullString() )
+      && Const.isEmpty( field.getIfNullValue() ) && !field.isRepeated();
+  }
+
   /**
    * @param isaddresult
    *          The isaddresult to set.
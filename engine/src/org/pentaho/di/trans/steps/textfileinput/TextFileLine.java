@@ -31,10 +31,57 @@ public class TextFileLine {
 
   FileObject file;
 
+  /** The undecoded line, when it was read by a {@link TextFileByteReader} */
+  byte[] bytes;
+
+  /** The splitter that knows the encoding and the fields of the undecoded line */
+  TextFileLineSplitter splitter;
+
   public TextFileLine( String line, long lineNumber, FileObject file ) {
     super();
     this.line = line;
     this.lineNumber = lineNumber;
     this.file = file;
   }
+
+  public TextFileLine( byte[] bytes, TextFileLineSplitter splitter, long lineNumber, FileObject file ) {
+    super();
+    this.bytes = bytes;
+    this.splitter = splitter;
+    this.lineNumber = lineNumber;
+    this.file = file;
+  }
+
+  /**
+   * @return the line, decoded on first use if it was read as bytes
+   */
+  public String getLine() {
+    if ( line == null && bytes != null ) {
+      line = new String( bytes, splitter.getCharset() );
+    }
+    return line;
+  }
+
+  public boolean isEmpty() {
+    return bytes != null ? bytes.length == 0 : line == null || line.length() == 0;
+  }
+
+  /**
+   * Append a wrapped line to this line.
+   *
+   * @param extra
+   *          the next line
+   */
+  public void append( TextFileLine extra ) {
+    if ( bytes != null && extra.bytes != null ) {
+      byte[] joined = new byte[bytes.length + extra.bytes.length];
+      System.arraycopy( bytes, 0, joined, 0, bytes.length );
+      System.arraycopy( extra.bytes, 0, joined, bytes.length, extra.bytes.length );
+      bytes = joined;
+      line = null;
+    } else {
+      line = getLine() + extra.getLine();
+      bytes = null;
+    }
+  }
 }
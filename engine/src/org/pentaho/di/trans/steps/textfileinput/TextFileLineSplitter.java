@@ -0,0 +1,326 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import java.nio.charset.Charset;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Splits the lines read by a {@link TextFileByteReader} in fields without decoding them first. This works for
+ * encodings in which the separator, enclosure, escape character and line feeds are encoded as bytes that can't appear
+ * inside other characters: all single byte encodings and UTF-8. Fixed width files are only supported in single byte
+ * encodings since the positions are expressed in characters.<br>
+ * <br>
+ * The positions of the fields found in the last line are kept, the fields are only copied or decoded when they are
+ * asked for. An instance is used by a single step copy.
+ */
+public class TextFileLineSplitter {
+  private static final String UTF_8 = "UTF-8";
+
+  private Charset charset;
+  private boolean fixedWidth;
+  private TextFileInputField[] fields;
+
+  private byte[] delimiter;
+  private byte[] enclosure;
+  private byte[] escape;
+  private byte carriageReturn;
+  private byte lineFeed;
+
+  private byte[] line;
+  private int nrFields;
+  private int[] fieldStart;
+  private int[] fieldEnd;
+
+  /**
+   * @param charset
+   *          the encoding of the file, see {@link #isSupported(Charset, boolean)}
+   * @param fixedWidth
+   *          true if the fields are at fixed positions, false if they are delimited (CSV)
+   * @param fields
+   *          the fields to read, only the positions and lengths are used for fixed width files
+   * @param delimiter
+   *          the field delimiter
+   * @param enclosure
+   *          the enclosure, can be empty
+   * @param escape
+   *          the escape character, can be empty
+   */
+  public TextFileLineSplitter( Charset charset, boolean fixedWidth, TextFileInputField[] fields, String delimiter,
+    String enclosure, String escape ) {
+    this.charset = charset;
+    this.fixedWidth = fixedWidth;
+    this.fields = fields;
+    this.delimiter = getBytes( delimiter );
+    this.enclosure = getBytes( enclosure );
+    this.escape = getBytes( escape );
+    this.carriageReturn = getBytes( "\r" )[0];
+    this.lineFeed = getBytes( "\n" )[0];
+    this.fieldStart = new int[fields.length];
+    this.fieldEnd = new int[fields.length];
+  }
+
+  /**
+   * @param charset
+   *          the encoding of the file
+   * @param fixedWidth
+   *          true for fixed width files
+   * @return true if files in the encoding can be parsed without decoding them first
+   */
+  public static boolean isSupported( Charset charset, boolean fixedWidth ) {
+    if ( charset == null ) {
+      return false;
+    }
+    if ( UTF_8.equals( charset.name() ) ) {
+      return !fixedWidth;
+    }
+    try {
+      return charset.newEncoder().maxBytesPerChar() == 1.0f && "\r\n".getBytes( charset ).length == 2;
+    } catch ( UnsupportedOperationException e ) {
+      // Decoding only
+      return false;
+    }
+  }
+
+  private byte[] getBytes( String string ) {
+    if ( Const.isEmpty( string ) ) {
+      return new byte[0];
+    }
+    return string.getBytes( charset );
+  }
+
+  /**
+   * Find the fields in a line. The field positions are kept until the next line is split.<br>
+   * Escaped enclosures and separators are unescaped in the line itself, the bytes in between the fields are changed.
+   *
+   * @param line
+   *          the bytes of the line, without line feed
+   * @return the number of fields found, it can be smaller (missing fields) or larger (extra fields, these are ignored)
+   *         than the number of fields to read
+   */
+  public int split( byte[] line ) {
+    this.line = line;
+    nrFields = 0;
+    if ( fixedWidth ) {
+      for ( int i = 0; i < fields.length; i++ ) {
+        int position = fields[i].getPosition();
+        fieldStart[i] = Math.min( position, line.length );
+        fieldEnd[i] = Math.min( position + fields[i].getLength(), line.length );
+      }
+      nrFields = fields.length;
+      return nrFields;
+    }
+
+    int length = line.length;
+    int pos = 0;
+    while ( pos < length ) {
+      int start;
+      int end;
+      boolean unescape = false;
+
+      if ( enclosure.length > 0 && matches( line, pos, length, enclosure ) ) {
+        // Look for the closing enclosure, skipping escaped and doubled enclosures
+        //
+        start = pos + enclosure.length;
+        int p = start;
+        while ( p < length ) {
+          if ( escape.length > 0 && matches( line, p, length, escape )
+            && matches( line, p + escape.length, length, enclosure ) ) {
+            p += escape.length + enclosure.length;
+            unescape = true;
+          } else if ( matches( line, p, length, enclosure ) ) {
+            if ( escape.length == 0 && matches( line, p + enclosure.length, length, enclosure ) ) {
+              p += 2 * enclosure.length;
+              unescape = true;
+            } else {
+              break;
+            }
+          } else {
+            p++;
+          }
+        }
+        end = Math.min( p, length );
+        pos = indexOfDelimiter( line, end, length );
+      } else {
+        start = pos;
+        int p = pos;
+        end = -1;
+        while ( end < 0 ) {
+          p = indexOf( line, p, length, delimiter );
+          if ( p >= 0 && escape.length > 0 && p - escape.length >= start
+            && matches( line, p - escape.length, length, escape ) ) {
+            // This separator is escaped, take the next one
+            p += delimiter.length;
+            unescape = true;
+          } else {
+            end = p < 0 ? length : p;
+          }
+        }
+        pos = end;
+      }
+
+      if ( unescape ) {
+        end = unescape( line, start, end );
+      }
+      addField( start, end );
+
+      // Skip the delimiter, if any
+      //
+      pos = pos < length ? pos + delimiter.length : length + 1;
+    }
+
+    if ( pos == length ) {
+      // A line ending with a delimiter (or an empty line) ends with an empty field
+      addField( length, length );
+    }
+
+    return nrFields;
+  }
+
+  private void addField( int start, int end ) {
+    if ( nrFields < fieldStart.length ) {
+      fieldStart[nrFields] = start;
+      fieldEnd[nrFields] = end;
+    }
+    nrFields++;
+  }
+
+  private int indexOfDelimiter( byte[] source, int from, int length ) {
+    int index = indexOf( source, from, length, delimiter );
+    return index < 0 ? length : index;
+  }
+
+  private static int indexOf( byte[] source, int from, int length, byte[] pattern ) {
+    if ( pattern.length == 0 ) {
+      return -1;
+    }
+    byte first = pattern[0];
+    for ( int i = from; i <= length - pattern.length; i++ ) {
+      if ( source[i] == first && matches( source, i, length, pattern ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static boolean matches( byte[] source, int location, int length, byte[] pattern ) {
+    if ( location + pattern.length > length ) {
+      return false;
+    }
+    for ( int i = 0; i < pattern.length; i++ ) {
+      if ( source[location + i] != pattern[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Remove the escape characters in front of enclosures and separators and collapse doubled enclosures (when there is
+   * no escape character) in place.
+   *
+   * @return the new end of the field
+   */
+  private int unescape( byte[] source, int start, int end ) {
+    int w = start;
+    int r = start;
+    while ( r < end ) {
+      if ( escape.length > 0 && matches( source, r, end, escape )
+        && ( matches( source, r + escape.length, end, enclosure ) || matches(
+          source, r + escape.length, end, delimiter ) ) ) {
+        r += escape.length;
+        byte[] escaped = matches( source, r, end, enclosure ) ? enclosure : delimiter;
+        for ( int i = 0; i < escaped.length; i++ ) {
+          source[w++] = source[r++];
+        }
+      } else if ( escape.length == 0 && enclosure.length > 0 && matches( source, r, end, enclosure )
+        && matches( source, r + enclosure.length, end, enclosure ) ) {
+        for ( int i = 0; i < enclosure.length; i++ ) {
+          source[w++] = source[r++];
+        }
+        r += enclosure.length;
+      } else {
+        source[w++] = source[r++];
+      }
+    }
+    return w;
+  }
+
+  /**
+   * @param index
+   *          the index of the field
+   * @return the field of the last line split as a String or null if the line doesn't have the field
+   */
+  public String getString( int index ) {
+    if ( index >= Math.min( nrFields, fieldStart.length ) ) {
+      return null;
+    }
+    return new String( line, fieldStart[index], fieldEnd[index] - fieldStart[index], charset );
+  }
+
+  /**
+   * @param index
+   *          the index of the field
+   * @return a copy of the bytes of the field of the last line split, or null if the line doesn't have the field
+   */
+  public byte[] getBytes( int index ) {
+    if ( index >= Math.min( nrFields, fieldStart.length ) ) {
+      return null;
+    }
+    byte[] bytes = new byte[fieldEnd[index] - fieldStart[index]];
+    System.arraycopy( line, fieldStart[index], bytes, 0, bytes.length );
+    return bytes;
+  }
+
+  /**
+   * @return the number of fields found in the last line split
+   */
+  public int getNrFields() {
+    return nrFields;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  public boolean isFixedWidth() {
+    return fixedWidth;
+  }
+
+  public byte[] getEnclosure() {
+    return enclosure;
+  }
+
+  public byte[] getEscape() {
+    return escape;
+  }
+
+  public byte getCarriageReturn() {
+    return carriageReturn;
+  }
+
+  public byte getLineFeed() {
+    return lineFeed;
+  }
+}
@@ -23,6 +23,8 @@
 package org.pentaho.di.trans.steps.transexecutor;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Result;
@@ -36,14 +38,18 @@ import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.DelegationListener;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransExecutionConfiguration;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.RowAdapter;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaDataCombi;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.TransStepUtil;
 
@@ -56,6 +62,9 @@ import org.pentaho.di.trans.steps.TransStepUtil;
 public class TransExecutor extends BaseStep implements StepInterface {
   private static Class<?> PKG = TransExecutorMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The ID of the "Get rows from result" step, the rows of a group are injected there in pooled mode */
+  static final String ROWS_FROM_RESULT_STEP_ID = "RowsFromResult";
+
   private TransExecutorMeta meta;
   private TransExecutorData data;
 
@@ -167,6 +176,13 @@ public class TransExecutor extends BaseStep implements StepInterface {
 
     getData().groupTimeStart = System.currentTimeMillis();
 
+    // In pooled mode the group is fed to a transformation that is already prepared
+    //
+    if ( getData().pooledExecution ) {
+      collectExecutionResults( executePooledTrans() );
+      return;
+    }
+
     // Keep the strain on the logging back-end conservative.
     // TODO: make this optional/user-defined later
     //
@@ -243,6 +259,10 @@ public class TransExecutor extends BaseStep implements StepInterface {
       result.setNrErrors( 1 );
     }
 
+    collectExecutionResults( result );
+  }
+
+  private void collectExecutionResults( Result result ) throws KettleException {
     // First the natural output...
     //
     if ( meta.getExecutionResultTargetStepMeta() != null ) {
@@ -287,7 +307,12 @@ public class TransExecutor extends BaseStep implements StepInterface {
       }
       if ( !Const.isEmpty( meta.getExecutionLogTextField() ) ) {
         String channelId = getData().executorTrans.getLogChannelId();
-        String logText = KettleLogStore.getAppender().getBuffer( channelId, false ).toString();
+        String logText;
+        if ( getData().pooledExecution ) {
+          logText = KettleLogStore.getAppender().getBuffer( channelId, false, getData().groupLogLine ).toString();
+        } else {
+          logText = KettleLogStore.getAppender().getBuffer( channelId, false ).toString();
+        }
         outputRow[idx++] = logText;
       }
       if ( !Const.isEmpty( meta.getExecutionLogChannelIdField() ) ) {
@@ -312,6 +337,188 @@ public class TransExecutor extends BaseStep implements StepInterface {
     getData().groupBuffer.clear();
   }
 
+  /**
+   * Feed the rows of the group to the prepared transformation and let all its steps process them once.
+   *
+   * @return the result of the group: the difference with the totals of the transformation after the previous group
+   */
+  private Result executePooledTrans() throws KettleException {
+    if ( getData().pooledExecutor == null ) {
+      preparePooledTrans();
+    }
+    getData().groupLogLine = KettleLogStore.getLastBufferLineNr();
+
+    for ( RowMetaAndData row : getData().groupBuffer ) {
+      for ( RowProducer rowProducer : getData().rowProducers ) {
+        rowProducer.putRow( row.getRowMeta(), row.getData() );
+      }
+    }
+
+    boolean more;
+    long failures = 0;
+    try {
+      // The steps are processed in order, batchComplete() makes the aggregating steps flush the group.
+      //
+      more = getData().pooledExecutor.oneIteration();
+    } catch ( KettleException e ) {
+      log.logError( "An error occurred executing the transformation: ", e );
+      more = false;
+      failures = 1;
+    }
+
+    Result total = getData().executorTrans.getResult();
+    Result previous = getData().pooledResult;
+
+    Result result = new Result();
+    result.setNrErrors( total.getNrErrors() - previous.getNrErrors() + failures );
+    result.setResult( result.getNrErrors() == 0 );
+    result.setNrLinesRead( total.getNrLinesRead() - previous.getNrLinesRead() );
+    result.setNrLinesWritten( total.getNrLinesWritten() - previous.getNrLinesWritten() );
+    result.setNrLinesInput( total.getNrLinesInput() - previous.getNrLinesInput() );
+    result.setNrLinesOutput( total.getNrLinesOutput() - previous.getNrLinesOutput() );
+    result.setNrLinesUpdated( total.getNrLinesUpdated() - previous.getNrLinesUpdated() );
+    result.setNrLinesRejected( total.getNrLinesRejected() - previous.getNrLinesRejected() );
+    for ( Map.Entry<String, ResultFile> entry : total.getResultFiles().entrySet() ) {
+      if ( !previous.getResultFiles().containsKey( entry.getKey() ) ) {
+        result.getResultFiles().put( entry.getKey(), entry.getValue() );
+      }
+    }
+    result.setLogChannelId( total.getLogChannelId() );
+    getData().pooledResult = total;
+
+    // Once a step failed or finished the transformation can't take more rows: the next group gets a new one.
+    //
+    if ( !more || !result.getResult() ) {
+      disposePooledTrans();
+    }
+
+    return result;
+  }
+
+  /**
+   * Prepare the transformation once in the single threaded engine and inject rows into its "Get rows from result"
+   * steps.
+   */
+  private void preparePooledTrans() throws KettleException {
+    if ( getData().executorTrans != null ) {
+      KettleLogStore.discardLines( getData().executorTrans.getLogChannelId(), false );
+      LoggingRegistry.getInstance().removeIncludingChildren( getData().executorTrans.getLogChannelId() );
+    }
+
+    getData().executorTransMeta.setTransformationType( TransformationType.SingleThreaded );
+    getData().executorTransMeta.setUsingThreadPriorityManagment( false );
+
+    getData().executorTrans = new Trans( getData().executorTransMeta, this );
+
+    getData().executorTrans.setParentTrans( getTrans() );
+    getData().executorTrans.setLogLevel( getLogLevel() );
+    getData().executorTrans.setArguments( getTrans().getArguments() );
+
+    if ( meta.getParameters().isInheritingAllVariables() ) {
+      getData().executorTrans.shareVariablesWith( this );
+    }
+    getData().executorTrans.setInternalKettleVariables( this );
+    getData().executorTrans.copyParametersFrom( getData().executorTransMeta );
+
+    getData().executorTrans.setPreview( getTrans().isPreview() );
+
+    initServletConfig();
+
+    // Only static parameter values are allowed in pooled mode, they are the same for every group.
+    //
+    passParametersToTrans();
+
+    getTrans().getActiveSubtransformations().put( getStepname(), getData().executorTrans );
+
+    getData().executorTrans.prepareExecution( getTrans().getArguments() );
+
+    getData().rowProducers = new ArrayList<RowProducer>();
+    for ( StepMetaDataCombi combi : getData().executorTrans.getSteps() ) {
+      if ( ROWS_FROM_RESULT_STEP_ID.equals( combi.stepMeta.getStepID() ) && combi.copy == 0 ) {
+        getData().rowProducers.add( getData().executorTrans.addRowProducer( combi.stepname, 0 ) );
+      }
+    }
+
+    if ( meta.getOutputRowsSourceStepMeta() != null ) {
+      StepInterface stepInterface =
+        getData().executorTrans.getParentTrans().findRunThread( meta.getOutputRowsSourceStepMeta().getName() );
+      stepInterface.addRowListener( new RowAdapter() {
+        @Override
+        public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+          TransExecutor.this.putRow( rowMeta, row );
+        }
+      } );
+    }
+
+    getData().executorTrans.startThreads();
+
+    for ( DelegationListener delegationListener : getTrans().getDelegationListeners() ) {
+      delegationListener.transformationDelegationStarted( getData().executorTrans, new TransExecutionConfiguration() );
+    }
+
+    getData().pooledExecutor = new SingleThreadedTransExecutor( getData().executorTrans );
+    if ( !getData().pooledExecutor.init() ) {
+      getData().pooledExecutor = null;
+      throw new KettleException( BaseMessages.getString(
+        PKG, "TransExecutor.Exception.UnableToInitSingleThreadedTransformation" ) );
+    }
+    getData().pooledResult = new Result();
+  }
+
+  private void disposePooledTrans() {
+    if ( getData().pooledExecutor == null ) {
+      return;
+    }
+    for ( RowProducer rowProducer : getData().rowProducers ) {
+      rowProducer.finished();
+    }
+    try {
+      getData().pooledExecutor.dispose();
+    } catch ( KettleException e ) {
+      log.logError( "Error disposing of the transformation: ", e );
+    }
+    getData().pooledExecutor = null;
+    getData().rowProducers = null;
+  }
+
+  /**
+   * The transformation can only be kept prepared if every group runs it the same way: all the source steps need to be
+   * "Get rows from result" steps, all steps need to run in the single threaded engine and the parameter values can't
+   * come from the input rows.
+   *
+   * @return null if pooled execution is possible, the reason why not otherwise
+   */
+  String getPooledExecutionProblem() {
+    TransExecutorParameters parameters = meta.getParameters();
+    for ( int i = 0; i < parameters.getField().length; i++ ) {
+      if ( !Const.isEmpty( parameters.getField()[i] ) ) {
+        return BaseMessages.getString( PKG, "TransExecutor.PooledExecution.ParameterField", parameters.getField()[i] );
+      }
+    }
+
+    TransMeta transMeta = getData().executorTransMeta;
+    List<StepMeta> steps = transMeta.getTransHopSteps( false );
+    if ( steps.isEmpty() ) {
+      return BaseMessages.getString( PKG, "TransExecutor.PooledExecution.NoSteps" );
+    }
+    for ( StepMeta stepMeta : steps ) {
+      boolean supported = false;
+      for ( TransformationType type : stepMeta.getStepMetaInterface().getSupportedTransformationTypes() ) {
+        if ( type == TransformationType.SingleThreaded ) {
+          supported = true;
+        }
+      }
+      if ( !supported ) {
+        return BaseMessages.getString( PKG, "TransExecutor.PooledExecution.StepNotSupported", stepMeta.getName() );
+      }
+      if ( transMeta.findPreviousSteps( stepMeta ).isEmpty()
+        && !ROWS_FROM_RESULT_STEP_ID.equals( stepMeta.getStepID() ) ) {
+        return BaseMessages.getString( PKG, "TransExecutor.PooledExecution.SourceStep", stepMeta.getName() );
+      }
+    }
+    return null;
+  }
+
   void initServletConfig() {
     TransStepUtil.initServletConfig( getTrans(), getData().getExecutorTrans() );
   }
@@ -394,6 +601,18 @@ public class TransExecutor extends BaseStep implements StepInterface {
             getData().groupField = environmentSubstitute( meta.getGroupField() );
           }
 
+          // Can we keep the transformation prepared for all the groups?
+          //
+          getData().pooledExecution = false;
+          if ( meta.isPooledExecution() ) {
+            String problem = getPooledExecutionProblem();
+            if ( problem == null ) {
+              getData().pooledExecution = true;
+            } else {
+              logBasic( BaseMessages.getString( PKG, "TransExecutor.Log.PooledExecutionNotPossible", problem ) );
+            }
+          }
+
           // That's all for now...
           return true;
         } else {
@@ -409,6 +628,7 @@ public class TransExecutor extends BaseStep implements StepInterface {
   }
 
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    disposePooledTrans();
     getData().groupBuffer = null;
 
     super.dispose( smi, sdi );
@@ -24,10 +24,13 @@ package org.pentaho.di.trans.steps.transexecutor;
 
 import java.util.List;
 
+import org.pentaho.di.core.Result;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -59,6 +62,12 @@ public class TransExecutorData extends BaseStepData implements StepDataInterface
   public RowSet resultFilesRowSet;
   public RowSet executionResultRowSet;
 
+  public boolean pooledExecution;
+  public SingleThreadedTransExecutor pooledExecutor;
+  public List<RowProducer> rowProducers;
+  public Result pooledResult;
+  public int groupLogLine;
+
   public TransExecutorData() {
     super();
   }
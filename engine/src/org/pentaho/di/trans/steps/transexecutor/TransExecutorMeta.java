@@ -106,6 +106,12 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
    */
   private String groupTime;
 
+  /**
+   * Keep the transformation prepared and feed every group of rows to it, rather than preparing and starting a new
+   * transformation for every group (false default)
+   */
+  private boolean pooledExecution;
+
   private TransExecutorParameters parameters;
 
   private String executionResultTargetStep;
@@ -230,6 +236,7 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
     retval.append( "    " ).append( XMLHandler.addTagValue( "group_size", groupSize ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "group_field", groupField ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "group_time", groupTime ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "pooled_execution", pooledExecution ) );
 
     // Add the mapping parameters too
     //
@@ -300,6 +307,7 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
       groupSize = XMLHandler.getTagValue( stepnode, "group_size" );
       groupField = XMLHandler.getTagValue( stepnode, "group_field" );
       groupTime = XMLHandler.getTagValue( stepnode, "group_time" );
+      pooledExecution = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "pooled_execution" ) );
 
       // Load the mapping parameters too..
       //
@@ -362,6 +370,7 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
     groupSize = rep.getStepAttributeString( id_step, "group_size" );
     groupField = rep.getStepAttributeString( id_step, "group_field" );
     groupTime = rep.getStepAttributeString( id_step, "group_time" );
+    pooledExecution = rep.getStepAttributeBoolean( id_step, "pooled_execution" );
 
     parameters = new TransExecutorParameters( rep, id_step );
 
@@ -411,6 +420,7 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
     rep.saveStepAttribute( id_transformation, id_step, "group_size", groupSize );
     rep.saveStepAttribute( id_transformation, id_step, "group_field", groupField );
     rep.saveStepAttribute( id_transformation, id_step, "group_time", groupTime );
+    rep.saveStepAttribute( id_transformation, id_step, "pooled_execution", pooledExecution );
 
     // save the mapping parameters too
     //
@@ -471,6 +481,7 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
     groupSize = "1";
     groupField = "";
     groupTime = "";
+    pooledExecution = false;
 
     executionTimeField = "ExecutionTime";
     executionResultField = "ExecutionResult";
@@ -1228,6 +1239,21 @@ public class TransExecutorMeta extends BaseStepMeta implements StepMetaInterface
     this.groupTime = groupTime;
   }
 
+  /**
+   * @return true if the transformation is prepared once and fed every group of rows
+   */
+  public boolean isPooledExecution() {
+    return pooledExecution;
+  }
+
+  /**
+   * @param pooledExecution
+   *          true if the transformation is prepared once and fed every group of rows
+   */
+  public void setPooledExecution( boolean pooledExecution ) {
+    this.pooledExecution = pooledExecution;
+  }
+
   @Override
   public boolean excludeFromCopyDistributeVerification() {
     return true;
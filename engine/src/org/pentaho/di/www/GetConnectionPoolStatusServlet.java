@@ -0,0 +1,89 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.www;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.database.ConnectionPoolMetrics;
+import org.pentaho.di.core.database.ConnectionPoolUtil;
+import org.pentaho.di.core.xml.XMLHandler;
+
+/**
+ * Reports the usage statistics of the database connection pools of this server: active and idle connections, the time
+ * spent waiting for a connection with its histogram and the number of leaked connections.
+ */
+public class GetConnectionPoolStatusServlet extends BaseHttpServlet implements CartePluginInterface {
+  private static final long serialVersionUID = 2912316539211728304L;
+
+  public static final String CONTEXT_PATH = "/kettle/connectionPoolStatus";
+
+  public static final String XML_TAG = "connection_pools";
+
+  public GetConnectionPoolStatusServlet() {
+  }
+
+  public void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
+    IOException {
+    if ( isJettyMode() && !request.getContextPath().startsWith( CONTEXT_PATH ) ) {
+      return;
+    }
+
+    if ( log.isDebug() ) {
+      logDebug( toString() );
+    }
+    response.setStatus( HttpServletResponse.SC_OK );
+
+    // We always reply in XML...
+    //
+    response.setContentType( "text/xml" );
+    response.setCharacterEncoding( Const.XML_ENCODING );
+    PrintStream out = new PrintStream( response.getOutputStream() );
+
+    out.print( XMLHandler.getXMLHeader( Const.XML_ENCODING ) );
+    out.println( XMLHandler.openTag( XML_TAG ) );
+
+    for ( ConnectionPoolMetrics metrics : ConnectionPoolUtil.getConnectionPoolMetrics() ) {
+      out.print( metrics.getXML() );
+    }
+
+    out.println( XMLHandler.closeTag( XML_TAG ) );
+  }
+
+  public String toString() {
+    return "Get the status of the database connection pools";
+  }
+
+  public String getService() {
+    return CONTEXT_PATH + " (" + toString() + ")";
+  }
+
+  public String getContextPath() {
+    return CONTEXT_PATH;
+  }
+
+}
@@ -0,0 +1,163 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.www;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.logging.KettleLogStore;
+import org.pentaho.di.core.logging.LoggingBuffer;
+import org.pentaho.di.job.Job;
+import org.pentaho.di.trans.Trans;
+
+/**
+ * Sends the log text of a transformation or job as plain text, starting after the log line number given with the
+ * "from" parameter. With follow=Y the response is streamed: new lines are sent as they are logged until the
+ * transformation or job is finished or the client disconnects. Clients no longer need to poll the status servlets
+ * for the log of a long running transformation.<br>
+ * <br>
+ * Parameters: name and/or id of the transformation or job, type=job for a job, from (default 0), follow (Y/N) and
+ * general (Y/N) to include the general log lines. Without follow, the number of the last line sent is returned in the
+ * {@link #LAST_LINE_NR_HEADER} header, pass it as "from" in the next request.
+ */
+public class GetLogServlet extends BaseHttpServlet implements CartePluginInterface {
+  private static final long serialVersionUID = -6148125938215422761L;
+
+  public static final String CONTEXT_PATH = "/kettle/log";
+
+  public static final String LAST_LINE_NR_HEADER = "Kettle-Last-Line-Nr";
+
+  /** The time in ms between two looks at the log while following it */
+  private static final long FOLLOW_INTERVAL = 500;
+
+  public GetLogServlet() {
+  }
+
+  public GetLogServlet( TransformationMap transformationMap, JobMap jobMap ) {
+    super( transformationMap, jobMap );
+  }
+
+  public void doGet( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
+    IOException {
+    if ( isJettyMode() && !request.getContextPath().startsWith( CONTEXT_PATH ) ) {
+      return;
+    }
+
+    if ( log.isDebug() ) {
+      logDebug( toString() );
+    }
+
+    String name = request.getParameter( "name" );
+    String id = request.getParameter( "id" );
+    boolean isJob = "job".equalsIgnoreCase( request.getParameter( "type" ) );
+    int startLineNr = Const.toInt( request.getParameter( "from" ), 0 );
+    boolean follow = "Y".equalsIgnoreCase( request.getParameter( "follow" ) );
+    boolean includeGeneral = "Y".equalsIgnoreCase( request.getParameter( "general" ) );
+
+    Trans trans = null;
+    Job job = null;
+    if ( isJob ) {
+      if ( Const.isEmpty( id ) ) {
+        CarteObjectEntry entry = getJobMap().getFirstCarteObjectEntry( name );
+        if ( entry != null ) {
+          job = getJobMap().getJob( entry );
+        }
+      } else if ( Const.isEmpty( name ) ) {
+        job = getJobMap().findJob( id );
+      } else {
+        job = getJobMap().getJob( new CarteObjectEntry( name, id ) );
+      }
+    } else {
+      if ( Const.isEmpty( id ) ) {
+        CarteObjectEntry entry = getTransformationMap().getFirstCarteObjectEntry( name );
+        if ( entry != null ) {
+          trans = getTransformationMap().getTransformation( entry );
+        }
+      } else {
+        trans = getTransformationMap().getTransformation( new CarteObjectEntry( name, id ) );
+      }
+    }
+
+    if ( trans == null && job == null ) {
+      response.sendError( HttpServletResponse.SC_NOT_FOUND, ( isJob ? "Job '" : "Transformation '" )
+        + name + "' with id '" + id + "' could not be found" );
+      return;
+    }
+    String logChannelId = trans != null ? trans.getLogChannelId() : job.getLogChannelId();
+
+    LoggingBuffer buffer = KettleLogStore.getAppender();
+    int lastLineNr = buffer.getLastBufferLineNr();
+
+    response.setStatus( HttpServletResponse.SC_OK );
+    response.setCharacterEncoding( "UTF-8" );
+    response.setContentType( "text/plain;charset=UTF-8" );
+    if ( !follow ) {
+      response.setHeader( LAST_LINE_NR_HEADER, Integer.toString( lastLineNr ) );
+    }
+
+    // Without a content length the response is chunked, every flush sends what we have so far
+    //
+    PrintWriter out = response.getWriter();
+    out.print( buffer.getBuffer( logChannelId, includeGeneral, startLineNr, lastLineNr ) );
+    out.flush();
+
+    while ( follow && !out.checkError() ) {
+      // Look at the state first: the lines logged before it finished are sent below.
+      //
+      boolean finished = trans != null ? trans.isFinishedOrStopped() : job.isFinished() || job.isStopped();
+
+      int fromLineNr = lastLineNr;
+      lastLineNr = buffer.getLastBufferLineNr();
+      if ( lastLineNr > fromLineNr ) {
+        out.print( buffer.getBuffer( logChannelId, includeGeneral, fromLineNr, lastLineNr ) );
+        out.flush();
+      }
+      if ( finished ) {
+        break;
+      }
+
+      try {
+        Thread.sleep( FOLLOW_INTERVAL );
+      } catch ( InterruptedException e ) {
+        break;
+      }
+    }
+  }
+
+  public String toString() {
+    return "Get the log of a transformation or job";
+  }
+
+  public String getService() {
+    return CONTEXT_PATH + " (" + toString() + ")";
+  }
+
+  public String getContextPath() {
+    return CONTEXT_PATH;
+  }
+
+}
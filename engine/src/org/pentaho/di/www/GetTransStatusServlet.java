@@ -243,7 +243,8 @@ public class GetTransStatusServlet extends BaseHttpServlet implements CartePlugi
             + BaseMessages.getString( PKG, "TransStatusServlet.Active" ) + "</th> <th>"
             + BaseMessages.getString( PKG, "TransStatusServlet.Time" ) + "</th> " + "<th>"
             + BaseMessages.getString( PKG, "TransStatusServlet.Speed" ) + "</th> <th>"
-            + BaseMessages.getString( PKG, "TransStatusServlet.prinout" ) + "</th> </tr>" );
+            + BaseMessages.getString( PKG, "TransStatusServlet.prinout" ) + "</th> <th>"
+            + BaseMessages.getString( PKG, "TransStatusServlet.MemoryReserved" ) + "</th> </tr>" );
 
           for ( int i = 0; i < trans.nrSteps(); i++ ) {
             StepInterface step = trans.getRunThread( i );
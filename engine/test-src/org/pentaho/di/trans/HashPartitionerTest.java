@@ -0,0 +1,221 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.partition.PartitionSchema;
+import org.pentaho.di.trans.step.StepPartitioningMeta;
+import org.w3c.dom.Node;
+
+public class HashPartitionerTest {
+
+  private static HashPartitioner createPartitioner( int virtualNodes, int nrPartitions, String... fieldNames ) {
+    List<String> partitionIDs = new ArrayList<String>();
+    for ( int i = 0; i < nrPartitions; i++ ) {
+      partitionIDs.add( "P" + ( i + 1 ) );
+    }
+    StepPartitioningMeta meta = new StepPartitioningMeta();
+    meta.setPartitionSchema( new PartitionSchema( "schema", partitionIDs ) );
+
+    HashPartitioner partitioner = new HashPartitioner();
+    partitioner.setMeta( meta );
+    partitioner.setFieldNames( fieldNames );
+    partitioner.setVirtualNodes( virtualNodes );
+    return partitioner;
+  }
+
+  private static RowMetaInterface createRowMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "amount", ValueMetaInterface.TYPE_BIGNUMBER ) );
+    return rowMeta;
+  }
+
+  @Test
+  public void testSameKeySamePartition() throws KettleException {
+    RowMetaInterface rowMeta = createRowMeta();
+
+    // The same values in binary string storage and in a different field order
+    //
+    ValueMeta storageMeta = new ValueMeta( "name", ValueMetaInterface.TYPE_STRING );
+    ValueMeta lazyName = new ValueMeta( "name", ValueMetaInterface.TYPE_STRING );
+    lazyName.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+    lazyName.setStorageMetadata( storageMeta );
+    RowMetaInterface lazyRowMeta = new RowMeta();
+    lazyRowMeta.addValueMeta( new ValueMeta( "amount", ValueMetaInterface.TYPE_BIGNUMBER ) );
+    lazyRowMeta.addValueMeta( lazyName );
+    lazyRowMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+
+    for ( int virtualNodes : new int[] { 0, HashPartitioner.DEFAULT_VIRTUAL_NODES } ) {
+      HashPartitioner partitioner = createPartitioner( virtualNodes, 7, "id", "name", "amount" );
+      HashPartitioner lazyPartitioner = createPartitioner( virtualNodes, 7, "id", "name", "amount" );
+      for ( long id = 0; id < 100; id++ ) {
+        String name = "name" + id;
+        int partition = partitioner.getPartition( rowMeta, new Object[] { id, name, new BigDecimal( "1.5" ) } );
+        assertTrue( partition >= 0 && partition < 7 );
+        assertEquals( partition, partitioner.getPartition( rowMeta, new Object[] {
+          id, name, new BigDecimal( "1.500" ) } ) );
+        assertEquals( partition, lazyPartitioner.getPartition( lazyRowMeta, new Object[] {
+          new BigDecimal( "1.50" ), name.getBytes(), id } ) );
+      }
+    }
+  }
+
+  @Test
+  public void testNullValues() throws KettleException {
+    HashPartitioner partitioner = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 3, "id", "name" );
+    RowMetaInterface rowMeta = createRowMeta();
+    int partition = partitioner.getPartition( rowMeta, new Object[] { null, null, null } );
+    assertTrue( partition >= 0 && partition < 3 );
+    assertEquals( partition, partitioner.getPartition( rowMeta, new Object[] { null, null, BigDecimal.ONE } ) );
+  }
+
+  @Test
+  public void testConsistentHashing() throws KettleException {
+    RowMetaInterface rowMeta = createRowMeta();
+    HashPartitioner fourPartitions = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 4, "id" );
+    HashPartitioner fivePartitions = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 5, "id" );
+
+    int nrRows = 20000;
+    int moved = 0;
+    for ( long id = 0; id < nrRows; id++ ) {
+      Object[] row = new Object[] { id, null, null };
+      int before = fourPartitions.getPartition( rowMeta, row );
+      int after = fivePartitions.getPartition( rowMeta, row );
+      if ( before != after ) {
+        // Only the keys taken over by the new partition move
+        assertEquals( 4, after );
+        moved++;
+      }
+    }
+    assertTrue( "Moved " + moved + " rows", moved > nrRows / 10 && moved < nrRows * 3 / 10 );
+
+    long[] counts = fivePartitions.getRowCounts();
+    assertEquals( 5, counts.length );
+    for ( long count : counts ) {
+      assertTrue( "Partition with " + count + " rows", count > nrRows / 5 / 2 && count < nrRows / 5 * 3 / 2 );
+    }
+  }
+
+  @Test
+  public void testModulo() throws KettleException {
+    RowMetaInterface rowMeta = createRowMeta();
+    HashPartitioner partitioner = createPartitioner( 0, 3, "name" );
+    for ( int i = 0; i < 3000; i++ ) {
+      int partition = partitioner.getPartition( rowMeta, new Object[] { null, "key" + i, null } );
+      assertTrue( partition >= 0 && partition < 3 );
+    }
+    long total = 0;
+    for ( long count : partitioner.getRowCounts() ) {
+      assertTrue( count > 500 );
+      total += count;
+    }
+    assertEquals( 3000, total );
+  }
+
+  @Test
+  public void testSkewWarning() throws KettleException {
+    RowMetaInterface rowMeta = createRowMeta();
+    HashPartitioner even = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 4, "id" );
+    HashPartitioner skewed = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 4, "id" );
+    LogChannelInterface evenLog = mock( LogChannelInterface.class );
+    LogChannelInterface skewedLog = mock( LogChannelInterface.class );
+    even.setLogChannel( evenLog );
+    skewed.setLogChannel( skewedLog );
+    for ( long id = 0; id < 300000; id++ ) {
+      even.getPartition( rowMeta, new Object[] { id, null, null } );
+      skewed.getPartition( rowMeta, new Object[] { id % 10 == 0 ? id : 42L, null, null } );
+    }
+    assertFalse( even.isSkewReported() );
+    assertTrue( skewed.isSkewReported() );
+    verify( evenLog, never() ).logBasic( anyString() );
+    verify( skewedLog ).logBasic( anyString() );
+  }
+
+  @Test
+  public void testFieldNotFound() throws KettleException {
+    HashPartitioner partitioner = createPartitioner( HashPartitioner.DEFAULT_VIRTUAL_NODES, 2, "id", "unknown" );
+    try {
+      partitioner.getPartition( createRowMeta(), new Object[] { 1L, null, null } );
+      fail( "The unknown field should have been reported" );
+    } catch ( KettleException e ) {
+      assertTrue( e.getMessage().contains( "unknown" ) );
+    }
+  }
+
+  @Test
+  public void testXml() throws KettleException {
+    HashPartitioner partitioner = createPartitioner( 64, 2, "id", "name" );
+    partitioner.setSkewPercentage( 150 );
+
+    Node node = XMLHandler.getSubNode(
+      XMLHandler.loadXMLString( "<partitioning>" + partitioner.getXML() + "</partitioning>" ), "partitioning" );
+    HashPartitioner loaded = new HashPartitioner();
+    loaded.loadXML( node );
+
+    assertEquals( Arrays.asList( "id", "name" ), Arrays.asList( loaded.getFieldNames() ) );
+    assertEquals( 64, loaded.getVirtualNodes() );
+    assertEquals( 150, loaded.getSkewPercentage() );
+
+    HashPartitioner clone = loaded.clone();
+    assertEquals( Arrays.asList( "id", "name" ), Arrays.asList( clone.getFieldNames() ) );
+    assertEquals( 64, clone.getVirtualNodes() );
+    assertEquals( 150, clone.getSkewPercentage() );
+  }
+
+  @Test
+  public void testModPartitionerMinValue() throws KettleException {
+    StepPartitioningMeta meta = new StepPartitioningMeta();
+    meta.setPartitionSchema( new PartitionSchema( "schema", Arrays.asList( "P1", "P2", "P3" ) ) );
+    ModPartitioner partitioner = new ModPartitioner();
+    partitioner.setMeta( meta );
+    partitioner.setFieldName( "id" );
+
+    RowMetaInterface rowMeta = createRowMeta();
+    assertEquals( 2, partitioner.getPartition( rowMeta, new Object[] { Long.MIN_VALUE, null, null } ) );
+    assertEquals( 1, partitioner.getPartition( rowMeta, new Object[] { -7L, null, null } ) );
+    assertEquals( 1, partitioner.getPartition( rowMeta, new Object[] { 7L, null, null } ) );
+  }
+}
@@ -0,0 +1,86 @@
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class RemoteStepBatchTransportTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init( false );
+  }
+
+  @Test
+  public void testRowsSurviveTheRoundTrip() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "string", ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( new ValueMeta( "integer", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "number", ValueMetaInterface.TYPE_NUMBER ) );
+    rowMeta.addValueMeta( new ValueMeta( "date", ValueMetaInterface.TYPE_DATE ) );
+    rowMeta.addValueMeta( new ValueMeta( "boolean", ValueMetaInterface.TYPE_BOOLEAN ) );
+    rowMeta.addValueMeta( new ValueMeta( "bignumber", ValueMetaInterface.TYPE_BIGNUMBER ) );
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( int i = 0; i < RemoteStepBatchWriter.DEFAULT_BATCH_SIZE * 2 + 500; i++ ) {
+      if ( i % 7 == 0 ) {
+        rows.add( new Object[6] );
+      } else {
+        rows.add( new Object[] {
+          "row é " + i, Long.valueOf( i ), Double.valueOf( i / 3.0 ), new Date( 1000L * i ),
+          Boolean.valueOf( i % 2 == 0 ), new BigDecimal( i + ".25" ), } );
+      }
+    }
+
+    // Grant the writer enough credits up front, we read the batches after they are all written
+    //
+    ByteArrayOutputStream credits = new ByteArrayOutputStream();
+    new DataOutputStream( credits ).writeInt( 10 );
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    RemoteStepBatchWriter writer =
+      new RemoteStepBatchWriter( stream, new ByteArrayInputStream( credits.toByteArray() ), rowMeta, null,
+        RemoteStepBatchWriter.DEFAULT_BATCH_SIZE );
+    for ( Object[] row : rows ) {
+      writer.putRow( row );
+    }
+    writer.close();
+
+    ByteArrayOutputStream returnedCredits = new ByteArrayOutputStream();
+    RemoteStepBatchReader reader =
+      new RemoteStepBatchReader( new ByteArrayInputStream( stream.toByteArray() ), returnedCredits, 4 );
+    assertEquals( rowMeta.size(), reader.getRowMeta().size() );
+
+    for ( int i = 0; i < rows.size(); i++ ) {
+      Object[] row = reader.getRow();
+      Object[] expected = rows.get( i );
+      for ( int c = 0; c < rowMeta.size(); c++ ) {
+        assertEquals( "Row " + i + ", field " + c, expected[c], row[c] );
+      }
+    }
+    assertNull( reader.getRow() );
+
+    // The initial window plus the credits returned after every 2 batches
+    //
+    DataInputStream creditStream = new DataInputStream( new ByteArrayInputStream( returnedCredits.toByteArray() ) );
+    assertArrayEquals( new int[] { 4, 2, }, new int[] { creditStream.readInt(), creditStream.readInt(), } );
+    assertEquals( 0, creditStream.available() );
+  }
+}
@@ -22,6 +22,9 @@
 
 package org.pentaho.di.trans.steps.calculator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -33,11 +36,14 @@ import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.step.RowAdapter;
 import org.pentaho.di.trans.steps.mock.StepMockHelper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
@@ -100,4 +106,56 @@ public class CalculatorUnitTest {
       fail();
     }
   }
+
+  @Test
+  public void testCompiledOperations() throws KettleException {
+    RowMeta inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "A" ) );
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "B" ) );
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "X" ) );
+
+    RowSet inputRowSet =
+      smh.getMockInputRowSet( new Object[][] { { 20L, 3L, 1.5 }, { 20L, null, 2.5 } } );
+    inputRowSet.setRowMeta( inputRowMeta );
+
+    Calculator calculator = new Calculator( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
+    calculator.getInputRowSets().add( inputRowSet );
+    calculator.setInputRowMeta( inputRowMeta );
+    calculator.init( smh.initStepMetaInterface, smh.initStepDataInterface );
+
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( new CalculatorMetaFunction[] {
+      new CalculatorMetaFunction( "ten", CalculatorMetaFunction.CALC_CONSTANT, "10", null, null,
+        ValueMetaInterface.TYPE_INTEGER, 0, 0, true, "", "", "", "" ),
+      new CalculatorMetaFunction( "sum", CalculatorMetaFunction.CALC_ADD, "A", "B", null,
+        ValueMetaInterface.TYPE_INTEGER, 0, 0, false, "", "", "", "" ),
+      new CalculatorMetaFunction( "quotient", CalculatorMetaFunction.CALC_DIVIDE, "A", "ten", null,
+        ValueMetaInterface.TYPE_INTEGER, 0, 0, false, "", "", "", "" ),
+      new CalculatorMetaFunction( "product", CalculatorMetaFunction.CALC_MULTIPLY, "X", "X", null,
+        ValueMetaInterface.TYPE_STRING, 0, 0, false, "0.00", ".", "", "" ) } );
+
+    // Verify output: the constant is removed, the product is converted to a string
+    try {
+      final List<Object[]> written = new ArrayList<Object[]>();
+      calculator.addRowListener( new RowAdapter() {
+        @Override public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+          written.add( row );
+        }
+      } );
+      CalculatorData data = new CalculatorData();
+      while ( calculator.processRow( meta, data ) ) {
+        // Keep going
+      }
+      assertEquals( 2, written.size() );
+      assertEquals( 23L, written.get( 0 )[3] );
+      assertEquals( 2L, written.get( 0 )[4] );
+      assertEquals( "2.25", written.get( 0 )[5] );
+      assertNull( written.get( 1 )[3] );
+      assertEquals( 2L, written.get( 1 )[4] );
+      assertEquals( "6.25", written.get( 1 )[5] );
+    } catch ( KettleException ke ) {
+      ke.printStackTrace();
+      fail();
+    }
+  }
 }
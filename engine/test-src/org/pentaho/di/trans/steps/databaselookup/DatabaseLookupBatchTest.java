@@ -0,0 +1,284 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.logging.LoggingObjectType;
+import org.pentaho.di.core.logging.SimpleLoggingObject;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+/**
+ * Runs batched lookups against an in-memory H2 database.
+ */
+public class DatabaseLookupBatchTest {
+  private DatabaseMeta databaseMeta;
+  private Database setupDb;
+  private StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    databaseMeta = new DatabaseMeta( "h2", "H2", "Native", null, "mem:databaselookup", null, "sa", "" );
+
+    // Keep a connection open so the in-memory database stays around
+    setupDb = new Database( new SimpleLoggingObject( "setup", LoggingObjectType.GENERAL, null ), databaseMeta );
+    setupDb.connect();
+    setupDb.execStatement( "CREATE TABLE LOOKUP_TABLE ( ID INTEGER, NAME VARCHAR(20) )" );
+    for ( int i = 1; i <= 10; i++ ) {
+      setupDb.execStatement( "INSERT INTO LOOKUP_TABLE VALUES ( " + i + ", 'name " + i + "' )" );
+    }
+    // A key with two rows, the one sorting first wins
+    setupDb.execStatement( "INSERT INTO LOOKUP_TABLE VALUES ( 5, 'another 5' )" );
+
+    // The database ignores the case of these codes, Java doesn't
+    setupDb.execStatement( "CREATE TABLE CODE_TABLE ( CODE VARCHAR_IGNORECASE(10), NAME VARCHAR(20) )" );
+    setupDb.execStatement( "INSERT INTO CODE_TABLE VALUES ( 'abc', 'name abc' )" );
+    setupDb.execStatement( "INSERT INTO CODE_TABLE VALUES ( 'def', 'name def' )" );
+
+    mockHelper =
+      new StepMockHelper<DatabaseLookupMeta, DatabaseLookupData>( "batched lookup", DatabaseLookupMeta.class,
+        DatabaseLookupData.class );
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    setupDb.execStatement( "DROP TABLE LOOKUP_TABLE" );
+    setupDb.execStatement( "DROP TABLE CODE_TABLE" );
+    setupDb.disconnect();
+  }
+
+  @Test
+  public void testBatchedLookupKeepsRowOrder() throws Exception {
+    DatabaseLookupMeta meta = createMeta( 4, false );
+    DatabaseLookupData data = new DatabaseLookupData();
+
+    List<Object[]> output = runLookup( meta, data, 3L, 1L, 42L, 3L, 7L, 5L, null, 2L );
+
+    assertEquals( 8, output.size() );
+    String[] expected = { "name 3", "name 1", "none", "name 3", "name 7", "another 5", "none", "name 2" };
+    for ( int i = 0; i < expected.length; i++ ) {
+      assertEquals( expected[i], output.get( i )[1] );
+    }
+    assertTrue( data.batchLookup );
+    assertEquals( 2, data.batchCount );
+  }
+
+  @Test
+  public void testBatchedLookupUsesCache() throws Exception {
+    DatabaseLookupMeta meta = createMeta( 4, true );
+    DatabaseLookupData data = new DatabaseLookupData();
+
+    List<Object[]> output = runLookup( meta, data, 1L, 2L, 1L, 2L, 3L, 4L, 1L, 6L );
+
+    assertEquals( 8, output.size() );
+    assertEquals( "name 1", output.get( 6 )[1] );
+    assertEquals( "name 6", output.get( 7 )[1] );
+
+    // First batch: 2 distinct keys, second batch: key 1 comes from the cache
+    assertEquals( 2, data.batchCount );
+    assertEquals( 5, data.batchKeys );
+    assertEquals( 1, data.cacheHits );
+    assertEquals( 7, data.cacheMisses );
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+    DatabaseLookupMeta meta = createMeta( 0, true );
+    meta.setCacheSize( 2 );
+    DatabaseLookupData data = new DatabaseLookupData();
+
+    List<Object[]> output = runLookup( meta, data, 1L, 2L, 1L, 3L, 1L, 2L );
+
+    assertEquals( 6, output.size() );
+    assertEquals( "name 2", output.get( 5 )[1] );
+
+    // Key 2 is evicted when key 3 is cached, key 1 stays since it was used more recently
+    assertEquals( 2, data.cacheHits );
+    assertEquals( 4, data.cacheMisses );
+  }
+
+  @Test
+  public void testKeysDifferingInCaseAreLookedUpOneByOne() throws Exception {
+    DatabaseLookupMeta meta = createCodeMeta( 5 );
+    DatabaseLookupData data = new DatabaseLookupData();
+
+    List<Object[]> output = runLookup( meta, data, new ValueMetaString( "code" ), "ABC", "zzz", "abc", "Abc", "def" );
+
+    String[] expected = { "name abc", "none", "name abc", "name abc", "name def" };
+    assertEquals( expected.length, output.size() );
+    for ( int i = 0; i < expected.length; i++ ) {
+      assertEquals( expected[i], output.get( i )[1] );
+    }
+    // All the keys found were asked for exactly, the batch lookup goes on
+    assertTrue( data.batchLookup );
+  }
+
+  @Test
+  public void testDatabaseIgnoringCaseStopsBatchLookup() throws Exception {
+    DatabaseLookupMeta meta = createCodeMeta( 2 );
+    DatabaseLookupData data = new DatabaseLookupData();
+
+    List<Object[]> output = runLookup( meta, data, new ValueMetaString( "code" ), "ABC", "zzz", "DEF", "abc" );
+
+    String[] expected = { "name abc", "none", "name def", "name abc" };
+    assertEquals( expected.length, output.size() );
+    for ( int i = 0; i < expected.length; i++ ) {
+      assertEquals( expected[i], output.get( i )[1] );
+    }
+    // The database returned "abc" for "ABC": the following rows are looked up one by one
+    assertEquals( 1, data.batchCount );
+    assertFalse( data.batchLookup );
+  }
+
+  @Test
+  public void testMaximumBatchSize() throws Exception {
+    DatabaseMeta oracle = new DatabaseMeta( "oracle", "ORACLE", "Native", "localhost", "orcl", "1521", "a", "b" );
+    assertEquals( 1000, DatabaseLookup.getMaximumBatchSize( oracle, 1 ) );
+    DatabaseMeta mssql = new DatabaseMeta( "mssql", "MSSQL", "Native", "localhost", "db", "1433", "a", "b" );
+    assertEquals( 1000, DatabaseLookup.getMaximumBatchSize( mssql, 2 ) );
+    assertEquals( 32767, DatabaseLookup.getMaximumBatchSize( databaseMeta, 1 ) );
+  }
+
+  @Test
+  public void testBatchLookupSql() throws Exception {
+    DatabaseLookupMeta meta = createMeta( 3, false );
+    meta.setTableKeyField( new String[] { "ID", "CODE" } );
+    meta.setKeyCondition( new String[] { "=", "=" } );
+    meta.setStreamKeyField1( new String[] { "id", "code" } );
+    meta.setStreamKeyField2( new String[] { null, null } );
+
+    DatabaseLookup lookup =
+      new DatabaseLookup( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
+        mockHelper.trans );
+    lookup.init( meta, new DatabaseLookupData() );
+    String sql = lookup.getBatchLookupSql( 2 );
+    assertTrue( sql, sql.contains( "( ID = ? AND CODE = ? ) OR ( ID = ? AND CODE = ? )" ) );
+    assertTrue( sql, sql.endsWith( "ORDER BY NAME" ) );
+  }
+
+  private DatabaseLookupMeta createMeta( int batchSize, boolean cached ) {
+    DatabaseLookupMeta meta = new DatabaseLookupMeta();
+    meta.setDefault();
+    meta.setDatabaseMeta( databaseMeta );
+    meta.setTablename( "LOOKUP_TABLE" );
+    meta.setTableKeyField( new String[] { "ID" } );
+    meta.setKeyCondition( new String[] { "=" } );
+    meta.setStreamKeyField1( new String[] { "id" } );
+    meta.setStreamKeyField2( new String[] { null } );
+    meta.setReturnValueField( new String[] { "NAME" } );
+    meta.setReturnValueNewName( new String[] { "name" } );
+    meta.setReturnValueDefault( new String[] { "none" } );
+    meta.setReturnValueDefaultType( new int[] { ValueMetaInterface.TYPE_STRING } );
+    meta.setOrderByClause( "NAME" );
+    meta.setCached( cached );
+    meta.setLookupBatchSize( batchSize );
+    return meta;
+  }
+
+  private DatabaseLookupMeta createCodeMeta( int batchSize ) {
+    DatabaseLookupMeta meta = createMeta( batchSize, false );
+    meta.setTablename( "CODE_TABLE" );
+    meta.setTableKeyField( new String[] { "CODE" } );
+    meta.setStreamKeyField1( new String[] { "code" } );
+    return meta;
+  }
+
+  private List<Object[]> runLookup( DatabaseLookupMeta meta, DatabaseLookupData data, Long... ids )
+    throws Exception {
+    return runLookup( meta, data, new ValueMetaInteger( "id" ), (Object[]) ids );
+  }
+
+  private List<Object[]> runLookup( DatabaseLookupMeta meta, DatabaseLookupData data, ValueMetaInterface keyMeta,
+    Object... keys ) throws Exception {
+    RowMetaInterface inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( keyMeta );
+
+    DatabaseLookup lookup =
+      spy( new DatabaseLookup( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
+        mockHelper.trans ) );
+    Database db = new Database( new SimpleLoggingObject( "lookup", LoggingObjectType.STEP, null ), databaseMeta );
+    doReturn( db ).when( lookup ).getDatabase( eq( databaseMeta ) );
+    doReturn( inputRowMeta ).when( lookup ).getInputRowMeta();
+
+    final List<Object[]> input = new ArrayList<Object[]>();
+    for ( Object key : keys ) {
+      input.add( new Object[] { key } );
+    }
+    doAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) throws Throwable {
+        return input.isEmpty() ? null : input.remove( 0 );
+      }
+    } ).when( lookup ).getRow();
+
+    final List<Object[]> output = new ArrayList<Object[]>();
+    doAnswer( new Answer<Object>() {
+      @Override
+      public Object answer( InvocationOnMock invocation ) throws Throwable {
+        output.add( (Object[]) invocation.getArguments()[1] );
+        return null;
+      }
+    } ).when( lookup ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+
+    assertTrue( lookup.init( meta, data ) );
+    while ( lookup.processRow( meta, data ) ) {
+      // Keep going
+    }
+    lookup.dispose( meta, data );
+    return output;
+  }
+}
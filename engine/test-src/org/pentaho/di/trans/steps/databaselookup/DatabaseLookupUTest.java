@@ -80,6 +80,7 @@ public class DatabaseLookupUTest {
     RowMeta inputRowMeta = new RowMeta();
     RowSet rowSet = mock( RowSet.class );
     when( rowSet.getRowWait( anyLong(), any( TimeUnit.class ) ) ).thenReturn( new Object[] { } ).thenReturn( null );
+    when( rowSet.getRowImmediate() ).thenReturn( new Object[] { } ).thenReturn( null );
     when( rowSet.getRowMeta() ).thenReturn( inputRowMeta );
 
     when( mockHelper.trans.findRowSet( anyString(), anyInt(), anyString(), anyInt() ) ).thenReturn( rowSet );
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.jsoninput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+public class JsonStreamReaderTest {
+  private static final String STORE = "{ \"store\" : { \"name\" : \"S\", \"book\" : [ "
+    + "{ \"author\" : \"A\", \"title\" : \"T1\", \"tags\" : [ \"x\", \"y\" ], \"meta\" : { \"p\" : 1 } }, "
+    + "{ \"author\" : \"B\", \"title\" : \"T2\", \"price\" : 8.5 } ] } }";
+
+  private static JsonStreamReader open( String json, boolean ignoreMissingPath, String... paths ) throws Exception {
+    JsonStreamReader reader = new JsonStreamReader( paths, ignoreMissingPath );
+    reader.open( new StringReader( json ) );
+    return reader;
+  }
+
+  @Test
+  public void testRecordsOfArray() throws Exception {
+    JsonStreamReader reader =
+      open( STORE, true, "$.store.book[*].author", "$['store']['book'][*].title", "$.store.book[*].price",
+        "$.store.book[*].tags", "$.store.book[*].meta", "$.store.book[*].tags[1]" );
+    assertArrayEquals( new String[] { "A", "T1", null, "[\"x\",\"y\"]", "{\"p\":1}", "y" }, reader.nextRecord() );
+    assertArrayEquals( new String[] { "B", "T2", "8.5", null, null, null }, reader.nextRecord() );
+    assertNull( reader.nextRecord() );
+  }
+
+  @Test
+  public void testRootRecord() throws Exception {
+    JsonStreamReader reader = open( STORE, false, "$.store.name", "$.store.book[1].author" );
+    assertArrayEquals( new String[] { "S", "B" }, reader.nextRecord() );
+    assertNull( reader.nextRecord() );
+  }
+
+  @Test
+  public void testNestedWildcards() throws Exception {
+    JsonStreamReader reader =
+      open( "{ \"x\" : { \"a\" : [ 1, 2 ], \"b\" : [ 3, 4 ] } }", false, "$.x.*[0]", "$.x.*[1]" );
+    assertArrayEquals( new String[] { "1", "2" }, reader.nextRecord() );
+    assertArrayEquals( new String[] { "3", "4" }, reader.nextRecord() );
+    assertNull( reader.nextRecord() );
+
+    reader = open( "[ 1, 2, 3 ]", false, "$[*]" );
+    assertArrayEquals( new String[] { "1" }, reader.nextRecord() );
+    assertArrayEquals( new String[] { "2" }, reader.nextRecord() );
+    assertArrayEquals( new String[] { "3" }, reader.nextRecord() );
+    assertNull( reader.nextRecord() );
+  }
+
+  @Test
+  public void testMissingPath() throws Exception {
+    JsonStreamReader reader = open( STORE, false, "$.store.book[*].author", "$.store.book[*].isbn" );
+    assertArrayEquals( new String[] { "A", null }, reader.nextRecord() );
+    assertArrayEquals( new String[] { "B", null }, reader.nextRecord() );
+    try {
+      reader.nextRecord();
+      fail( "The missing path should be reported" );
+    } catch ( KettleException e ) {
+      // expected
+    }
+
+    // Nothing found at all: a single row of nulls, like the script engine
+    reader = open( STORE, true, "$.nothing" );
+    assertArrayEquals( new String[] { null }, reader.nextRecord() );
+    assertNull( reader.nextRecord() );
+  }
+
+  @Test
+  public void testUnsupportedPaths() {
+    String[][] unsupported =
+      {
+        { "$..author" }, { "$.store.book[?(@.price<10)].title" }, { "$.store.book[-1:]" },
+        { "$.store.book[0,1].title" }, { "store.name" }, { "$.store.book[*].author", "$.store.*" } };
+    for ( String[] paths : unsupported ) {
+      try {
+        new JsonStreamReader( paths, false );
+        fail( "The paths should not be supported: " + paths[paths.length - 1] );
+      } catch ( KettleException e ) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.HashEntry;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class MemoryGroupByParallelAggregationTest {
+  private static final int[] TYPES = new int[] {
+    MemoryGroupByMeta.TYPE_GROUP_SUM, MemoryGroupByMeta.TYPE_GROUP_AVERAGE, MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL,
+    MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY, MemoryGroupByMeta.TYPE_GROUP_MIN, MemoryGroupByMeta.TYPE_GROUP_MAX,
+    MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT, MemoryGroupByMeta.TYPE_GROUP_FIRST,
+    MemoryGroupByMeta.TYPE_GROUP_LAST, MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION,
+    MemoryGroupByMeta.TYPE_GROUP_MEDIAN, MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA, };
+
+  private StepMockHelper<MemoryGroupByMeta, MemoryGroupByData> mockHelper;
+  private MemoryGroupBy step;
+  private MemoryGroupByData data;
+
+  @Before
+  public void setUp() throws Exception {
+    mockHelper =
+      new StepMockHelper<MemoryGroupByMeta, MemoryGroupByData>( "Memory Group By", MemoryGroupByMeta.class,
+        MemoryGroupByData.class );
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+
+    MemoryGroupByMeta meta = new MemoryGroupByMeta();
+    meta.allocate( 1, TYPES.length );
+    meta.getGroupField()[0] = "group";
+    for ( int i = 0; i < TYPES.length; i++ ) {
+      meta.getAggregateField()[i] = "aggregate" + i;
+      meta.getSubjectField()[i] = "value";
+      meta.getAggregateType()[i] = TYPES[i];
+    }
+    when( mockHelper.stepMeta.getStepMetaInterface() ).thenReturn( meta );
+
+    data = new MemoryGroupByData();
+    data.inputRowMeta = new RowMeta();
+    data.inputRowMeta.addValueMeta( new ValueMeta( "group", ValueMetaInterface.TYPE_STRING ) );
+    data.inputRowMeta.addValueMeta( new ValueMeta( "value", ValueMetaInterface.TYPE_NUMBER ) );
+    data.groupMeta = new RowMeta();
+    data.groupMeta.addValueMeta( data.inputRowMeta.getValueMeta( 0 ) );
+    data.groupnrs = new int[] { 0 };
+    data.subjectnrs = new int[TYPES.length];
+    for ( int i = 0; i < TYPES.length; i++ ) {
+      data.subjectnrs[i] = 1;
+    }
+
+    step = new MemoryGroupBy( mockHelper.stepMeta, data, 0, mockHelper.transMeta, mockHelper.trans );
+    step.newAggregate( null, null );
+  }
+
+  private HashMap<HashEntry, Aggregate> aggregate( List<Object[]> rows ) throws KettleException {
+    data.map = new HashMap<HashEntry, Aggregate>();
+    for ( Object[] row : rows ) {
+      step.addToAggregate( row );
+    }
+    return data.map;
+  }
+
+  @Test
+  public void testMergedAggregatesMatchSingleCopy() throws KettleException {
+    Random random = new Random( 7 );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( int i = 0; i < 1000; i++ ) {
+      rows.add( new Object[] { "group" + random.nextInt( 5 ), Double.valueOf( random.nextInt( 50 ) ) } );
+    }
+
+    HashMap<HashEntry, Aggregate> expected = aggregate( rows );
+
+    // Three copies, each receiving a consecutive part of the rows
+    //
+    List<HashMap<HashEntry, Aggregate>> partials = new ArrayList<HashMap<HashEntry, Aggregate>>();
+    partials.add( aggregate( rows.subList( 0, 200 ) ) );
+    partials.add( aggregate( rows.subList( 200, 650 ) ) );
+    partials.add( aggregate( rows.subList( 650, 1000 ) ) );
+    step.mergePartialAggregates( partials );
+
+    assertEquals( expected.size(), data.map.size() );
+    for ( HashEntry entry : expected.keySet() ) {
+      Aggregate merged = data.map.get( entry );
+      assertNotNull( merged );
+      Object[] expectedResult = step.getAggregateResult( expected.get( entry ) );
+      Object[] mergedResult = step.getAggregateResult( merged );
+      for ( int i = 0; i < TYPES.length; i++ ) {
+        String message = MemoryGroupByMeta.getTypeDesc( TYPES[i] ) + " of " + entry.getGroupData()[0];
+        if ( expectedResult[i] instanceof Double ) {
+          assertEquals( message, (Double) expectedResult[i], (Double) mergedResult[i], 1e-9 );
+        } else {
+          assertEquals( message, expectedResult[i], mergedResult[i] );
+        }
+      }
+    }
+  }
+}
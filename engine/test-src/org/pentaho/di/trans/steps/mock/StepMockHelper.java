@@ -78,6 +78,7 @@ public class StepMockHelper<Meta extends StepMetaInterface, Data extends StepDat
     };
     when( rowSet.getRowWait( anyLong(), any( TimeUnit.class ) ) ).thenAnswer( answer );
     when( rowSet.getRow() ).thenAnswer( answer );
+    when( rowSet.getRowImmediate() ).thenAnswer( answer );
     when( rowSet.isDone() ).thenAnswer( new Answer<Boolean>() {
 
       @Override
@@ -0,0 +1,80 @@
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.compress.CompressionPluginType;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class SortRowsSpillFileTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    PluginRegistry.addPluginType( CompressionPluginType.getInstance() );
+    PluginRegistry.init( true );
+  }
+
+  private RowMetaInterface createRowMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    rowMeta.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING ) );
+    return rowMeta;
+  }
+
+  private void roundTrip( String providerName, int nrRows ) throws Exception {
+    RowMetaInterface rowMeta = createRowMeta();
+    CompressionProvider provider = CompressionProviderFactory.getInstance().getCompressionProviderByName( providerName );
+
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    // Use a small block size to get plenty of blocks
+    SortRowsSpillWriter writer = new SortRowsSpillWriter( file, rowMeta, provider, 1024 );
+    for ( int i = 0; i < nrRows; i++ ) {
+      writer.putRow( new Object[] { Long.valueOf( i ), i % 7 == 0 ? null : "name-" + i } );
+    }
+    writer.close();
+
+    SortRowsSpillReader reader =
+      new SortRowsSpillReader( new ByteArrayInputStream( file.toByteArray() ), createRowMeta() );
+    assertEquals( rowMeta.size(), reader.getFileRowMeta().size() );
+    for ( int i = 0; i < nrRows; i++ ) {
+      Object[] row = reader.getRow();
+      assertEquals( Long.valueOf( i ), row[0] );
+      assertEquals( i % 7 == 0 ? null : "name-" + i, row[1] );
+    }
+    assertNull( reader.getRow() );
+    assertNull( reader.getRow() );
+    reader.close();
+  }
+
+  @Test
+  public void testUncompressedRoundTrip() throws Exception {
+    roundTrip( SortRowsSpillWriter.NO_COMPRESSION, 10000 );
+  }
+
+  @Test
+  public void testGZipRoundTrip() throws Exception {
+    roundTrip( "GZip", 10000 );
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    roundTrip( "GZip", 0 );
+  }
+
+  @Test( expected = KettleFileException.class )
+  public void testNotASortFile() throws Exception {
+    new SortRowsSpillReader( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 } ), createRowMeta() );
+  }
+}
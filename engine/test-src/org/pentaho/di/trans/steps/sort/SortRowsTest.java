@@ -0,0 +1,75 @@
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class SortRowsTest {
+  private StepMockHelper<SortRowsMeta, SortRowsData> stepMockHelper;
+
+  @Before
+  public void setup() {
+    stepMockHelper = new StepMockHelper<SortRowsMeta, SortRowsData>( "SORT TEST", SortRowsMeta.class, SortRowsData.class );
+    when( stepMockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) )
+      .thenReturn( stepMockHelper.logChannelInterface );
+  }
+
+  @After
+  public void tearDown() {
+    stepMockHelper.cleanUp();
+  }
+
+  @Test
+  public void testParallelSortIsSortedAndStable() throws Exception {
+    SortRowsData data = new SortRowsData();
+    SortRows step = new SortRows( stepMockHelper.stepMeta, data, 0, stepMockHelper.transMeta, stepMockHelper.trans );
+
+    data.outputRowMeta = new RowMeta();
+    data.outputRowMeta.addValueMeta( new ValueMeta( "key", ValueMetaInterface.TYPE_INTEGER ) );
+    data.outputRowMeta.addValueMeta( new ValueMeta( "seq", ValueMetaInterface.TYPE_INTEGER ) );
+    data.rowComparator = new Comparator<Object[]>() {
+      @Override
+      public int compare( Object[] o1, Object[] o2 ) {
+        return ( (Long) o1[0] ).compareTo( (Long) o2[0] );
+      }
+    };
+    data.sortThreads = 3;
+
+    Random random = new Random( 42 );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( int i = 0; i < SortRows.PARALLEL_SORT_THRESHOLD * 2 + 17; i++ ) {
+      rows.add( new Object[] { Long.valueOf( random.nextInt( 1000 ) ), Long.valueOf( i ) } );
+    }
+    List<Object[]> expected = new ArrayList<Object[]>( rows );
+    Collections.sort( expected, data.rowComparator );
+
+    try {
+      step.quickSort( rows );
+    } finally {
+      if ( data.sortExecutor != null ) {
+        data.sortExecutor.shutdownNow();
+      }
+    }
+
+    assertEquals( expected.size(), rows.size() );
+    for ( int i = 0; i < expected.size(); i++ ) {
+      assertSame( "Row " + i + " is not in the expected position", expected.get( i ), rows.get( i ) );
+    }
+  }
+}
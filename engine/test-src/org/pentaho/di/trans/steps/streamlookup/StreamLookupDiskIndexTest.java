@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.streamlookup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamLookupDiskIndexTest {
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = new File( System.getProperty( "java.io.tmpdir" ) );
+  }
+
+  private void doTest( long segmentSize, int hotCacheSize ) throws Exception {
+    StreamLookupDiskIndex index = new StreamLookupDiskIndex( directory, hotCacheSize, segmentSize );
+    try {
+      Map<String, String> expected = new HashMap<String, String>();
+      Random random = new Random( 42 );
+      for ( int i = 0; i < 10000; i++ ) {
+        String key = "key" + random.nextInt( 5000 );
+        String value = "value" + random.nextInt() + ( random.nextBoolean() ? "-with-a-longer-tail" : "" );
+        expected.put( key, value );
+        index.add( key.getBytes( "UTF-8" ), value.getBytes( "UTF-8" ) );
+      }
+      index.build();
+
+      assertEquals( 10000, index.getRecords() );
+      assertTrue( index.getBytesMapped() > 0 );
+
+      for ( int i = 0; i < 10000; i++ ) {
+        String key = "key" + random.nextInt( 6000 );
+        byte[] value = index.get( key.getBytes( "UTF-8" ) );
+        if ( expected.containsKey( key ) ) {
+          assertArrayEquals( key, expected.get( key ).getBytes( "UTF-8" ), value );
+        } else {
+          assertNull( key, value );
+        }
+      }
+      assertEquals( 10000, index.getHits() + index.getMisses() );
+    } finally {
+      index.close();
+    }
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    doTest( StreamLookupDiskIndex.DEFAULT_SEGMENT_SIZE, StreamLookupDiskIndex.DEFAULT_HOT_CACHE_SIZE );
+  }
+
+  @Test
+  public void testLookupWithSmallSegments() throws Exception {
+    // Records and hash table slots are spread over many mapped segments
+    //
+    doTest( 64, 0 );
+  }
+
+  @Test
+  public void testHotCache() throws Exception {
+    StreamLookupDiskIndex index = new StreamLookupDiskIndex( directory, 2 );
+    try {
+      index.add( new byte[] { 1 }, new byte[] { 10 } );
+      index.add( new byte[] { 2 }, new byte[] { 20 } );
+      index.build();
+
+      assertArrayEquals( new byte[] { 10 }, index.get( new byte[] { 1 } ) );
+      assertArrayEquals( new byte[] { 10 }, index.get( new byte[] { 1 } ) );
+      assertNull( index.get( new byte[] { 3 } ) );
+      assertNull( index.get( new byte[] { 3 } ) );
+      assertEquals( 2, index.getHits() );
+      assertEquals( 2, index.getMisses() );
+      assertEquals( 50, index.getHitPercentage() );
+    } finally {
+      index.close();
+    }
+  }
+}
@@ -232,4 +232,18 @@ public class StreamLookupTest {
   public void testMemoryPreservationWithBinaryStreams() throws KettleException {
     doTest( true, false, true );
   }
+
+  @Test
+  public void testDiskStorageWithNormalStreams() throws KettleException {
+    doReturn( true ).when( smh.processRowsStepMetaInterface ).isUsingDiskStorage();
+    doReturn( 1 ).when( smh.processRowsStepMetaInterface ).getHotCacheSize();
+    doTest( false, false, false );
+  }
+
+  @Test
+  public void testDiskStorageWithBinaryStreams() throws KettleException {
+    doReturn( true ).when( smh.processRowsStepMetaInterface ).isUsingDiskStorage();
+    doReturn( 1 ).when( smh.processRowsStepMetaInterface ).getHotCacheSize();
+    doTest( false, true, true );
+  }
 }
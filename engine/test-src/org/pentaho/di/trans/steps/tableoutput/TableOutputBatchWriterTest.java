@@ -0,0 +1,177 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableoutput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleDatabaseBatchException;
+import org.pentaho.di.core.logging.LoggingObjectType;
+import org.pentaho.di.core.logging.SimpleLoggingObject;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.steps.tableoutput.TableOutputBatchWriter.Batch;
+
+/**
+ * Writes batches to an in-memory H2 database.
+ */
+public class TableOutputBatchWriterTest {
+  private static final String INSERT = "INSERT INTO target ( id, name ) VALUES ( ?, ? )";
+
+  private Database db;
+  private RowMetaInterface rowMeta;
+  private PreparedStatement insertStatement;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    DatabaseMeta databaseMeta = new DatabaseMeta( "h2", "H2", "Native", null, "mem:tableoutput", null, "sa", "" );
+    db = new Database( new SimpleLoggingObject( "test", LoggingObjectType.STEP, null ), databaseMeta );
+    db.connect();
+    db.execStatement( "CREATE TABLE target ( id INTEGER PRIMARY KEY, name VARCHAR(50) )" );
+    db.setCommit( 1000 );
+
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    insertStatement = db.prepareSQL( INSERT );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    insertStatement.close();
+    db.setCommit( 0 );
+    db.execStatement( "DROP TABLE target" );
+    db.disconnect();
+  }
+
+  @Test
+  public void testWriteBatches() throws Exception {
+    TableOutputBatchWriter writer = new TableOutputBatchWriter( db, insertStatement, rowMeta, false );
+    writer.start( "test writer" );
+    for ( int i = 0; i < 10; i++ ) {
+      writer.submit( createBatch( i * 100, 100 ) );
+    }
+    writer.finish();
+
+    List<Batch> batches = getCompleted( writer );
+    assertEquals( 10, batches.size() );
+    for ( int i = 0; i < batches.size(); i++ ) {
+      Batch batch = batches.get( i );
+      assertTrue( batch.isWritten() );
+      assertNull( batch.getException() );
+      // In the order they were submitted
+      assertEquals( Long.valueOf( i * 100 ), batch.getOutputRows().get( 0 )[0] );
+    }
+    assertFalse( writer.isFailed() );
+    assertEquals( 1000, countRows() );
+  }
+
+  @Test
+  public void testErrorRowsWithErrorHandling() throws Exception {
+    TableOutputBatchWriter writer = new TableOutputBatchWriter( db, insertStatement, rowMeta, true );
+    writer.start( "test writer" );
+    Batch failing = createBatch( 0, 10 );
+    failing.getInsertRows().get( 5 )[0] = Long.valueOf( 1L ); // duplicate key
+    writer.submit( failing );
+    writer.submit( createBatch( 100, 10 ) );
+    writer.finish();
+
+    List<Batch> batches = getCompleted( writer );
+    assertEquals( 2, batches.size() );
+    KettleDatabaseBatchException be = batches.get( 0 ).getException();
+    assertNotNull( be );
+    int[] updateCounts = be.getUpdateCounts();
+    assertNotNull( updateCounts );
+    assertTrue( updateCounts[5] <= 0 );
+    assertTrue( updateCounts[4] > 0 );
+
+    // Writing continues after the failure
+    assertTrue( batches.get( 1 ).isWritten() );
+    assertNull( batches.get( 1 ).getException() );
+    assertFalse( writer.isFailed() );
+    assertEquals( 10 + 9, countRows() );
+  }
+
+  @Test
+  public void testSkipAfterFailure() throws Exception {
+    TableOutputBatchWriter writer = new TableOutputBatchWriter( db, insertStatement, rowMeta, false );
+    writer.start( "test writer" );
+    Batch failing = createBatch( 0, 10 );
+    failing.getInsertRows().get( 5 )[0] = Long.valueOf( 1L );
+    writer.submit( failing );
+    writer.submit( createBatch( 100, 10 ) );
+    writer.finish();
+
+    List<Batch> batches = getCompleted( writer );
+    assertEquals( 2, batches.size() );
+    assertNotNull( batches.get( 0 ).getException() );
+    assertFalse( batches.get( 1 ).isWritten() );
+    assertTrue( writer.isFailed() );
+    assertEquals( 0, countRows() );
+  }
+
+  private Batch createBatch( int firstId, int size ) {
+    Batch batch = new Batch( size );
+    for ( int i = 0; i < size; i++ ) {
+      long id = firstId + i;
+      Object[] row = new Object[] { Long.valueOf( id ), "Some name for row " + id };
+      batch.addRow( row, row.clone() );
+    }
+    return batch;
+  }
+
+  private List<Batch> getCompleted( TableOutputBatchWriter writer ) {
+    List<Batch> batches = new ArrayList<Batch>();
+    Batch batch = writer.nextCompleted();
+    while ( batch != null ) {
+      batches.add( batch );
+      batch = writer.nextCompleted();
+    }
+    return batches;
+  }
+
+  private long countRows() throws Exception {
+    return db.getOneRow( "SELECT COUNT(*) FROM target" ).getInteger( 0, 0L );
+  }
+}
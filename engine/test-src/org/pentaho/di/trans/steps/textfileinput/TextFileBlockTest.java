@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TextFileBlockTest {
+
+  @Test
+  public void testGetBlocks() {
+    long[] sizes = new long[] { 10000, 10000, 10000, 10000, 10000 };
+
+    List<TextFileBlock> blocks = TextFileBlock.getBlocks( sizes, 0, 2 );
+    assertEquals( 3, blocks.size() );
+    assertBlock( blocks.get( 0 ), 0, 0, Long.MAX_VALUE );
+    assertBlock( blocks.get( 1 ), 1, 0, Long.MAX_VALUE );
+    assertBlock( blocks.get( 2 ), 2, 0, 5000 );
+
+    blocks = TextFileBlock.getBlocks( sizes, 1, 2 );
+    assertEquals( 3, blocks.size() );
+    assertBlock( blocks.get( 0 ), 2, 5000, Long.MAX_VALUE );
+    assertBlock( blocks.get( 1 ), 3, 0, Long.MAX_VALUE );
+    assertBlock( blocks.get( 2 ), 4, 0, Long.MAX_VALUE );
+
+    // Empty files are skipped, a block ending at the end of a file reads it completely
+    //
+    sizes = new long[] { 100, 0, 100 };
+    blocks = TextFileBlock.getBlocks( sizes, 0, 2 );
+    assertEquals( 1, blocks.size() );
+    assertBlock( blocks.get( 0 ), 0, 0, Long.MAX_VALUE );
+    blocks = TextFileBlock.getBlocks( sizes, 1, 2 );
+    assertEquals( 1, blocks.size() );
+    assertBlock( blocks.get( 0 ), 2, 0, Long.MAX_VALUE );
+  }
+
+  @Test
+  public void testGetFiles() {
+    List<TextFileBlock> blocks = TextFileBlock.getFiles( 5, 1, 3 );
+    assertEquals( 2, blocks.size() );
+    assertBlock( blocks.get( 0 ), 1, 0, Long.MAX_VALUE );
+    assertBlock( blocks.get( 1 ), 4, 0, Long.MAX_VALUE );
+
+    assertEquals( 0, TextFileBlock.getFiles( 2, 2, 3 ).size() );
+  }
+
+  private void assertBlock( TextFileBlock block, int fileIndex, long startOffset, long endOffset ) {
+    assertEquals( fileIndex, block.getFileIndex() );
+    assertEquals( startOffset, block.getStartOffset() );
+    assertEquals( endOffset, block.getEndOffset() );
+  }
+}
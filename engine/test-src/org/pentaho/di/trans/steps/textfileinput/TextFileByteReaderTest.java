@@ -0,0 +1,188 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleFileException;
+
+public class TextFileByteReaderTest {
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+  private static final Charset LATIN1 = Charset.forName( "ISO-8859-1" );
+
+  private TextFileLineSplitter csvSplitter( Charset charset, String delimiter, String enclosure, String escape ) {
+    TextFileInputField[] fields = new TextFileInputField[5];
+    for ( int i = 0; i < fields.length; i++ ) {
+      fields[i] = new TextFileInputField( "field" + i, -1, -1 );
+    }
+    return new TextFileLineSplitter( charset, false, fields, delimiter, enclosure, escape );
+  }
+
+  private List<String> readLines( String data, Charset charset, int format, TextFileLineSplitter splitter,
+    boolean breaks ) throws KettleFileException {
+    // A small buffer to test lines spanning several reads
+    TextFileByteReader reader =
+      new TextFileByteReader( new ByteArrayInputStream( data.getBytes( charset ) ), format, splitter, breaks, 4 );
+    List<String> lines = new ArrayList<String>();
+    byte[] line = reader.readLine();
+    while ( line != null ) {
+      lines.add( new String( line, charset ) );
+      line = reader.readLine();
+    }
+    assertNull( reader.readLine() );
+    return lines;
+  }
+
+  private String[] split( TextFileLineSplitter splitter, String line ) {
+    int nrFields = splitter.split( line.getBytes( splitter.getCharset() ) );
+    String[] fields = new String[nrFields];
+    for ( int i = 0; i < nrFields; i++ ) {
+      fields[i] = splitter.getString( i );
+    }
+    return fields;
+  }
+
+  @Test
+  public void testFileFormats() throws Exception {
+    TextFileLineSplitter splitter = csvSplitter( LATIN1, ";", "\"", "" );
+    String[] expected = new String[] { "a;b", "", "c\u00e9" };
+
+    assertArrayEquals( expected, readLines( "a;b\r\n\r\nc\u00e9\r\n", LATIN1, TextFileInputMeta.FILE_FORMAT_DOS,
+      splitter, false ).toArray() );
+    assertArrayEquals( expected, readLines( "a;b\n\nc\u00e9", LATIN1, TextFileInputMeta.FILE_FORMAT_UNIX, splitter,
+      false ).toArray() );
+    assertArrayEquals( expected, readLines( "a;b\r\n\nc\u00e9\r\n", LATIN1, TextFileInputMeta.FILE_FORMAT_MIXED,
+      splitter, false ).toArray() );
+
+    try {
+      readLines( "a;b\nc;d\n", LATIN1, TextFileInputMeta.FILE_FORMAT_DOS, splitter, false );
+      fail( "A single line feed isn't a DOS line end" );
+    } catch ( KettleFileException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBreaksInEnclosure() throws Exception {
+    TextFileLineSplitter splitter = csvSplitter( UTF8, ";", "\"", "\\" );
+    String data = "1;\"multi\nline \\\" text\";x\n2;\"\u20ac\";y\n";
+
+    List<String> lines = readLines( data, UTF8, TextFileInputMeta.FILE_FORMAT_UNIX, splitter, true );
+    assertEquals( 2, lines.size() );
+    assertArrayEquals( new String[] { "1", "multi\nline \" text", "x" }, split( splitter, lines.get( 0 ) ) );
+    assertArrayEquals( new String[] { "2", "\u20ac", "y" }, split( splitter, lines.get( 1 ) ) );
+
+    // Without breaks the line feed ends the line
+    assertEquals( 3, readLines( data, UTF8, TextFileInputMeta.FILE_FORMAT_UNIX, splitter, false ).size() );
+  }
+
+  @Test
+  public void testSplitDelimited() throws Exception {
+    TextFileLineSplitter splitter = csvSplitter( UTF8, ";", "\"", "" );
+    assertArrayEquals( new String[] { "a", "b;c", "d\"e", "" }, split( splitter, "a;\"b;c\";\"d\"\"e\";" ) );
+    assertArrayEquals( new String[] { "" }, split( splitter, "" ) );
+    assertArrayEquals( new String[] { "", "", "\u00e9t\u00e9" }, split( splitter, ";;\u00e9t\u00e9" ) );
+
+    splitter = csvSplitter( UTF8, "||", "'", "\\" );
+    assertArrayEquals( new String[] { "a||b", "c'd", "e" }, split( splitter, "a\\||b||'c\\'d'||e" ) );
+
+    // More fields than read: the extra fields are counted but not kept
+    assertEquals( 6, splitter.split( "1||2||3||4||5||6".getBytes( UTF8 ) ) );
+    assertEquals( "5", splitter.getString( 4 ) );
+    assertNull( splitter.getString( 5 ) );
+
+    // Missing fields
+    assertEquals( 1, splitter.split( "1".getBytes( UTF8 ) ) );
+    assertNull( splitter.getString( 1 ) );
+    assertNull( splitter.getBytes( 1 ) );
+    assertArrayEquals( "1".getBytes( UTF8 ), splitter.getBytes( 0 ) );
+  }
+
+  @Test
+  public void testSplitFixed() throws Exception {
+    TextFileInputField[] fields =
+      new TextFileInputField[] {
+        new TextFileInputField( "a", 0, 3 ), new TextFileInputField( "b", 3, 5 ),
+        new TextFileInputField( "c", 10, 2 ) };
+    TextFileLineSplitter splitter = new TextFileLineSplitter( LATIN1, true, fields, null, null, null );
+    assertArrayEquals( new String[] { "abc", "d\u00e9f", "" }, split( splitter, "abcd\u00e9f" ) );
+    assertArrayEquals( new String[] { "abc", "defgh", "" }, split( splitter, "abcdefghij" ) );
+  }
+
+  @Test
+  public void testReadBlocks() throws Exception {
+    TextFileLineSplitter splitter = csvSplitter( UTF8, ";", "\"", "" );
+    StringBuilder unix = new StringBuilder();
+    StringBuilder dos = new StringBuilder();
+    for ( int i = 0; i < 100; i++ ) {
+      String line = i % 7 == 0 ? "" : "line" + i + ";\u00e9" + i;
+      unix.append( line ).append( '\n' );
+      dos.append( line ).append( "\r\n" );
+    }
+    checkBlocks( unix.toString(), TextFileInputMeta.FILE_FORMAT_UNIX, splitter );
+    checkBlocks( dos.toString(), TextFileInputMeta.FILE_FORMAT_DOS, splitter );
+    checkBlocks( dos.toString(), TextFileInputMeta.FILE_FORMAT_MIXED, splitter );
+  }
+
+  private void checkBlocks( String data, int format, TextFileLineSplitter splitter ) throws Exception {
+    List<String> expected = readLines( data, UTF8, format, splitter, false );
+    byte[] bytes = data.getBytes( UTF8 );
+
+    // Every line is read by exactly one of the step copies, however many there are
+    //
+    for ( int nrSteps = 1; nrSteps <= bytes.length; nrSteps += 1 + nrSteps / 4 ) {
+      List<String> lines = new ArrayList<String>();
+      for ( int stepNr = 0; stepNr < nrSteps; stepNr++ ) {
+        for ( TextFileBlock block : TextFileBlock.getBlocks( new long[] { bytes.length }, stepNr, nrSteps ) ) {
+          TextFileByteReader reader =
+            new TextFileByteReader( new ByteArrayInputStream( bytes ), format, splitter, false, 4 );
+          reader.setBlock( block );
+          byte[] line = reader.readLine();
+          while ( line != null ) {
+            lines.add( new String( line, UTF8 ) );
+            line = reader.readLine();
+          }
+        }
+      }
+      assertEquals( "Lines read by " + nrSteps + " copies", expected, lines );
+    }
+  }
+
+  @Test
+  public void testSupportedEncodings() throws Exception {
+    assertTrue( TextFileLineSplitter.isSupported( UTF8, false ) );
+    assertTrue( !TextFileLineSplitter.isSupported( UTF8, true ) );
+    assertTrue( TextFileLineSplitter.isSupported( LATIN1, true ) );
+    assertTrue( !TextFileLineSplitter.isSupported( Charset.forName( "UTF-16" ), false ) );
+  }
+}
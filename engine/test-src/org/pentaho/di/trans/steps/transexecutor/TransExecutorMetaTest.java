@@ -20,7 +20,7 @@ public class TransExecutorMetaTest {
 
     List<String> attributes =
         Arrays.asList( "fileName", "transName", "directoryPath", "groupSize", "groupField", "groupTime",
-            "executionTimeField", "executionFilesRetrievedField", "executionLogTextField",
+            "pooledExecution", "executionTimeField", "executionFilesRetrievedField", "executionLogTextField",
             "executionLogChannelIdField", "executionResultField", "executionNrErrorsField", "executionLinesReadField",
             "executionLinesWrittenField", "executionLinesInputField", "executionLinesOutputField",
             "executionLinesRejectedField", "executionLinesUpdatedField", "executionLinesDeletedField",
@@ -0,0 +1,107 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.logging.LogLevel;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMeta.TransformationType;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepInterface;
+
+public class ThreadPoolExecutionTest extends TestCase {
+
+  protected void setUp() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  /**
+   * Pushes rows through tiny row sets so that the step tasks keep going idle and waking each other up.
+   */
+  public void testAllRowsArrive() throws Exception {
+    final int ROWS = 10000;
+    final int ITERATIONS = 20;
+
+    TransMeta transMeta = new TransMeta( "testfiles/NormalExecutionTest - WaitUntilFinished.ktr" );
+    transMeta.setTransformationType( TransformationType.ThreadPool );
+    transMeta.setSizeRowset( 5 );
+
+    for ( int t = 0; t < ITERATIONS; t++ ) {
+      Trans trans = new Trans( transMeta );
+      trans.setLogLevel( LogLevel.NOTHING );
+      trans.prepareExecution( null );
+
+      StepInterface injector = trans.findRunThread( "Injector" );
+      StepInterface output = trans.findRunThread( "Output" );
+      RowMeta injectorRowMeta = new RowMeta();
+      ( (BaseStepMeta) injector.getStepMeta().getStepMetaInterface() ).getFields(
+        injectorRowMeta, null, null, null, null, null, null );
+
+      RowProducer producer = trans.addRowProducer( injector.getStepname(), 0 );
+      final int[] written = new int[1];
+      output.addRowListener( new RowAdapter() {
+        @Override
+        public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+          written[0]++;
+        }
+      } );
+
+      trans.startThreads();
+      for ( int i = 0; i < ROWS; i++ ) {
+        producer.putRow( injectorRowMeta, new Object[] { Long.valueOf( i ) } );
+      }
+      producer.finished();
+      trans.waitUntilFinished();
+
+      assertTrue( trans.isFinished() );
+      assertEquals( 0, trans.getErrors() );
+      assertEquals( ROWS, written[0] );
+    }
+  }
+
+  /**
+   * The idle step tasks need to be woken up to see that the transformation was stopped.
+   */
+  public void testStopIdleTransformation() throws Exception {
+    TransMeta transMeta = new TransMeta( "testfiles/NormalExecutionTest - WaitUntilFinished.ktr" );
+    transMeta.setTransformationType( TransformationType.ThreadPool );
+
+    Trans trans = new Trans( transMeta );
+    trans.setLogLevel( LogLevel.NOTHING );
+    trans.prepareExecution( null );
+    trans.addRowProducer( "Injector", 0 );
+    trans.startThreads();
+
+    // Nothing is coming in, so all the steps are waiting for rows
+    //
+    Thread.sleep( 100 );
+    assertFalse( trans.isFinished() );
+
+    trans.stopAll();
+    trans.waitUntilFinished();
+    assertTrue( trans.isFinished() );
+  }
+}
@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.logging.LogLevel;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.plugins.StepPluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.trans.TransMeta.TransformationType;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.StepTaskPool;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+/**
+ * Runs a step with two inputs on a step thread pool of a single thread. The step waits for rows of one input while the
+ * steps feeding it need the pool to run. The test runs in a JVM of its own, so it can set the size of the pool.
+ */
+public class ThreadPoolMultipleInputTest extends TestCase {
+
+  protected void setUp() throws Exception {
+    System.setProperty( Const.KETTLE_STEP_THREAD_POOL_SIZE, "1" );
+    KettleEnvironment.init();
+  }
+
+  /**
+   * The first input is done right away, the rows of the second one trickle in.
+   */
+  public void testInputsFinishingAtDifferentTimes() throws Exception {
+    final int FAST_ROWS = 1000;
+    final int SLOW_ROWS = 50;
+
+    TransMeta transMeta = new TransMeta();
+    transMeta.setTransformationType( TransformationType.ThreadPool );
+    transMeta.setSizeRowset( 10 );
+    StepMeta fast = addStep( transMeta, new InjectorMeta(), "Fast" );
+    StepMeta slow = addStep( transMeta, new InjectorMeta(), "Slow" );
+    StepMeta fastDummy = addStep( transMeta, new DummyTransMeta(), "Fast dummy" );
+    StepMeta slowDummy = addStep( transMeta, new DummyTransMeta(), "Slow dummy" );
+    StepMeta output = addStep( transMeta, new DummyTransMeta(), "Output" );
+    transMeta.addTransHop( new TransHopMeta( fast, fastDummy ) );
+    transMeta.addTransHop( new TransHopMeta( slow, slowDummy ) );
+    transMeta.addTransHop( new TransHopMeta( fastDummy, output ) );
+    transMeta.addTransHop( new TransHopMeta( slowDummy, output ) );
+
+    Trans trans = new Trans( transMeta );
+    trans.setLogLevel( LogLevel.NOTHING );
+    trans.prepareExecution( null );
+
+    RowProducer fastProducer = trans.addRowProducer( "Fast", 0 );
+    RowProducer slowProducer = trans.addRowProducer( "Slow", 0 );
+    final int[] written = new int[1];
+    trans.findRunThread( "Output" ).addRowListener( new RowAdapter() {
+      @Override
+      public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+        written[0]++;
+      }
+    } );
+
+    trans.startThreads();
+    assertEquals( 1, StepTaskPool.getInstance().getParallelism() );
+
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    for ( int i = 0; i < FAST_ROWS; i++ ) {
+      fastProducer.putRow( rowMeta, new Object[] { Long.valueOf( i ) } );
+    }
+    fastProducer.finished();
+    for ( int i = 0; i < SLOW_ROWS; i++ ) {
+      Thread.sleep( 5 );
+      slowProducer.putRow( rowMeta, new Object[] { Long.valueOf( i ) } );
+    }
+    slowProducer.finished();
+    trans.waitUntilFinished();
+
+    assertTrue( trans.isFinished() );
+    assertEquals( 0, trans.getErrors() );
+    assertEquals( FAST_ROWS + SLOW_ROWS, written[0] );
+  }
+
+  private StepMeta addStep( TransMeta transMeta, StepMetaInterface meta, String name ) {
+    StepMeta stepMeta =
+      new StepMeta( PluginRegistry.getInstance().getPluginId( StepPluginType.class, meta ), name, meta );
+    transMeta.addStep( stepMeta );
+    return stepMeta;
+  }
+}
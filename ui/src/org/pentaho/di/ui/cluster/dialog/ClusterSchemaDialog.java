@@ -25,6 +25,7 @@ package org.pentaho.di.ui.cluster.dialog;
 import java.util.List;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -46,6 +47,7 @@ import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.cluster.ClusterSchema;
 import org.pentaho.di.cluster.SlaveServer;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.ui.core.PropsUI;
 import org.pentaho.di.ui.core.dialog.EnterSelectionDialog;
@@ -103,6 +105,10 @@ public class ClusterSchemaDialog extends Dialog {
 
   private Button wCompressed;
 
+  private Button wBatchTransport;
+
+  private CCombo wCompressionType;
+
   private Button wDynamic;
 
   private List<SlaveServer> slaveServers;
@@ -247,13 +253,54 @@ public class ClusterSchemaDialog extends Dialog {
     fdCompressed.right = new FormAttachment( 95, 0 );
     wCompressed.setLayoutData( fdCompressed );
 
+    // Send the rows in columnar batches?
+    Label wlBatchTransport = new Label( shell, SWT.RIGHT );
+    wlBatchTransport.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.BatchTransport.Tooltip" ) );
+    props.setLook( wlBatchTransport );
+    wlBatchTransport.setText( BaseMessages.getString( PKG, "ClusterSchemaDialog.BatchTransport.Label" ) );
+    FormData fdlBatchTransport = new FormData();
+    fdlBatchTransport.top = new FormAttachment( wCompressed, margin );
+    fdlBatchTransport.left = new FormAttachment( 0, 0 ); // First one in the left top corner
+    fdlBatchTransport.right = new FormAttachment( middle, 0 );
+    wlBatchTransport.setLayoutData( fdlBatchTransport );
+
+    wBatchTransport = new Button( shell, SWT.CHECK );
+    wBatchTransport.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.BatchTransport.Tooltip" ) );
+    props.setLook( wBatchTransport );
+    FormData fdBatchTransport = new FormData();
+    fdBatchTransport.top = new FormAttachment( wCompressed, margin );
+    fdBatchTransport.left = new FormAttachment( middle, margin ); // To the right of the label
+    fdBatchTransport.right = new FormAttachment( 95, 0 );
+    wBatchTransport.setLayoutData( fdBatchTransport );
+
+    // Which compression to use for the batches?
+    Label wlCompressionType = new Label( shell, SWT.RIGHT );
+    props.setLook( wlCompressionType );
+    wlCompressionType.setText( BaseMessages.getString( PKG, "ClusterSchemaDialog.CompressionType.Label" ) );
+    FormData fdlCompressionType = new FormData();
+    fdlCompressionType.top = new FormAttachment( wBatchTransport, margin );
+    fdlCompressionType.left = new FormAttachment( 0, 0 ); // First one in the left top corner
+    fdlCompressionType.right = new FormAttachment( middle, 0 );
+    wlCompressionType.setLayoutData( fdlCompressionType );
+
+    wCompressionType = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCompressionType.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.CompressionType.Tooltip" ) );
+    props.setLook( wCompressionType );
+    wCompressionType.setItems( CompressionProviderFactory.getInstance().getCompressionProviderNames() );
+    wCompressionType.addModifyListener( lsMod );
+    FormData fdCompressionType = new FormData();
+    fdCompressionType.top = new FormAttachment( wBatchTransport, margin );
+    fdCompressionType.left = new FormAttachment( middle, margin ); // To the right of the label
+    fdCompressionType.right = new FormAttachment( 95, 0 );
+    wCompressionType.setLayoutData( fdCompressionType );
+
     // What are the sockets buffer sizes??
     Label wlDynamic = new Label( shell, SWT.RIGHT );
     wlDynamic.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Tooltip" ) );
     props.setLook( wlDynamic );
     wlDynamic.setText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Label" ) );
     FormData fdlDynamic = new FormData();
-    fdlDynamic.top = new FormAttachment( wCompressed, margin );
+    fdlDynamic.top = new FormAttachment( wCompressionType, margin );
     fdlDynamic.left = new FormAttachment( 0, 0 ); // First one in the left top corner
     fdlDynamic.right = new FormAttachment( middle, 0 );
     wlDynamic.setLayoutData( fdlDynamic );
@@ -262,7 +309,7 @@ public class ClusterSchemaDialog extends Dialog {
     wDynamic.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Tooltip" ) );
     props.setLook( wDynamic );
     FormData fdDynamic = new FormData();
-    fdDynamic.top = new FormAttachment( wCompressed, margin );
+    fdDynamic.top = new FormAttachment( wCompressionType, margin );
     fdDynamic.left = new FormAttachment( middle, margin ); // To the right of the label
     fdDynamic.right = new FormAttachment( 95, 0 );
     wDynamic.setLayoutData( fdDynamic );
@@ -409,6 +456,9 @@ public class ClusterSchemaDialog extends Dialog {
     wBufferSize.setText( Const.NVL( clusterSchema.getSocketsBufferSize(), "" ) );
     wFlushInterval.setText( Const.NVL( clusterSchema.getSocketsFlushInterval(), "" ) );
     wCompressed.setSelection( clusterSchema.isSocketsCompressed() );
+    wBatchTransport.setSelection( clusterSchema.isSocketsBatchTransport() );
+    wCompressionType.setText( Const.NVL(
+      clusterSchema.getSocketsCompressionType(), ClusterSchema.DEFAULT_SOCKETS_COMPRESSION_TYPE ) );
     wDynamic.setSelection( clusterSchema.isDynamic() );
 
     refreshSlaveServers();
@@ -443,6 +493,8 @@ public class ClusterSchemaDialog extends Dialog {
     originalSchema.setSocketsBufferSize( clusterSchema.getSocketsBufferSize() );
     originalSchema.setSocketsFlushInterval( clusterSchema.getSocketsFlushInterval() );
     originalSchema.setSocketsCompressed( clusterSchema.isSocketsCompressed() );
+    originalSchema.setSocketsBatchTransport( clusterSchema.isSocketsBatchTransport() );
+    originalSchema.setSocketsCompressionType( clusterSchema.getSocketsCompressionType() );
     originalSchema.setDynamic( clusterSchema.isDynamic() );
     originalSchema.setSlaveServers( clusterSchema.getSlaveServers() );
     originalSchema.setChanged();
@@ -471,6 +523,8 @@ public class ClusterSchemaDialog extends Dialog {
     clusterSchema.setSocketsBufferSize( wBufferSize.getText() );
     clusterSchema.setSocketsFlushInterval( wFlushInterval.getText() );
     clusterSchema.setSocketsCompressed( wCompressed.getSelection() );
+    clusterSchema.setSocketsBatchTransport( wBatchTransport.getSelection() );
+    clusterSchema.setSocketsCompressionType( wCompressionType.getText() );
     clusterSchema.setDynamic( wDynamic.getSelection() );
 
     String[] names = SlaveServer.getSlaveServerNames( slaveServers );
@@ -100,6 +100,12 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
   private Label wlPreloadCache;
   private Button wPreloadCache;
 
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+
+  private Label wlCacheShared;
+  private Button wCacheShared;
+
   private Label wlTk;
   private Text wTk;
 
@@ -336,6 +342,44 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     fdPreloadCache.right = new FormAttachment( 100, 0 );
     wPreloadCache.setLayoutData( fdPreloadCache );
 
+    // Cache memory limit
+    wlCacheMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.CacheMemoryLimit.Label" ) );
+    props.setLook( wlCacheMemoryLimit );
+    FormData fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.top = new FormAttachment( wPreloadCache, margin );
+    fdlCacheMemoryLimit.left = new FormAttachment( wCommit, margin );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    FormData fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.top = new FormAttachment( wPreloadCache, margin );
+    fdCacheMemoryLimit.left = new FormAttachment( wlCacheMemoryLimit, margin );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+    wCacheMemoryLimit.setToolTipText(
+      BaseMessages.getString( PKG, "CombinationLookupDialog.CacheMemoryLimit.Tooltip" ) );
+
+    // Share the cache
+    wlCacheShared = new Label( shell, SWT.RIGHT );
+    wlCacheShared.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.CacheShared.Label" ) );
+    props.setLook( wlCacheShared );
+    FormData fdlCacheShared = new FormData();
+    fdlCacheShared.top = new FormAttachment( wCacheMemoryLimit, margin );
+    fdlCacheShared.left = new FormAttachment( wCommit, margin );
+    fdlCacheShared.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlCacheShared.setLayoutData( fdlCacheShared );
+    wCacheShared = new Button( shell, SWT.CHECK );
+    props.setLook( wCacheShared );
+    FormData fdCacheShared = new FormData();
+    fdCacheShared.top = new FormAttachment( wCacheMemoryLimit, margin );
+    fdCacheShared.left = new FormAttachment( wlCacheShared, margin );
+    fdCacheShared.right = new FormAttachment( 100, 0 );
+    wCacheShared.setLayoutData( fdCacheShared );
+    wCacheShared.setToolTipText( BaseMessages.getString( PKG, "CombinationLookupDialog.CacheShared.Tooltip" ) );
+
     //
     // The Lookup fields: usually the (business) key
     //
@@ -344,7 +388,7 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     props.setLook( wlKey );
     FormData fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wlPreloadCache, margin );
+    fdlKey.top = new FormAttachment( wlCacheShared, margin );
     fdlKey.right = new FormAttachment( 100, 0 );
     wlKey.setLayoutData( fdlKey );
 
@@ -623,6 +667,7 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     wSeq.addSelectionListener( lsDef );
     wTk.addSelectionListener( lsDef );
     wCachesize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
     wHashfield.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
@@ -842,6 +887,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
 
     wCommit.setText( "" + input.getCommitSize() );
     wCachesize.setText( "" + input.getCacheSize() );
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
+    wCacheShared.setSelection( input.isSharingCache() );
 
     wLastUpdateField.setText( Const.NVL( input.getLastUpdateField(), "" ) );
 
@@ -919,6 +966,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
 
     in.setCommitSize( Const.toInt( wCommit.getText(), 0 ) );
     in.setCacheSize( Const.toInt( wCachesize.getText(), 0 ) );
+    in.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
+    in.setSharingCache( wCacheShared.getSelection() );
 
     in.setLastUpdateField( wLastUpdateField.getText() );
   }
@@ -86,6 +86,22 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
   private Text wCachesize;
   private FormData fdlCachesize, fdCachesize;
 
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+  private FormData fdlCacheMemoryLimit, fdCacheMemoryLimit;
+
+  private Label wlCacheTimeToLive;
+  private Text wCacheTimeToLive;
+  private FormData fdlCacheTimeToLive, fdCacheTimeToLive;
+
+  private Label wlCacheShared;
+  private Button wCacheShared;
+  private FormData fdlCacheShared, fdCacheShared;
+
+  private Label wlLookupBatchSize;
+  private Text wLookupBatchSize;
+  private FormData fdlLookupBatchSize, fdLookupBatchSize;
+
   private Label wlKey;
   private TableView wKey;
   private FormData fdlKey, fdKey;
@@ -310,6 +326,44 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     fdCachesize.top = new FormAttachment( wCache, margin );
     wCachesize.setLayoutData( fdCachesize );
 
+    // Cache memory limit line
+    wlCacheMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheMemoryLimit.Label" ) );
+    wlCacheMemoryLimit.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheMemoryLimit.Tooltip" ) );
+    props.setLook( wlCacheMemoryLimit );
+    fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle, -margin );
+    fdlCacheMemoryLimit.top = new FormAttachment( wCachesize, margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    fdCacheMemoryLimit.top = new FormAttachment( wCachesize, margin );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+
+    // Cache time to live line
+    wlCacheTimeToLive = new Label( shell, SWT.RIGHT );
+    wlCacheTimeToLive.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheTimeToLive.Label" ) );
+    wlCacheTimeToLive.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheTimeToLive.Tooltip" ) );
+    props.setLook( wlCacheTimeToLive );
+    fdlCacheTimeToLive = new FormData();
+    fdlCacheTimeToLive.left = new FormAttachment( 0, 0 );
+    fdlCacheTimeToLive.right = new FormAttachment( middle, -margin );
+    fdlCacheTimeToLive.top = new FormAttachment( wCacheMemoryLimit, margin );
+    wlCacheTimeToLive.setLayoutData( fdlCacheTimeToLive );
+    wCacheTimeToLive = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheTimeToLive );
+    wCacheTimeToLive.addModifyListener( lsMod );
+    fdCacheTimeToLive = new FormData();
+    fdCacheTimeToLive.left = new FormAttachment( middle, 0 );
+    fdCacheTimeToLive.right = new FormAttachment( 100, 0 );
+    fdCacheTimeToLive.top = new FormAttachment( wCacheMemoryLimit, margin );
+    wCacheTimeToLive.setLayoutData( fdCacheTimeToLive );
+
     // Cache : Load all?
     wlCacheLoadAll = new Label( shell, SWT.RIGHT );
     wlCacheLoadAll.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheLoadAll.Label" ) );
@@ -317,13 +371,13 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     fdlCacheLoadAll = new FormData();
     fdlCacheLoadAll.left = new FormAttachment( 0, 0 );
     fdlCacheLoadAll.right = new FormAttachment( middle, -margin );
-    fdlCacheLoadAll.top = new FormAttachment( wCachesize, margin );
+    fdlCacheLoadAll.top = new FormAttachment( wCacheTimeToLive, margin );
     wlCacheLoadAll.setLayoutData( fdlCacheLoadAll );
     wCacheLoadAll = new Button( shell, SWT.CHECK );
     props.setLook( wCacheLoadAll );
     fdCacheLoadAll = new FormData();
     fdCacheLoadAll.left = new FormAttachment( middle, 0 );
-    fdCacheLoadAll.top = new FormAttachment( wCachesize, margin );
+    fdCacheLoadAll.top = new FormAttachment( wCacheTimeToLive, margin );
     wCacheLoadAll.setLayoutData( fdCacheLoadAll );
     wCacheLoadAll.addSelectionListener( new SelectionAdapter() {
       public void widgetSelected( SelectionEvent e ) {
@@ -332,12 +386,53 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
       }
     } );
 
+    // Cache : shared by the step copies?
+    wlCacheShared = new Label( shell, SWT.RIGHT );
+    wlCacheShared.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheShared.Label" ) );
+    wlCacheShared.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheShared.Tooltip" ) );
+    props.setLook( wlCacheShared );
+    fdlCacheShared = new FormData();
+    fdlCacheShared.left = new FormAttachment( 0, 0 );
+    fdlCacheShared.right = new FormAttachment( middle, -margin );
+    fdlCacheShared.top = new FormAttachment( wCacheLoadAll, margin );
+    wlCacheShared.setLayoutData( fdlCacheShared );
+    wCacheShared = new Button( shell, SWT.CHECK );
+    props.setLook( wCacheShared );
+    fdCacheShared = new FormData();
+    fdCacheShared.left = new FormAttachment( middle, 0 );
+    fdCacheShared.top = new FormAttachment( wCacheLoadAll, margin );
+    wCacheShared.setLayoutData( fdCacheShared );
+    wCacheShared.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
+    // Lookup batch size
+    wlLookupBatchSize = new Label( shell, SWT.RIGHT );
+    wlLookupBatchSize.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.LookupBatchSize.Label" ) );
+    wlLookupBatchSize.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.LookupBatchSize.Tooltip" ) );
+    props.setLook( wlLookupBatchSize );
+    fdlLookupBatchSize = new FormData();
+    fdlLookupBatchSize.left = new FormAttachment( 0, 0 );
+    fdlLookupBatchSize.right = new FormAttachment( middle, -margin );
+    fdlLookupBatchSize.top = new FormAttachment( wCacheShared, margin );
+    wlLookupBatchSize.setLayoutData( fdlLookupBatchSize );
+    wLookupBatchSize = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wLookupBatchSize );
+    wLookupBatchSize.addModifyListener( lsMod );
+    fdLookupBatchSize = new FormData();
+    fdLookupBatchSize.left = new FormAttachment( middle, 0 );
+    fdLookupBatchSize.right = new FormAttachment( 100, 0 );
+    fdLookupBatchSize.top = new FormAttachment( wCacheShared, margin );
+    wLookupBatchSize.setLayoutData( fdLookupBatchSize );
+
     wlKey = new Label( shell, SWT.NONE );
     wlKey.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.Keys.Label" ) );
     props.setLook( wlKey );
     fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wCacheLoadAll, margin );
+    fdlKey.top = new FormAttachment( wLookupBatchSize, margin );
     wlKey.setLayoutData( fdlKey );
 
     int nrKeyCols = 4;
@@ -529,6 +624,9 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wTable.addSelectionListener( lsDef );
     wOrderBy.addSelectionListener( lsDef );
     wCachesize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
+    wCacheTimeToLive.addSelectionListener( lsDef );
+    wLookupBatchSize.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -631,6 +729,14 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wlCachesize.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
     wCacheLoadAll.setEnabled( wCache.getSelection() );
     wlCacheLoadAll.setEnabled( wCache.getSelection() );
+    wCacheMemoryLimit.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
+    wlCacheMemoryLimit.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
+    wCacheTimeToLive.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
+    wlCacheTimeToLive.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
+    wCacheShared.setEnabled( wCache.getSelection() );
+    wlCacheShared.setEnabled( wCache.getSelection() );
+    wLookupBatchSize.setEnabled( !( wCache.getSelection() && wCacheLoadAll.getSelection() ) );
+    wlLookupBatchSize.setEnabled( !( wCache.getSelection() && wCacheLoadAll.getSelection() ) );
     wFailMultiple.setEnabled( !wCache.getSelection() );
     wlFailMultiple.setEnabled( !wCache.getSelection() );
   }
@@ -644,6 +750,10 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wCache.setSelection( input.isCached() );
     wCachesize.setText( "" + input.getCacheSize() );
     wCacheLoadAll.setSelection( input.isLoadingAllDataInCache() );
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
+    wCacheTimeToLive.setText( "" + input.getCacheTimeToLive() );
+    wCacheShared.setSelection( input.isSharingCache() );
+    wLookupBatchSize.setText( "" + input.getLookupBatchSize() );
 
     if ( input.getStreamKeyField1() != null ) {
       for ( int i = 0; i < input.getStreamKeyField1().length; i++ ) {
@@ -727,6 +837,10 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
 
     input.setCached( wCache.getSelection() );
     input.setCacheSize( Const.toInt( wCachesize.getText(), 0 ) );
+    input.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
+    input.setCacheTimeToLive( Const.toInt( wCacheTimeToLive.getText(), 0 ) );
+    input.setSharingCache( wCacheShared.getSelection() );
+    input.setLookupBatchSize( Const.toInt( wLookupBatchSize.getText(), 0 ) );
     input.setLoadingAllDataInCache( wCacheLoadAll.getSelection() );
 
     logDebug( BaseMessages.getString( PKG, "DatabaseLookupDialog.Log.FoundKeys", String.valueOf( nrkeys ) ) );
@@ -129,6 +129,12 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
   private Label wlCacheSize;
   private Text wCacheSize;
 
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+
+  private Label wlCacheShared;
+  private Button wCacheShared;
+
   private Label wlTk;
   private CCombo wTk;
 
@@ -481,6 +487,49 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     fdCacheSize.right = new FormAttachment( 100, 0 );
     wCacheSize.setLayoutData( fdCacheSize );
 
+    // Cache memory limit ...
+    wlCacheMemoryLimit = new Label( comp, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "DimensionLookupDialog.CacheMemoryLimit.Label" ) );
+    wlCacheMemoryLimit.setToolTipText(
+      BaseMessages.getString( PKG, "DimensionLookupDialog.CacheMemoryLimit.Tooltip" ) );
+    props.setLook( wlCacheMemoryLimit );
+    FormData fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle, -margin );
+    fdlCacheMemoryLimit.top = new FormAttachment( wCacheSize, margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( comp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    FormData fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdCacheMemoryLimit.top = new FormAttachment( wCacheSize, margin );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+
+    // Share the cache?
+    wlCacheShared = new Label( comp, SWT.RIGHT );
+    wlCacheShared.setText( BaseMessages.getString( PKG, "DimensionLookupDialog.CacheShared.Label" ) );
+    wlCacheShared.setToolTipText( BaseMessages.getString( PKG, "DimensionLookupDialog.CacheShared.Tooltip" ) );
+    props.setLook( wlCacheShared );
+    FormData fdlCacheShared = new FormData();
+    fdlCacheShared.left = new FormAttachment( 0, 0 );
+    fdlCacheShared.right = new FormAttachment( middle, -margin );
+    fdlCacheShared.top = new FormAttachment( wCacheMemoryLimit, margin );
+    wlCacheShared.setLayoutData( fdlCacheShared );
+    wCacheShared = new Button( comp, SWT.CHECK );
+    props.setLook( wCacheShared );
+    wCacheShared.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent arg0 ) {
+        input.setChanged();
+      }
+    } );
+    FormData fdCacheShared = new FormData();
+    fdCacheShared.left = new FormAttachment( middle, 0 );
+    fdCacheShared.top = new FormAttachment( wCacheMemoryLimit, margin );
+    fdCacheShared.right = new FormAttachment( 100, 0 );
+    wCacheShared.setLayoutData( fdCacheShared );
+
     wlTkRename = new Label( comp, SWT.RIGHT );
 
     wTabFolder = new CTabFolder( comp, SWT.BORDER );
@@ -638,7 +687,7 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
 
     fdTabFolder = new FormData();
     fdTabFolder.left = new FormAttachment( 0, 0 );
-    fdTabFolder.top = new FormAttachment( wCacheSize, margin );
+    fdTabFolder.top = new FormAttachment( wCacheShared, margin );
     fdTabFolder.right = new FormAttachment( 100, 0 );
     fdTabFolder.height = 200;
     wTabFolder.setLayoutData( fdTabFolder );
@@ -1072,6 +1121,7 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     wTable.addSelectionListener( lsDef );
     wCommit.addSelectionListener( lsDef );
     wCacheSize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
     wTk.addSelectionListener( lsDef );
     wTkRename.addSelectionListener( lsDef );
     wSeq.addSelectionListener( lsDef );
@@ -1202,6 +1252,10 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
 
     wlCacheSize.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
     wCacheSize.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wlCacheMemoryLimit.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wCacheMemoryLimit.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wlCacheShared.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wCacheShared.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
 
   }
 
@@ -1366,6 +1420,8 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     if ( input.getCacheSize() >= 0 ) {
       wCacheSize.setText( "" + input.getCacheSize() );
     }
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
+    wCacheShared.setSelection( input.isSharingCache() );
 
     wMinyear.setText( "" + input.getMinYear() );
     wMaxyear.setText( "" + input.getMaxYear() );
@@ -1486,6 +1542,8 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     } else {
       in.setCacheSize( -1 );
     }
+    in.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
+    in.setSharingCache( wCacheShared.getSelection() );
     in.setPreloadingCache( wPreloadCache.getSelection() );
     if ( wPreloadCache.getSelection() ) {
       in.setCacheSize( 0 );
@@ -158,6 +158,11 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
   private Button wIgnoreMissingPath;
   private FormData fdlIgnoreMissingPath, fdIgnoreMissingPath;
 
+  // streaming parser
+  private Label wlStreamingParser;
+  private Button wStreamingParser;
+  private FormData fdlStreamingParser, fdStreamingParser;
+
   // do not fail if no files?
   private Label wldoNotFailIfNoFile;
   private Button wdoNotFailIfNoFile;
@@ -649,12 +654,29 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     fdIgnoreMissingPath.top = new FormAttachment( wdoNotFailIfNoFile, margin );
     wIgnoreMissingPath.setLayoutData( fdIgnoreMissingPath );
 
+    // Streaming parser
+    wlStreamingParser = new Label( wConf, SWT.RIGHT );
+    wlStreamingParser.setText( BaseMessages.getString( PKG, "JsonInputDialog.StreamingParser.Label" ) );
+    props.setLook( wlStreamingParser );
+    fdlStreamingParser = new FormData();
+    fdlStreamingParser.left = new FormAttachment( 0, 0 );
+    fdlStreamingParser.top = new FormAttachment( wIgnoreMissingPath, margin );
+    fdlStreamingParser.right = new FormAttachment( middle, -margin );
+    wlStreamingParser.setLayoutData( fdlStreamingParser );
+    wStreamingParser = new Button( wConf, SWT.CHECK );
+    props.setLook( wStreamingParser );
+    wStreamingParser.setToolTipText( BaseMessages.getString( PKG, "JsonInputDialog.StreamingParser.Tooltip" ) );
+    fdStreamingParser = new FormData();
+    fdStreamingParser.left = new FormAttachment( middle, 0 );
+    fdStreamingParser.top = new FormAttachment( wIgnoreMissingPath, margin );
+    wStreamingParser.setLayoutData( fdStreamingParser );
+
     wlLimit = new Label( wConf, SWT.RIGHT );
     wlLimit.setText( BaseMessages.getString( PKG, "JsonInputDialog.Limit.Label" ) );
     props.setLook( wlLimit );
     fdlLimit = new FormData();
     fdlLimit.left = new FormAttachment( 0, 0 );
-    fdlLimit.top = new FormAttachment( wIgnoreMissingPath, margin );
+    fdlLimit.top = new FormAttachment( wStreamingParser, margin );
     fdlLimit.right = new FormAttachment( middle, -margin );
     wlLimit.setLayoutData( fdlLimit );
     wLimit = new Text( wConf, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
@@ -662,7 +684,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     wLimit.addModifyListener( lsMod );
     fdLimit = new FormData();
     fdLimit.left = new FormAttachment( middle, 0 );
-    fdLimit.top = new FormAttachment( wIgnoreMissingPath, margin );
+    fdLimit.top = new FormAttachment( wStreamingParser, margin );
     fdLimit.right = new FormAttachment( 100, 0 );
     wLimit.setLayoutData( fdLimit );
 
@@ -1199,6 +1221,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     wIgnoreEmptyFile.setSelection( in.isIgnoreEmptyFile() );
     wdoNotFailIfNoFile.setSelection( in.isdoNotFailIfNoFile() );
     wIgnoreMissingPath.setSelection( in.isIgnoreMissingPath() );
+    wStreamingParser.setSelection( in.isStreamingParser() );
     wSourceStreamField.setSelection( in.isInFields() );
     wSourceIsAFile.setSelection( in.getIsAFile() );
 
@@ -1336,6 +1359,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     in.setIgnoreEmptyFile( wIgnoreEmptyFile.getSelection() );
     in.setdoNotFailIfNoFile( wdoNotFailIfNoFile.getSelection() );
     in.setIgnoreMissingPath( wIgnoreMissingPath.getSelection() );
+    in.setStreamingParser( wStreamingParser.getSelection() );
     in.setInFields( wSourceStreamField.getSelection() );
     in.setIsAFile( wSourceIsAFile.getSelection() );
     in.setFieldValue( wFieldValue.getText() );
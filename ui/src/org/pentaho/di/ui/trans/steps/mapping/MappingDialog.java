@@ -146,6 +146,8 @@ public class MappingDialog extends BaseStepDialog implements StepDialogInterface
 
   private Button wMultiInput, wMultiOutput;
 
+  private Button wPooledExecution;
+
   private interface ApplyChanges {
     public void applyChanges();
   }
@@ -540,6 +542,17 @@ public class MappingDialog extends BaseStepDialog implements StepDialogInterface
     } );
     lastControl = wMultiOutput;
 
+    wPooledExecution = new Button( shell, SWT.CHECK );
+    props.setLook( wPooledExecution );
+    wPooledExecution.setText( BaseMessages.getString( PKG, "MappingDialog.PooledExecution.Label" ) );
+    wPooledExecution.setToolTipText( BaseMessages.getString( PKG, "MappingDialog.PooledExecution.Tooltip" ) );
+    FormData fdPooledExecution = new FormData();
+    fdPooledExecution.left = new FormAttachment( 0, 0 );
+    fdPooledExecution.right = new FormAttachment( 100, 0 );
+    fdPooledExecution.top = new FormAttachment( lastControl, margin );
+    wPooledExecution.setLayoutData( fdPooledExecution );
+    lastControl = wPooledExecution;
+
     //
     // Add a tab folder for the parameters and various input and output
     // streams
@@ -973,6 +986,7 @@ public class MappingDialog extends BaseStepDialog implements StepDialogInterface
 
     wMultiInput.setSelection( mappingMeta.isAllowingMultipleInputs() );
     wMultiOutput.setSelection( mappingMeta.isAllowingMultipleOutputs() );
+    wPooledExecution.setSelection( mappingMeta.isPooledExecution() );
 
     // Now add the input stream tabs: where is our data coming from?
     for ( int i = 0; i < inputMappings.size(); i++ ) {
@@ -1733,6 +1747,7 @@ public class MappingDialog extends BaseStepDialog implements StepDialogInterface
 
     mappingMeta.setAllowingMultipleInputs( wMultiInput.getSelection() );
     mappingMeta.setAllowingMultipleOutputs( wMultiOutput.getSelection() );
+    mappingMeta.setPooledExecution( wPooledExecution.getSelection() );
 
     mappingMeta.setChanged( true );
 
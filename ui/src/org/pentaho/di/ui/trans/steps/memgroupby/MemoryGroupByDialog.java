@@ -75,6 +75,10 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
   private Button wAlwaysAddResult;
   private FormData fdlAlwaysAddResult, fdAlwaysAddResult;
 
+  private Label wlParallelAggregation;
+  private Button wParallelAggregation;
+  private FormData fdlParallelAggregation, fdParallelAggregation;
+
   private Button wGet, wGetAgg;
   private FormData fdGet, fdGetAgg;
   private Listener lsGet, lsGetAgg;
@@ -157,12 +161,32 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     fdAlwaysAddResult.right = new FormAttachment( 100, 0 );
     wAlwaysAddResult.setLayoutData( fdAlwaysAddResult );
 
+    wlParallelAggregation = new Label( shell, SWT.RIGHT );
+    wlParallelAggregation.setText( BaseMessages.getString( PKG, "MemoryGroupByDialog.ParallelAggregation.Label" ) );
+    wlParallelAggregation.setToolTipText( BaseMessages.getString(
+      PKG, "MemoryGroupByDialog.ParallelAggregation.ToolTip" ) );
+    props.setLook( wlParallelAggregation );
+    fdlParallelAggregation = new FormData();
+    fdlParallelAggregation.left = new FormAttachment( 0, 0 );
+    fdlParallelAggregation.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdlParallelAggregation.right = new FormAttachment( middle, -margin );
+    wlParallelAggregation.setLayoutData( fdlParallelAggregation );
+    wParallelAggregation = new Button( shell, SWT.CHECK );
+    wParallelAggregation.setToolTipText( BaseMessages.getString(
+      PKG, "MemoryGroupByDialog.ParallelAggregation.ToolTip" ) );
+    props.setLook( wParallelAggregation );
+    fdParallelAggregation = new FormData();
+    fdParallelAggregation.left = new FormAttachment( middle, 0 );
+    fdParallelAggregation.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdParallelAggregation.right = new FormAttachment( 100, 0 );
+    wParallelAggregation.setLayoutData( fdParallelAggregation );
+
     wlGroup = new Label( shell, SWT.NONE );
     wlGroup.setText( BaseMessages.getString( PKG, "MemoryGroupByDialog.Group.Label" ) );
     props.setLook( wlGroup );
     fdlGroup = new FormData();
     fdlGroup.left = new FormAttachment( 0, 0 );
-    fdlGroup.top = new FormAttachment( wAlwaysAddResult, margin );
+    fdlGroup.top = new FormAttachment( wParallelAggregation, margin );
     wlGroup.setLayoutData( fdlGroup );
 
     int nrKeyCols = 1;
@@ -357,6 +381,7 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     logDebug( BaseMessages.getString( PKG, "MemoryGroupByDialog.Log.GettingKeyInfo" ) );
 
     wAlwaysAddResult.setSelection( input.isAlwaysGivingBackOneRow() );
+    wParallelAggregation.setSelection( input.isParallelAggregation() );
 
     if ( input.getGroupField() != null ) {
       for ( int i = 0; i < input.getGroupField().length; i++ ) {
@@ -407,6 +432,7 @@ public class MemoryGroupByDialog extends BaseStepDialog implements StepDialogInt
     int nrfields = wAgg.nrNonEmpty();
 
     input.setAlwaysGivingBackOneRow( wAlwaysAddResult.getSelection() );
+    input.setParallelAggregation( wParallelAggregation.getSelection() );
 
     input.allocate( sizegroup, nrfields );
 
@@ -59,6 +59,7 @@ import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepDialogInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.steps.streamlookup.StreamLookupDiskIndex;
 import org.pentaho.di.trans.steps.streamlookup.StreamLookupMeta;
 import org.pentaho.di.ui.core.dialog.ErrorDialog;
 import org.pentaho.di.ui.core.widget.ColumnInfo;
@@ -92,6 +93,14 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
   private Button wIntegerPair;
   private FormData fdlIntegerPair, fdIntegerPair;
 
+  private Label wlDiskStorage;
+  private Button wDiskStorage;
+  private FormData fdlDiskStorage, fdDiskStorage;
+
+  private Label wlHotCacheSize;
+  private Text wHotCacheSize;
+  private FormData fdlHotCacheSize, fdHotCacheSize;
+
   private StreamLookupMeta input;
 
   private Button wGetLU;
@@ -257,7 +266,7 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     fdReturn.left = new FormAttachment( 0, 0 );
     fdReturn.top = new FormAttachment( wlReturn, margin );
     fdReturn.right = new FormAttachment( 100, 0 );
-    fdReturn.bottom = new FormAttachment( 100, -125 );
+    fdReturn.bottom = new FormAttachment( 100, -175 );
     wReturn.setLayoutData( fdReturn );
 
     wlPreserveMemory = new Label( shell, SWT.RIGHT );
@@ -336,6 +345,47 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
 
     // END MEMORY PRESERVE
 
+    wlDiskStorage = new Label( shell, SWT.RIGHT );
+    wlDiskStorage.setText( BaseMessages.getString( PKG, "StreamLookupDialog.DiskStorage.Label" ) );
+    props.setLook( wlDiskStorage );
+    fdlDiskStorage = new FormData();
+    fdlDiskStorage.left = new FormAttachment( 0, 0 );
+    fdlDiskStorage.top = new FormAttachment( wSortedList, margin );
+    fdlDiskStorage.right = new FormAttachment( middle, -margin );
+    wlDiskStorage.setLayoutData( fdlDiskStorage );
+    wDiskStorage = new Button( shell, SWT.CHECK );
+    wDiskStorage.setToolTipText( BaseMessages.getString( PKG, "StreamLookupDialog.DiskStorage.Tooltip" ) );
+    props.setLook( wDiskStorage );
+    fdDiskStorage = new FormData();
+    fdDiskStorage.left = new FormAttachment( middle, 0 );
+    fdDiskStorage.top = new FormAttachment( wSortedList, margin );
+    fdDiskStorage.right = new FormAttachment( 100, 0 );
+    wDiskStorage.setLayoutData( fdDiskStorage );
+    wDiskStorage.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+        wHotCacheSize.setEnabled( wDiskStorage.getSelection() );
+      }
+    } );
+
+    wlHotCacheSize = new Label( shell, SWT.RIGHT );
+    wlHotCacheSize.setText( BaseMessages.getString( PKG, "StreamLookupDialog.HotCacheSize.Label" ) );
+    props.setLook( wlHotCacheSize );
+    fdlHotCacheSize = new FormData();
+    fdlHotCacheSize.left = new FormAttachment( 0, 0 );
+    fdlHotCacheSize.top = new FormAttachment( wDiskStorage, margin );
+    fdlHotCacheSize.right = new FormAttachment( middle, -margin );
+    wlHotCacheSize.setLayoutData( fdlHotCacheSize );
+    wHotCacheSize = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wHotCacheSize.setToolTipText( BaseMessages.getString( PKG, "StreamLookupDialog.HotCacheSize.Tooltip" ) );
+    props.setLook( wHotCacheSize );
+    wHotCacheSize.addModifyListener( lsMod );
+    fdHotCacheSize = new FormData();
+    fdHotCacheSize.left = new FormAttachment( middle, 0 );
+    fdHotCacheSize.top = new FormAttachment( wDiskStorage, margin );
+    fdHotCacheSize.right = new FormAttachment( 100, 0 );
+    wHotCacheSize.setLayoutData( fdHotCacheSize );
+
     // THE BUTTONS
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
@@ -536,6 +586,9 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     // but user will be forced to choose only one option later.
     wSortedList.setSelection( input.isUsingSortedList() );
     wIntegerPair.setSelection( input.isUsingIntegerPair() );
+    wDiskStorage.setSelection( input.isUsingDiskStorage() );
+    wHotCacheSize.setText( Integer.toString( input.getHotCacheSize() ) );
+    wHotCacheSize.setEnabled( input.isUsingDiskStorage() );
 
     wKey.setRowNums();
     wKey.optWidth( true );
@@ -563,6 +616,8 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     input.setMemoryPreservationActive( wPreserveMemory.getSelection() );
     input.setUsingSortedList( wSortedList.getSelection() );
     input.setUsingIntegerPair( wIntegerPair.getSelection() );
+    input.setUsingDiskStorage( wDiskStorage.getSelection() );
+    input.setHotCacheSize( Const.toInt( wHotCacheSize.getText(), StreamLookupDiskIndex.DEFAULT_HOT_CACHE_SIZE ) );
 
     if ( log.isDebug() ) {
       logDebug( BaseMessages.getString( PKG, "StreamLookupDialog.Log.FoundKeys", nrkeys + "" ) );
@@ -133,6 +133,10 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
   private Button wBatch;
   private FormData fdlBatch, fdBatch;
 
+  private Label wlAsyncWrite;
+  private Button wAsyncWrite;
+  private FormData fdlAsyncWrite, fdAsyncWrite;
+
   private Label wlUsePart;
   private Button wUsePart;
   private FormData fdlUsePart, fdUsePart;
@@ -563,20 +567,39 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
       }
     } );
 
+    // Execute the batches in a separate thread
+    wlAsyncWrite = new Label( wMainComp, SWT.RIGHT );
+    wlAsyncWrite.setText( BaseMessages.getString( PKG, "TableOutputDialog.AsyncWrite.Label" ) );
+    wlAsyncWrite.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.AsyncWrite.Tooltip" ) );
+    props.setLook( wlAsyncWrite );
+    fdlAsyncWrite = new FormData();
+    fdlAsyncWrite.left = new FormAttachment( 0, 0 );
+    fdlAsyncWrite.top = new FormAttachment( wBatch, margin );
+    fdlAsyncWrite.right = new FormAttachment( middle, -margin );
+    wlAsyncWrite.setLayoutData( fdlAsyncWrite );
+    wAsyncWrite = new Button( wMainComp, SWT.CHECK );
+    props.setLook( wAsyncWrite );
+    fdAsyncWrite = new FormData();
+    fdAsyncWrite.left = new FormAttachment( middle, 0 );
+    fdAsyncWrite.top = new FormAttachment( wBatch, margin );
+    fdAsyncWrite.right = new FormAttachment( 100, 0 );
+    wAsyncWrite.setLayoutData( fdAsyncWrite );
+    wAsyncWrite.addSelectionListener( lsSelMod );
+
     // NameInField
     wlNameInField = new Label( wMainComp, SWT.RIGHT );
     wlNameInField.setText( BaseMessages.getString( PKG, "TableOutputDialog.NameInField.Label" ) );
     props.setLook( wlNameInField );
     fdlNameInField = new FormData();
     fdlNameInField.left = new FormAttachment( 0, 0 );
-    fdlNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdlNameInField.top = new FormAttachment( wAsyncWrite, margin * 5 );
     fdlNameInField.right = new FormAttachment( middle, -margin );
     wlNameInField.setLayoutData( fdlNameInField );
     wNameInField = new Button( wMainComp, SWT.CHECK );
     props.setLook( wNameInField );
     fdNameInField = new FormData();
     fdNameInField.left = new FormAttachment( middle, 0 );
-    fdNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdNameInField.top = new FormAttachment( wAsyncWrite, margin * 5 );
     fdNameInField.right = new FormAttachment( 100, 0 );
     wNameInField.setLayoutData( fdNameInField );
     wNameInField.addSelectionListener( new SelectionAdapter() {
@@ -1185,6 +1208,11 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wlBatch.setEnabled( enableBatch );
     wBatch.setEnabled( enableBatch );
 
+    // The writer thread only writes batches to a single table
+    boolean enableAsyncWrite = useBatch && !usePartitioning && !isTableNameInField;
+    wlAsyncWrite.setEnabled( enableAsyncWrite );
+    wAsyncWrite.setEnabled( enableAsyncWrite );
+
     boolean specifyFields = wSpecifyFields.getSelection();
     wFields.setEnabled( specifyFields );
     wGetFields.setEnabled( specifyFields );
@@ -1213,6 +1241,7 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wTruncate.setSelection( input.truncateTable() );
     wIgnore.setSelection( input.ignoreErrors() );
     wBatch.setSelection( input.useBatchUpdate() );
+    wAsyncWrite.setSelection( input.isAsyncWrite() );
 
     wCommit.setText( input.getCommitSize() );
 
@@ -1266,6 +1295,7 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     info.setTruncateTable( wTruncate.getSelection() );
     info.setIgnoreErrors( wIgnore.getSelection() );
     info.setUseBatchUpdate( wBatch.getSelection() );
+    info.setAsyncWrite( wAsyncWrite.getSelection() );
     info.setPartitioningEnabled( wUsePart.getSelection() );
     info.setPartitioningField( wPartField.getText() );
     info.setPartitioningDaily( wPartDaily.getSelection() );
@@ -291,6 +291,14 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
   private CCombo wDateLocale;
   private FormData fdlDateLocale, fdDateLocale;
 
+  private Label wlLazyConversion;
+  private Button wLazyConversion;
+  private FormData fdlLazyConversion, fdLazyConversion;
+
+  private Label wlRunningInParallel;
+  private Button wRunningInParallel;
+  private FormData fdlRunningInParallel, fdRunningInParallel;
+
   // ERROR HANDLING...
   private Label wlErrorIgnored;
   private Button wErrorIgnored;
@@ -1136,10 +1144,6 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
     fdEnclBreaks.top = new FormAttachment( wEnclosure, margin );
     wEnclBreaks.setLayoutData( fdEnclBreaks );
 
-    // Disable until the logic works...
-    wlEnclBreaks.setEnabled( false );
-    wEnclBreaks.setEnabled( false );
-
     // Escape
     wlEscape = new Label( wContentComp, SWT.RIGHT );
     wlEscape.setText( BaseMessages.getString( PKG, "TextFileInputDialog.Escape.Label" ) );
@@ -1546,6 +1550,40 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
       }
     } );
 
+    // Lazy conversion checkbox
+    wlLazyConversion = new Label( wContentComp, SWT.RIGHT );
+    wlLazyConversion.setText( BaseMessages.getString( PKG, "TextFileInputDialog.LazyConversion.Label" ) );
+    props.setLook( wlLazyConversion );
+    fdlLazyConversion = new FormData();
+    fdlLazyConversion.left = new FormAttachment( 0, 0 );
+    fdlLazyConversion.top = new FormAttachment( wDateLocale, margin );
+    fdlLazyConversion.right = new FormAttachment( middle, -margin );
+    wlLazyConversion.setLayoutData( fdlLazyConversion );
+    wLazyConversion = new Button( wContentComp, SWT.CHECK );
+    wLazyConversion.setToolTipText( BaseMessages.getString( PKG, "TextFileInputDialog.LazyConversion.Tooltip" ) );
+    props.setLook( wLazyConversion );
+    fdLazyConversion = new FormData();
+    fdLazyConversion.left = new FormAttachment( middle, 0 );
+    fdLazyConversion.top = new FormAttachment( wDateLocale, margin );
+    wLazyConversion.setLayoutData( fdLazyConversion );
+
+    // Running in parallel checkbox
+    wlRunningInParallel = new Label( wContentComp, SWT.RIGHT );
+    wlRunningInParallel.setText( BaseMessages.getString( PKG, "TextFileInputDialog.RunningInParallel.Label" ) );
+    props.setLook( wlRunningInParallel );
+    fdlRunningInParallel = new FormData();
+    fdlRunningInParallel.left = new FormAttachment( 0, 0 );
+    fdlRunningInParallel.top = new FormAttachment( wLazyConversion, margin );
+    fdlRunningInParallel.right = new FormAttachment( middle, -margin );
+    wlRunningInParallel.setLayoutData( fdlRunningInParallel );
+    wRunningInParallel = new Button( wContentComp, SWT.CHECK );
+    wRunningInParallel.setToolTipText( BaseMessages.getString( PKG, "TextFileInputDialog.RunningInParallel.Tooltip" ) );
+    props.setLook( wRunningInParallel );
+    fdRunningInParallel = new FormData();
+    fdRunningInParallel.left = new FormAttachment( middle, 0 );
+    fdRunningInParallel.top = new FormAttachment( wLazyConversion, margin );
+    wRunningInParallel.setLayoutData( fdRunningInParallel );
+
     // ///////////////////////////////
     // START OF AddFileResult GROUP //
     // ///////////////////////////////
@@ -1564,7 +1602,7 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
     props.setLook( wlAddResult );
     fdlAddResult = new FormData();
     fdlAddResult.left = new FormAttachment( 0, 0 );
-    fdlAddResult.top = new FormAttachment( wDateLocale, margin );
+    fdlAddResult.top = new FormAttachment( wRunningInParallel, margin );
     fdlAddResult.right = new FormAttachment( middle, -margin );
     wlAddResult.setLayoutData( fdlAddResult );
     wAddResult = new Button( wAddFileResult, SWT.CHECK );
@@ -1572,12 +1610,12 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
     wAddResult.setToolTipText( BaseMessages.getString( PKG, "TextFileInputDialog.AddResult.Tooltip" ) );
     fdAddResult = new FormData();
     fdAddResult.left = new FormAttachment( middle, 0 );
-    fdAddResult.top = new FormAttachment( wDateLocale, margin );
+    fdAddResult.top = new FormAttachment( wRunningInParallel, margin );
     wAddResult.setLayoutData( fdAddResult );
 
     fdAddFileResult = new FormData();
     fdAddFileResult.left = new FormAttachment( 0, margin );
-    fdAddFileResult.top = new FormAttachment( wDateLocale, margin );
+    fdAddFileResult.top = new FormAttachment( wRunningInParallel, margin );
     fdAddFileResult.right = new FormAttachment( 100, -margin );
     wAddFileResult.setLayoutData( fdAddFileResult );
 
@@ -2234,6 +2272,9 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
     wInclRownum.setSelection( meta.includeRowNumber() );
     wRownumByFile.setSelection( meta.isRowNumberByFile() );
     wDateLenient.setSelection( meta.isDateFormatLenient() );
+    wLazyConversion.setSelection( meta.isLazyConversionActive() );
+    wRunningInParallel.setSelection( meta.isRunningInParallel() );
+    wEnclBreaks.setSelection( meta.isBreakInEnclosureAllowed() );
     wAddResult.setSelection( meta.isAddResultFile() );
 
     if ( meta.getFilenameField() != null ) {
@@ -2496,6 +2537,9 @@ public class TextFileInputDialog extends BaseStepDialog implements StepDialogInt
     meta.setNrLinesDocHeader( Const.toInt( wNrLinesDocHeader.getText(), 0 ) );
     meta.setFileCompression( wCompression.getText() );
     meta.setDateFormatLenient( wDateLenient.getSelection() );
+    meta.setLazyConversionActive( wLazyConversion.getSelection() );
+    meta.setRunningInParallel( wRunningInParallel.getSelection() );
+    meta.setBreakInEnclosureAllowed( wEnclBreaks.getSelection() );
     meta.setNoEmptyLines( wNoempty.getSelection() );
     meta.setEncoding( wEncoding.getText() );
 
@@ -136,6 +136,8 @@ public class TransExecutorDialog extends BaseStepDialog implements StepDialogInt
   private CCombo wGroupField;
   private Label wlGroupTime;
   private TextVar wGroupTime;
+  private Label wlPooledExecution;
+  private Button wPooledExecution;
 
   private Label wlExecutionResultTarget;
   private Label wlExecutionTimeField;
@@ -765,6 +767,7 @@ public class TransExecutorDialog extends BaseStepDialog implements StepDialogInt
     wGroupSize.setText( Const.NVL( transExecutorMeta.getGroupSize(), "" ) );
     wGroupTime.setText( Const.NVL( transExecutorMeta.getGroupTime(), "" ) );
     wGroupField.setText( Const.NVL( transExecutorMeta.getGroupField(), "" ) );
+    wPooledExecution.setSelection( transExecutorMeta.isPooledExecution() );
 
     wExecutionResultTarget.setText( transExecutorMeta.getExecutionResultTargetStepMeta() == null ? ""
       : transExecutorMeta.getExecutionResultTargetStepMeta().getName() );
@@ -1006,7 +1009,32 @@ public class TransExecutorDialog extends BaseStepDialog implements StepDialogInt
     fdGroupTime.left = new FormAttachment( middle, 0 ); // To the right of
     fdGroupTime.right = new FormAttachment( 100, 0 );
     wGroupTime.setLayoutData( fdGroupTime );
-    // lastControl = wGroupTime;
+    lastControl = wGroupTime;
+
+    // Pooled execution
+    //
+    wlPooledExecution = new Label( wInputComposite, SWT.RIGHT );
+    props.setLook( wlPooledExecution );
+    wlPooledExecution.setText( BaseMessages.getString( PKG, "TransExecutorDialog.PooledExecution.Label" ) );
+    wlPooledExecution.setToolTipText( BaseMessages.getString( PKG, "TransExecutorDialog.PooledExecution.Tooltip" ) );
+    FormData fdlPooledExecution = new FormData();
+    fdlPooledExecution.top = new FormAttachment( lastControl, margin );
+    fdlPooledExecution.left = new FormAttachment( 0, 0 ); // First one in the left
+    fdlPooledExecution.right = new FormAttachment( middle, -margin );
+    wlPooledExecution.setLayoutData( fdlPooledExecution );
+    wPooledExecution = new Button( wInputComposite, SWT.CHECK );
+    props.setLook( wPooledExecution );
+    wPooledExecution.setToolTipText( BaseMessages.getString( PKG, "TransExecutorDialog.PooledExecution.Tooltip" ) );
+    FormData fdPooledExecution = new FormData();
+    fdPooledExecution.top = new FormAttachment( lastControl, margin );
+    fdPooledExecution.left = new FormAttachment( middle, 0 ); // To the right of
+    fdPooledExecution.right = new FormAttachment( 100, 0 );
+    wPooledExecution.setLayoutData( fdPooledExecution );
+    wPooledExecution.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        transExecutorMeta.setChanged();
+      }
+    } );
 
     wTab.setControl( wInputComposite );
     wTabFolder.setSelection( wTab );
@@ -1601,6 +1629,7 @@ public class TransExecutorDialog extends BaseStepDialog implements StepDialogInt
     transExecutorMeta.setGroupSize( wGroupSize.getText() );
     transExecutorMeta.setGroupField( wGroupField.getText() );
     transExecutorMeta.setGroupTime( wGroupTime.getText() );
+    transExecutorMeta.setPooledExecution( wPooledExecution.getSelection() );
 
     transExecutorMeta.setExecutionResultTargetStep( wExecutionResultTarget.getText() );
     transExecutorMeta.setExecutionResultTargetStepMeta( transMeta.findStep( wExecutionResultTarget.getText() ) );